@@ -0,0 +1,90 @@
+package com.mytutorplatform.lessonsservice.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate's second-level cache for the material catalogue: materials, folders and grammar items,
+ * their collections, and the catalogue queries marked cacheable in the repositories. Each region is a
+ * bounded Caffeine cache; {@code hibernate.javax.cache.missing_cache_strategy=fail} keeps an entity
+ * annotated with an unknown region from silently getting an unbounded one.
+ * <p>
+ * Writes through the repositories keep the regions current: entity regions are updated on commit and
+ * query results go stale with the update timestamps of the tables they read. Other instances learn
+ * of those writes through {@code MaterialCacheBroadcast}. Writes that bypass Hibernate are only
+ * picked up once {@code lessons.material-cache.expire-after-write-minutes} pass.
+ * <p>
+ * Every region keeps JCache statistics, which feed the {@code cache.*} meters; Hibernate's own
+ * statistics stay off, since they would be collected for every session.
+ */
+@Configuration
+public class MaterialCacheConfig {
+
+    public static final String MATERIAL = "material";
+    public static final String MATERIAL_TAGS = "material.tags";
+    public static final String MATERIAL_FOLDER = "material-folder";
+    public static final String MATERIAL_FOLDER_CHILDREN = "material-folder.children";
+    public static final String GRAMMAR_ITEM = "grammar-item";
+    public static final String CATALOGUE_QUERIES = "material-catalogue-queries";
+
+    private static final List<String> DOMAIN_REGIONS =
+            List.of(MATERIAL, MATERIAL_TAGS, MATERIAL_FOLDER, MATERIAL_FOLDER_CHILDREN, GRAMMAR_ITEM);
+
+    /** Hibernate's own query regions, always created once the query cache is on. */
+    private static final String DEFAULT_QUERY_RESULTS = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    @Bean
+    public HibernatePropertiesCustomizer materialCacheCustomizer(
+            @Value("${lessons.material-cache.max-entries:10000}") long maxEntries,
+            @Value("${lessons.material-cache.query-max-entries:1000}") long queryMaxEntries,
+            @Value("${lessons.material-cache.expire-after-write-minutes:60}") long expireAfterWriteMinutes) {
+        long expireAfterWrite = Duration.ofMinutes(expireAfterWriteMinutes).toNanos();
+        return properties -> {
+            // a manager of its own per session factory, which closes it on shutdown
+            CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                    .getCacheManager(URI.create("lessons-material-cache-" + UUID.randomUUID()), getClass().getClassLoader());
+            DOMAIN_REGIONS.forEach(region -> cacheManager.createCache(region, bounded(maxEntries, expireAfterWrite)));
+            cacheManager.createCache(CATALOGUE_QUERIES, bounded(queryMaxEntries, expireAfterWrite));
+            cacheManager.createCache(DEFAULT_QUERY_RESULTS, bounded(queryMaxEntries, expireAfterWrite));
+            // one entry per table, and evicting one would let stale query results through
+            cacheManager.createCache(UPDATE_TIMESTAMPS, new CaffeineConfiguration<>().setStatisticsEnabled(true));
+
+            properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    /** Gets by hit and miss, puts and evictions per region, as {@code cache.*} meters tagged with the region. */
+    @Bean
+    public MeterBinder materialCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        CacheManager cacheManager = (CacheManager) entityManagerFactory.getProperties().get(ConfigSettings.CACHE_MANAGER);
+        return registry -> cacheManager.getCacheNames().forEach(region ->
+                JCacheMetrics.monitor(registry, cacheManager.getCache(region), Tags.empty()));
+    }
+
+    private static CaffeineConfiguration<Object, Object> bounded(long maxEntries, long expireAfterWriteNanos) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStatisticsEnabled(true);
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWriteNanos));
+        return configuration;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mytutorplatform.lessonsservice.config;
+
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Idempotent DDL that {@code ddl-auto=update} cannot express, applied once the schema is up.
+ * Hibernate only adds missing columns and constraints, so checks generated for an older
+ * version of an enum keep rejecting the new values until they are rewritten here.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SchemaPatchRunner implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String frequencies = Arrays.stream(RecurringLessonSeries.RecurrenceFrequency.values())
+                .map(frequency -> "'" + frequency.name() + "'")
+                .collect(Collectors.joining(", "));
+        apply("ALTER TABLE recurring_lesson_series DROP CONSTRAINT IF EXISTS recurring_lesson_series_frequency_check");
+        apply("ALTER TABLE recurring_lesson_series ADD CONSTRAINT recurring_lesson_series_frequency_check CHECK (frequency IN (" + frequencies + "))");
+
+        // set-based series deletes rely on the database to remove lesson children
+        apply("""
+                DO $$
+                DECLARE fk record;
+                BEGIN
+                    FOR fk IN SELECT c.conname, c.conrelid::regclass AS child
+                              FROM pg_constraint c
+                              WHERE c.contype = 'f'
+                                AND c.confrelid = 'lessons'::regclass
+                                AND c.confdeltype <> 'c'
+                                AND c.conrelid::regclass::text IN ('lesson_attachments', 'lesson_materials', 'lesson_content_links')
+                    LOOP
+                        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.child, fk.conname);
+                        EXECUTE format('ALTER TABLE %s ADD CONSTRAINT %I FOREIGN KEY (lesson_id) REFERENCES lessons(id) ON DELETE CASCADE',
+                                       fk.child, fk.conname);
+                    END LOOP;
+                END $$
+                """);
+    }
+
+    private void apply(String sql) {
+        try {
+            jdbcTemplate.execute(sql);
+        } catch (Exception e) {
+            log.warn("Schema patch failed: {} ({})", sql, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mytutorplatform.lessonsservice.config.datasource;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the read-only transactions of the current request may read from. Only threads carrying a
+ * routing that allows it ever read the replica: the {@link ReadYourWritesFilter} opens one for safe
+ * requests of clients that have not written recently, so writes, background jobs and the reads that
+ * follow a client's own write all stay on the primary.
+ * <p>
+ * Reads that must reflect a known write, e.g. the data behind a schedule ETag, declare its local
+ * {@link System#nanoTime()} commit time with {@link #mustSee}; the replica then serves them only once
+ * it is known to have replayed that far.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<ReadRouting> CURRENT = new ThreadLocal<>();
+
+    private final boolean replicaAllowed;
+    private final AtomicLong mustSeeNanos = new AtomicLong(Long.MIN_VALUE);
+
+    private ReadRouting(boolean replicaAllowed) {
+        this.replicaAllowed = replicaAllowed;
+    }
+
+    static ReadRouting open(boolean replicaAllowed) {
+        ReadRouting routing = new ReadRouting(replicaAllowed);
+        CURRENT.set(routing);
+        return routing;
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    static ReadRouting current() {
+        return CURRENT.get();
+    }
+
+    /** Replica reads of the current request must include what this instance committed up to then. */
+    public static void mustSee(long committedAtNanos) {
+        ReadRouting routing = CURRENT.get();
+        if (routing != null) {
+            routing.mustSeeNanos.accumulateAndGet(committedAtNanos, Math::max);
+        }
+    }
+
+    /** Keeps the rest of the current request on the primary. */
+    public static void requirePrimary() {
+        mustSee(Long.MAX_VALUE);
+    }
+
+    /** The task, running under the routing of the calling thread wherever it is executed. */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        ReadRouting routing = CURRENT.get();
+        if (routing == null) {
+            return task;
+        }
+        return () -> {
+            ReadRouting previous = CURRENT.get();
+            CURRENT.set(routing);
+            try {
+                return task.call();
+            } finally {
+                if (previous != null) {
+                    CURRENT.set(previous);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        };
+    }
+
+    boolean replicaAllowed() {
+        return replicaAllowed;
+    }
+
+    long mustSeeNanos() {
+        return mustSeeNanos.get();
+    }
+}
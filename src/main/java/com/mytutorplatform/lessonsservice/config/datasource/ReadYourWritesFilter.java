@@ -0,0 +1,72 @@
+package com.mytutorplatform.lessonsservice.config.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Opens the {@link ReadRouting} of every request. A client's writes set a cookie that keeps its
+ * reads on the primary for {@code lessons.datasource.replica.read-your-writes-seconds}; that window
+ * must outlast the longest write request plus the replica lag the monitor tolerates, after which the
+ * replica is known to hold the write.
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "lessons_primary_until";
+
+    private static final Set<String> SAFE_METHODS = Set.of(
+            HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name());
+
+    private final Duration window;
+
+    ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            // set up front: the response may be committed before the chain returns
+            Cookie cookie = new Cookie(COOKIE, Long.toString(now + window.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) window.toSeconds());
+            cookie.setAttribute("SameSite", "Lax");
+            response.addCookie(cookie);
+        }
+        ReadRouting.open(!write && !pinned(request, now));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRouting.close();
+        }
+    }
+
+    private static boolean pinned(HttpServletRequest request, long now) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > now;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
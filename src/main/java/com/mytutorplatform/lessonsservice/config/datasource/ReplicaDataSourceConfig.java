@@ -0,0 +1,81 @@
+package com.mytutorplatform.lessonsservice.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read replica support, active once {@code lessons.datasource.replica.url} is set. The application's
+ * {@link DataSource} then routes read-only transactions to the replica pool, see
+ * {@link ReplicaRoutingDataSource}; the primary pool keeps the {@code spring.datasource.*} settings,
+ * the replica pool takes its Hikari settings from {@code lessons.datasource.replica.hikari.*}.
+ */
+@Configuration
+@ConditionalOnExpression("!'${lessons.datasource.replica.url:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("lessons.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${lessons.datasource.replica.url}") String url,
+                                              @Value("${lessons.datasource.replica.username:}") String username,
+                                              @Value("${lessons.datasource.replica.password:}") String password) {
+        // without credentials of its own the replica is reached as the primary's user
+        boolean ownCredentials = !username.isBlank();
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(ownCredentials ? username : properties.determineUsername())
+                .password(ownCredentials ? password : properties.determinePassword())
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${lessons.datasource.replica.max-lag-seconds:5}") long maxLagSeconds) {
+        return new ReplicaLagMonitor(primary, replica, Duration.ofSeconds(maxLagSeconds), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, replica, replicaLagMonitor, meterRegistry));
+    }
+
+    @Bean
+    public OncePerRequestFilter readYourWritesFilter(
+            @Value("${lessons.datasource.replica.read-your-writes-seconds:15}") long windowSeconds) {
+        return new ReadYourWritesFilter(Duration.ofSeconds(windowSeconds));
+    }
+}
@@ -0,0 +1,107 @@
+package com.mytutorplatform.lessonsservice.config.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks how far the replica has replayed, in this instance's {@link System#nanoTime()}: every probe
+ * samples the primary's WAL position, and once the replica's replay position passes a sample,
+ * everything committed before that sample was taken is readable there. Replication lag is the time
+ * since the newest such sample; a replica lagging more than {@code lessons.datasource.replica.max-lag-seconds},
+ * or one that stopped answering probes, serves no reads.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    /** Pending samples kept for a stalled replica; dropping the oldest only makes the lag look larger. */
+    private static final int MAX_PENDING_SAMPLES = 600;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagNanos;
+    private final Deque<Sample> pending = new ArrayDeque<>();
+
+    private volatile long caughtUpAtNanos = Long.MIN_VALUE;
+    private volatile long probedAtNanos = Long.MIN_VALUE;
+
+    private final Counter failures;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagNanos = maxLag.toNanos();
+        this.failures = Counter.builder("lessons.datasource.replica.probe.failures")
+                .description("Replica lag probes that failed; reads stay on the primary until one succeeds")
+                .register(meterRegistry);
+        Gauge.builder("lessons.datasource.replica.lag", this, ReplicaLagMonitor::lagSeconds)
+                .description("Seconds of primary commits the replica is known not to have replayed yet")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${lessons.datasource.replica.probe-interval-ms:1000}")
+    public synchronized void probe() {
+        try {
+            long sampledAt = System.nanoTime();
+            String current = primary.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+            pending.addLast(new Sample(sampledAt, parseLsn(current)));
+            while (pending.size() > MAX_PENDING_SAMPLES) {
+                pending.removeFirst();
+            }
+
+            String replayed = replica.queryForObject("SELECT pg_last_wal_replay_lsn()::text", String.class);
+            // null outside recovery: the replica URL points at a primary, which has everything
+            long replayedLsn = replayed != null ? parseLsn(replayed) : Long.MAX_VALUE;
+            while (!pending.isEmpty() && Long.compareUnsigned(pending.peekFirst().lsn(), replayedLsn) <= 0) {
+                caughtUpAtNanos = pending.removeFirst().sampledAtNanos();
+            }
+            probedAtNanos = System.nanoTime();
+        } catch (DataAccessException e) {
+            failures.increment();
+            log.warn("Replica lag probe failed, reading from the primary until one succeeds", e);
+        }
+    }
+
+    /**
+     * Whether the replica may serve a read that must include what this instance committed up to
+     * {@code mustSeeNanos}.
+     */
+    boolean canServe(long mustSeeNanos) {
+        long probedAt = probedAtNanos;
+        long caughtUpAt = caughtUpAtNanos;
+        if (probedAt == Long.MIN_VALUE || caughtUpAt == Long.MIN_VALUE) {
+            return false;
+        }
+        long now = System.nanoTime();
+        return now - probedAt <= maxLagNanos
+                && now - caughtUpAt <= maxLagNanos
+                && caughtUpAt >= mustSeeNanos;
+    }
+
+    private double lagSeconds() {
+        long caughtUpAt = caughtUpAtNanos;
+        if (caughtUpAt == Long.MIN_VALUE) {
+            return Double.NaN;
+        }
+        return (System.nanoTime() - caughtUpAt) / 1e9;
+    }
+
+    /** {@code pg_lsn} text, two hex halves of a 64-bit WAL position: {@code 16/B374D848}. */
+    static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        return (Long.parseLong(lsn.substring(0, slash), 16) << 32) | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+
+    private record Sample(long sampledAtNanos, long lsn) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.mytutorplatform.lessonsservice.config.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Picks the pool when a connection is first used. Only read-only transactions are candidates for
+ * the replica, and only when the request's {@link ReadRouting} allows it and the
+ * {@link ReplicaLagMonitor} knows the replica to hold everything the request must see; everything else
+ * uses the primary. Wrapped in a {@code LazyConnectionDataSourceProxy}, so the transaction's
+ * read-only flag is already set when the choice is made.
+ */
+final class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor monitor;
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+
+    ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor monitor, MeterRegistry meterRegistry) {
+        this.monitor = monitor;
+        this.primaryReads = reads(meterRegistry, "primary");
+        this.replicaReads = reads(meterRegistry, "replica");
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        ReadRouting routing = ReadRouting.current();
+        if (routing != null && routing.replicaAllowed() && monitor.canServe(routing.mustSeeNanos())) {
+            replicaReads.increment();
+            return Target.REPLICA;
+        }
+        primaryReads.increment();
+        return Target.PRIMARY;
+    }
+
+    private static Counter reads(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("lessons.datasource.reads")
+                .description("Read-only transactions by the pool they were routed to")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
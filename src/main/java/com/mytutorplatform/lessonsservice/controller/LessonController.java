@@ -1,19 +1,41 @@
 package com.mytutorplatform.lessonsservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.model.LessonField;
+import com.mytutorplatform.lessonsservice.model.LessonOrderKey;
 import com.mytutorplatform.lessonsservice.model.LessonStatus;
 import com.mytutorplatform.lessonsservice.model.TutorStatistics;
 import com.mytutorplatform.lessonsservice.model.request.CreateLessonRequest;
+import com.mytutorplatform.lessonsservice.model.request.LessonLookupRequest;
+import com.mytutorplatform.lessonsservice.model.request.SeriesShiftRequest;
+import com.mytutorplatform.lessonsservice.model.request.SeriesStatusUpdateRequest;
 import com.mytutorplatform.lessonsservice.model.request.UpdateLessonRequest;
+import com.mytutorplatform.lessonsservice.model.response.FreeSlot;
 import com.mytutorplatform.lessonsservice.model.response.LessonBillingFeedItem;
+import com.mytutorplatform.lessonsservice.model.response.LessonBillingTotals;
+import com.mytutorplatform.lessonsservice.model.response.LessonChangesPage;
 import com.mytutorplatform.lessonsservice.model.response.LessonLight;
+import com.mytutorplatform.lessonsservice.model.response.LessonLookupResponse;
+import com.mytutorplatform.lessonsservice.model.response.LessonPage;
+import com.mytutorplatform.lessonsservice.model.response.SeriesOperationResponse;
+import com.mytutorplatform.lessonsservice.service.LessonChangeFeedService;
+import com.mytutorplatform.lessonsservice.service.LessonSeriesService;
 import com.mytutorplatform.lessonsservice.service.LessonService;
 import com.mytutorplatform.lessonsservice.model.Lesson;
 import com.mytutorplatform.lessonsservice.service.StatisticsService;
+import com.mytutorplatform.lessonsservice.service.calendar.LessonCalendarFeed;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -26,8 +48,15 @@ import java.util.UUID;
 @SuppressWarnings("unused")
 public class LessonController {
 
+    private static final MediaType TEXT_CALENDAR = MediaType.parseMediaType("text/calendar;charset=UTF-8");
+
     private final LessonService lessonService;
     private final StatisticsService statisticsService;
+    private final LessonChangeFeedService lessonChangeFeedService;
+    private final LessonSeriesService lessonSeriesService;
+    private final UserScheduleVersions userScheduleVersions;
+    private final LessonCalendarFeed lessonCalendarFeed;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<Lesson> createLesson(@RequestBody CreateLessonRequest createLessonRequest) {
@@ -35,32 +64,72 @@ public class LessonController {
     }
 
     @GetMapping
-    public List<Lesson> getAllLessons(@RequestParam(required = false) UUID tutorId,
-                                                      @RequestParam(required = false) UUID studentId,
-                                                      @RequestParam(required = false) List<LessonStatus> status,
-                                                      @RequestParam(required = false) OffsetDateTime date,
-                                                      @RequestParam(required = false) OffsetDateTime startDate,
-                                                      @RequestParam(required = false) OffsetDateTime endDate) {
-        return lessonService.getAllLessons(tutorId, studentId, status, date, startDate, endDate);
+    public List<? extends LessonOrderKey> getAllLessons(@RequestParam(required = false) UUID tutorId,
+                                                        @RequestParam(required = false) UUID studentId,
+                                                        @RequestParam(required = false) List<LessonStatus> status,
+                                                        @RequestParam(required = false) OffsetDateTime date,
+                                                        @RequestParam(required = false) OffsetDateTime startDate,
+                                                        @RequestParam(required = false) OffsetDateTime endDate,
+                                                        @RequestParam(required = false) String fields) {
+        return lessonService.getAllLessons(tutorId, studentId, status, date, startDate, endDate, LessonField.parse(fields));
+    }
+
+    @GetMapping("/page")
+    public LessonPage getLessonPage(@RequestParam(required = false) UUID tutorId,
+                                    @RequestParam(required = false) UUID studentId,
+                                    @RequestParam(required = false) List<LessonStatus> status,
+                                    @RequestParam(required = false) OffsetDateTime date,
+                                    @RequestParam(required = false) OffsetDateTime startDate,
+                                    @RequestParam(required = false) OffsetDateTime endDate,
+                                    @RequestParam(required = false) Integer limit,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) String fields) {
+        return lessonService.getLessonPage(tutorId, studentId, status, date, startDate, endDate, limit, cursor,
+                LessonField.parse(fields));
     }
 
     @GetMapping("/upcoming")
-    public List<Lesson> getUpcomingLessons(@RequestParam(required = false) UUID tutorId,
-                                           @RequestParam(required = false) UUID studentId,
-                                           @RequestParam(required = false) List<LessonStatus> status,
-                                           @RequestParam OffsetDateTime currentDate,
-                                           @RequestParam(required = false, defaultValue = "2") int limit) {
-        return lessonService.getUpcomingLessons(tutorId, studentId, status, currentDate, limit);
+    public List<? extends LessonOrderKey> getUpcomingLessons(@RequestParam(required = false) UUID tutorId,
+                                                             @RequestParam(required = false) UUID studentId,
+                                                             @RequestParam(required = false) List<LessonStatus> status,
+                                                             @RequestParam OffsetDateTime currentDate,
+                                                             @RequestParam(required = false, defaultValue = "2") int limit,
+                                                             @RequestParam(required = false) String fields) {
+        return lessonService.getUpcomingLessons(tutorId, studentId, status, currentDate, limit, LessonField.parse(fields));
     }
 
     @GetMapping("/mytutor/schedule")
     public List<LessonLight> getMyTutorSchedule(@RequestParam(required = false) UUID tutorId,
                                                 @RequestParam(required = false) UUID studentId,
                                                 @RequestParam OffsetDateTime startDate,
-                                                @RequestParam OffsetDateTime endDate) {
+                                                @RequestParam OffsetDateTime endDate,
+                                                WebRequest request) {
+        // the ETag is taken before the lessons are read; checkNotModified answers 304 or sets the header
+        String etag = userScheduleVersions.etag(tutorId, studentId);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
         return lessonService.getMyTutorSchedule(tutorId, studentId, startDate, endDate);
     }
 
+    /** Subscribable iCalendar feed; calendar apps poll it, so it is cached and honours If-None-Match. */
+    @GetMapping("/calendar.ics")
+    public ResponseEntity<StreamingResponseBody> getCalendarFeed(@RequestParam(required = false) UUID tutorId,
+                                                                 @RequestParam(required = false) UUID studentId,
+                                                                 WebRequest request) {
+        String etag = lessonCalendarFeed.etag(tutorId, studentId);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        // rendered in full so it can be cached, see LessonCalendarFeed; only the copy to the client is async
+        byte[] feed = lessonCalendarFeed.render(tutorId, studentId, etag);
+        StreamingResponseBody body = outputStream -> outputStream.write(feed);
+        return ResponseEntity.ok()
+                .contentType(TEXT_CALENDAR)
+                .contentLength(feed.length)
+                .body(body);
+    }
+
     @GetMapping("/now")
     public Lesson getUpcomingLessons(@RequestParam(required = false) UUID tutorId,
                                      @RequestParam(required = false) UUID studentId,
@@ -68,9 +137,30 @@ public class LessonController {
         return lessonService.getCurrentLesson(tutorId, studentId, currentDate);
     }
 
+    @GetMapping("/changes")
+    public ResponseEntity<LessonChangesPage> getLessonChanges(@RequestParam(required = false) String since,
+                                                              @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(lessonChangeFeedService.getChangesSince(since, limit));
+    }
+
     @GetMapping("tutor/{tutorId}/statistics")
-    public ResponseEntity<TutorStatistics> getTutorStatistics(@PathVariable UUID tutorId){
-        return ResponseEntity.ok(statisticsService.getTutorStatistics(tutorId));
+    public ResponseEntity<TutorStatistics> getTutorStatistics(@PathVariable UUID tutorId,
+                                                              @RequestParam(required = false) String timezone){
+        return ResponseEntity.ok(statisticsService.getTutorStatistics(tutorId, timezone));
+    }
+
+    @GetMapping("tutor/{tutorId}/free-slots")
+    public List<FreeSlot> getFreeSlots(@PathVariable UUID tutorId,
+                                       @RequestParam OffsetDateTime from,
+                                       @RequestParam OffsetDateTime to,
+                                       @RequestParam(required = false) Integer minMinutes) {
+        return lessonService.getFreeSlots(tutorId, from, to, minMinutes);
+    }
+
+    @PostMapping("/lookup")
+    public LessonLookupResponse lookupLessons(@RequestBody LessonLookupRequest request,
+                                              @RequestParam(required = false) String fields) {
+        return lessonService.getLessonsByIds(request.getIds(), LessonField.parse(fields));
     }
 
     @GetMapping("/{id}")
@@ -90,13 +180,45 @@ public class LessonController {
         return ResponseEntity.noContent().build();
     }
 
+    @PatchMapping("/series/{seriesId}/occurrences")
+    public ResponseEntity<Lesson> updateOccurrence(@PathVariable UUID seriesId,
+                                                   @RequestParam OffsetDateTime start,
+                                                   @RequestBody UpdateLessonRequest updateLessonRequest) {
+        return ResponseEntity.ok(lessonService.updateOccurrence(seriesId, start, updateLessonRequest));
+    }
+
+    @DeleteMapping("/series/{seriesId}/occurrences")
+    public ResponseEntity<Void> cancelOccurrence(@PathVariable UUID seriesId, @RequestParam OffsetDateTime start) {
+        lessonService.cancelOccurrence(seriesId, start);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/series/{seriesId}/shift")
+    public ResponseEntity<SeriesOperationResponse> shiftSeries(@PathVariable UUID seriesId,
+                                                               @RequestBody SeriesShiftRequest request) {
+        return ResponseEntity.ok(lessonSeriesService.shiftFrom(seriesId, request.getFrom(), request.getShiftMinutes()));
+    }
+
+    @PatchMapping("/series/{seriesId}/status")
+    public ResponseEntity<SeriesOperationResponse> updateSeriesStatus(@PathVariable UUID seriesId,
+                                                                      @RequestBody SeriesStatusUpdateRequest request) {
+        return ResponseEntity.ok(lessonSeriesService.updateStatusFrom(seriesId, request.getFrom(), request.getStatus()));
+    }
+
+    @DeleteMapping("/series/{seriesId}")
+    public ResponseEntity<SeriesOperationResponse> deleteSeriesFrom(@PathVariable UUID seriesId,
+                                                                    @RequestParam(required = false) OffsetDateTime from) {
+        return ResponseEntity.ok(lessonSeriesService.deleteFrom(seriesId, from));
+    }
+
     @GetMapping("/month-counts")
     public ResponseEntity<Map<String, Integer>> getLessonCountsByMonth(
             @RequestParam int year,
             @RequestParam int month,
             @RequestParam(required = false) UUID studentId,
-            @RequestParam(required = false) UUID tutorId) {
-        return ResponseEntity.ok(lessonService.getLessonCountsByMonth(year, month, studentId, tutorId));
+            @RequestParam(required = false) UUID tutorId,
+            @RequestParam(required = false) String timezone) {
+        return ResponseEntity.ok(lessonService.getLessonCountsByMonth(year, month, studentId, tutorId, timezone));
     }
 
     @GetMapping("/billing-feed")
@@ -105,9 +227,47 @@ public class LessonController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             @RequestParam(required = false) List<LessonStatus> status) {
-        List<LessonStatus> statuses = status != null && !status.isEmpty()
+        return lessonService.getBillingFeed(tutorId, from, to, resolveBillingStatuses(status));
+    }
+
+    @GetMapping("/billing-feed/totals")
+    public LessonBillingTotals getBillingTotals(
+            @RequestParam UUID tutorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<LessonStatus> status,
+            @RequestParam(required = false) String timezone) {
+        return lessonService.getBillingTotals(tutorId, from, to, resolveBillingStatuses(status), timezone);
+    }
+
+    @GetMapping(value = "/billing-feed/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBillingFeed(
+            @RequestParam UUID tutorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<LessonStatus> status) {
+        List<LessonStatus> statuses = resolveBillingStatuses(status);
+        StreamingResponseBody body = outputStream -> {
+            lessonService.streamBillingFeed(tutorId, from, to, statuses, item -> writeNdjsonLine(outputStream, item));
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void writeNdjsonLine(OutputStream outputStream, LessonBillingFeedItem item) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(item));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<LessonStatus> resolveBillingStatuses(List<LessonStatus> status) {
+        return status != null && !status.isEmpty()
                 ? status
                 : List.of(LessonStatus.COMPLETED);
-        return lessonService.getBillingFeed(tutorId, from, to, statuses);
     }
 }
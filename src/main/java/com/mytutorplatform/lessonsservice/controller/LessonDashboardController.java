@@ -1,15 +1,27 @@
 package com.mytutorplatform.lessonsservice.controller;
 
+import com.mytutorplatform.lessonsservice.model.response.DashboardOverview;
+import com.mytutorplatform.lessonsservice.model.response.LessonStreamEvent;
 import com.mytutorplatform.lessonsservice.model.response.LessonSummaryItem;
 import com.mytutorplatform.lessonsservice.model.response.StudentDashboardMetricsSummary;
+import com.mytutorplatform.lessonsservice.model.response.StudentsWithoutNextLessonPage;
 import com.mytutorplatform.lessonsservice.model.response.TutorDashboardActionsSummary;
+import com.mytutorplatform.lessonsservice.service.LessonDashboardOverviewService;
 import com.mytutorplatform.lessonsservice.service.LessonDashboardService;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import com.mytutorplatform.lessonsservice.service.stream.LessonEventStream;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.UUID;
@@ -21,9 +33,49 @@ import java.util.UUID;
 public class LessonDashboardController {
 
     private final LessonDashboardService lessonDashboardService;
+    private final LessonDashboardOverviewService lessonDashboardOverviewService;
+    private final UserScheduleVersions userScheduleVersions;
+    private final LessonEventStream lessonEventStream;
+
+    @GetMapping("/overview")
+    public ResponseEntity<DashboardOverview> getOverview(
+            @RequestParam UUID userId,
+            @RequestParam(required = false) String sections,
+            @RequestParam(defaultValue = "3") Integer limit,
+            @RequestParam(defaultValue = "7") Integer windowDays,
+            @RequestParam(required = false) String timezone,
+            @RequestParam(defaultValue = "5") Integer agendaLimit,
+            WebRequest request
+    ) {
+        if (notModified(userId, request)) {
+            return null;
+        }
+        DashboardOverview overview = lessonDashboardOverviewService.getOverview(userId, sections, limit, windowDays, timezone, agendaLimit);
+        if (!overview.unavailableSections().isEmpty()) {
+            // a partial payload must not be revalidated against the ETag of the complete one
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(overview);
+        }
+        return ResponseEntity.ok(overview);
+    }
+
+    /**
+     * Pushes the user's lesson events as they commit. Reconnecting clients send the last id they saw
+     * in {@code Last-Event-ID} (or {@code lastEventId} on the first connect) to be sent what they missed.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<LessonStreamEvent>> streamLessonEvents(
+            @RequestParam UUID userId,
+            @RequestParam(required = false) String lastEventId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader
+    ) {
+        return lessonEventStream.subscribe(userId, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
 
     @GetMapping("/next")
-    public ResponseEntity<LessonSummaryItem> getNextLesson(@RequestParam UUID userId) {
+    public ResponseEntity<LessonSummaryItem> getNextLesson(@RequestParam UUID userId, WebRequest request) {
+        if (notModified(userId, request)) {
+            return null;
+        }
         LessonSummaryItem nextLesson = lessonDashboardService.getNextLesson(userId);
         if (nextLesson == null) {
             return ResponseEntity.noContent().build();
@@ -35,18 +87,41 @@ public class LessonDashboardController {
     public ResponseEntity<List<LessonSummaryItem>> getUpcomingLessons(
             @RequestParam UUID userId,
             @RequestParam(defaultValue = "3") Integer limit,
-            @RequestParam(defaultValue = "7") Integer windowDays
+            @RequestParam(defaultValue = "7") Integer windowDays,
+            WebRequest request
     ) {
+        if (notModified(userId, request)) {
+            return null;
+        }
         return ResponseEntity.ok(lessonDashboardService.getUpcomingLessons(userId, limit, windowDays));
     }
 
     @GetMapping("/tutor/actions")
-    public ResponseEntity<TutorDashboardActionsSummary> getTutorActions(@RequestParam UUID userId) {
+    public ResponseEntity<TutorDashboardActionsSummary> getTutorActions(@RequestParam UUID userId, WebRequest request) {
+        if (notModified(userId, request)) {
+            return null;
+        }
         return ResponseEntity.ok(lessonDashboardService.getTutorActions(userId));
     }
 
+    @GetMapping("/tutor/students-without-next-lesson")
+    public ResponseEntity<StudentsWithoutNextLessonPage> getStudentsWithoutNextLesson(
+            @RequestParam UUID userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest request
+    ) {
+        if (notModified(userId, request)) {
+            return null;
+        }
+        return ResponseEntity.ok(lessonDashboardService.getStudentsWithoutNextLesson(userId, limit, cursor));
+    }
+
     @GetMapping("/student/metrics")
-    public ResponseEntity<StudentDashboardMetricsSummary> getStudentMetrics(@RequestParam UUID userId) {
+    public ResponseEntity<StudentDashboardMetricsSummary> getStudentMetrics(@RequestParam UUID userId, WebRequest request) {
+        if (notModified(userId, request)) {
+            return null;
+        }
         return ResponseEntity.ok(lessonDashboardService.getStudentMetrics(userId));
     }
 
@@ -54,8 +129,20 @@ public class LessonDashboardController {
     public ResponseEntity<List<LessonSummaryItem>> getTutorTodayAgenda(
             @RequestParam UUID userId,
             @RequestParam(required = false) String timezone,
-            @RequestParam(defaultValue = "5") Integer limit
+            @RequestParam(defaultValue = "5") Integer limit,
+            WebRequest request
     ) {
+        if (notModified(userId, request)) {
+            return null;
+        }
         return ResponseEntity.ok(lessonDashboardService.getTutorTodayAgenda(userId, timezone, limit));
     }
+
+    /**
+     * Answers 304 when the client's ETag still matches the user's schedule version and time bucket,
+     * without reading any lessons; otherwise sets the ETag on the response about to be built.
+     */
+    private boolean notModified(UUID userId, WebRequest request) {
+        return request.checkNotModified(userScheduleVersions.timedEtag(userId));
+    }
 }
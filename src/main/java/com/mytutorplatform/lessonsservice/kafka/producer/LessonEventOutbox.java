@@ -0,0 +1,66 @@
+package com.mytutorplatform.lessonsservice.kafka.producer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.model.kafka.Event;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonBatchEvent;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write side of the lesson event outbox: events are stored in {@code lesson_outbox} by the
+ * transaction whose change they announce, so they are published exactly when that change commits
+ * and survive a broker outage. {@link LessonOutboxRelay} sends them on.
+ */
+@Component
+@RequiredArgsConstructor
+public class LessonEventOutbox {
+
+    private static final String INSERT =
+            "INSERT INTO lesson_outbox (lesson_id, event_type, payload, created_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    public void add(LessonMessage message) {
+        add(List.of(message));
+    }
+
+    /** Stores the messages in the current transaction, which must exist. */
+    public void add(List<? extends LessonMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Lesson events must be added inside the transaction of the change");
+        }
+        OffsetDateTime now = OffsetDateTime.now(clock.withZone(ZoneOffset.UTC));
+        List<Object[]> rows = new ArrayList<>(messages.size());
+        for (LessonMessage message : messages) {
+            if (message instanceof Event event) {
+                rows.add(new Object[]{event.getLessonId(), event.getEventType(), serialize(event), now});
+            } else {
+                rows.add(new Object[]{null, LessonBatchEvent.TYPE, serialize(message), now});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    private String serialize(LessonMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize lesson event " + message, e);
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.mytutorplatform.lessonsservice.kafka.producer;
 
-import com.mytutorplatform.lessonsservice.model.kafka.Event;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonMessage;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Kafka side of lesson events. Writers do not call it: they add events to the
+ * {@link LessonEventOutbox}, and {@link LessonOutboxRelay} sends them from there.
+ */
 @Service
 @RequiredArgsConstructor
 public class LessonEventProducer {
@@ -14,11 +21,24 @@ public class LessonEventProducer {
 
     private static final String TOPIC = "lesson-events";
 
-    private final KafkaTemplate<String, Event> kafkaTemplate;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
 
-    public void sendLessonUpdateEvent(Event event) {
-        logger.info("Sending event {} to topic: {}", event, TOPIC);
+    /**
+     * Sends the messages back to back, keyed by tutor so a tutor's messages share a partition and
+     * stay in order, letting the producer batch them into as few requests as it can. The future
+     * completes once the broker acknowledged all of them.
+     */
+    public CompletableFuture<Void> sendLessonEvents(List<? extends LessonMessage> messages) {
+        if (messages.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.debug("Sending {} messages to topic: {}", messages.size(), TOPIC);
 
-        kafkaTemplate.send(TOPIC, event);
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            LessonMessage message = messages.get(i);
+            sends[i] = kafkaTemplate.send(TOPIC, message.partitionKey(), message);
+        }
+        return CompletableFuture.allOf(sends);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,304 @@
+package com.mytutorplatform.lessonsservice.kafka.producer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.model.kafka.Event;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonBatchEvent;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonMessage;
+import com.mytutorplatform.lessonsservice.service.lock.AdvisoryLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains {@code lesson_outbox} to Kafka every {@code lessons.outbox.relay.interval-ms}, in batches
+ * of {@code lessons.outbox.relay.batch-size} rows taken in id order. A batch is deleted only after
+ * the broker acknowledged all of it, so a failed send is retried by the next run and events are
+ * delivered at least once. One relay runs at a time across instances (a transaction-scoped
+ * advisory lock), which together with the tutor key keeps each lesson's events in order.
+ * <p>
+ * By default the topic carries single {@link Event}s only, as consumers expect: the envelope of a
+ * series operation is sent as its lesson deltas, one message each, and nothing is held back. With
+ * {@code lessons.outbox.relay.envelopes.enabled}, which every consumer must understand
+ * {@link LessonBatchEvent} for, envelopes are sent as they are, and events are held back for
+ * {@code lessons.outbox.relay.coalesce-window-ms} after they were written, so a burst of one tutor's
+ * changes (a lifecycle tick, a run of edits) is relayed as one envelope instead of one message per
+ * lesson. A tutor's single events are merged up to the next envelope of that tutor, which keeps its
+ * place, so nothing of one tutor is reordered; the window adds its length to every event's latency.
+ * <p>
+ * Exports {@code lessons.outbox.relayed} (throughput), {@code lessons.outbox.messages} (what it
+ * was sent as), {@code lessons.outbox.relay.failures},
+ * {@code lessons.outbox.lag} (commit to acknowledgement per event) and
+ * {@code lessons.outbox.oldest.age} (seconds the oldest waiting event has waited, as of the last run).
+ */
+@Slf4j
+@Component
+public class LessonOutboxRelay {
+
+    private static final RowMapper<Row> ROW = (resultSet, row) -> new Row(
+            resultSet.getLong(1),
+            resultSet.getString(2),
+            resultSet.getString(3),
+            resultSet.getObject(4, OffsetDateTime.class));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLocks advisoryLocks;
+    private final LessonEventProducer lessonEventProducer;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final boolean envelopes;
+    private final Duration coalesceWindow;
+
+    private final Counter relayed;
+    private final Counter messages;
+    private final Counter failures;
+    private final Timer lag;
+    private volatile Instant oldestWaiting;
+
+    public LessonOutboxRelay(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             AdvisoryLocks advisoryLocks,
+                             LessonEventProducer lessonEventProducer,
+                             ObjectMapper objectMapper,
+                             Clock clock,
+                             MeterRegistry meterRegistry,
+                             @Value("${lessons.outbox.relay.enabled:true}") boolean enabled,
+                             @Value("${lessons.outbox.relay.batch-size:500}") int batchSize,
+                             @Value("${lessons.outbox.relay.send-timeout-ms:10000}") long sendTimeoutMillis,
+                             @Value("${lessons.outbox.relay.envelopes.enabled:false}") boolean envelopes,
+                             @Value("${lessons.outbox.relay.coalesce-window-ms:300}") long coalesceWindowMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.advisoryLocks = advisoryLocks;
+        this.lessonEventProducer = lessonEventProducer;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sendTimeout = Duration.ofMillis(sendTimeoutMillis);
+        this.envelopes = envelopes;
+        this.coalesceWindow = envelopes ? Duration.ofMillis(coalesceWindowMillis) : Duration.ZERO;
+        this.relayed = Counter.builder("lessons.outbox.relayed")
+                .description("Outbox rows acknowledged by the broker and removed from the outbox")
+                .register(meterRegistry);
+        this.messages = Counter.builder("lessons.outbox.messages")
+                .description("Kafka messages the relayed outbox rows were sent as, after coalescing")
+                .register(meterRegistry);
+        this.failures = Counter.builder("lessons.outbox.relay.failures")
+                .description("Outbox batches that could not be sent and are retried")
+                .register(meterRegistry);
+        this.lag = Timer.builder("lessons.outbox.lag")
+                .description("Time from writing a lesson event to the outbox until the broker acknowledged it")
+                .register(meterRegistry);
+        Gauge.builder("lessons.outbox.oldest.age", this, LessonOutboxRelay::oldestAgeSeconds)
+                .description("Seconds the oldest lesson event in the outbox has been waiting")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${lessons.outbox.relay.interval-ms:200}")
+    public void relayScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Relaying lesson events failed, retrying with the next run", e);
+        }
+    }
+
+    /**
+     * Sends and removes everything waiting in the outbox; returns the number of events relayed,
+     * 0 when another instance is relaying.
+     */
+    public int relay() {
+        int total = 0;
+        while (true) {
+            Integer sent = transactionTemplate.execute(status -> relayBatch());
+            if (sent == null) {
+                return total;
+            }
+            total += sent;
+            if (sent < batchSize) {
+                oldestWaiting = jdbcTemplate.query("SELECT created_at FROM lesson_outbox ORDER BY id LIMIT 1",
+                                (resultSet, row) -> resultSet.getObject(1, OffsetDateTime.class))
+                        .stream().findFirst().map(OffsetDateTime::toInstant).orElse(null);
+                return total;
+            }
+        }
+    }
+
+    /** One batch in one transaction; null when the relay lock is held elsewhere. */
+    private Integer relayBatch() {
+        if (!advisoryLocks.tryLock(AdvisoryLocks.Space.OUTBOX_RELAY, 0)) {
+            return null;
+        }
+        List<Row> rows = coalesceWindow.isZero()
+                ? jdbcTemplate.query("SELECT id, event_type, payload, created_at FROM lesson_outbox ORDER BY id LIMIT ?",
+                        ROW, batchSize)
+                : jdbcTemplate.query("""
+                        SELECT id, event_type, payload, created_at FROM lesson_outbox
+                        WHERE created_at <= ?
+                        ORDER BY id
+                        LIMIT ?
+                        """, ROW, clock.instant().minus(coalesceWindow).atOffset(ZoneOffset.UTC), batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<LessonMessage> batch = envelopes ? coalesce(rows) : unpack(rows);
+        await(lessonEventProducer.sendLessonEvents(batch));
+
+        Long[] ids = rows.stream().map(Row::id).toArray(Long[]::new);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement("DELETE FROM lesson_outbox WHERE id = ANY (?)");
+            statement.setArray(1, connection.createArrayOf("bigint", ids));
+            return statement;
+        });
+        Instant acknowledged = clock.instant();
+        rows.forEach(row -> lag.record(Duration.between(row.createdAt().toInstant(), acknowledged)));
+        relayed.increment(rows.size());
+        messages.increment(batch.size());
+        return rows.size();
+    }
+
+    /**
+     * The rows as messages in id order, each tutor's single events merged into one envelope placed
+     * where the first of them was; an envelope of the tutor closes the merge so it keeps its place.
+     */
+    private List<LessonMessage> coalesce(List<Row> rows) {
+        List<Slot> slots = new ArrayList<>(rows.size());
+        Map<UUID, Slot> open = new HashMap<>();
+        for (Row row : rows) {
+            LessonMessage message = deserialize(row);
+            if (message instanceof Event event && event.getTutorId() != null) {
+                Slot slot = open.get(event.getTutorId());
+                if (slot == null) {
+                    slot = new Slot(new ArrayList<>());
+                    open.put(event.getTutorId(), slot);
+                    slots.add(slot);
+                }
+                slot.events().add(event);
+            } else if (message != null) {
+                if (message instanceof LessonBatchEvent envelope && envelope.getTutorId() != null) {
+                    open.remove(envelope.getTutorId());
+                }
+                slots.add(new Slot(message));
+            }
+        }
+        Date now = Date.from(clock.instant());
+        List<LessonMessage> batch = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            batch.add(slot.toMessage(now));
+        }
+        return batch;
+    }
+
+    /** The rows as single events in id order, envelopes replaced by their lesson deltas. */
+    private List<LessonMessage> unpack(List<Row> rows) {
+        List<LessonMessage> batch = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            LessonMessage message = deserialize(row);
+            if (message instanceof LessonBatchEvent envelope) {
+                for (Event event : envelope.getLessons()) {
+                    if (event.getTimestamp() == null) {
+                        event.setTimestamp(envelope.getTimestamp());
+                    }
+                    batch.add(event);
+                }
+            } else if (message != null) {
+                batch.add(message);
+            }
+        }
+        return batch;
+    }
+
+    private void await(CompletableFuture<Void> sends) {
+        try {
+            sends.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending lesson events", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // the transaction rolls back and the batch stays in the outbox
+            throw new IllegalStateException("Lesson events were not acknowledged by the broker", e);
+        }
+    }
+
+    private LessonMessage deserialize(Row row) {
+        try {
+            Class<? extends LessonMessage> type = LessonBatchEvent.TYPE.equals(row.eventType())
+                    ? LessonBatchEvent.class
+                    : Event.class;
+            return objectMapper.readValue(row.payload(), type);
+        } catch (JsonProcessingException e) {
+            // a payload that can never be sent must not block the events behind it
+            log.error("Dropping unreadable lesson event {} from the outbox: {}", row.id(), row.payload(), e);
+            return null;
+        }
+    }
+
+    private double oldestAgeSeconds() {
+        Instant oldest = oldestWaiting;
+        return oldest != null ? Math.max(0, Duration.between(oldest, clock.instant()).toMillis() / 1000.0) : 0;
+    }
+
+    private record Row(long id, String eventType, String payload, OffsetDateTime createdAt) {}
+
+    /** One outgoing message: a message as stored, or a tutor's single events to be merged. */
+    private record Slot(LessonMessage message, List<Event> events) {
+
+        Slot(LessonMessage message) {
+            this(message, null);
+        }
+
+        Slot(List<Event> events) {
+            this(null, events);
+        }
+
+        LessonMessage toMessage(Date now) {
+            if (events == null) {
+                return message;
+            }
+            if (events.size() == 1) {
+                return events.get(0);
+            }
+            LessonBatchEvent envelope = new LessonBatchEvent();
+            envelope.setOperation(LessonBatchEvent.COALESCED);
+            envelope.setTimestamp(now);
+            envelope.setTutorId(events.get(0).getTutorId());
+            envelope.getLessons().addAll(events);
+            return envelope;
+        }
+    }
+}
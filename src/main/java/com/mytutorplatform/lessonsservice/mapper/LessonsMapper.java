@@ -1,12 +1,16 @@
 package com.mytutorplatform.lessonsservice.mapper;
 
 import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonField;
 import com.mytutorplatform.lessonsservice.model.request.CreateLessonRequest;
 import com.mytutorplatform.lessonsservice.model.request.UpdateLessonRequest;
 import com.mytutorplatform.lessonsservice.model.response.LessonLight;
+import com.mytutorplatform.lessonsservice.model.response.LessonView;
 import org.mapstruct.*;
 
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Mapper(nullValueCheckStrategy = NullValueCheckStrategy.ALWAYS, nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE , componentModel = "spring")
 public interface LessonsMapper {
@@ -19,6 +23,16 @@ public interface LessonsMapper {
 
     List<LessonLight> mapListWithoutSensitiveFields(List<Lesson> lessons);
 
+    default LessonLight mapWithoutSensitiveFields(LessonView view) {
+        LessonLight light = new LessonLight();
+        light.setId(view.getId());
+        light.setDateTime(view.getDateTime());
+        light.setEndDate((OffsetDateTime) view.get(LessonField.END_DATE));
+        light.setDuration((Integer) view.get(LessonField.DURATION));
+        light.setTutorId((UUID) view.get(LessonField.TUTOR_ID));
+        return light;
+    }
+
     @AfterMapping
     default void setEndDate(@MappingTarget Lesson lesson, UpdateLessonRequest updatedLesson) {
         if (updatedLesson.getDateTime() != null && updatedLesson.getDuration() != null) {
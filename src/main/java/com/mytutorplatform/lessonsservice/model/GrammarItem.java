@@ -1,10 +1,15 @@
 package com.mytutorplatform.lessonsservice.model;
 
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.util.UUID;
 
@@ -14,9 +19,11 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = MaterialCacheConfig.GRAMMAR_ITEM)
 public class GrammarItem {
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @Column(name = "material_id")
@@ -1,10 +1,15 @@
 package com.mytutorplatform.lessonsservice.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.PartitionKey;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -17,17 +22,23 @@ import java.util.UUID;
         @Index(name = "idx_lessons_tutor_status_datetime", columnList = "tutorId,status,dateTime"),
         @Index(name = "idx_lessons_student_status_datetime", columnList = "studentId,status,dateTime"),
         @Index(name = "idx_lessons_tutor_student_status_datetime", columnList = "tutorId,studentId,status,dateTime"),
-        @Index(name = "idx_lessons_tutor_datetime", columnList = "tutorId,dateTime")
+        @Index(name = "idx_lessons_updated_at_id", columnList = "updatedAt,id"),
+        @Index(name = "idx_lessons_tutor_datetime_id", columnList = "tutorId,dateTime,id"),
+        @Index(name = "idx_lessons_student_datetime_id", columnList = "studentId,dateTime,id"),
+        @Index(name = "idx_lessons_datetime", columnList = "dateTime")
 })
 @Data
-public class Lesson {
+public class Lesson implements LessonOrderKey {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     private String title;
 
+    /** Partition column once lessons are partitioned; entity updates and deletes also match on it. */
+    @PartitionKey
     @Column(nullable = false)
     private OffsetDateTime dateTime;
 
@@ -62,7 +73,9 @@ public class Lesson {
     @Enumerated(EnumType.STRING)
     private LessonSatisfaction lessonSatisfaction;
 
+    // listings serialize attachments per lesson; batch the lazy loads across the page
     @OneToMany(mappedBy = "lesson", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     private List<LessonAttachment> attachments;
 
     // Ensure lesson materials are automatically removed when a lesson is deleted
@@ -87,4 +100,17 @@ public class Lesson {
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
+
+    /** When the starting-soon reminder went out; cleared when the lesson moves. */
+    @JsonIgnore
+    private OffsetDateTime reminderSentAt;
+
+    /** Set on occurrences expanded from a series rule that have no row in {@code lessons} yet. */
+    @Transient
+    private boolean virtualOccurrence;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public UUID getSeriesId() {
+        return series != null ? series.getSeriesId() : null;
+    }
 }
@@ -1,7 +1,11 @@
 package com.mytutorplatform.lessonsservice.model;
 
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.util.UUID;
 
@@ -12,10 +16,13 @@ public class LessonAttachment {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
+    // a foreign key or trigger maintained by LessonPartitionMaintenance, depending on how lessons is stored
     @ManyToOne
-    @JoinColumn(name = "lesson_id", nullable = false)
+    @JoinColumn(name = "lesson_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private Lesson lesson;
 
     private String fileName;
@@ -1,6 +1,7 @@
 package com.mytutorplatform.lessonsservice.model;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.UuidGenerator;
 import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
@@ -24,6 +26,7 @@ public class LessonContent {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @Column(name = "owner_id", nullable = false)
@@ -1,10 +1,14 @@
 package com.mytutorplatform.lessonsservice.model;
 
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.util.UUID;
 
@@ -18,10 +22,13 @@ public class LessonContentLink {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
+    // a foreign key or trigger maintained by LessonPartitionMaintenance, depending on how lessons is stored
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "lesson_id", nullable = false)
+    @JoinColumn(name = "lesson_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private Lesson lesson;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,38 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Tombstone of a lesson that left {@code lessons}, deleted or archived, so the change feed can
+ * report it. Written by the {@code lessons_log_deletion} trigger in the deleting transaction and by
+ * partition maintenance for archived months; {@code deletedAt} takes the place of {@code updatedAt}
+ * in the feed's watermark order.
+ */
+@Entity
+@Table(name = "lesson_deletions", indexes = {
+        @Index(name = "idx_lesson_deletions_deleted_at_id", columnList = "deleted_at,lesson_id")
+})
+@Data
+public class LessonDeletion {
+
+    @Id
+    @Column(name = "lesson_id", nullable = false)
+    private UUID lessonId;
+
+    @Column(name = "tutor_id")
+    private UUID tutorId;
+
+    @Column(name = "student_id")
+    private UUID studentId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
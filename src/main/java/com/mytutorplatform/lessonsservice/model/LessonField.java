@@ -0,0 +1,88 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lesson properties a client can ask for with {@code fields=}. Names match the entity's JSON, so a
+ * sparse response is a subset of the full one. {@link #ID} and {@link #DATE_TIME} are always
+ * returned because listings order and page on them.
+ */
+public enum LessonField {
+    ID("id", "id", Lesson::getId),
+    TITLE("title", "title", Lesson::getTitle),
+    DATE_TIME("dateTime", "dateTime", Lesson::getDateTime),
+    END_DATE("endDate", "endDate", Lesson::getEndDate),
+    DURATION("duration", "duration", Lesson::getDuration),
+    STATUS("status", "status", Lesson::getStatus),
+    TUTOR_ID("tutorId", "tutorId", Lesson::getTutorId),
+    STUDENT_ID("studentId", "studentId", Lesson::getStudentId),
+    LOCATION("location", "location", Lesson::getLocation),
+    LESSON_PLAN("lessonPlan", "lessonPlan", Lesson::getLessonPlan),
+    LEARNING_OBJECTIVES("learningObjectives", "learningObjectives", Lesson::getLearningObjectives),
+    NOTES("notes", "notes", Lesson::getNotes),
+    STUDENT_PERFORMANCE("studentPerformance", "studentPerformance", Lesson::getStudentPerformance),
+    HOMEWORK("homework", "homework", Lesson::getHomework),
+    LESSON_SATISFACTION("lessonSatisfaction", "lessonSatisfaction", Lesson::getLessonSatisfaction),
+    TASK_IDS("taskIds", "taskIds", Lesson::getTaskIds),
+    SERIES_ID("seriesId", "series.seriesId", Lesson::getSeriesId),
+    CREATED_AT("createdAt", "createdAt", Lesson::getCreatedAt),
+    UPDATED_AT("updatedAt", "updatedAt", Lesson::getUpdatedAt),
+    /** Collection; loaded for the whole result with one extra query rather than per lesson. */
+    ATTACHMENTS("attachments", null, null),
+    /** Not a column: true only for occurrences expanded from a series rule. */
+    VIRTUAL_OCCURRENCE("virtualOccurrence", null, Lesson::isVirtualOccurrence);
+
+    private static final Map<String, LessonField> BY_NAME = Arrays.stream(values())
+            .collect(Collectors.toMap(LessonField::getName, Function.identity()));
+
+    private final String name;
+    private final String attributePath;
+    private final Function<Lesson, Object> accessor;
+
+    LessonField(String name, String attributePath, Function<Lesson, Object> accessor) {
+        this.name = name;
+        this.attributePath = attributePath;
+        this.accessor = accessor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Dotted entity path selected for this field, or null when it is not a plain column. */
+    public String getAttributePath() {
+        return attributePath;
+    }
+
+    public Object valueOf(Lesson lesson) {
+        return accessor != null ? accessor.apply(lesson) : null;
+    }
+
+    /**
+     * Parses a comma-separated {@code fields} parameter. Returns null when the parameter is absent,
+     * meaning "the full entity"; unknown names are rejected.
+     */
+    public static Set<LessonField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<LessonField> parsed = EnumSet.of(ID, DATE_TIME);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            LessonField field = BY_NAME.get(trimmed);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown lesson field: " + trimmed);
+            }
+            parsed.add(field);
+        }
+        return parsed;
+    }
+}
@@ -29,9 +29,10 @@ public class LessonNote {
     @Column(name = "lesson_id", nullable = false)
     private UUID lessonId;
 
+    // a foreign key or trigger maintained by LessonPartitionMaintenance, depending on how lessons is stored
     @OneToOne(fetch = FetchType.LAZY)
     @MapsId
-    @JoinColumn(name = "lesson_id", referencedColumnName = "id", foreignKey = @ForeignKey(name = "fk_lesson_notes_lesson"))
+    @JoinColumn(name = "lesson_id", referencedColumnName = "id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @OnDelete(action = OnDeleteAction.CASCADE)
     private Lesson lesson;
 
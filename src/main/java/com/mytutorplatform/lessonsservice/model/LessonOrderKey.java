@@ -0,0 +1,15 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * What lesson listings sort and page on: start time, then id. Implemented by the entity and by
+ * column projections so stored rows, expanded occurrences and projections merge the same way.
+ */
+public interface LessonOrderKey {
+
+    UUID getId();
+
+    OffsetDateTime getDateTime();
+}
@@ -0,0 +1,40 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Lesson event waiting to be published, written in the transaction of the change it announces.
+ * Rows are relayed to Kafka in id order and deleted once the broker acknowledged them; written by
+ * {@code LessonEventOutbox}, drained by {@code LessonOutboxRelay}.
+ */
+@Entity
+@Table(name = "lesson_outbox")
+@Data
+public class LessonOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "lesson_id")
+    private UUID lessonId;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    /** The {@code Event} as JSON, exactly as it is sent. */
+    @Column(name = "payload", nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,59 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Lesson count and minutes of one tutor–student pair in one status, per quarter hour of UTC.
+ * Every UTC offset in use is a whole number of quarter hours, so any local day, month or billing
+ * period is an exact union of buckets and the rows serve every timezone without re-reading lessons.
+ * Written only by {@code LessonRollupService}.
+ */
+@Entity
+@Table(name = "lesson_rollups", indexes = {
+        @Index(name = "idx_lesson_rollups_tutor_bucket", columnList = "tutor_id,bucket_start"),
+        @Index(name = "idx_lesson_rollups_student_bucket", columnList = "student_id,bucket_start")
+})
+@IdClass(LessonRollup.Key.class)
+@Data
+public class LessonRollup {
+
+    @Id
+    @Column(name = "tutor_id", nullable = false)
+    private UUID tutorId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private LessonStatus status;
+
+    @Id
+    @Column(name = "student_id", nullable = false)
+    private UUID studentId;
+
+    @Id
+    @Column(name = "bucket_start", nullable = false)
+    private OffsetDateTime bucketStart;
+
+    @Column(name = "lesson_count", nullable = false)
+    private long lessonCount;
+
+    @Column(name = "minutes", nullable = false)
+    private long minutes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID tutorId;
+        private LessonStatus status;
+        private UUID studentId;
+        private OffsetDateTime bucketStart;
+    }
+}
@@ -1,10 +1,15 @@
 package com.mytutorplatform.lessonsservice.model;
 
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.util.Set;
 import java.util.UUID;
@@ -15,10 +20,12 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = MaterialCacheConfig.MATERIAL)
 public class Material {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @Column(nullable = false)
@@ -36,6 +43,7 @@ public class Material {
     private Integer durationSec;
 
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = MaterialCacheConfig.MATERIAL_TAGS)
     @CollectionTable(name = "material_tags", joinColumns = @JoinColumn(name = "material_id"))
     @Column(name = "tag")
     private Set<String> tags;
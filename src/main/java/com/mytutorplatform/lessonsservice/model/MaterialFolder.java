@@ -1,7 +1,10 @@
 package com.mytutorplatform.lessonsservice.model;
 
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.*;
 
@@ -11,6 +14,7 @@ import java.util.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = MaterialCacheConfig.MATERIAL_FOLDER)
 public class MaterialFolder {
 
     @Id
@@ -27,5 +31,6 @@ public class MaterialFolder {
 
     /** not serialized in controllers to avoid infinite recursion */
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = MaterialCacheConfig.MATERIAL_FOLDER_CHILDREN)
     private Set<MaterialFolder> children = new HashSet<>();
 }
\ No newline at end of file
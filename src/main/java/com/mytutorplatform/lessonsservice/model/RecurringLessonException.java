@@ -0,0 +1,54 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Overrides a single not-yet-materialized occurrence of a rule-based series. The occurrence is
+ * identified by its rule-computed start, so a moved occurrence keeps its original key here while
+ * the lesson row it was written to carries the new time.
+ */
+@Entity
+@Table(name = "recurring_lesson_exceptions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_series_exception_occurrence", columnNames = {"series_id", "occurrence_start"})
+}, indexes = {
+        @Index(name = "idx_series_exception_lesson", columnList = "lesson_id")
+})
+@Data
+public class RecurringLessonException {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "series_id", nullable = false)
+    private UUID seriesId;
+
+    @Column(name = "occurrence_start", nullable = false)
+    private OffsetDateTime occurrenceStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+
+    /** The lesson row that now represents the occurrence; empty for cancellations. */
+    @Column(name = "lesson_id")
+    private UUID lessonId;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    public enum Type {
+        /** Written to {@code lessons} ahead of its start because it was edited. */
+        MATERIALIZED,
+        /** Written to {@code lessons} with a different start time. */
+        MOVED,
+        /** Will not take place; nothing is expanded for it. */
+        CANCELLED
+    }
+}
@@ -9,8 +9,20 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
+/**
+ * A recurrence rule plus the lesson template its occurrences are built from.
+ * Occurrences up to {@code materializedThrough} exist as rows in {@code lessons}; later ones are
+ * expanded on read and only written once they are modified or about to start, which the
+ * materializer finds by {@code nextOccurrenceStart}.
+ * Series created before rule-based expansion were fully written up front and leave the
+ * template fields empty, which keeps them out of expansion.
+ */
 @Entity
-@Table(name = "recurring_lesson_series")
+@Table(name = "recurring_lesson_series", indexes = {
+        @Index(name = "idx_series_tutor_start", columnList = "tutorId,startDateTime"),
+        @Index(name = "idx_series_student_start", columnList = "studentId,startDateTime"),
+        @Index(name = "idx_series_next_occurrence", columnList = "nextOccurrenceStart")
+})
 @Data
 public class RecurringLessonSeries {
 
@@ -27,14 +39,45 @@ public class RecurringLessonSeries {
 
     private OffsetDateTime until;
 
+    /** Start of the first occurrence; every occurrence is derived from it. */
+    private OffsetDateTime startDateTime;
+
+    /** Occurrences starting at or before this instant have been written to {@code lessons}. */
+    private OffsetDateTime materializedThrough;
+
+    /**
+     * Start of the first occurrence after {@code materializedThrough}; kept in step with the watermark
+     * and the rule. Null for series written before the column existed, until the materializer fills it.
+     */
+    private OffsetDateTime nextOccurrenceStart;
+
+    private UUID tutorId;
+
+    private UUID studentId;
+
+    private String title;
+
+    private Integer duration;
+
+    private String location;
+
+    private String lessonPlan;
+
+    private String learningObjectives;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    public boolean isRuleBased() {
+        return startDateTime != null && tutorId != null;
+    }
+
     public enum RecurrenceFrequency {
-        WEEKLY
-        // Can be extended in the future with DAILY, MONTHLY, etc.
+        DAILY,
+        WEEKLY,
+        MONTHLY
     }
-}
\ No newline at end of file
+}
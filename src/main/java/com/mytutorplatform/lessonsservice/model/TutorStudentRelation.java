@@ -0,0 +1,63 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Read model of one tutor–student pair, rewritten in the transaction of every lesson or series
+ * write that touches the pair. Only time-independent facts are stored: "the next lesson" changes
+ * as the clock moves without any write, so the row keeps the latest booked start instead and
+ * readers compare it against their own cutoff.
+ */
+@Entity
+@Table(name = "tutor_student_relations", indexes = {
+        @Index(name = "idx_tutor_student_relations_tutor_last_lesson", columnList = "tutor_id,last_lesson_at DESC,student_id")
+})
+@IdClass(TutorStudentRelation.Key.class)
+@Data
+public class TutorStudentRelation {
+
+    @Id
+    @Column(name = "tutor_id", nullable = false)
+    private UUID tutorId;
+
+    @Id
+    @Column(name = "student_id", nullable = false)
+    private UUID studentId;
+
+    /** Latest lesson of the pair in an activity status, whether it already happened or not. */
+    @Column(name = "last_lesson_id")
+    private UUID lastLessonId;
+
+    @Column(name = "last_lesson_at")
+    private OffsetDateTime lastLessonAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_lesson_status")
+    private LessonStatus lastLessonStatus;
+
+    /** Latest start of a booked lesson or end of a rule-based series; booked from any cutoff before it. */
+    @Column(name = "booked_until")
+    private OffsetDateTime bookedUntil;
+
+    /** A rule-based series without an end keeps the pair booked indefinitely. */
+    @Column(name = "open_series", nullable = false)
+    private boolean openSeries;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID tutorId;
+        private UUID studentId;
+    }
+}
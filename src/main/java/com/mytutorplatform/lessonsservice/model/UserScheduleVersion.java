@@ -0,0 +1,27 @@
+package com.mytutorplatform.lessonsservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Counter bumped in the transaction of every lesson or series write involving the user; it backs
+ * the ETags of the schedule and dashboard endpoints. The row under the nil UUID is bumped by writes
+ * whose participants are unknown and is part of every ETag.
+ */
+@Entity
+@Table(name = "user_schedule_versions")
+@Data
+public class UserScheduleVersion {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+}
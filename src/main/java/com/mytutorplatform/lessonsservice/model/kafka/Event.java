@@ -9,7 +9,7 @@ import java.util.UUID;
 
 @Data
 @ToString
-public class Event {
+public class Event implements LessonMessage {
     private String eventType;
     private Date timestamp;
     private UUID lessonId;
@@ -17,4 +17,12 @@ public class Event {
     private UUID[] studentIds;
     private OffsetDateTime startTime;
     private OffsetDateTime oldStartTime;
+
+    @Override
+    public String partitionKey() {
+        if (tutorId != null) {
+            return tutorId.toString();
+        }
+        return lessonId != null ? lessonId.toString() : null;
+    }
 }
@@ -0,0 +1,47 @@
+package com.mytutorplatform.lessonsservice.model.kafka;
+
+import lombok.Data;
+import lombok.ToString;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Envelope carrying several lesson changes of one tutor as one message: a series operation, or a
+ * burst of single-lesson events coalesced by the outbox relay. {@link #lessons} holds one
+ * {@link Event} per lesson delta, in the order the changes were made.
+ */
+@Data
+@ToString
+public class LessonBatchEvent implements LessonMessage {
+
+    public static final String TYPE = "LESSON_BATCH";
+
+    public static final String SERIES_CREATED = "SERIES_CREATED";
+    public static final String SERIES_SHIFTED = "SERIES_SHIFTED";
+    public static final String SERIES_STATUS_CHANGED = "SERIES_STATUS_CHANGED";
+    public static final String SERIES_DELETED = "SERIES_DELETED";
+    /** Single-lesson events of one tutor merged by the relay's coalescing window. */
+    public static final String COALESCED = "COALESCED";
+
+    private String eventType = TYPE;
+    private String operation;
+    private Date timestamp;
+    private UUID tutorId;
+    /** Set for series operations, which also apply to occurrences not stored yet. */
+    private UUID seriesId;
+    /** First start a series operation applies to. */
+    private OffsetDateTime from;
+    private List<Event> lessons = new ArrayList<>();
+
+    @Override
+    public String partitionKey() {
+        if (tutorId != null) {
+            return tutorId.toString();
+        }
+        return seriesId != null ? seriesId.toString() : null;
+    }
+}
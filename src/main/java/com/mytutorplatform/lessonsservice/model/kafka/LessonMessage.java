@@ -0,0 +1,15 @@
+package com.mytutorplatform.lessonsservice.model.kafka;
+
+/** A message on the lesson events topic: a single {@link Event} or a {@link LessonBatchEvent}. */
+public interface LessonMessage {
+
+    /**
+     * Kafka key. A tutor's messages share it, so they stay in order relative to each other and
+     * coalescing a tutor's events never reorders those of one lesson.
+     * <p>
+     * The key follows the lesson's current tutor. Updates do not change it today, but should a lesson
+     * move to another tutor, its later events may land on another partition and a consumer can see
+     * them before the earlier ones under the old tutor's key; per-lesson order only holds per tutor.
+     */
+    String partitionKey();
+}
@@ -1,5 +1,7 @@
 package com.mytutorplatform.lessonsservice.model.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries.RecurrenceFrequency;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -15,6 +17,14 @@ public class CreateLessonRequest extends LessonsRequest {
 
     // Recurring lesson fields
     private Boolean repeatWeekly = false;
+    // Number of occurrences; keeps its original name for API compatibility
     private Integer repeatWeeksCount;
     private OffsetDateTime repeatUntil;
+    private RecurrenceFrequency repeatFrequency;
+    private Integer repeatInterval;
+
+    @JsonIgnore
+    public boolean isRecurring() {
+        return Boolean.TRUE.equals(repeatWeekly) || repeatFrequency != null;
+    }
 }
@@ -0,0 +1,12 @@
+package com.mytutorplatform.lessonsservice.model.request;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class LessonLookupRequest {
+    // Resolved in one query; the response keeps this order and drops repeated ids
+    private List<UUID> ids;
+}
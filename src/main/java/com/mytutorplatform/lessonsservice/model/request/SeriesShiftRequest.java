@@ -0,0 +1,12 @@
+package com.mytutorplatform.lessonsservice.model.request;
+
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Data
+public class SeriesShiftRequest {
+    // Occurrences starting at or after this instant are moved; defaults to now
+    private OffsetDateTime from;
+    private Long shiftMinutes;
+}
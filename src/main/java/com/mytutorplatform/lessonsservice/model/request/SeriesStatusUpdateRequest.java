@@ -0,0 +1,13 @@
+package com.mytutorplatform.lessonsservice.model.request;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Data
+public class SeriesStatusUpdateRequest {
+    // Occurrences starting at or after this instant are updated; defaults to now
+    private OffsetDateTime from;
+    private LessonStatus status;
+}
@@ -0,0 +1,17 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.util.List;
+
+/**
+ * All dashboard sections in one payload. Sections that were not requested are null; sections that
+ * failed or missed the deadline are null as well and listed in {@code unavailableSections}, so the
+ * page can render what it has and fall back to the per-section endpoints for the rest.
+ */
+public record DashboardOverview(
+        LessonSummaryItem next,
+        List<LessonSummaryItem> upcoming,
+        TutorDashboardActionsSummary tutorActions,
+        StudentDashboardMetricsSummary studentMetrics,
+        List<LessonSummaryItem> todayAgenda,
+        List<String> unavailableSections
+) {}
@@ -0,0 +1,9 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.time.OffsetDateTime;
+
+public record FreeSlot(
+        OffsetDateTime start,
+        OffsetDateTime end,
+        long durationMinutes
+) {}
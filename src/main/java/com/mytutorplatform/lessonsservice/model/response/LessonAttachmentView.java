@@ -0,0 +1,9 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.util.UUID;
+
+public record LessonAttachmentView(
+        UUID id,
+        String fileName,
+        String fileUrl
+) {}
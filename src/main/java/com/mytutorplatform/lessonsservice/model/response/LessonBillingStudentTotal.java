@@ -0,0 +1,9 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.util.UUID;
+
+public record LessonBillingStudentTotal(
+        UUID studentId,
+        long lessonCount,
+        long minutes
+) {}
@@ -0,0 +1,17 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Lesson count and minutes of a tutor over the local days {@code from..to} in {@code timezone},
+ * in total and per student.
+ */
+public record LessonBillingTotals(
+        LocalDate from,
+        LocalDate to,
+        String timezone,
+        long lessonCount,
+        long minutes,
+        List<LessonBillingStudentTotal> students
+) {}
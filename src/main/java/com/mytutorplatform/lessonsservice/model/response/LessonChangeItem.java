@@ -0,0 +1,53 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import com.mytutorplatform.lessonsservice.model.LessonDeletion;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonChangeRow;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A lesson as of its last change; {@code deleted} marks a tombstone, which carries only the ids and
+ * the time the lesson was deleted or archived as {@code updatedAt}.
+ */
+public record LessonChangeItem(
+        UUID lessonId,
+        UUID tutorId,
+        UUID studentId,
+        LessonStatus status,
+        OffsetDateTime dateTime,
+        OffsetDateTime endDate,
+        Integer duration,
+        LocalDateTime updatedAt,
+        boolean deleted
+) {
+    public static LessonChangeItem from(LessonChangeRow row) {
+        return new LessonChangeItem(
+                row.getId(),
+                row.getTutorId(),
+                row.getStudentId(),
+                row.getStatus(),
+                row.getDateTime(),
+                row.getEndDate(),
+                row.getDuration(),
+                row.getUpdatedAt(),
+                false
+        );
+    }
+
+    public static LessonChangeItem from(LessonDeletion deletion) {
+        return new LessonChangeItem(
+                deletion.getLessonId(),
+                deletion.getTutorId(),
+                deletion.getStudentId(),
+                null,
+                null,
+                null,
+                null,
+                deletion.getDeletedAt(),
+                true
+        );
+    }
+}
@@ -0,0 +1,13 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.util.List;
+
+/**
+ * One page of the lesson change feed. {@code nextWatermark} is opaque and should be passed back
+ * as {@code since} on the next call; {@code hasMore} tells the caller to keep draining right away.
+ */
+public record LessonChangesPage(
+        List<LessonChangeItem> items,
+        String nextWatermark,
+        boolean hasMore
+) {}
@@ -0,0 +1,15 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import com.mytutorplatform.lessonsservice.model.LessonOrderKey;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Result of a multi-get: found lessons in request order (full lessons, or {@link LessonView}s when
+ * {@code fields} was given) and the requested ids that matched nothing.
+ */
+public record LessonLookupResponse(
+        List<? extends LessonOrderKey> items,
+        List<UUID> missing
+) {}
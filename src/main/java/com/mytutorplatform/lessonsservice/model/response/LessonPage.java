@@ -0,0 +1,16 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import com.mytutorplatform.lessonsservice.model.LessonOrderKey;
+
+import java.util.List;
+
+/**
+ * One page of lessons ordered by {@code (dateTime, id)}. {@code nextCursor} is opaque and is
+ * passed back as {@code cursor}; it is null on the last page. Items are full lessons, or
+ * {@link LessonView}s when the request named {@code fields}.
+ */
+public record LessonPage(
+        List<? extends LessonOrderKey> items,
+        String nextCursor,
+        boolean hasMore
+) {}
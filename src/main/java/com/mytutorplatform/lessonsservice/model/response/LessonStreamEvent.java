@@ -0,0 +1,31 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A committed lesson write as pushed to the participants' dashboard streams. {@code previousStatus}
+ * is set on {@link Type#STATUS_CHANGED}; after a delete the remaining fields describe the lesson as
+ * it was.
+ */
+public record LessonStreamEvent(
+        Type type,
+        UUID lessonId,
+        UUID tutorId,
+        UUID studentId,
+        String title,
+        LessonStatus status,
+        LessonStatus previousStatus,
+        Instant startsAtUtc,
+        int duration,
+        Instant occurredAt
+) {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        STATUS_CHANGED,
+        DELETED
+    }
+}
@@ -0,0 +1,56 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonField;
+import com.mytutorplatform.lessonsservice.model.LessonOrderKey;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sparse lesson representation: serializes as a JSON object holding only the requested fields.
+ */
+public class LessonView implements LessonOrderKey {
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    public static LessonView of(Lesson lesson, Set<LessonField> fields) {
+        LessonView view = new LessonView();
+        for (LessonField field : fields) {
+            // only expanded occurrences are projected in memory, and those have no attachments yet
+            view.put(field, field == LessonField.ATTACHMENTS ? List.of() : field.valueOf(lesson));
+        }
+        return view;
+    }
+
+    public void put(LessonField field, Object value) {
+        values.put(field.getName(), value);
+    }
+
+    public Object get(LessonField field) {
+        return values.get(field.getName());
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    @Override
+    @JsonIgnore
+    public UUID getId() {
+        return (UUID) get(LessonField.ID);
+    }
+
+    @Override
+    @JsonIgnore
+    public OffsetDateTime getDateTime() {
+        return (OffsetDateTime) get(LessonField.DATE_TIME);
+    }
+}
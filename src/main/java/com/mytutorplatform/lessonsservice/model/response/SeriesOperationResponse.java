@@ -0,0 +1,13 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.util.UUID;
+
+/**
+ * Outcome of a series-wide operation. {@code affectedLessons} counts stored rows only;
+ * occurrences still expanded from the rule follow the updated rule instead.
+ */
+public record SeriesOperationResponse(
+        UUID seriesId,
+        int affectedLessons,
+        boolean seriesDeleted
+) {}
@@ -0,0 +1,13 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record StudentWithoutNextLessonItem(
+        UUID studentId,
+        UUID lastLessonId,
+        Instant lastLessonAtUtc,
+        LessonStatus lastLessonStatus
+) {}
@@ -0,0 +1,13 @@
+package com.mytutorplatform.lessonsservice.model.response;
+
+import java.util.List;
+
+/**
+ * Students of a tutor with a recent lesson and nothing booked, most recently seen first.
+ * {@code nextCursor} is opaque and is passed back as {@code cursor} for the following page.
+ */
+public record StudentsWithoutNextLessonPage(
+        List<StudentWithoutNextLessonItem> items,
+        String nextCursor,
+        boolean hasMore
+) {}
@@ -1,7 +1,11 @@
 package com.mytutorplatform.lessonsservice.repository;
 
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
 import com.mytutorplatform.lessonsservice.model.GrammarItem;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,5 +13,9 @@ import java.util.UUID;
 
 @Repository
 public interface GrammarItemRepository extends JpaRepository<GrammarItem, UUID> {
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = MaterialCacheConfig.CATALOGUE_QUERIES)
+    })
     List<GrammarItem> findByMaterialId(UUID materialId);
 }
@@ -0,0 +1,44 @@
+package com.mytutorplatform.lessonsservice.repository;
+
+import com.mytutorplatform.lessonsservice.model.LessonDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface LessonDeletionRepository extends JpaRepository<LessonDeletion, UUID> {
+
+    @Query("""
+            SELECT d FROM LessonDeletion d
+            WHERE d.deletedAt <= :settledBefore
+            ORDER BY d.deletedAt ASC, d.lessonId ASC
+            """)
+    List<LessonDeletion> findDeletions(
+            @Param("settledBefore") LocalDateTime settledBefore,
+            Pageable pageable
+    );
+
+    @Query("""
+            SELECT d FROM LessonDeletion d
+            WHERE (d.deletedAt > :deletedAt OR (d.deletedAt = :deletedAt AND d.lessonId > :lessonId))
+              AND d.deletedAt <= :settledBefore
+            ORDER BY d.deletedAt ASC, d.lessonId ASC
+            """)
+    List<LessonDeletion> findDeletionsAfter(
+            @Param("deletedAt") LocalDateTime deletedAt,
+            @Param("lessonId") UUID lessonId,
+            @Param("settledBefore") LocalDateTime settledBefore,
+            Pageable pageable
+    );
+
+    @Modifying
+    @Query("DELETE FROM LessonDeletion d WHERE d.deletedAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
@@ -3,16 +3,28 @@ package com.mytutorplatform.lessonsservice.repository;
 import com.mytutorplatform.lessonsservice.model.Lesson;
 import com.mytutorplatform.lessonsservice.model.LessonStatus;
 import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonBillingRow;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonChangeRow;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonIntervalRow;
+import com.mytutorplatform.lessonsservice.repository.projection.SeriesLessonRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface LessonRepository extends JpaRepository<Lesson, UUID>, JpaSpecificationExecutor<Lesson> {
@@ -22,9 +34,6 @@ public interface LessonRepository extends JpaRepository<Lesson, UUID>, JpaSpecif
         @Param("startDateTime") OffsetDateTime startDateTime, 
         @Param("endDateTime") OffsetDateTime endDateTime);
 
-    @Query("SELECT COUNT(DISTINCT l.studentId) FROM Lesson l WHERE l.tutorId = :tutorId AND l.status = :lessonStatus")
-    long countDistinctStudentIdsByTutorIdAndStatus(@Param("tutorId") UUID tutorId, @Param("lessonStatus") LessonStatus lessonStatus);
-
     @Query("SELECT COUNT(DISTINCT l.id) FROM Lesson l WHERE l.tutorId = :tutorId AND l.status = :status AND l.dateTime BETWEEN :startDateTime AND :endDateTime")
     long countByTutorIdAndStatusAndDateTimeBetween(
         @Param("tutorId") UUID tutorId, 
@@ -32,12 +41,13 @@ public interface LessonRepository extends JpaRepository<Lesson, UUID>, JpaSpecif
         @Param("startDateTime") OffsetDateTime startDateTime, 
         @Param("endDateTime") OffsetDateTime endDateTime);
 
+    /** Single-statement form kept behind {@code lessons.dashboard.split-user-queries=false}. */
     @Query("""
             SELECT l FROM Lesson l
             WHERE (l.studentId = :userId OR l.tutorId = :userId)
               AND l.status IN :statuses
               AND l.dateTime >= :fromInclusive
-            ORDER BY l.dateTime ASC
+            ORDER BY l.dateTime ASC, l.id ASC
             """)
     List<Lesson> findDashboardNextCandidates(
             @Param("userId") UUID userId,
@@ -46,19 +56,33 @@ public interface LessonRepository extends JpaRepository<Lesson, UUID>, JpaSpecif
             Pageable pageable
     );
 
+    /** Tutor side of {@link #findDashboardNextCandidates}; walks {@code idx_lessons_tutor_datetime_id} in order. */
     @Query("""
             SELECT l FROM Lesson l
-            WHERE (l.studentId = :userId OR l.tutorId = :userId)
+            WHERE l.tutorId = :tutorId
               AND l.status IN :statuses
               AND l.dateTime >= :fromInclusive
-              AND l.dateTime <= :toInclusive
-            ORDER BY l.dateTime ASC
+            ORDER BY l.dateTime ASC, l.id ASC
             """)
-    List<Lesson> findDashboardUpcoming(
-            @Param("userId") UUID userId,
+    List<Lesson> findDashboardNextCandidatesAsTutor(
+            @Param("tutorId") UUID tutorId,
+            @Param("statuses") List<LessonStatus> statuses,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            Pageable pageable
+    );
+
+    /** Student side of {@link #findDashboardNextCandidates}; walks {@code idx_lessons_student_datetime_id} in order. */
+    @Query("""
+            SELECT l FROM Lesson l
+            WHERE l.studentId = :studentId
+              AND l.status IN :statuses
+              AND l.dateTime >= :fromInclusive
+            ORDER BY l.dateTime ASC, l.id ASC
+            """)
+    List<Lesson> findDashboardNextCandidatesAsStudent(
+            @Param("studentId") UUID studentId,
             @Param("statuses") List<LessonStatus> statuses,
             @Param("fromInclusive") OffsetDateTime fromInclusive,
-            @Param("toInclusive") OffsetDateTime toInclusive,
             Pageable pageable
     );
 
@@ -77,29 +101,6 @@ public interface LessonRepository extends JpaRepository<Lesson, UUID>, JpaSpecif
             @Param("toInclusive") OffsetDateTime toInclusive
     );
 
-    @Query("""
-            SELECT COUNT(DISTINCT l.studentId) FROM Lesson l
-            WHERE l.tutorId = :tutorId
-              AND l.status IN :historicalStatuses
-              AND l.dateTime >= :recentFromInclusive
-              AND l.dateTime <= :recentToInclusive
-              AND NOT EXISTS (
-                  SELECT 1 FROM Lesson u
-                  WHERE u.tutorId = :tutorId
-                    AND u.studentId = l.studentId
-                    AND u.status IN :upcomingStatuses
-                    AND u.dateTime >= :upcomingFromInclusive
-              )
-            """)
-    long countDashboardStudentsWithoutNextLesson(
-            @Param("tutorId") UUID tutorId,
-            @Param("historicalStatuses") List<LessonStatus> historicalStatuses,
-            @Param("recentFromInclusive") OffsetDateTime recentFromInclusive,
-            @Param("recentToInclusive") OffsetDateTime recentToInclusive,
-            @Param("upcomingStatuses") List<LessonStatus> upcomingStatuses,
-            @Param("upcomingFromInclusive") OffsetDateTime upcomingFromInclusive
-    );
-
     @Query("""
             SELECT COUNT(l.id) FROM Lesson l
             WHERE l.studentId = :studentId
@@ -128,7 +129,160 @@ public interface LessonRepository extends JpaRepository<Lesson, UUID>, JpaSpecif
             Pageable pageable
     );
 
+    @Query("""
+            SELECT l FROM Lesson l
+            WHERE l.dateTime > :startsAfter
+              AND l.dateTime <= :startsUntil
+              AND l.endDate > :endsAfter
+              AND l.status IN :statuses
+            """)
+    List<Lesson> findRunningWithin(
+            @Param("startsAfter") OffsetDateTime startsAfter,
+            @Param("startsUntil") OffsetDateTime startsUntil,
+            @Param("endsAfter") OffsetDateTime endsAfter,
+            @Param("statuses") Collection<LessonStatus> statuses
+    );
+
     long countByStudentIdOrTutorId(UUID studentId, UUID tutorId);
 
     List<Lesson> findAllBySeries(RecurringLessonSeries series);
+
+    Optional<Lesson> findFirstBySeriesAndDateTime(RecurringLessonSeries series, OffsetDateTime dateTime);
+
+    Optional<Lesson> findFirstBySeries(RecurringLessonSeries series);
+
+    boolean existsBySeries(RecurringLessonSeries series);
+
+    @Query("""
+            SELECT l.id AS id, l.dateTime AS dateTime, l.endDate AS endDate, l.duration AS duration
+            FROM Lesson l
+            WHERE l.tutorId = :tutorId
+              AND l.dateTime >= :fromInclusive
+              AND l.status <> :excludedStatus
+            """)
+    List<LessonIntervalRow> findTutorIntervals(
+            @Param("tutorId") UUID tutorId,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("excludedStatus") LessonStatus excludedStatus
+    );
+
+    @Query("""
+            SELECT l.id AS id, l.dateTime AS dateTime, l.endDate AS endDate, l.duration AS duration
+            FROM Lesson l
+            WHERE l.tutorId = :tutorId
+              AND l.dateTime >= :fromInclusive
+              AND l.dateTime < :toExclusive
+              AND l.status <> :excludedStatus
+            """)
+    List<LessonIntervalRow> findTutorIntervalsBetween(
+            @Param("tutorId") UUID tutorId,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive,
+            @Param("excludedStatus") LessonStatus excludedStatus
+    );
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE Lesson l
+            SET l.dateTime = l.dateTime + (:shiftMinutes) minute,
+                l.endDate = l.endDate + (:shiftMinutes) minute,
+                l.reminderSentAt = null,
+                l.updatedAt = :updatedAt
+            WHERE l.series = :series
+              AND l.dateTime >= :fromInclusive
+              AND l.status <> :excludedStatus
+            """)
+    int shiftSeriesFrom(
+            @Param("series") RecurringLessonSeries series,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("shiftMinutes") long shiftMinutes,
+            @Param("excludedStatus") LessonStatus excludedStatus,
+            @Param("updatedAt") LocalDateTime updatedAt
+    );
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE Lesson l
+            SET l.status = :status,
+                l.updatedAt = :updatedAt
+            WHERE l.series = :series
+              AND l.dateTime >= :fromInclusive
+              AND l.status <> :excludedStatus
+            """)
+    int updateSeriesStatusFrom(
+            @Param("series") RecurringLessonSeries series,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("status") LessonStatus status,
+            @Param("excludedStatus") LessonStatus excludedStatus,
+            @Param("updatedAt") LocalDateTime updatedAt
+    );
+
+    /** Stored occurrences a series operation from {@code fromInclusive} touches, for its event. */
+    @Query("""
+            SELECT l.id AS id, l.studentId AS studentId, l.dateTime AS dateTime, l.status AS status
+            FROM Lesson l
+            WHERE l.series = :series
+              AND l.dateTime >= :fromInclusive
+            ORDER BY l.dateTime
+            """)
+    List<SeriesLessonRow> findSeriesLessonsFrom(
+            @Param("series") RecurringLessonSeries series,
+            @Param("fromInclusive") OffsetDateTime fromInclusive
+    );
+
+    /** Attachments, materials, content links and notes go with the rows via ON DELETE CASCADE. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Lesson l WHERE l.series = :series AND l.dateTime >= :fromInclusive")
+    int deleteSeriesFrom(
+            @Param("series") RecurringLessonSeries series,
+            @Param("fromInclusive") OffsetDateTime fromInclusive
+    );
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT l.id AS lessonId, l.tutorId AS tutorId, l.studentId AS studentId, l.status AS status,
+                   l.dateTime AS startTime, l.duration AS durationMinutes
+            FROM Lesson l
+            WHERE l.tutorId = :tutorId
+              AND l.status IN :statuses
+              AND l.dateTime >= :fromInclusive
+              AND l.dateTime <= :toInclusive
+            ORDER BY l.dateTime ASC, l.id ASC
+            """)
+    Stream<LessonBillingRow> streamBillingRows(
+            @Param("tutorId") UUID tutorId,
+            @Param("statuses") List<LessonStatus> statuses,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toInclusive") OffsetDateTime toInclusive
+    );
+
+    @Query("""
+            SELECT l.id AS id, l.tutorId AS tutorId, l.studentId AS studentId, l.status AS status,
+                   l.dateTime AS dateTime, l.endDate AS endDate, l.duration AS duration, l.updatedAt AS updatedAt
+            FROM Lesson l
+            WHERE l.updatedAt <= :settledBefore
+            ORDER BY l.updatedAt ASC, l.id ASC
+            """)
+    List<LessonChangeRow> findChanges(
+            @Param("settledBefore") LocalDateTime settledBefore,
+            Pageable pageable
+    );
+
+    @Query("""
+            SELECT l.id AS id, l.tutorId AS tutorId, l.studentId AS studentId, l.status AS status,
+                   l.dateTime AS dateTime, l.endDate AS endDate, l.duration AS duration, l.updatedAt AS updatedAt
+            FROM Lesson l
+            WHERE (l.updatedAt > :updatedAt OR (l.updatedAt = :updatedAt AND l.id > :lessonId))
+              AND l.updatedAt <= :settledBefore
+            ORDER BY l.updatedAt ASC, l.id ASC
+            """)
+    List<LessonChangeRow> findChangesAfter(
+            @Param("updatedAt") LocalDateTime updatedAt,
+            @Param("lessonId") UUID lessonId,
+            @Param("settledBefore") LocalDateTime settledBefore,
+            Pageable pageable
+    );
 }
@@ -0,0 +1,114 @@
+package com.mytutorplatform.lessonsservice.repository;
+
+import com.mytutorplatform.lessonsservice.model.LessonRollup;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonRollupBucketRow;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonRollupStudentRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface LessonRollupRepository extends JpaRepository<LessonRollup, LessonRollup.Key> {
+
+    @Query("""
+            SELECT COUNT(DISTINCT r.studentId) FROM LessonRollup r
+            WHERE r.tutorId = :tutorId
+              AND r.status = :status
+              AND r.lessonCount > 0
+            """)
+    long countDistinctStudents(@Param("tutorId") UUID tutorId, @Param("status") LessonStatus status);
+
+    @Query("""
+            SELECT COALESCE(SUM(r.lessonCount), 0) FROM LessonRollup r
+            WHERE r.tutorId = :tutorId
+              AND r.status = :status
+              AND r.bucketStart >= :fromInclusive
+              AND r.bucketStart < :toExclusive
+            """)
+    long sumLessons(
+            @Param("tutorId") UUID tutorId,
+            @Param("status") LessonStatus status,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive
+    );
+
+    @Query("""
+            SELECT r.bucketStart AS bucketStart, SUM(r.lessonCount) AS lessonCount, SUM(r.minutes) AS minutes
+            FROM LessonRollup r
+            WHERE r.tutorId = :tutorId
+              AND r.bucketStart >= :fromInclusive
+              AND r.bucketStart < :toExclusive
+            GROUP BY r.bucketStart
+            """)
+    List<LessonRollupBucketRow> sumByBucketForTutor(
+            @Param("tutorId") UUID tutorId,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive
+    );
+
+    @Query("""
+            SELECT r.bucketStart AS bucketStart, SUM(r.lessonCount) AS lessonCount, SUM(r.minutes) AS minutes
+            FROM LessonRollup r
+            WHERE r.studentId = :studentId
+              AND r.bucketStart >= :fromInclusive
+              AND r.bucketStart < :toExclusive
+            GROUP BY r.bucketStart
+            """)
+    List<LessonRollupBucketRow> sumByBucketForStudent(
+            @Param("studentId") UUID studentId,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive
+    );
+
+    @Query("""
+            SELECT r.bucketStart AS bucketStart, SUM(r.lessonCount) AS lessonCount, SUM(r.minutes) AS minutes
+            FROM LessonRollup r
+            WHERE r.tutorId = :tutorId
+              AND r.studentId = :studentId
+              AND r.bucketStart >= :fromInclusive
+              AND r.bucketStart < :toExclusive
+            GROUP BY r.bucketStart
+            """)
+    List<LessonRollupBucketRow> sumByBucketForPair(
+            @Param("tutorId") UUID tutorId,
+            @Param("studentId") UUID studentId,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive
+    );
+
+    @Query("""
+            SELECT r.bucketStart AS bucketStart, SUM(r.lessonCount) AS lessonCount, SUM(r.minutes) AS minutes
+            FROM LessonRollup r
+            WHERE r.bucketStart >= :fromInclusive
+              AND r.bucketStart < :toExclusive
+            GROUP BY r.bucketStart
+            """)
+    List<LessonRollupBucketRow> sumByBucket(
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive
+    );
+
+    @Query("""
+            SELECT r.studentId AS studentId, SUM(r.lessonCount) AS lessonCount, SUM(r.minutes) AS minutes
+            FROM LessonRollup r
+            WHERE r.tutorId = :tutorId
+              AND r.status IN :statuses
+              AND r.bucketStart >= :fromInclusive
+              AND r.bucketStart < :toExclusive
+            GROUP BY r.studentId
+            HAVING SUM(r.lessonCount) > 0
+            ORDER BY r.studentId
+            """)
+    List<LessonRollupStudentRow> sumByStudent(
+            @Param("tutorId") UUID tutorId,
+            @Param("statuses") List<LessonStatus> statuses,
+            @Param("fromInclusive") OffsetDateTime fromInclusive,
+            @Param("toExclusive") OffsetDateTime toExclusive
+    );
+}
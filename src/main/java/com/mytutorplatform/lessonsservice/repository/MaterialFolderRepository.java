@@ -1,7 +1,11 @@
 package com.mytutorplatform.lessonsservice.repository;
 
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
 import com.mytutorplatform.lessonsservice.model.MaterialFolder;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,4 +15,12 @@ import java.util.UUID;
 public interface MaterialFolderRepository extends JpaRepository<MaterialFolder, UUID> {
     List<MaterialFolder> findByParentIsNull();
     List<MaterialFolder> findByParentId(UUID parentId);
+
+    /** the whole folder tree, read on every tree request */
+    @Override
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = MaterialCacheConfig.CATALOGUE_QUERIES)
+    })
+    List<MaterialFolder> findAll();
 }
@@ -1,9 +1,13 @@
 package com.mytutorplatform.lessonsservice.repository;
 
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
 import com.mytutorplatform.lessonsservice.model.Material;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,9 +17,17 @@ import java.util.UUID;
 public interface MaterialRepository extends JpaRepository<Material, UUID>, JpaSpecificationExecutor<Material> {
     List<Material> findByFolderId(UUID folderId);
 
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = MaterialCacheConfig.CATALOGUE_QUERIES)
+    })
     @Query("SELECT DISTINCT t FROM Material m JOIN m.tags t")
     List<String> findAllTags();
 
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = MaterialCacheConfig.CATALOGUE_QUERIES)
+    })
     @Query("SELECT m.folderId, COUNT(m) FROM Material m WHERE m.folderId IS NOT NULL GROUP BY m.folderId")
     List<Object[]> countMaterialsByFolderId();
 }
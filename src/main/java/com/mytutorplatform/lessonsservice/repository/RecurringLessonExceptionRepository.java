@@ -0,0 +1,60 @@
+package com.mytutorplatform.lessonsservice.repository;
+
+import com.mytutorplatform.lessonsservice.model.RecurringLessonException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface RecurringLessonExceptionRepository extends JpaRepository<RecurringLessonException, UUID> {
+
+    List<RecurringLessonException> findBySeriesIdInAndOccurrenceStartBetween(
+            Collection<UUID> seriesIds, OffsetDateTime fromInclusive, OffsetDateTime toInclusive);
+
+    List<RecurringLessonException> findBySeriesIdIn(Collection<UUID> seriesIds);
+
+    Optional<RecurringLessonException> findBySeriesIdAndOccurrenceStart(UUID seriesId, OffsetDateTime occurrenceStart);
+
+    Optional<RecurringLessonException> findByLessonId(UUID lessonId);
+
+    @Modifying
+    @Query("DELETE FROM RecurringLessonException e WHERE e.seriesId = :seriesId AND e.occurrenceStart <= :toInclusive")
+    int deleteBySeriesIdUpTo(@Param("seriesId") UUID seriesId, @Param("toInclusive") OffsetDateTime toInclusive);
+
+    @Modifying
+    @Query("DELETE FROM RecurringLessonException e WHERE e.seriesId = :seriesId AND e.occurrenceStart > :fromExclusive")
+    int deleteBySeriesIdAfter(@Param("seriesId") UUID seriesId, @Param("fromExclusive") OffsetDateTime fromExclusive);
+
+    @Modifying
+    @Query("""
+            UPDATE RecurringLessonException e
+            SET e.occurrenceStart = e.occurrenceStart + (:shiftMinutes) minute
+            WHERE e.seriesId = :seriesId AND e.occurrenceStart >= :fromInclusive
+            """)
+    int shiftBySeriesIdFrom(@Param("seriesId") UUID seriesId,
+                            @Param("fromInclusive") OffsetDateTime fromInclusive,
+                            @Param("shiftMinutes") long shiftMinutes);
+
+    @Modifying
+    @Query("""
+            UPDATE RecurringLessonException e
+            SET e.seriesId = :targetSeriesId
+            WHERE e.seriesId = :seriesId AND e.occurrenceStart > :fromExclusive AND e.occurrenceStart < :toExclusive
+            """)
+    int moveBySeriesIdBetween(@Param("seriesId") UUID seriesId,
+                              @Param("targetSeriesId") UUID targetSeriesId,
+                              @Param("fromExclusive") OffsetDateTime fromExclusive,
+                              @Param("toExclusive") OffsetDateTime toExclusive);
+
+    @Modifying
+    @Query("DELETE FROM RecurringLessonException e WHERE e.seriesId = :seriesId")
+    int deleteBySeriesId(@Param("seriesId") UUID seriesId);
+}
@@ -1,11 +1,43 @@
 package com.mytutorplatform.lessonsservice.repository;
 
 import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface RecurringLessonSeriesRepository extends JpaRepository<RecurringLessonSeries, UUID> {
-}
\ No newline at end of file
+public interface RecurringLessonSeriesRepository extends JpaRepository<RecurringLessonSeries, UUID>, JpaSpecificationExecutor<RecurringLessonSeries> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM RecurringLessonSeries s WHERE s.seriesId = :seriesId")
+    Optional<RecurringLessonSeries> findByIdForUpdate(@Param("seriesId") UUID seriesId);
+
+    /**
+     * Rule-based series whose next occurrence starts by {@code horizon}, plus series whose next
+     * occurrence is not known yet. Rows locked by another node or by a concurrent occurrence edit
+     * are skipped rather than waited on.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            SELECT s FROM RecurringLessonSeries s
+            WHERE s.startDateTime IS NOT NULL
+              AND s.tutorId IS NOT NULL
+              AND (s.nextOccurrenceStart <= :horizon
+                   OR (s.nextOccurrenceStart IS NULL AND (s.until IS NULL OR s.materializedThrough < s.until)))
+            ORDER BY s.nextOccurrenceStart ASC NULLS FIRST
+            """)
+    List<RecurringLessonSeries> lockDueForMaterialization(@Param("horizon") OffsetDateTime horizon, Pageable pageable);
+}
@@ -0,0 +1,136 @@
+package com.mytutorplatform.lessonsservice.repository;
+
+import com.mytutorplatform.lessonsservice.model.TutorStudentRelation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TutorStudentRelationRepository extends JpaRepository<TutorStudentRelation, TutorStudentRelation.Key> {
+
+    /** Recomputes the rows of {@code pairs} from lessons and series; shared by the per-pair and the full rebuild. */
+    String UPSERT_FROM_PAIRS = """
+            INSERT INTO tutor_student_relations
+                (tutor_id, student_id, last_lesson_id, last_lesson_at, last_lesson_status, booked_until, open_series, updated_at)
+            SELECT p.tutor_id, p.student_id, a.id, a.date_time, a.status,
+                   GREATEST(b.booked_until, s.series_until), COALESCE(s.open_series, false), now()
+            FROM pairs p
+            LEFT JOIN LATERAL (
+                SELECT l.id, l.date_time, l.status FROM lessons l
+                WHERE l.tutor_id = p.tutor_id AND l.student_id = p.student_id
+                  AND l.status IN (:activityStatuses)
+                ORDER BY l.date_time DESC, l.id DESC
+                LIMIT 1
+            ) a ON true
+            LEFT JOIN LATERAL (
+                SELECT MAX(l.date_time) AS booked_until FROM lessons l
+                WHERE l.tutor_id = p.tutor_id AND l.student_id = p.student_id
+                  AND l.status IN (:bookedStatuses)
+            ) b ON true
+            LEFT JOIN LATERAL (
+                SELECT MAX(rs.until) AS series_until, BOOL_OR(rs.until IS NULL) AS open_series
+                FROM recurring_lesson_series rs
+                WHERE rs.tutor_id = p.tutor_id AND rs.student_id = p.student_id
+                  AND rs.start_date_time IS NOT NULL
+            ) s ON true
+            ON CONFLICT (tutor_id, student_id) DO UPDATE SET
+                last_lesson_id = EXCLUDED.last_lesson_id,
+                last_lesson_at = EXCLUDED.last_lesson_at,
+                last_lesson_status = EXCLUDED.last_lesson_status,
+                booked_until = EXCLUDED.booked_until,
+                open_series = EXCLUDED.open_series,
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    @Modifying
+    @Query(value = "WITH pairs AS (SELECT CAST(:tutorId AS uuid) AS tutor_id, CAST(:studentId AS uuid) AS student_id) "
+            + UPSERT_FROM_PAIRS, nativeQuery = true)
+    int refreshPair(
+            @Param("tutorId") UUID tutorId,
+            @Param("studentId") UUID studentId,
+            @Param("activityStatuses") List<String> activityStatuses,
+            @Param("bookedStatuses") List<String> bookedStatuses
+    );
+
+    @Modifying
+    @Query(value = """
+            WITH pairs AS (
+                SELECT tutor_id, student_id FROM lessons
+                UNION
+                SELECT tutor_id, student_id FROM recurring_lesson_series
+                WHERE start_date_time IS NOT NULL AND tutor_id IS NOT NULL
+            )
+            """ + UPSERT_FROM_PAIRS, nativeQuery = true)
+    int rebuildAll(
+            @Param("activityStatuses") List<String> activityStatuses,
+            @Param("bookedStatuses") List<String> bookedStatuses
+    );
+
+    /** Drops the row of a pair whose last lesson and series are gone. */
+    @Modifying
+    @Query(value = """
+            DELETE FROM tutor_student_relations
+            WHERE tutor_id = :tutorId AND student_id = :studentId
+              AND last_lesson_at IS NULL AND booked_until IS NULL AND NOT open_series
+            """, nativeQuery = true)
+    int deleteIfEmpty(@Param("tutorId") UUID tutorId, @Param("studentId") UUID studentId);
+
+    @Query("""
+            SELECT COUNT(r) FROM TutorStudentRelation r
+            WHERE r.tutorId = :tutorId
+              AND r.lastLessonAt >= :recentFromInclusive
+              AND r.lastLessonAt <= :recentToInclusive
+              AND r.openSeries = false
+              AND (r.bookedUntil IS NULL OR r.bookedUntil < :upcomingFromInclusive)
+            """)
+    long countWithoutNextLesson(
+            @Param("tutorId") UUID tutorId,
+            @Param("recentFromInclusive") OffsetDateTime recentFromInclusive,
+            @Param("recentToInclusive") OffsetDateTime recentToInclusive,
+            @Param("upcomingFromInclusive") OffsetDateTime upcomingFromInclusive
+    );
+
+    @Query("""
+            SELECT r FROM TutorStudentRelation r
+            WHERE r.tutorId = :tutorId
+              AND r.lastLessonAt >= :recentFromInclusive
+              AND r.lastLessonAt <= :recentToInclusive
+              AND r.openSeries = false
+              AND (r.bookedUntil IS NULL OR r.bookedUntil < :upcomingFromInclusive)
+            ORDER BY r.lastLessonAt DESC, r.studentId ASC
+            """)
+    List<TutorStudentRelation> findWithoutNextLesson(
+            @Param("tutorId") UUID tutorId,
+            @Param("recentFromInclusive") OffsetDateTime recentFromInclusive,
+            @Param("recentToInclusive") OffsetDateTime recentToInclusive,
+            @Param("upcomingFromInclusive") OffsetDateTime upcomingFromInclusive,
+            Pageable pageable
+    );
+
+    @Query("""
+            SELECT r FROM TutorStudentRelation r
+            WHERE r.tutorId = :tutorId
+              AND r.lastLessonAt >= :recentFromInclusive
+              AND r.lastLessonAt <= :recentToInclusive
+              AND r.openSeries = false
+              AND (r.bookedUntil IS NULL OR r.bookedUntil < :upcomingFromInclusive)
+              AND (r.lastLessonAt < :lastLessonAt OR (r.lastLessonAt = :lastLessonAt AND r.studentId > :studentId))
+            ORDER BY r.lastLessonAt DESC, r.studentId ASC
+            """)
+    List<TutorStudentRelation> findWithoutNextLessonAfter(
+            @Param("tutorId") UUID tutorId,
+            @Param("recentFromInclusive") OffsetDateTime recentFromInclusive,
+            @Param("recentToInclusive") OffsetDateTime recentToInclusive,
+            @Param("upcomingFromInclusive") OffsetDateTime upcomingFromInclusive,
+            @Param("lastLessonAt") OffsetDateTime lastLessonAt,
+            @Param("studentId") UUID studentId,
+            Pageable pageable
+    );
+}
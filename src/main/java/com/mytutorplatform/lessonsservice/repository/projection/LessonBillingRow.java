@@ -0,0 +1,15 @@
+package com.mytutorplatform.lessonsservice.repository.projection;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface LessonBillingRow {
+    UUID getLessonId();
+    UUID getTutorId();
+    UUID getStudentId();
+    LessonStatus getStatus();
+    OffsetDateTime getStartTime();
+    Integer getDurationMinutes();
+}
@@ -0,0 +1,18 @@
+package com.mytutorplatform.lessonsservice.repository.projection;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface LessonChangeRow {
+    UUID getId();
+    UUID getTutorId();
+    UUID getStudentId();
+    LessonStatus getStatus();
+    OffsetDateTime getDateTime();
+    OffsetDateTime getEndDate();
+    Integer getDuration();
+    LocalDateTime getUpdatedAt();
+}
@@ -0,0 +1,14 @@
+package com.mytutorplatform.lessonsservice.repository.projection;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface LessonIntervalRow {
+    UUID getId();
+
+    OffsetDateTime getDateTime();
+
+    OffsetDateTime getEndDate();
+
+    int getDuration();
+}
@@ -0,0 +1,11 @@
+package com.mytutorplatform.lessonsservice.repository.projection;
+
+import java.time.OffsetDateTime;
+
+public interface LessonRollupBucketRow {
+    OffsetDateTime getBucketStart();
+
+    long getLessonCount();
+
+    long getMinutes();
+}
@@ -0,0 +1,11 @@
+package com.mytutorplatform.lessonsservice.repository.projection;
+
+import java.util.UUID;
+
+public interface LessonRollupStudentRow {
+    UUID getStudentId();
+
+    long getLessonCount();
+
+    long getMinutes();
+}
@@ -0,0 +1,16 @@
+package com.mytutorplatform.lessonsservice.repository.projection;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface SeriesLessonRow {
+    UUID getId();
+
+    UUID getStudentId();
+
+    OffsetDateTime getDateTime();
+
+    LessonStatus getStatus();
+}
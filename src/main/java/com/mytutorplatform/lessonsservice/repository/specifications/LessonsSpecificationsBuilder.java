@@ -10,6 +10,10 @@ import java.util.List;
 import java.util.UUID;
 
 public class LessonsSpecificationsBuilder {
+
+    /** The current lesson is the one running this many minutes after the given date. */
+    public static final int CURRENT_LESSON_LEAD_MINUTES = 15;
+
     public static Specification<Lesson> lessonsByParams(UUID tutorId, UUID studentId, List<LessonStatus> status, OffsetDateTime startDateTime, OffsetDateTime endDateTime, OffsetDateTime currentDate) {
         return (root, query, cb) -> {
             Predicate predicate = cb.conjunction();
@@ -47,7 +51,18 @@ public class LessonsSpecificationsBuilder {
         };
     }
 
+    /**
+     * Rows strictly after the {@code (dateTime, id)} keyset position, matching an ascending
+     * {@code dateTime, id} sort.
+     */
+    public static Specification<Lesson> afterKeyset(OffsetDateTime dateTime, UUID id) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.get("dateTime"), dateTime),
+                cb.and(cb.equal(root.get("dateTime"), dateTime), cb.greaterThan(root.get("id"), id))
+        );
+    }
+
     public static Specification<Lesson> currentLessonParams(UUID tutorId, UUID studentId, OffsetDateTime currentDate, List<LessonStatus> statuses) {
-        return lessonsByParams(tutorId, studentId, statuses, null, null, currentDate.plusMinutes(15));
+        return lessonsByParams(tutorId, studentId, statuses, null, null, currentDate.plusMinutes(CURRENT_LESSON_LEAD_MINUTES));
     }
 }
@@ -0,0 +1,63 @@
+package com.mytutorplatform.lessonsservice.repository.specifications;
+
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public class RecurringLessonSeriesSpecificationsBuilder {
+
+    /**
+     * Rule-based series of the given participants that can still expand occurrences inside the window.
+     */
+    public static Specification<RecurringLessonSeries> expandableSeries(UUID tutorId, UUID studentId, OffsetDateTime fromInclusive, OffsetDateTime toInclusive) {
+        return (root, query, cb) -> {
+            Predicate predicate = expandable(root, cb, fromInclusive, toInclusive);
+
+            if (tutorId != null) {
+                predicate = cb.and(predicate, cb.equal(root.get("tutorId"), tutorId));
+            }
+
+            if (studentId != null) {
+                predicate = cb.and(predicate, cb.equal(root.get("studentId"), studentId));
+            }
+
+            return predicate;
+        };
+    }
+
+    /**
+     * Rule-based series where the user is either the tutor or the student.
+     */
+    public static Specification<RecurringLessonSeries> expandableSeriesForUser(UUID userId, OffsetDateTime fromInclusive, OffsetDateTime toInclusive) {
+        return (root, query, cb) -> cb.and(
+                expandable(root, cb, fromInclusive, toInclusive),
+                cb.or(cb.equal(root.get("tutorId"), userId), cb.equal(root.get("studentId"), userId))
+        );
+    }
+
+    private static Predicate expandable(Root<RecurringLessonSeries> root,
+                                        CriteriaBuilder cb,
+                                        OffsetDateTime fromInclusive,
+                                        OffsetDateTime toInclusive) {
+        Predicate predicate = cb.and(
+                cb.isNotNull(root.get("startDateTime")),
+                cb.isNotNull(root.get("tutorId")),
+                cb.or(cb.isNull(root.get("until")), cb.greaterThan(root.get("until"), root.get("materializedThrough")))
+        );
+
+        if (toInclusive != null) {
+            predicate = cb.and(predicate, cb.lessThanOrEqualTo(root.get("startDateTime"), toInclusive));
+        }
+
+        if (fromInclusive != null) {
+            predicate = cb.and(predicate, cb.or(cb.isNull(root.get("until")), cb.greaterThanOrEqualTo(root.get("until"), fromInclusive)));
+        }
+
+        return predicate;
+    }
+}
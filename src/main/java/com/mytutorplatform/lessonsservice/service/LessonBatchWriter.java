@@ -0,0 +1,41 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Bulk insert path for freshly built lessons (series materialization, imports).
+ * Ids are generated in memory by Hibernate, so nothing forces an early round trip and the
+ * inserts go out as JDBC batches of {@code hibernate.jdbc.batch_size}. At every batch boundary
+ * the persistence context is flushed and the lessons of that batch are detached, which keeps
+ * dirty checking cheap on long series while entities the caller loaded stay managed.
+ */
+@Component
+@RequiredArgsConstructor
+public class LessonBatchWriter {
+
+    private final EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Transactional
+    public List<Lesson> insertAll(List<Lesson> lessons) {
+        int size = Math.max(1, batchSize);
+        for (int i = 0; i < lessons.size(); i++) {
+            entityManager.persist(lessons.get(i));
+            if ((i + 1) % size == 0) {
+                entityManager.flush();
+                lessons.subList(i + 1 - size, i + 1).forEach(entityManager::detach);
+            }
+        }
+        entityManager.flush();
+        return lessons;
+    }
+}
@@ -0,0 +1,136 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.config.datasource.ReadRouting;
+import com.mytutorplatform.lessonsservice.model.LessonDeletion;
+import com.mytutorplatform.lessonsservice.model.response.LessonChangeItem;
+import com.mytutorplatform.lessonsservice.model.response.LessonChangesPage;
+import com.mytutorplatform.lessonsservice.repository.LessonDeletionRepository;
+import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonChangeRow;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurringOccurrenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Incremental change feed over {@code lessons}, ordered by the {@code (updatedAt, id)} watermark
+ * and served from {@code idx_lessons_updated_at_id}. Each call costs one index range scan
+ * bounded by the page size, independent of how much history the table holds.
+ * <p>
+ * Deleted and archived lessons appear as tombstones from {@code lesson_deletions}, merged into the
+ * same order with their {@code deletedAt} as {@code updatedAt}. Those are stamped from the database
+ * clock; pgjdbc sets the session time zone to the JVM's, so both stamps are comparable and the
+ * settle window covers tombstones as well. Tombstones are kept for
+ * {@code lessons.change-feed.tombstone-retention-days}; a consumer whose watermark is older has to
+ * resync from scratch to learn of deletions.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LessonChangeFeedService {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 500;
+
+    /** The watermark order, by PostgreSQL's uuid order like the queries. */
+    private static final Comparator<LessonChangeItem> FEED_ORDER = Comparator
+            .comparing(LessonChangeItem::updatedAt)
+            .thenComparing(LessonChangeItem::lessonId, RecurringOccurrenceService.UUID_ORDER);
+
+    private final LessonRepository lessonRepository;
+    private final LessonDeletionRepository lessonDeletionRepository;
+
+    /**
+     * Rows touched within this window are held back so that a transaction which stamped
+     * {@code updatedAt} earlier but committed later cannot slip behind an advanced watermark.
+     */
+    @Value("${lessons.change-feed.settle-seconds:5}")
+    private long settleSeconds;
+
+    @Value("${lessons.change-feed.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    @Transactional(readOnly = true)
+    public LessonChangesPage getChangesSince(String watermark, Integer limit) {
+        int pageSize = sanitizeLimit(limit);
+        Watermark since = decode(watermark);
+        // the settle window bounds commit delays on the primary, not replication lag on top of them
+        ReadRouting.requirePrimary();
+
+        // @UpdateTimestamp stamps a JVM-local LocalDateTime, so the bound must use the same clock
+        LocalDateTime settledBefore = LocalDateTime.now().minusSeconds(settleSeconds);
+        PageRequest pageable = PageRequest.of(0, pageSize + 1);
+
+        List<LessonChangeRow> rows = since == null
+                ? lessonRepository.findChanges(settledBefore, pageable)
+                : lessonRepository.findChangesAfter(since.updatedAt(), since.lessonId(), settledBefore, pageable);
+        List<LessonDeletion> deletions = since == null
+                ? lessonDeletionRepository.findDeletions(settledBefore, pageable)
+                : lessonDeletionRepository.findDeletionsAfter(since.updatedAt(), since.lessonId(), settledBefore, pageable);
+
+        // each source holds at least the first pageSize + 1 of its own, so the merge does too
+        List<LessonChangeItem> merged = new ArrayList<>(rows.size() + deletions.size());
+        rows.forEach(row -> merged.add(LessonChangeItem.from(row)));
+        deletions.forEach(deletion -> merged.add(LessonChangeItem.from(deletion)));
+        merged.sort(FEED_ORDER);
+
+        boolean hasMore = merged.size() > pageSize;
+        List<LessonChangeItem> items = hasMore ? List.copyOf(merged.subList(0, pageSize)) : merged;
+
+        String nextWatermark = watermark;
+        if (!items.isEmpty()) {
+            LessonChangeItem last = items.get(items.size() - 1);
+            nextWatermark = encode(new Watermark(last.updatedAt(), last.lessonId()));
+        }
+        return new LessonChangesPage(items, nextWatermark, hasMore);
+    }
+
+    @Scheduled(cron = "${lessons.change-feed.tombstone-prune-cron:0 45 3 * * *}", zone = "UTC")
+    @Transactional
+    public void pruneTombstones() {
+        int pruned = lessonDeletionRepository.deleteOlderThan(LocalDateTime.now().minusDays(tombstoneRetentionDays));
+        if (pruned > 0) {
+            log.info("Pruned {} change feed tombstones older than {} days", pruned, tombstoneRetentionDays);
+        }
+    }
+
+    private int sanitizeLimit(Integer requestedLimit) {
+        if (requestedLimit == null || requestedLimit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(requestedLimit, MAX_LIMIT);
+    }
+
+    private static String encode(Watermark watermark) {
+        String raw = watermark.updatedAt().toString() + "|" + watermark.lessonId();
+        return Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Watermark decode(String watermark) {
+        if (watermark == null || watermark.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(watermark), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 2);
+            return new Watermark(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (Exception e) {
+            log.warn("Invalid change feed watermark: {}", watermark);
+            throw new IllegalArgumentException("Invalid watermark");
+        }
+    }
+
+    private record Watermark(LocalDateTime updatedAt, UUID lessonId) {}
+}
@@ -0,0 +1,185 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.config.datasource.ReadRouting;
+import com.mytutorplatform.lessonsservice.model.response.DashboardOverview;
+import com.mytutorplatform.lessonsservice.model.response.LessonSummaryItem;
+import com.mytutorplatform.lessonsservice.model.response.StudentDashboardMetricsSummary;
+import com.mytutorplatform.lessonsservice.model.response.TutorDashboardActionsSummary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the whole dashboard in one request. Each section's queries run concurrently on a bounded
+ * pool, and the page waits at most {@code lessons.dashboard.section-timeout-ms}; slow or failing
+ * sections come back as unavailable instead of failing the response.
+ * <p>
+ * The pool is shared by every request and each running section holds a database connection, so it
+ * is capped at half of {@code spring.datasource.hikari.maximum-pool-size}, leaving the other half to
+ * writes and single reads. An overview submits up to six sections; with the defaults four threads
+ * serve about one overview at a time, and {@code lessons.dashboard.queue-capacity} lets four more wait.
+ * Sections beyond that are rejected and reported unavailable rather than queued past their deadline.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LessonDashboardOverviewService {
+
+    public enum Section {
+        NEXT, UPCOMING, TUTOR_ACTIONS, STUDENT_METRICS, TODAY_AGENDA;
+
+        String label() {
+            String[] words = name().toLowerCase(Locale.ROOT).split("_");
+            StringBuilder label = new StringBuilder(words[0]);
+            for (int i = 1; i < words.length; i++) {
+                label.append(Character.toUpperCase(words[i].charAt(0))).append(words[i].substring(1));
+            }
+            return label.toString();
+        }
+    }
+
+    private final LessonDashboardService lessonDashboardService;
+
+    private ThreadPoolExecutor executor;
+
+    @Value("${lessons.dashboard.pool-size:4}")
+    private int poolSize;
+    @Value("${lessons.dashboard.queue-capacity:24}")
+    private int queueCapacity;
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int maxConnections;
+    @Value("${lessons.dashboard.section-timeout-ms:1500}")
+    private long sectionTimeoutMs;
+
+    @PostConstruct
+    public void init() {
+        int size = Math.min(Math.max(1, poolSize), Math.max(1, maxConnections / 2));
+        if (size < poolSize) {
+            log.warn("lessons.dashboard.pool-size {} capped at {}, half of the {} database connections",
+                    poolSize, size, maxConnections);
+        }
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-section-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    public DashboardOverview getOverview(UUID userId,
+                                         String sections,
+                                         Integer limit,
+                                         Integer windowDays,
+                                         String timezone,
+                                         Integer agendaLimit) {
+        Set<Section> requested = parseSections(sections);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sectionTimeoutMs);
+
+        Future<LessonSummaryItem> next = submit(requested, Section.NEXT,
+                () -> lessonDashboardService.getNextLesson(userId));
+        Future<List<LessonSummaryItem>> upcoming = submit(requested, Section.UPCOMING,
+                () -> lessonDashboardService.getUpcomingLessons(userId, limit, windowDays));
+        // the two tutor counts are independent scans, so they run side by side as well
+        Future<Long> missingNotes = submit(requested, Section.TUTOR_ACTIONS,
+                () -> lessonDashboardService.countMissingNotes(userId));
+        Future<Long> withoutNextLesson = submit(requested, Section.TUTOR_ACTIONS,
+                () -> lessonDashboardService.countStudentsWithoutNextLesson(userId));
+        Future<StudentDashboardMetricsSummary> studentMetrics = submit(requested, Section.STUDENT_METRICS,
+                () -> lessonDashboardService.getStudentMetrics(userId));
+        Future<List<LessonSummaryItem>> todayAgenda = submit(requested, Section.TODAY_AGENDA,
+                () -> lessonDashboardService.getTutorTodayAgenda(userId, timezone, agendaLimit));
+
+        Set<Section> unavailable = EnumSet.noneOf(Section.class);
+        LessonSummaryItem nextLesson = await(next, Section.NEXT, deadline, unavailable);
+        List<LessonSummaryItem> upcomingLessons = await(upcoming, Section.UPCOMING, deadline, unavailable);
+        Long missingNotesCount = await(missingNotes, Section.TUTOR_ACTIONS, deadline, unavailable);
+        Long withoutNextLessonCount = await(withoutNextLesson, Section.TUTOR_ACTIONS, deadline, unavailable);
+        StudentDashboardMetricsSummary metrics = await(studentMetrics, Section.STUDENT_METRICS, deadline, unavailable);
+        List<LessonSummaryItem> agenda = await(todayAgenda, Section.TODAY_AGENDA, deadline, unavailable);
+
+        TutorDashboardActionsSummary tutorActions = missingNotesCount != null && withoutNextLessonCount != null
+                ? new TutorDashboardActionsSummary(missingNotesCount, withoutNextLessonCount)
+                : null;
+        List<String> unavailableSections = unavailable.stream().map(Section::label).toList();
+        return new DashboardOverview(nextLesson, upcomingLessons, tutorActions, metrics, agenda, unavailableSections);
+    }
+
+    private <T> Future<T> submit(Set<Section> requested, Section section, Callable<T> task) {
+        if (!requested.contains(section)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            // sections read where the request would, including its read-your-writes pinning
+            return executor.submit(ReadRouting.propagate(task));
+        } catch (RejectedExecutionException e) {
+            log.warn("Dashboard section {} rejected: pool saturated", section.label());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T await(Future<T> future, Section section, long deadlineNanos, Set<Section> unavailable) {
+        if (unavailable.contains(section)) {
+            future.cancel(true);
+            return null;
+        }
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Dashboard section {} timed out", section.label());
+        } catch (ExecutionException e) {
+            log.warn("Dashboard section {} failed", section.label(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        future.cancel(true);
+        unavailable.add(section);
+        return null;
+    }
+
+    private static Set<Section> parseSections(String sections) {
+        if (sections == null || sections.isBlank()) {
+            return EnumSet.allOf(Section.class);
+        }
+        Set<Section> parsed = EnumSet.noneOf(Section.class);
+        for (String name : sections.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            parsed.add(Arrays.stream(Section.values())
+                    .filter(section -> section.label().equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown dashboard section: " + trimmed)));
+        }
+        return parsed;
+    }
+}
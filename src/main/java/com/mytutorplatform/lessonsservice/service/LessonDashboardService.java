@@ -2,16 +2,26 @@ package com.mytutorplatform.lessonsservice.service;
 
 import com.mytutorplatform.lessonsservice.model.Lesson;
 import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.TutorStudentRelation;
 import com.mytutorplatform.lessonsservice.model.response.LessonSummaryItem;
 import com.mytutorplatform.lessonsservice.model.response.StudentDashboardMetricsSummary;
+import com.mytutorplatform.lessonsservice.model.response.StudentWithoutNextLessonItem;
+import com.mytutorplatform.lessonsservice.model.response.StudentsWithoutNextLessonPage;
 import com.mytutorplatform.lessonsservice.model.response.TutorDashboardActionsSummary;
 import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.TutorStudentRelationRepository;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurringOccurrenceService;
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache;
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache.UserAgenda;
+import com.mytutorplatform.lessonsservice.util.TimeZones;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.DateTimeException;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -20,6 +30,8 @@ import java.time.YearMonth;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 
@@ -33,13 +45,6 @@ public class LessonDashboardService {
             LessonStatus.IN_PROGRESS,
             LessonStatus.RESCHEDULED
     );
-    private static final List<LessonStatus> TUTOR_RECENT_ACTIVITY_STATUSES = List.of(
-            LessonStatus.COMPLETED,
-            LessonStatus.MISSED,
-            LessonStatus.IN_PROGRESS,
-            LessonStatus.RESCHEDULED,
-            LessonStatus.SCHEDULED
-    );
     private static final int NOW_CUTOFF_MINUTES = 5;
     private static final int MISSING_NOTES_WINDOW_DAYS = 14;
     private static final int WITHOUT_NEXT_LESSON_WINDOW_DAYS = 30;
@@ -48,29 +53,38 @@ public class LessonDashboardService {
     private static final int DEFAULT_WINDOW_DAYS = 7;
     private static final int MAX_LIMIT = 20;
     private static final int MAX_WINDOW_DAYS = 30;
+    private static final int DEFAULT_STUDENTS_PAGE_SIZE = 20;
+    private static final int MAX_STUDENTS_PAGE_SIZE = 100;
 
     private final LessonRepository lessonRepository;
+    private final TutorStudentRelationRepository tutorStudentRelationRepository;
+    private final RecurringOccurrenceService recurringOccurrenceService;
+    private final UserAgendaCache userAgendaCache;
     private final Clock clock;
 
+    @Value("${lessons.dashboard.split-user-queries:true}")
+    private boolean splitUserQueries;
+
+    @Transactional(readOnly = true)
     public LessonSummaryItem getNextLesson(UUID userId) {
         Instant nowUtc = Instant.now(clock);
         Instant nowCutoff = nowUtc.minus(NOW_CUTOFF_MINUTES, ChronoUnit.MINUTES);
 
-        List<Lesson> lessons = lessonRepository.findDashboardNextCandidates(
-                userId,
-                DASHBOARD_UPCOMING_STATUSES,
-                nowCutoff.atOffset(ZoneOffset.UTC),
-                PageRequest.of(0, 1)
-        );
+        // answerable from the cache unless every cached lesson has already passed the cutoff
+        UserAgenda agenda = userAgendaCache.get(userId,
+                cached -> !cached.from().isAfter(nowCutoff) && (cached.complete() || !startingFrom(cached, nowCutoff).isEmpty()),
+                () -> loadAgenda(userId, nowCutoff));
+        List<LessonSummaryItem> lessons = startingFrom(agenda, nowCutoff);
 
         if (lessons.isEmpty()) {
             logEmptyResult(userId, nowUtc, nowCutoff);
             return null;
         }
 
-        return toSummary(lessons.get(0));
+        return lessons.get(0);
     }
 
+    @Transactional(readOnly = true)
     public List<LessonSummaryItem> getUpcomingLessons(UUID userId, Integer limit, Integer windowDays) {
         int safeLimit = sanitizeLimit(limit);
         int safeWindowDays = sanitizeWindowDays(windowDays);
@@ -79,53 +93,178 @@ public class LessonDashboardService {
         Instant nowCutoff = nowUtc.minus(NOW_CUTOFF_MINUTES, ChronoUnit.MINUTES);
         Instant windowEndUtc = nowUtc.plus(safeWindowDays, ChronoUnit.DAYS);
 
-        OffsetDateTime fromInclusive = nowCutoff.atOffset(ZoneOffset.UTC);
-        OffsetDateTime toInclusive = windowEndUtc.atOffset(ZoneOffset.UTC);
+        // the cached prefix answers the window if it holds enough lessons or already runs past it
+        UserAgenda agenda = userAgendaCache.get(userId,
+                cached -> !cached.from().isAfter(nowCutoff)
+                        && (cached.complete()
+                        || within(cached, nowCutoff, windowEndUtc).size() >= safeLimit
+                        || cached.lessons().get(cached.lessons().size() - 1).getStartsAtUtc().isAfter(windowEndUtc)),
+                () -> loadAgenda(userId, nowCutoff));
+        List<LessonSummaryItem> lessons = within(agenda, nowCutoff, windowEndUtc);
+
+        if (lessons.isEmpty()) {
+            logEmptyResult(userId, nowUtc, nowCutoff);
+            return List.of();
+        }
+
+        return lessons.size() > safeLimit ? lessons.subList(0, safeLimit) : lessons;
+    }
 
-        List<Lesson> lessons = lessonRepository.findDashboardUpcoming(
+    /**
+     * The user's next {@link #MAX_LIMIT} lessons from {@code fromInclusive} with no upper bound,
+     * which covers both the next-lesson and the upcoming-window questions.
+     */
+    private UserAgenda loadAgenda(UUID userId, Instant fromInclusive) {
+        OffsetDateTime from = fromInclusive.atOffset(ZoneOffset.UTC);
+        List<Lesson> stored = findNextStored(userId, from, MAX_LIMIT);
+        List<Lesson> virtual = recurringOccurrenceService.expandForUser(
                 userId,
                 DASHBOARD_UPCOMING_STATUSES,
-                fromInclusive,
-                toInclusive,
-                PageRequest.of(0, safeLimit)
+                from,
+                null,
+                MAX_LIMIT
         );
+        List<Lesson> lessons = RecurringOccurrenceService.mergeByStart(stored, virtual, MAX_LIMIT);
+        return new UserAgenda(fromInclusive, lessons.stream().map(this::toSummary).toList(), lessons.size() < MAX_LIMIT);
+    }
 
-        if (lessons.isEmpty()) {
-            logEmptyResult(userId, nowUtc, nowCutoff);
-            return List.of();
+    /**
+     * The user's next stored lessons as tutor or student. The split path reads each side in index
+     * order and stops at {@code limit}; the single query has to OR two indexes and sort the union.
+     */
+    List<Lesson> findNextStored(UUID userId, OffsetDateTime fromInclusive, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        if (!splitUserQueries) {
+            return lessonRepository.findDashboardNextCandidates(userId, DASHBOARD_UPCOMING_STATUSES, fromInclusive, page);
+        }
+        List<Lesson> asTutor = lessonRepository.findDashboardNextCandidatesAsTutor(userId, DASHBOARD_UPCOMING_STATUSES, fromInclusive, page);
+        List<Lesson> asStudent = lessonRepository.findDashboardNextCandidatesAsStudent(userId, DASHBOARD_UPCOMING_STATUSES, fromInclusive, page);
+        return mergeDistinct(asTutor, asStudent, limit);
+    }
+
+    /**
+     * Merges two lists already in {@link RecurringOccurrenceService#KEYSET_ORDER}, stopping at {@code limit}.
+     * A lesson a user teaches themselves comes back from both sides and is kept once.
+     */
+    static List<Lesson> mergeDistinct(List<Lesson> left, List<Lesson> right, int limit) {
+        List<Lesson> merged = new ArrayList<>(Math.min(limit, left.size() + right.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < left.size() || j < right.size())) {
+            Lesson next;
+            if (j >= right.size()) {
+                next = left.get(i++);
+            } else if (i >= left.size()) {
+                next = right.get(j++);
+            } else {
+                int order = RecurringOccurrenceService.KEYSET_ORDER.compare(left.get(i), right.get(j));
+                next = order <= 0 ? left.get(i++) : right.get(j++);
+                if (order == 0) {
+                    j++;
+                }
+            }
+            merged.add(next);
         }
+        return merged;
+    }
 
-        return lessons.stream().map(this::toSummary).toList();
+    private static List<LessonSummaryItem> startingFrom(UserAgenda agenda, Instant fromInclusive) {
+        return agenda.lessons().stream()
+                .filter(lesson -> !lesson.getStartsAtUtc().isBefore(fromInclusive))
+                .toList();
     }
 
+    private static List<LessonSummaryItem> within(UserAgenda agenda, Instant fromInclusive, Instant toInclusive) {
+        return startingFrom(agenda, fromInclusive).stream()
+                .filter(lesson -> !lesson.getStartsAtUtc().isAfter(toInclusive))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
     public TutorDashboardActionsSummary getTutorActions(UUID tutorId) {
-        Instant nowUtc = Instant.now(clock);
-        Instant nowCutoff = nowUtc.minus(NOW_CUTOFF_MINUTES, ChronoUnit.MINUTES);
+        return new TutorDashboardActionsSummary(countMissingNotes(tutorId), countStudentsWithoutNextLesson(tutorId));
+    }
 
-        OffsetDateTime nowOffsetUtc = nowUtc.atOffset(ZoneOffset.UTC);
+    /** Completed lessons of the last {@link #MISSING_NOTES_WINDOW_DAYS} days without notes. */
+    @Transactional(readOnly = true)
+    public long countMissingNotes(UUID tutorId) {
+        Instant nowUtc = Instant.now(clock);
         OffsetDateTime missingNotesFrom = nowUtc.minus(MISSING_NOTES_WINDOW_DAYS, ChronoUnit.DAYS).atOffset(ZoneOffset.UTC);
-        OffsetDateTime recentFrom = nowUtc.minus(WITHOUT_NEXT_LESSON_WINDOW_DAYS, ChronoUnit.DAYS).atOffset(ZoneOffset.UTC);
-        OffsetDateTime upcomingFrom = nowCutoff.atOffset(ZoneOffset.UTC);
 
-        long missingNotesCount = lessonRepository.countDashboardMissingNotesForTutor(
+        return lessonRepository.countDashboardMissingNotesForTutor(
                 tutorId,
                 LessonStatus.COMPLETED,
                 missingNotesFrom,
-                nowOffsetUtc
+                nowUtc.atOffset(ZoneOffset.UTC)
         );
+    }
+
+    /**
+     * Students seen in the last {@link #WITHOUT_NEXT_LESSON_WINDOW_DAYS} days with nothing booked,
+     * counted from the tutor's rows in {@code tutor_student_relations}.
+     */
+    @Transactional(readOnly = true)
+    public long countStudentsWithoutNextLesson(UUID tutorId) {
+        Instant nowUtc = Instant.now(clock);
+        Instant nowCutoff = nowUtc.minus(NOW_CUTOFF_MINUTES, ChronoUnit.MINUTES);
+        OffsetDateTime recentFrom = nowUtc.minus(WITHOUT_NEXT_LESSON_WINDOW_DAYS, ChronoUnit.DAYS).atOffset(ZoneOffset.UTC);
 
-        long studentsWithoutNextLessonCount = lessonRepository.countDashboardStudentsWithoutNextLesson(
+        return tutorStudentRelationRepository.countWithoutNextLesson(
                 tutorId,
-                TUTOR_RECENT_ACTIVITY_STATUSES,
                 recentFrom,
-                nowOffsetUtc,
-                DASHBOARD_UPCOMING_STATUSES,
-                upcomingFrom
+                nowUtc.atOffset(ZoneOffset.UTC),
+                nowCutoff.atOffset(ZoneOffset.UTC)
         );
+    }
+
+    /** The students behind {@link #countStudentsWithoutNextLesson}, most recently seen first. */
+    @Transactional(readOnly = true)
+    public StudentsWithoutNextLessonPage getStudentsWithoutNextLesson(UUID tutorId, Integer limit, String cursor) {
+        int pageSize = sanitizeStudentsPageSize(limit);
+        RelationCursor after = decodeCursor(cursor);
+        Instant nowUtc = Instant.now(clock);
+        OffsetDateTime now = nowUtc.atOffset(ZoneOffset.UTC);
+        OffsetDateTime nowCutoff = nowUtc.minus(NOW_CUTOFF_MINUTES, ChronoUnit.MINUTES).atOffset(ZoneOffset.UTC);
+        OffsetDateTime recentFrom = nowUtc.minus(WITHOUT_NEXT_LESSON_WINDOW_DAYS, ChronoUnit.DAYS).atOffset(ZoneOffset.UTC);
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+
+        List<TutorStudentRelation> relations = after == null
+                ? tutorStudentRelationRepository.findWithoutNextLesson(tutorId, recentFrom, now, nowCutoff, page)
+                : tutorStudentRelationRepository.findWithoutNextLessonAfter(tutorId, recentFrom, now, nowCutoff,
+                        after.lastLessonAt(), after.studentId(), page);
+
+        boolean hasMore = relations.size() > pageSize;
+        List<TutorStudentRelation> rows = hasMore ? relations.subList(0, pageSize) : relations;
+        List<StudentWithoutNextLessonItem> items = rows.stream()
+                .map(row -> new StudentWithoutNextLessonItem(row.getStudentId(), row.getLastLessonId(),
+                        row.getLastLessonAt().toInstant(), row.getLastLessonStatus()))
+                .toList();
+        String nextCursor = hasMore ? encodeCursor(rows.get(rows.size() - 1)) : null;
+        return new StudentsWithoutNextLessonPage(items, nextCursor, hasMore);
+    }
 
-        return new TutorDashboardActionsSummary(missingNotesCount, studentsWithoutNextLessonCount);
+    private static String encodeCursor(TutorStudentRelation relation) {
+        String raw = relation.getLastLessonAt().toString() + "|" + relation.getStudentId();
+        return Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
+    private static RelationCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 2);
+            return new RelationCursor(OffsetDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (Exception e) {
+            log.warn("Invalid students cursor: {}", cursor);
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private record RelationCursor(OffsetDateTime lastLessonAt, UUID studentId) {}
+
+    @Transactional(readOnly = true)
     public StudentDashboardMetricsSummary getStudentMetrics(UUID studentId) {
         Instant nowUtc = Instant.now(clock);
         YearMonth month = YearMonth.from(nowUtc.atOffset(ZoneOffset.UTC));
@@ -141,20 +280,30 @@ public class LessonDashboardService {
         return new StudentDashboardMetricsSummary(completedThisMonth);
     }
 
+    @Transactional(readOnly = true)
     public List<LessonSummaryItem> getTutorTodayAgenda(UUID tutorId, String timezone, Integer limit) {
-        ZoneId zone = resolveZone(timezone);
+        ZoneId zone = TimeZones.resolveOrUtc(timezone);
         int safeLimit = sanitizeTutorAgendaLimit(limit);
 
         LocalDate localToday = Instant.now(clock).atZone(zone).toLocalDate();
         Instant fromUtc = localToday.atStartOfDay(zone).toInstant();
         Instant toUtc = localToday.plusDays(1).atStartOfDay(zone).toInstant();
 
-        List<Lesson> lessons = lessonRepository.findDashboardTutorTodayAgenda(
+        List<Lesson> stored = lessonRepository.findDashboardTutorTodayAgenda(
                 tutorId,
                 fromUtc.atOffset(ZoneOffset.UTC),
                 toUtc.atOffset(ZoneOffset.UTC),
                 PageRequest.of(0, safeLimit)
         );
+        List<Lesson> virtual = recurringOccurrenceService.expand(
+                tutorId,
+                null,
+                null,
+                fromUtc.atOffset(ZoneOffset.UTC),
+                toUtc.minusNanos(1000).atOffset(ZoneOffset.UTC),
+                safeLimit
+        );
+        List<Lesson> lessons = RecurringOccurrenceService.mergeByStart(stored, virtual, safeLimit);
 
         return lessons.stream().map(this::toSummary).toList();
     }
@@ -166,22 +315,18 @@ public class LessonDashboardService {
         return Math.min(requestedLimit, MAX_LIMIT);
     }
 
-    private int sanitizeTutorAgendaLimit(Integer requestedLimit) {
+    private int sanitizeStudentsPageSize(Integer requestedLimit) {
         if (requestedLimit == null || requestedLimit <= 0) {
-            return DEFAULT_TUTOR_AGENDA_LIMIT;
+            return DEFAULT_STUDENTS_PAGE_SIZE;
         }
-        return Math.min(requestedLimit, MAX_LIMIT);
+        return Math.min(requestedLimit, MAX_STUDENTS_PAGE_SIZE);
     }
 
-    private ZoneId resolveZone(String timezone) {
-        if (timezone == null || timezone.isBlank()) {
-            return ZoneOffset.UTC;
-        }
-        try {
-            return ZoneId.of(timezone.trim());
-        } catch (DateTimeException ex) {
-            return ZoneOffset.UTC;
+    private int sanitizeTutorAgendaLimit(Integer requestedLimit) {
+        if (requestedLimit == null || requestedLimit <= 0) {
+            return DEFAULT_TUTOR_AGENDA_LIMIT;
         }
+        return Math.min(requestedLimit, MAX_LIMIT);
     }
 
     private int sanitizeWindowDays(Integer requestedWindowDays) {
@@ -211,6 +356,10 @@ public class LessonDashboardService {
     }
 
     private void logEmptyResult(UUID userId, Instant nowUtc, Instant nowCutoff) {
+        // the count is diagnostic only; keep it off the polling path unless someone is looking
+        if (!log.isDebugEnabled()) {
+            return;
+        }
         long totalLessonsCount = lessonRepository.countByStudentIdOrTutorId(userId, userId);
         log.debug(
                 "Dashboard lessons empty for userId={}, nowUtc={}, nowCutoff={}, allowedStatuses={}, totalLessonsForUser={}",
@@ -1,8 +1,13 @@
 package com.mytutorplatform.lessonsservice.service;
 
-import com.mytutorplatform.lessonsservice.kafka.producer.LessonEventProducer;
+import com.mytutorplatform.lessonsservice.kafka.producer.LessonEventOutbox;
 import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
 import com.mytutorplatform.lessonsservice.model.kafka.Event;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonBatchEvent;
+import com.mytutorplatform.lessonsservice.repository.projection.SeriesLessonRow;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurringOccurrenceService;
 import org.springframework.stereotype.Service;
 
 import java.time.OffsetDateTime;
@@ -10,19 +15,73 @@ import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Builds the lesson events of a write and adds them to the outbox in its transaction. Series
+ * operations produce one {@link LessonBatchEvent} with a delta per lesson rather than a message
+ * per lesson.
+ */
 @Service
 public class LessonEventService {
 
-    private final LessonEventProducer lessonEventProducer;
+    private final LessonEventOutbox lessonEventOutbox;
 
-    public LessonEventService(LessonEventProducer lessonEventProducer) {
-        this.lessonEventProducer = lessonEventProducer;
+    public LessonEventService(LessonEventOutbox lessonEventOutbox) {
+        this.lessonEventOutbox = lessonEventOutbox;
     }
 
+    /** Call before the lesson takes the new start, inside the transaction that moves it. */
     public void handleLessonRescheduled(Lesson lesson, OffsetDateTime newDateTime) {
         Event event = buildEvent(lesson, newDateTime);
 
-        lessonEventProducer.sendLessonUpdateEvent(event);
+        lessonEventOutbox.add(event);
+    }
+
+    /** Every occurrence of the new series, the stored first one under its own id. */
+    public void handleSeriesCreated(RecurringLessonSeries series, Lesson firstLesson, List<OffsetDateTime> starts) {
+        LessonBatchEvent batch = buildBatch(LessonBatchEvent.SERIES_CREATED, series, series.getStartDateTime());
+        for (OffsetDateTime start : starts) {
+            UUID lessonId = start.isEqual(firstLesson.getDateTime())
+                    ? firstLesson.getId()
+                    : RecurringOccurrenceService.virtualOccurrenceId(series.getSeriesId(), start);
+            batch.getLessons().add(buildDelta("LESSON_SCHEDULED", lessonId, series.getTutorId(), series.getStudentId(), start, null));
+        }
+        lessonEventOutbox.add(batch);
+    }
+
+    /** Call with the stored occurrences read before the shift; completed ones do not move. */
+    public void handleSeriesShifted(RecurringLessonSeries series, OffsetDateTime from, List<SeriesLessonRow> lessons,
+                                    long shiftMinutes) {
+        LessonBatchEvent batch = buildBatch(LessonBatchEvent.SERIES_SHIFTED, series, from);
+        for (SeriesLessonRow lesson : lessons) {
+            if (lesson.getStatus() != LessonStatus.COMPLETED) {
+                batch.getLessons().add(buildDelta("LESSON_RESCHEDULED", lesson.getId(), series.getTutorId(),
+                        lesson.getStudentId(), lesson.getDateTime().plusMinutes(shiftMinutes), lesson.getDateTime()));
+            }
+        }
+        lessonEventOutbox.add(batch);
+    }
+
+    /** Call with the stored occurrences read before the update; completed ones keep their status. */
+    public void handleSeriesStatusChanged(RecurringLessonSeries series, OffsetDateTime from, List<SeriesLessonRow> lessons,
+                                          LessonStatus status) {
+        LessonBatchEvent batch = buildBatch(LessonBatchEvent.SERIES_STATUS_CHANGED, series, from);
+        for (SeriesLessonRow lesson : lessons) {
+            if (lesson.getStatus() != LessonStatus.COMPLETED) {
+                batch.getLessons().add(buildDelta("LESSON_" + status.name(), lesson.getId(), series.getTutorId(),
+                        lesson.getStudentId(), lesson.getDateTime(), null));
+            }
+        }
+        lessonEventOutbox.add(batch);
+    }
+
+    /** Call with the stored occurrences read before the delete. */
+    public void handleSeriesDeleted(RecurringLessonSeries series, OffsetDateTime from, List<SeriesLessonRow> lessons) {
+        LessonBatchEvent batch = buildBatch(LessonBatchEvent.SERIES_DELETED, series, from);
+        for (SeriesLessonRow lesson : lessons) {
+            batch.getLessons().add(buildDelta("LESSON_DELETED", lesson.getId(), series.getTutorId(),
+                    lesson.getStudentId(), lesson.getDateTime(), null));
+        }
+        lessonEventOutbox.add(batch);
     }
 
     private Event buildEvent(Lesson lesson, OffsetDateTime newDateTime) {
@@ -37,4 +96,26 @@ public class LessonEventService {
 
         return event;
     }
+
+    private LessonBatchEvent buildBatch(String operation, RecurringLessonSeries series, OffsetDateTime from) {
+        LessonBatchEvent batch = new LessonBatchEvent();
+        batch.setOperation(operation);
+        batch.setTimestamp(new Date());
+        batch.setTutorId(series.getTutorId());
+        batch.setSeriesId(series.getSeriesId());
+        batch.setFrom(from);
+        return batch;
+    }
+
+    private Event buildDelta(String eventType, UUID lessonId, UUID tutorId, UUID studentId,
+                             OffsetDateTime startTime, OffsetDateTime oldStartTime) {
+        Event event = new Event();
+        event.setEventType(eventType);
+        event.setLessonId(lessonId);
+        event.setTutorId(tutorId);
+        event.setStudentIds(studentId != null ? new UUID[]{studentId} : new UUID[0]);
+        event.setStartTime(startTime);
+        event.setOldStartTime(oldStartTime);
+        return event;
+    }
 }
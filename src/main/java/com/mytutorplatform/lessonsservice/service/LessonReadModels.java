@@ -0,0 +1,32 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.service.schedule.TutorScheduleIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * The read models kept from the lessons of a tutor and student: the tutor's schedule index, both
+ * agendas and schedule versions, and the pair's relation row. A writer of {@code lessons} outside
+ * the lesson services reports its writes here, inside the writing transaction, so it cannot miss
+ * one of them.
+ */
+@Component
+@RequiredArgsConstructor
+public class LessonReadModels {
+
+    private final TutorScheduleIndex tutorScheduleIndex;
+    private final UserAgendaCache userAgendaCache;
+    private final UserScheduleVersions userScheduleVersions;
+    private final TutorStudentRelationService tutorStudentRelationService;
+
+    /** A lesson was created or changed; the tutor's index takes it in place. */
+    public void onLessonWritten(Lesson lesson) {
+        tutorScheduleIndex.onLessonSaved(lesson);
+        userAgendaCache.invalidate(lesson.getTutorId(), lesson.getStudentId());
+        userScheduleVersions.bump(lesson.getTutorId(), lesson.getStudentId());
+        tutorStudentRelationService.touch(lesson.getTutorId(), lesson.getStudentId());
+    }
+}
@@ -0,0 +1,92 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Feeds every row-level insert, update and delete of a {@link Lesson} into {@link LessonRollupService}.
+ * Hibernate hands over the state the row had before the write, so an update moves the lesson from
+ * its old bucket to its new one without a read, and an update that changes neither participants,
+ * status, start nor duration nets out to nothing.
+ */
+@Component
+@RequiredArgsConstructor
+public class LessonRollupListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final LessonRollupService lessonRollupService;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Lesson) {
+            count(event.getSession(), event.getPersister(), event.getState(), 1);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Lesson && event.getOldState() != null) {
+            count(event.getSession(), event.getPersister(), event.getOldState(), -1);
+            count(event.getSession(), event.getPersister(), event.getState(), 1);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Lesson && event.getDeletedState() != null) {
+            count(event.getSession(), event.getPersister(), event.getDeletedState(), -1);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void count(EventSource session, EntityPersister persister, Object[] state, int sign) {
+        String[] names = persister.getPropertyNames();
+        Object duration = state[indexOf(names, "duration")];
+        lessonRollupService.record(
+                session,
+                (UUID) state[indexOf(names, "tutorId")],
+                (UUID) state[indexOf(names, "studentId")],
+                (LessonStatus) state[indexOf(names, "status")],
+                (OffsetDateTime) state[indexOf(names, "dateTime")],
+                duration != null ? (Integer) duration : 0,
+                sign
+        );
+    }
+
+    private static int indexOf(String[] names, String property) {
+        return Arrays.asList(names).indexOf(property);
+    }
+}
@@ -0,0 +1,256 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.service.lock.AdvisoryLocks;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Maintains {@code lesson_rollups}. Row-level lesson writes arrive from {@link LessonRollupListener}
+ * as +1/-1 deltas; bulk statements that bypass the entity events {@link #touch} the pair instead,
+ * which recomputes all of its buckets from {@code lessons} and its archived months. Both are applied
+ * once per transaction, from Hibernate's before-completion hook, i.e. after the final flush and
+ * before the commit, so the rollup commits or rolls back together with the lessons it counts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LessonRollupService {
+
+    static final long BUCKET_SECONDS = 15 * 60;
+
+    private static final String APPLY_DELTA = """
+            INSERT INTO lesson_rollups (tutor_id, status, student_id, bucket_start, lesson_count, minutes)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (tutor_id, status, student_id, bucket_start) DO UPDATE SET
+                lesson_count = lesson_rollups.lesson_count + EXCLUDED.lesson_count,
+                minutes = lesson_rollups.minutes + EXCLUDED.minutes
+            """;
+    private static final String DELETE_IF_EMPTY = """
+            DELETE FROM lesson_rollups
+            WHERE tutor_id = ? AND status = ? AND student_id = ? AND bucket_start = ? AND lesson_count <= 0
+            """;
+    private static final String AGGREGATE_LESSONS = """
+            SELECT tutor_id, status, student_id,
+                   date_bin('15 minutes', date_time, TIMESTAMPTZ '2001-01-01 00:00:00+00'),
+                   COUNT(*), COALESCE(SUM(duration), 0)
+            FROM %s
+            """;
+    /** Months archived out of a partitioned {@code lessons} keep counting towards the rollups. */
+    private static final String LESSONS_AND_ARCHIVE = """
+            (SELECT tutor_id, status, student_id, date_time, duration FROM lessons
+             UNION ALL
+             SELECT tutor_id, status, student_id, date_time, duration FROM lessons_archive) lessons
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLocks advisoryLocks;
+
+    @Value("${lessons.rollups.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    /** Start of the quarter hour {@code dateTime} falls into. */
+    public static OffsetDateTime bucketOf(OffsetDateTime dateTime) {
+        long epochSecond = dateTime.toEpochSecond();
+        return Instant.ofEpochSecond(Math.floorDiv(epochSecond, BUCKET_SECONDS) * BUCKET_SECONDS).atOffset(ZoneOffset.UTC);
+    }
+
+    /** Counts a written ({@code sign} 1) or removed ({@code sign} -1) lesson towards its bucket. */
+    void record(SessionImplementor session, UUID tutorId, UUID studentId, LessonStatus status,
+                OffsetDateTime dateTime, int duration, int sign) {
+        if (tutorId == null || studentId == null || status == null || dateTime == null) {
+            return;
+        }
+        Key key = new Key(tutorId, status, studentId, bucketOf(dateTime));
+        long[] delta = pending(session).deltas.computeIfAbsent(key, ignored -> new long[2]);
+        delta[0] += sign;
+        delta[1] += (long) sign * duration;
+    }
+
+    /**
+     * Moves a lesson between status buckets after a bulk statement changed its status. Unlike
+     * {@link #touch} this costs two deltas, not a recompute of the pair.
+     */
+    public void recordStatusChange(UUID tutorId, UUID studentId, OffsetDateTime dateTime, int duration,
+                                   LessonStatus previousStatus, LessonStatus status) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        record(session, tutorId, studentId, previousStatus, dateTime, duration, -1);
+        record(session, tutorId, studentId, status, dateTime, duration, 1);
+    }
+
+    /** Recomputes every bucket of the pair at the end of the transaction, after bulk statements on its lessons. */
+    public void touch(UUID tutorId, UUID studentId) {
+        if (tutorId == null || studentId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionTemplate.executeWithoutResult(status -> recompute(new TutorStudentPair(tutorId, studentId)));
+            return;
+        }
+        pending(entityManager.unwrap(SessionImplementor.class)).recomputed.add(new TutorStudentPair(tutorId, studentId));
+    }
+
+    /**
+     * Rebuilds the table from the existing lessons when it is empty, e.g. on the first start after the
+     * table was added, or still holds the hour-wide buckets of earlier versions: those have no row
+     * off the full hour although some lesson starts in the second half of an hour or later.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        Boolean current = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM lesson_rollups)
+                   AND (EXISTS (SELECT 1 FROM lesson_rollups
+                                WHERE extract(epoch FROM bucket_start)::bigint %% 3600 <> 0)
+                        OR NOT EXISTS (SELECT 1 FROM %s
+                                       WHERE extract(epoch FROM date_time)::bigint %% 3600 >= ?))
+                """.formatted(lessons()), Boolean.class, BUCKET_SECONDS);
+        if (Boolean.TRUE.equals(current)) {
+            return;
+        }
+        int rows = rebuild();
+        if (rows > 0) {
+            log.info("Rebuilt {} lesson rollup rows", rows);
+        }
+    }
+
+    /**
+     * Rebuilds the whole table from {@code lessons}. Concurrent writers wait on the table lock
+     * and apply their deltas on top of the rebuilt rows, which do not include their lessons yet.
+     */
+    public int rebuild() {
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("LOCK TABLE lesson_rollups IN EXCLUSIVE MODE");
+            jdbcTemplate.update("DELETE FROM lesson_rollups");
+            return jdbcTemplate.update("INSERT INTO lesson_rollups (tutor_id, status, student_id, bucket_start, lesson_count, minutes) "
+                    + aggregateLessons() + " GROUP BY 1, 2, 3, 4");
+        });
+        return rows != null ? rows : 0;
+    }
+
+    private void apply(Pending pending) {
+        Map<TutorStudentPair, List<Map.Entry<Key, long[]>>> deltasByPair = new HashMap<>();
+        for (Map.Entry<Key, long[]> entry : pending.deltas.entrySet()) {
+            TutorStudentPair pair = entry.getKey().pair();
+            long[] delta = entry.getValue();
+            if ((delta[0] != 0 || delta[1] != 0) && !pending.recomputed.contains(pair)) {
+                deltasByPair.computeIfAbsent(pair, ignored -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        Map<TutorStudentPair, Boolean> ordered = new TreeMap<>(TutorStudentPair.LOCK_ORDER);
+        deltasByPair.keySet().forEach(pair -> ordered.put(pair, false));
+        pending.recomputed.forEach(pair -> ordered.put(pair, true));
+
+        for (Map.Entry<TutorStudentPair, Boolean> entry : ordered.entrySet()) {
+            TutorStudentPair pair = entry.getKey();
+            if (entry.getValue()) {
+                recompute(pair);
+            } else {
+                lock(pair);
+                applyDeltas(deltasByPair.get(pair));
+            }
+        }
+    }
+
+    private void applyDeltas(List<Map.Entry<Key, long[]>> deltas) {
+        jdbcTemplate.batchUpdate(APPLY_DELTA, deltas, deltas.size(), (statement, entry) -> {
+            Key key = entry.getKey();
+            statement.setObject(1, key.tutorId());
+            statement.setString(2, key.status().name());
+            statement.setObject(3, key.studentId());
+            statement.setObject(4, key.bucketStart());
+            statement.setLong(5, entry.getValue()[0]);
+            statement.setLong(6, entry.getValue()[1]);
+        });
+        List<Key> shrunk = deltas.stream()
+                .filter(entry -> entry.getValue()[0] < 0)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!shrunk.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_IF_EMPTY, shrunk, shrunk.size(), (statement, key) -> {
+                statement.setObject(1, key.tutorId());
+                statement.setString(2, key.status().name());
+                statement.setObject(3, key.studentId());
+                statement.setObject(4, key.bucketStart());
+            });
+        }
+    }
+
+    private void recompute(TutorStudentPair pair) {
+        lock(pair);
+        jdbcTemplate.update("DELETE FROM lesson_rollups WHERE tutor_id = ? AND student_id = ?", pair.tutorId(), pair.studentId());
+        jdbcTemplate.update("INSERT INTO lesson_rollups (tutor_id, status, student_id, bucket_start, lesson_count, minutes) "
+                        + aggregateLessons() + " WHERE tutor_id = ? AND student_id = ? GROUP BY 1, 2, 3, 4",
+                pair.tutorId(), pair.studentId());
+    }
+
+    private String aggregateLessons() {
+        return AGGREGATE_LESSONS.formatted(lessons());
+    }
+
+    private String lessons() {
+        Boolean archived = jdbcTemplate.queryForObject("SELECT to_regclass('lessons_archive') IS NOT NULL", Boolean.class);
+        return Boolean.TRUE.equals(archived) ? LESSONS_AND_ARCHIVE : "lessons";
+    }
+
+    /** Serializes writers of one pair so a recompute never races a delta on the same rows. */
+    private void lock(TutorStudentPair pair) {
+        advisoryLocks.lock(AdvisoryLocks.Space.LESSON_ROLLUPS, pair.lockKey());
+    }
+
+    private Pending pending(SessionImplementor session) {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(LessonRollupService.this);
+                }
+            });
+            // runs after Hibernate's final flush, so deltas of entities flushed at commit are included
+            session.getActionQueue().registerProcess(completingSession -> apply(created));
+            pending = created;
+        }
+        return pending;
+    }
+
+    private record Key(UUID tutorId, LessonStatus status, UUID studentId, OffsetDateTime bucketStart) {
+        TutorStudentPair pair() {
+            return new TutorStudentPair(tutorId, studentId);
+        }
+    }
+
+    private static final class Pending {
+        private final Map<Key, long[]> deltas = new HashMap<>();
+        private final Set<TutorStudentPair> recomputed = new LinkedHashSet<>();
+    }
+}
@@ -0,0 +1,148 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.model.response.SeriesOperationResponse;
+import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonExceptionRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonSeriesRepository;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurringOccurrenceService;
+import com.mytutorplatform.lessonsservice.service.schedule.CurrentLessonIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.TutorScheduleIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Operations on every occurrence of a series from a given start onwards. Stored rows are changed
+ * with one UPDATE or DELETE each, without loading them, and child rows are removed by the
+ * database's ON DELETE CASCADE; the series rule is adjusted so expanded occurrences agree.
+ * Completed lessons are never shifted or re-statused, matching single-lesson updates. Each
+ * operation publishes one series event listing the stored lessons it changed.
+ */
+@Service
+@RequiredArgsConstructor
+public class LessonSeriesService {
+
+    private final RecurringLessonSeriesRepository recurringLessonSeriesRepository;
+    private final RecurringLessonExceptionRepository recurringLessonExceptionRepository;
+    private final LessonRepository lessonRepository;
+    private final RecurringOccurrenceService recurringOccurrenceService;
+    private final TutorScheduleIndex tutorScheduleIndex;
+    private final UserAgendaCache userAgendaCache;
+    private final UserScheduleVersions userScheduleVersions;
+    private final TutorStudentRelationService tutorStudentRelationService;
+    private final CurrentLessonIndex currentLessonIndex;
+    private final LessonRollupService lessonRollupService;
+    private final LessonEventService lessonEventService;
+    private final Clock clock;
+
+    @Transactional
+    public SeriesOperationResponse shiftFrom(UUID seriesId, OffsetDateTime from, Long shiftMinutes) {
+        if (shiftMinutes == null || shiftMinutes == 0) {
+            throw new IllegalArgumentException("shiftMinutes must be a non-zero number of minutes");
+        }
+        RecurringLessonSeries series = lockSeries(seriesId);
+        OffsetDateTime fromInclusive = resolveFrom(from);
+
+        lessonEventService.handleSeriesShifted(series, fromInclusive,
+                lessonRepository.findSeriesLessonsFrom(series, fromInclusive), shiftMinutes);
+        recurringOccurrenceService.shiftRule(series, fromInclusive, shiftMinutes);
+        int affected = lessonRepository.shiftSeriesFrom(series, fromInclusive, shiftMinutes,
+                LessonStatus.COMPLETED, LocalDateTime.now());
+
+        return new SeriesOperationResponse(seriesId, affected, false);
+    }
+
+    /**
+     * Sets the status of stored occurrences. Cancelling also ends the rule at {@code from}, since
+     * expanded occurrences are always scheduled.
+     */
+    @Transactional
+    public SeriesOperationResponse updateStatusFrom(UUID seriesId, OffsetDateTime from, LessonStatus status) {
+        if (status == null) {
+            throw new IllegalArgumentException("status is required");
+        }
+        RecurringLessonSeries series = lockSeries(seriesId);
+        OffsetDateTime fromInclusive = resolveFrom(from);
+
+        lessonEventService.handleSeriesStatusChanged(series, fromInclusive,
+                lessonRepository.findSeriesLessonsFrom(series, fromInclusive), status);
+        if (status == LessonStatus.CANCELED) {
+            recurringOccurrenceService.endSeries(series, fromInclusive.minus(1, ChronoUnit.MICROS));
+        }
+        int affected = lessonRepository.updateSeriesStatusFrom(series, fromInclusive, status,
+                LessonStatus.COMPLETED, LocalDateTime.now());
+
+        return new SeriesOperationResponse(seriesId, affected, false);
+    }
+
+    /**
+     * Deletes occurrences starting at or after {@code from} and ends the rule there. The series
+     * itself is removed once no stored lesson refers to it.
+     */
+    @Transactional
+    public SeriesOperationResponse deleteFrom(UUID seriesId, OffsetDateTime from) {
+        RecurringLessonSeries series = lockSeries(seriesId);
+        OffsetDateTime fromInclusive = resolveFrom(from);
+
+        lessonEventService.handleSeriesDeleted(series, fromInclusive,
+                lessonRepository.findSeriesLessonsFrom(series, fromInclusive));
+        recurringOccurrenceService.endSeries(series, fromInclusive.minus(1, ChronoUnit.MICROS));
+        int deleted = lessonRepository.deleteSeriesFrom(series, fromInclusive);
+
+        boolean seriesDeleted = !lessonRepository.existsBySeries(series);
+        if (seriesDeleted) {
+            recurringLessonExceptionRepository.deleteBySeriesId(seriesId);
+            recurringLessonSeriesRepository.deleteById(seriesId);
+        }
+        return new SeriesOperationResponse(seriesId, deleted, seriesDeleted);
+    }
+
+    private RecurringLessonSeries lockSeries(UUID seriesId) {
+        RecurringLessonSeries series = recurringLessonSeriesRepository.findByIdForUpdate(seriesId)
+                .orElseThrow(() -> new EntityNotFoundException("Lesson series not found"));
+        // series written before rule-based expansion carry no tutor, so every entry is dropped
+        tutorScheduleIndex.evict(series.getTutorId());
+        userAgendaCache.invalidate(series.getTutorId(), series.getStudentId());
+        userScheduleVersions.bump(series.getTutorId(), series.getStudentId());
+        touchReadModels(series);
+        currentLessonIndex.reloadAfterCommit();
+        return series;
+    }
+
+    /**
+     * The bulk statements bypass entity events, so the pair's read models are recomputed at commit,
+     * after they have run. Series written before rule-based expansion carry no participants; any of
+     * their lessons has them.
+     */
+    private void touchReadModels(RecurringLessonSeries series) {
+        UUID tutorId = series.getTutorId();
+        UUID studentId = series.getStudentId();
+        if (tutorId == null) {
+            Optional<Lesson> anyLesson = lessonRepository.findFirstBySeries(series);
+            if (anyLesson.isEmpty()) {
+                return;
+            }
+            tutorId = anyLesson.get().getTutorId();
+            studentId = anyLesson.get().getStudentId();
+        }
+        tutorStudentRelationService.touch(tutorId, studentId);
+        lessonRollupService.touch(tutorId, studentId);
+    }
+
+    private OffsetDateTime resolveFrom(OffsetDateTime from) {
+        return from != null ? from : OffsetDateTime.now(clock);
+    }
+}
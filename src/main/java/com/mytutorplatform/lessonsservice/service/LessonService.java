@@ -2,121 +2,332 @@ package com.mytutorplatform.lessonsservice.service;
 
 import com.mytutorplatform.lessonsservice.mapper.LessonsMapper;
 import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonField;
+import com.mytutorplatform.lessonsservice.model.LessonOrderKey;
 import com.mytutorplatform.lessonsservice.model.LessonStatus;
 import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
 import com.mytutorplatform.lessonsservice.model.request.CreateLessonRequest;
 import com.mytutorplatform.lessonsservice.model.request.UpdateLessonRequest;
+import com.mytutorplatform.lessonsservice.model.response.FreeSlot;
 import com.mytutorplatform.lessonsservice.model.response.LessonLight;
+import com.mytutorplatform.lessonsservice.model.response.LessonLookupResponse;
 import com.mytutorplatform.lessonsservice.model.response.LessonBillingFeedItem;
+import com.mytutorplatform.lessonsservice.model.response.LessonBillingStudentTotal;
+import com.mytutorplatform.lessonsservice.model.response.LessonBillingTotals;
+import com.mytutorplatform.lessonsservice.model.response.LessonPage;
+import com.mytutorplatform.lessonsservice.model.response.LessonView;
 import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.LessonRollupRepository;
 import com.mytutorplatform.lessonsservice.repository.RecurringLessonSeriesRepository;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonBillingRow;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonRollupBucketRow;
 import com.mytutorplatform.lessonsservice.repository.specifications.LessonsSpecificationsBuilder;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurrenceExpander;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurringOccurrenceService;
+import com.mytutorplatform.lessonsservice.service.schedule.CurrentLessonIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.TutorScheduleIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import com.mytutorplatform.lessonsservice.service.stream.LessonEventPublisher;
+import com.mytutorplatform.lessonsservice.util.TimeZones;
 import com.mytutorplatform.lessonsservice.validation.LessonValidator;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.YearMonth;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LessonService {
 
+    private static final int BILLING_STREAM_CLEAR_INTERVAL = 500;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Direction.ASC, "dateTime", "id");
+    private static final Set<LessonField> SCHEDULE_FIELDS = EnumSet.of(
+            LessonField.ID, LessonField.DATE_TIME, LessonField.END_DATE, LessonField.DURATION, LessonField.TUTOR_ID);
+    /** Columns a calendar feed renders; occurrence ids are stable, so the id doubles as the event UID. */
+    private static final Set<LessonField> CALENDAR_FIELDS = EnumSet.of(
+            LessonField.ID, LessonField.TITLE, LessonField.DATE_TIME, LessonField.END_DATE, LessonField.DURATION,
+            LessonField.LOCATION);
+
     private final LessonRepository lessonRepository;
     private final RecurringLessonSeriesRepository recurringLessonSeriesRepository;
     private final LessonValidator lessonValidator;
     private final LessonsMapper lessonsMapper;
     private final LessonEventService lessonEventService;
+    private final EntityManager entityManager;
+    private final LessonSeriesService lessonSeriesService;
+    private final TutorScheduleIndex tutorScheduleIndex;
+    private final UserAgendaCache userAgendaCache;
+    private final UserScheduleVersions userScheduleVersions;
+    private final LessonEventPublisher lessonEventPublisher;
+    private final TutorStudentRelationService tutorStudentRelationService;
+    private final CurrentLessonIndex currentLessonIndex;
+    private final RecurringOccurrenceService recurringOccurrenceService;
+    private final LessonViewQuery lessonViewQuery;
+    private final LessonRollupRepository lessonRollupRepository;
+
+    /** Upper bound on rows the unpaginated listing will return before asking for a narrower query. */
+    @Value("${lessons.list.max-results:1000}")
+    private int maxListResults;
+
+    @Value("${lessons.lookup.max-ids:500}")
+    private int maxLookupIds;
 
     @Transactional
     public Lesson createLesson(CreateLessonRequest createLessonRequest) {
         lessonValidator.validateCreate(createLessonRequest);
 
-        if (Boolean.TRUE.equals(createLessonRequest.getRepeatWeekly())) {
+        if (createLessonRequest.isRecurring()) {
             return createRecurringLessons(createLessonRequest);
         }
 
-        Lesson lesson = lessonsMapper.map(createLessonRequest);
-        return lessonRepository.save(lesson);
+        tutorScheduleIndex.assertNoConflict(createLessonRequest.getTutorId(), createLessonRequest.getDateTime(),
+                createLessonRequest.getDuration(), null);
+
+        Lesson lesson = lessonRepository.save(lessonsMapper.map(createLessonRequest));
+        tutorScheduleIndex.onLessonSaved(lesson);
+        userAgendaCache.invalidate(lesson.getTutorId(), lesson.getStudentId());
+        userScheduleVersions.bump(lesson.getTutorId(), lesson.getStudentId());
+        tutorStudentRelationService.touch(lesson.getTutorId(), lesson.getStudentId());
+        lessonEventPublisher.created(lesson);
+        return lesson;
 
     }
 
+    /**
+     * Stores the rule and template and writes only the first occurrence; the rest are expanded on
+     * read and written by {@code RecurringOccurrenceMaterializer} shortly before they start.
+     */
     private Lesson createRecurringLessons(CreateLessonRequest createLessonRequest) {
         RecurringLessonSeries series = getRecurringLessonSeries(createLessonRequest);
+        List<OffsetDateTime> starts = recurringOccurrenceService.upcomingStarts(series);
+        tutorScheduleIndex.assertNoConflicts(series.getTutorId(), starts, series.getDuration());
 
         RecurringLessonSeries savedSeries = recurringLessonSeriesRepository.save(series);
-
-        List<Lesson> lessons = new ArrayList<>();
-        OffsetDateTime currentDateTime = createLessonRequest.getDateTime();
-        OffsetDateTime endDateTime = savedSeries.getUntil();
-
-        while (!currentDateTime.isAfter(endDateTime)) {
-            Lesson lesson = lessonsMapper.map(createLessonRequest);
-            lesson.setDateTime(currentDateTime);
-            lesson.setSeries(savedSeries);
-            lessons.add(lesson);
-
-            currentDateTime = currentDateTime.plusDays(7);
-        }
-
-        List<Lesson> savedLessons = lessonRepository.saveAll(lessons);
-
-        return savedLessons.isEmpty() ? null : savedLessons.get(0);
+        tutorScheduleIndex.evict(savedSeries.getTutorId());
+        userAgendaCache.invalidate(savedSeries.getTutorId(), savedSeries.getStudentId());
+        userScheduleVersions.bump(savedSeries.getTutorId(), savedSeries.getStudentId());
+        tutorStudentRelationService.touch(savedSeries.getTutorId(), savedSeries.getStudentId());
+
+        Lesson firstLesson = lessonsMapper.map(createLessonRequest);
+        firstLesson.setSeries(savedSeries);
+        Lesson savedLesson = lessonRepository.save(firstLesson);
+        lessonEventPublisher.created(savedLesson);
+        lessonEventService.handleSeriesCreated(savedSeries, savedLesson, starts);
+        return savedLesson;
     }
 
     private RecurringLessonSeries getRecurringLessonSeries(CreateLessonRequest createLessonRequest) {
+        OffsetDateTime start = createLessonRequest.getDateTime();
+
         RecurringLessonSeries series = new RecurringLessonSeries();
-        series.setFrequency(RecurringLessonSeries.RecurrenceFrequency.WEEKLY);
-        series.setInterval(1);
+        series.setFrequency(createLessonRequest.getRepeatFrequency() != null
+                ? createLessonRequest.getRepeatFrequency()
+                : RecurringLessonSeries.RecurrenceFrequency.WEEKLY);
+        series.setInterval(createLessonRequest.getRepeatInterval() != null ? createLessonRequest.getRepeatInterval() : 1);
+        series.setStartDateTime(start);
 
         if (createLessonRequest.getRepeatUntil() != null) {
             series.setUntil(createLessonRequest.getRepeatUntil());
-        } else if (createLessonRequest.getRepeatWeeksCount() != null) {
-            OffsetDateTime endDate = createLessonRequest.getDateTime().plusDays((createLessonRequest.getRepeatWeeksCount() - 1) * 7L);
-            series.setUntil(endDate);
         } else {
-            OffsetDateTime endDate = createLessonRequest.getDateTime().plusDays(3 * 7);
-            series.setUntil(endDate);
+            int occurrences = createLessonRequest.getRepeatWeeksCount() != null ? createLessonRequest.getRepeatWeeksCount() : 4;
+            List<OffsetDateTime> starts = RecurrenceExpander.occurrences(start, series.getFrequency(), series.getInterval(),
+                    null, start, start.plusYears(100), occurrences);
+            series.setUntil(starts.get(starts.size() - 1));
         }
+        // the first occurrence is written with the series
+        RecurringOccurrenceService.moveWatermark(series, start);
+
+        series.setTutorId(createLessonRequest.getTutorId());
+        series.setStudentId(createLessonRequest.getStudentId());
+        series.setTitle(createLessonRequest.getTitle());
+        series.setDuration(createLessonRequest.getDuration());
+        series.setLocation(createLessonRequest.getLocation());
+        series.setLessonPlan(createLessonRequest.getLessonPlan());
+        series.setLearningObjectives(createLessonRequest.getLearningObjectives());
         return series;
     }
 
-    public List<Lesson> getAllLessons(UUID tutorId,
-                                      UUID studentId,
-                                      List<LessonStatus> status,
-                                      OffsetDateTime date,
-                                      OffsetDateTime startDate,
-                                      OffsetDateTime endDate) {
+    /**
+     * Lessons matching the filters, stored and expanded from series. With {@code fields} null the full
+     * entities are returned; otherwise {@link LessonView}s holding only those fields.
+     */
+    public List<? extends LessonOrderKey> getAllLessons(UUID tutorId,
+                                                        UUID studentId,
+                                                        List<LessonStatus> status,
+                                                        OffsetDateTime date,
+                                                        OffsetDateTime startDate,
+                                                        OffsetDateTime endDate,
+                                                        Set<LessonField> fields) {
         StartEndDate startEndDate = getStartEndDate(date, startDate, endDate);
         OffsetDateTime startOfDay = startEndDate.startOfDay();
         OffsetDateTime endOfDay = startEndDate.endOfDay();
 
         Specification<Lesson> lessonsByParamsSpec = LessonsSpecificationsBuilder.lessonsByParams(tutorId, studentId, status, startOfDay, endOfDay, null);
 
-        return lessonRepository.findAll(lessonsByParamsSpec);
+        // never materialize more than the guard allows; one extra row tells us the guard tripped
+        int fetchLimit = maxListResults + 1;
+        List<? extends LessonOrderKey> lessons = findStored(lessonsByParamsSpec, fetchLimit, fields);
+        List<Lesson> occurrences = recurringOccurrenceService.expand(tutorId, studentId, status, startOfDay, endOfDay,
+                fetchLimit - lessons.size());
+        if (lessons.size() + occurrences.size() > maxListResults) {
+            throw new IllegalArgumentException("More than " + maxListResults
+                    + " lessons match; narrow the date range or use /api/lessons/page");
+        }
+        return RecurringOccurrenceService.mergeByStart(lessons, project(occurrences, fields), maxListResults);
+    }
+
+    /**
+     * Cursor-paginated variant of {@link #getAllLessons}: same filters, {@code (dateTime, id)}
+     * keyset order, so every page costs one bounded index range scan however deep the cursor is.
+     */
+    @Transactional(readOnly = true)
+    public LessonPage getLessonPage(UUID tutorId,
+                                    UUID studentId,
+                                    List<LessonStatus> status,
+                                    OffsetDateTime date,
+                                    OffsetDateTime startDate,
+                                    OffsetDateTime endDate,
+                                    Integer limit,
+                                    String cursor,
+                                    Set<LessonField> fields) {
+        int pageSize = sanitizePageSize(limit);
+        LessonCursor after = decodeCursor(cursor);
+        StartEndDate startEndDate = getStartEndDate(date, startDate, endDate);
+
+        Specification<Lesson> spec = LessonsSpecificationsBuilder.lessonsByParams(tutorId, studentId, status,
+                startEndDate.startOfDay(), startEndDate.endOfDay(), null);
+        OffsetDateTime expandFrom = startEndDate.startOfDay();
+        if (after != null) {
+            spec = spec.and(LessonsSpecificationsBuilder.afterKeyset(after.dateTime(), after.id()));
+            if (expandFrom == null || after.dateTime().isAfter(expandFrom)) {
+                expandFrom = after.dateTime();
+            }
+        }
+
+        List<? extends LessonOrderKey> stored = findStored(spec, pageSize + 1, fields);
+        List<Lesson> occurrences = expandAfter(after, tutorId, studentId, status, expandFrom, startEndDate.endOfDay(), pageSize + 1);
+        List<LessonOrderKey> merged = RecurringOccurrenceService.mergeByStart(stored, project(occurrences, fields), pageSize + 1);
+
+        boolean hasMore = merged.size() > pageSize;
+        List<LessonOrderKey> items = hasMore ? merged.subList(0, pageSize) : merged;
+        String nextCursor = hasMore ? encodeCursor(items.get(items.size() - 1)) : null;
+        return new LessonPage(items, nextCursor, hasMore);
+    }
+
+    /** Stored rows in keyset order: entities when {@code fields} is null, column projections otherwise. */
+    private List<? extends LessonOrderKey> findStored(Specification<Lesson> spec, int limit, Set<LessonField> fields) {
+        if (fields == null) {
+            return lessonRepository.findBy(spec, query -> query.sortBy(KEYSET_SORT).limit(limit).all());
+        }
+        return lessonViewQuery.find(spec, fields, limit);
+    }
+
+    private static List<? extends LessonOrderKey> project(List<Lesson> occurrences, Set<LessonField> fields) {
+        if (fields == null) {
+            return occurrences;
+        }
+        return occurrences.stream().map(occurrence -> LessonView.of(occurrence, fields)).toList();
+    }
+
+    private List<Lesson> expandAfter(LessonCursor after,
+                                     UUID tutorId,
+                                     UUID studentId,
+                                     List<LessonStatus> status,
+                                     OffsetDateTime fromInclusive,
+                                     OffsetDateTime toInclusive,
+                                     int limit) {
+        List<Lesson> occurrences = recurringOccurrenceService.expand(tutorId, studentId, status, fromInclusive, toInclusive, limit);
+        if (after == null) {
+            return occurrences;
+        }
+        List<Lesson> remaining = occurrences.stream().filter(after::precedes).toList();
+        int skipped = occurrences.size() - remaining.size();
+        if (skipped > 0 && occurrences.size() == limit) {
+            // occurrences sharing the cursor's start sort first; refetch so the page stays full
+            remaining = recurringOccurrenceService.expand(tutorId, studentId, status, fromInclusive, toInclusive, limit + skipped)
+                    .stream().filter(after::precedes).toList();
+        }
+        return remaining;
+    }
+
+    private static int sanitizePageSize(Integer requestedLimit) {
+        if (requestedLimit == null || requestedLimit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requestedLimit, MAX_PAGE_SIZE);
+    }
+
+    private static String encodeCursor(LessonOrderKey lesson) {
+        String raw = lesson.getDateTime().toString() + "|" + lesson.getId();
+        return Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LessonCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 2);
+            return new LessonCursor(OffsetDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (Exception e) {
+            log.warn("Invalid lesson cursor: {}", cursor);
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
-    public List<Lesson> getUpcomingLessons(UUID tutorId,
-                                           UUID studentId,
-                                           List<LessonStatus> status,
-                                           OffsetDateTime currentDate,
-                                           int limit) {
+    private record LessonCursor(OffsetDateTime dateTime, UUID id) implements LessonOrderKey {
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public OffsetDateTime getDateTime() {
+            return dateTime;
+        }
+
+        /** Whether {@code lesson} sorts strictly after this cursor position. */
+        boolean precedes(LessonOrderKey lesson) {
+            return RecurringOccurrenceService.KEYSET_ORDER.compare(this, lesson) < 0;
+        }
+    }
+
+    public List<? extends LessonOrderKey> getUpcomingLessons(UUID tutorId,
+                                                             UUID studentId,
+                                                             List<LessonStatus> status,
+                                                             OffsetDateTime currentDate,
+                                                             int limit,
+                                                             Set<LessonField> fields) {
         Specification<Lesson> params = LessonsSpecificationsBuilder.lessonsByParams(tutorId,
                 studentId,
                 status,
@@ -125,24 +336,66 @@ public class LessonService {
                 null);
 
 
-        Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "dateTime"));
-        Page<Lesson> page = lessonRepository.findAll(params, pageable);
+        List<? extends LessonOrderKey> stored = findStored(params, limit, fields);
+        List<Lesson> occurrences = recurringOccurrenceService.expand(tutorId, studentId, status, currentDate, null, limit);
 
-        return page.getContent();
+        return RecurringOccurrenceService.mergeByStart(stored, project(occurrences, fields), limit);
     }
 
-    public Lesson getCurrentLesson(UUID tutorId, UUID studentId, OffsetDateTime currentDate) {
-        List<LessonStatus> statuses = List.of(LessonStatus.SCHEDULED, LessonStatus.IN_PROGRESS, LessonStatus.RESCHEDULED);
-
-        Specification<Lesson> lessonSpecification = LessonsSpecificationsBuilder.currentLessonParams(tutorId, studentId, currentDate, statuses);
+    public List<FreeSlot> getFreeSlots(UUID tutorId, OffsetDateTime from, OffsetDateTime to, Integer minMinutes) {
+        return tutorScheduleIndex.findFreeSlots(tutorId, from, to, minMinutes);
+    }
 
-        return lessonRepository.findOne(lessonSpecification).orElse(null);
+    public Lesson getCurrentLesson(UUID tutorId, UUID studentId, OffsetDateTime currentDate) {
+        OffsetDateTime at = currentDate.plusMinutes(LessonsSpecificationsBuilder.CURRENT_LESSON_LEAD_MINUTES);
+        return currentLessonIndex.find(tutorId, studentId, at, () -> {
+            Specification<Lesson> lessonSpecification = LessonsSpecificationsBuilder.currentLessonParams(
+                    tutorId, studentId, currentDate, CurrentLessonIndex.CURRENT_STATUSES);
+            return lessonRepository.findOne(lessonSpecification).orElse(null);
+        });
     }
 
     public Lesson getLessonById(UUID id) {
         return lessonRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Lesson not found"));
     }
 
+    /**
+     * Resolves many lessons with one {@code IN} query. Items follow the request order (first
+     * occurrence of repeated ids); ids with no stored lesson are reported in {@code missing}.
+     */
+    @Transactional(readOnly = true)
+    public LessonLookupResponse getLessonsByIds(List<UUID> ids, Set<LessonField> fields) {
+        if (ids == null || ids.isEmpty()) {
+            return new LessonLookupResponse(List.of(), List.of());
+        }
+        if (ids.contains(null)) {
+            throw new IllegalArgumentException("Lesson ids must not be null");
+        }
+        Set<UUID> requested = new LinkedHashSet<>(ids);
+        if (requested.size() > maxLookupIds) {
+            throw new IllegalArgumentException("At most " + maxLookupIds + " lesson ids can be requested at once");
+        }
+
+        List<? extends LessonOrderKey> found = fields == null
+                ? lessonRepository.findAllById(requested)
+                : lessonViewQuery.findByIds(requested, fields);
+        Map<UUID, LessonOrderKey> byId = new HashMap<>(found.size() * 2);
+        found.forEach(lesson -> byId.put(lesson.getId(), lesson));
+
+        List<LessonOrderKey> items = new ArrayList<>(byId.size());
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : requested) {
+            LessonOrderKey lesson = byId.get(id);
+            if (lesson != null) {
+                items.add(lesson);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new LessonLookupResponse(items, missing);
+    }
+
+    @Transactional
     public Lesson updateLesson(UUID id, UpdateLessonRequest updateLessonRequest) {
         Lesson existingLesson = getLessonById(id);
 
@@ -152,46 +405,93 @@ public class LessonService {
             throw new IllegalStateException("Cannot update a completed lesson");
         }
 
-/*
-        if (updateLessonRequest.getDateTime() != null && existingLesson.getDateTime() != updateLessonRequest.getDateTime()) {
+        assertNoConflictAfterUpdate(existingLesson, updateLessonRequest);
+
+        boolean rescheduled = updateLessonRequest.getDateTime() != null
+                && !updateLessonRequest.getDateTime().isEqual(existingLesson.getDateTime());
+        if (existingLesson.getSeries() != null && rescheduled) {
+            recurringOccurrenceService.onLessonRescheduled(id);
+        }
+        if (rescheduled) {
+            // reminded again ahead of the new start
+            existingLesson.setReminderSentAt(null);
             lessonEventService.handleLessonRescheduled(existingLesson, updateLessonRequest.getDateTime());
         }
-*/
 
+        // participants may change with the update, so both the old and the new ones are invalidated
+        LessonStatus previousStatus = existingLesson.getStatus();
+        UUID previousTutorId = existingLesson.getTutorId();
+        UUID previousStudentId = existingLesson.getStudentId();
+        userAgendaCache.invalidate(existingLesson.getTutorId(), existingLesson.getStudentId());
+        userScheduleVersions.bump(existingLesson.getTutorId(), existingLesson.getStudentId());
+        tutorStudentRelationService.touch(existingLesson.getTutorId(), existingLesson.getStudentId());
         lessonsMapper.update(existingLesson, updateLessonRequest);
 
-        return lessonRepository.save(existingLesson);
+        Lesson savedLesson = lessonRepository.save(existingLesson);
+        tutorScheduleIndex.onLessonSaved(savedLesson);
+        userAgendaCache.invalidate(savedLesson.getTutorId(), savedLesson.getStudentId());
+        userScheduleVersions.bump(savedLesson.getTutorId(), savedLesson.getStudentId());
+        tutorStudentRelationService.touch(savedLesson.getTutorId(), savedLesson.getStudentId());
+        lessonEventPublisher.updated(savedLesson, previousStatus, previousTutorId, previousStudentId);
+        return savedLesson;
+    }
+
+    private void assertNoConflictAfterUpdate(Lesson existingLesson, UpdateLessonRequest updateLessonRequest) {
+        boolean moved = updateLessonRequest.getDateTime() != null || updateLessonRequest.getDuration() != null;
+        LessonStatus status = updateLessonRequest.getStatus() != null ? updateLessonRequest.getStatus() : existingLesson.getStatus();
+        if (!moved || status == LessonStatus.CANCELED) {
+            return;
+        }
+        OffsetDateTime start = updateLessonRequest.getDateTime() != null ? updateLessonRequest.getDateTime() : existingLesson.getDateTime();
+        int duration = updateLessonRequest.getDuration() != null ? updateLessonRequest.getDuration() : existingLesson.getDuration();
+        tutorScheduleIndex.assertNoConflict(existingLesson.getTutorId(), start, duration, existingLesson.getId());
+    }
+
+    /**
+     * Edits one occurrence of a rule-based series, writing it to {@code lessons} first if it was
+     * still virtual.
+     */
+    @Transactional
+    public Lesson updateOccurrence(UUID seriesId, OffsetDateTime occurrenceStart, UpdateLessonRequest updateLessonRequest) {
+        Lesson lesson = recurringOccurrenceService.materialize(seriesId, occurrenceStart);
+        return updateLesson(lesson.getId(), updateLessonRequest);
+    }
+
+    @Transactional
+    public void cancelOccurrence(UUID seriesId, OffsetDateTime occurrenceStart) {
+        lessonEventPublisher.deleted(recurringOccurrenceService.cancel(seriesId, occurrenceStart));
     }
 
     @Transactional
     public void deleteLesson(UUID id, boolean deleteSeries) {
         Lesson lesson = getLessonById(id);
+        userAgendaCache.invalidate(lesson.getTutorId(), lesson.getStudentId());
+        userScheduleVersions.bump(lesson.getTutorId(), lesson.getStudentId());
+        tutorStudentRelationService.touch(lesson.getTutorId(), lesson.getStudentId());
 
         if (!deleteSeries) {
             lessonRepository.deleteById(id);
+            tutorScheduleIndex.onLessonDeleted(lesson);
+            lessonEventPublisher.deleted(lesson);
+            if (lesson.getSeries() != null) {
+                recurringOccurrenceService.onLessonDeleted(id);
+            }
             return;
         }
 
         RecurringLessonSeries series = lesson.getSeries();
         if (series == null) {
             lessonRepository.deleteById(id);
+            tutorScheduleIndex.onLessonDeleted(lesson);
+            lessonEventPublisher.deleted(lesson);
             return;
         }
 
         // Delete only future lessons in the series (keep past lessons regardless of status)
-        List<Lesson> seriesLessons = lessonRepository.findAllBySeries(series);
-        OffsetDateTime now = OffsetDateTime.now();
-        List<Lesson> futureLessons = seriesLessons.stream()
-                .filter(l -> l.getDateTime() != null && l.getDateTime().isAfter(now))
-                .toList();
-
-        if (!futureLessons.isEmpty()) {
-            lessonRepository.deleteAll(futureLessons);
-        }
-
-        // If no lessons remain in the series after deletion, remove the series record
-        if (futureLessons.size() == seriesLessons.size()) {
-            recurringLessonSeriesRepository.delete(series);
+        OffsetDateTime deleteFrom = OffsetDateTime.now().plus(1, ChronoUnit.MICROS);
+        lessonSeriesService.deleteFrom(series.getSeriesId(), deleteFrom);
+        if (!lesson.getDateTime().isBefore(deleteFrom)) {
+            lessonEventPublisher.deleted(lesson);
         }
     }
 
@@ -213,47 +513,103 @@ public class LessonService {
         return new StartEndDate(startOfDay, endOfDay);
     }
 
+    @Transactional(readOnly = true)
     public List<LessonLight> getMyTutorSchedule(UUID tutorId, UUID studentId, OffsetDateTime startDate, OffsetDateTime endDate) {
         List<LessonStatus> status = List.of(LessonStatus.SCHEDULED, LessonStatus.IN_PROGRESS, LessonStatus.RESCHEDULED, LessonStatus.COMPLETED);
 
         Specification<Lesson> lessonsByParamsSpec = LessonsSpecificationsBuilder.lessonsByParams(tutorId, studentId, status, startDate, endDate, null);
 
-        List<Lesson> lessons = lessonRepository.findAll(lessonsByParamsSpec);
-        return lessonsMapper.mapListWithoutSensitiveFields(lessons);
+        // select just the columns LessonLight exposes instead of hydrating whole lessons
+        List<LessonView> stored = lessonViewQuery.find(lessonsByParamsSpec, SCHEDULE_FIELDS, Integer.MAX_VALUE);
+        List<? extends LessonOrderKey> occurrences = project(
+                recurringOccurrenceService.expand(tutorId, studentId, status, startDate, endDate, Integer.MAX_VALUE), SCHEDULE_FIELDS);
+        return RecurringOccurrenceService.<LessonOrderKey>mergeByStart(stored, occurrences, Integer.MAX_VALUE).stream()
+                .map(lesson -> lessonsMapper.mapWithoutSensitiveFields((LessonView) lesson))
+                .toList();
+    }
+
+    /**
+     * The lessons of a calendar feed between the dates, stored and expanded from series alike,
+     * ordered by start and carrying {@link #CALENDAR_FIELDS}.
+     */
+    @Transactional(readOnly = true)
+    public List<LessonView> getCalendarLessons(UUID tutorId, UUID studentId, OffsetDateTime startDate, OffsetDateTime endDate) {
+        List<LessonStatus> status = List.of(LessonStatus.SCHEDULED, LessonStatus.IN_PROGRESS, LessonStatus.RESCHEDULED, LessonStatus.COMPLETED);
+
+        Specification<Lesson> lessonsByParamsSpec = LessonsSpecificationsBuilder.lessonsByParams(tutorId, studentId, status, startDate, endDate, null);
+
+        List<LessonView> stored = lessonViewQuery.find(lessonsByParamsSpec, CALENDAR_FIELDS, Integer.MAX_VALUE);
+        List<? extends LessonOrderKey> occurrences = project(
+                recurringOccurrenceService.expand(tutorId, studentId, status, startDate, endDate, Integer.MAX_VALUE), CALENDAR_FIELDS);
+        return RecurringOccurrenceService.<LessonOrderKey>mergeByStart(stored, occurrences, Integer.MAX_VALUE).stream()
+                .map(LessonView.class::cast)
+                .toList();
     }
 
     private record StartEndDate(OffsetDateTime startOfDay, OffsetDateTime endOfDay) {}
 
-    public Map<String, Integer> getLessonCountsByMonth(int year, int month, UUID studentId, UUID tutorId) {
+    /**
+     * Lessons per local day of the month in {@code timezone} (UTC by default). Stored lessons are
+     * summed from {@code lesson_rollups}; occurrences still virtual in a series are expanded on top.
+     */
+    public Map<String, Integer> getLessonCountsByMonth(int year, int month, UUID studentId, UUID tutorId, String timezone) {
+        ZoneId zone = TimeZones.resolveOrUtc(timezone);
         YearMonth yearMonth = YearMonth.of(year, month);
-
-        LocalDate firstDayOfMonth = yearMonth.atDay(1);
         LocalDate lastDayOfMonth = yearMonth.atEndOfMonth();
 
-        OffsetDateTime startDateTime = firstDayOfMonth.atStartOfDay().atOffset(ZoneOffset.UTC);
-        OffsetDateTime endDateTime = lastDayOfMonth.plusDays(1).atStartOfDay().minusNanos(1).atOffset(ZoneOffset.UTC);
-
-        Specification<Lesson> spec = LessonsSpecificationsBuilder.lessonsByParams(tutorId, studentId, null, startDateTime, endDateTime, null);
+        OffsetDateTime startDateTime = yearMonth.atDay(1).atStartOfDay(zone).toOffsetDateTime();
+        OffsetDateTime endDateTime = lastDayOfMonth.plusDays(1).atStartOfDay(zone).toOffsetDateTime();
 
-        List<Lesson> lessons = lessonRepository.findAll(spec);
+        Map<LocalDate, Integer> countsByDay = new HashMap<>();
+        for (LessonRollupBucketRow bucket : findRollupBuckets(tutorId, studentId, startDateTime, endDateTime)) {
+            countsByDay.merge(bucket.getBucketStart().atZoneSameInstant(zone).toLocalDate(), (int) bucket.getLessonCount(), Integer::sum);
+        }
+        for (Lesson occurrence : recurringOccurrenceService.expand(tutorId, studentId, null, startDateTime,
+                endDateTime.minus(1, ChronoUnit.MICROS), Integer.MAX_VALUE)) {
+            countsByDay.merge(occurrence.getDateTime().atZoneSameInstant(zone).toLocalDate(), 1, Integer::sum);
+        }
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        Map<String, Integer> countsByDay = lessons.stream()
-            .collect(Collectors.groupingBy(
-                lesson -> lesson.getDateTime().toLocalDate().format(formatter),
-                Collectors.summingInt(lesson -> 1)
-            ));
-
         Map<String, Integer> result = new HashMap<>();
         for (int day = 1; day <= lastDayOfMonth.getDayOfMonth(); day++) {
-            String dateKey = LocalDate.of(year, month, day).format(formatter);
-            result.put(dateKey, countsByDay.getOrDefault(dateKey, 0));
+            LocalDate date = LocalDate.of(year, month, day);
+            result.put(date.format(formatter), countsByDay.getOrDefault(date, 0));
         }
 
         return result;
     }
 
+    private List<LessonRollupBucketRow> findRollupBuckets(UUID tutorId, UUID studentId, OffsetDateTime from, OffsetDateTime to) {
+        if (tutorId != null && studentId != null) {
+            return lessonRollupRepository.sumByBucketForPair(tutorId, studentId, from, to);
+        }
+        if (tutorId != null) {
+            return lessonRollupRepository.sumByBucketForTutor(tutorId, from, to);
+        }
+        if (studentId != null) {
+            return lessonRollupRepository.sumByBucketForStudent(studentId, from, to);
+        }
+        return lessonRollupRepository.sumByBucket(from, to);
+    }
+
+    /** Billing totals over whole local days, summed from {@code lesson_rollups} rather than the lessons. */
+    public LessonBillingTotals getBillingTotals(UUID tutorId, LocalDate fromDate, LocalDate toDate,
+                                                List<LessonStatus> statuses, String timezone) {
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        ZoneId zone = TimeZones.resolveOrUtc(timezone);
+        OffsetDateTime from = fromDate.atStartOfDay(zone).toOffsetDateTime();
+        OffsetDateTime to = toDate.plusDays(1).atStartOfDay(zone).toOffsetDateTime();
+
+        List<LessonBillingStudentTotal> students = lessonRollupRepository.sumByStudent(tutorId, statuses, from, to).stream()
+                .map(row -> new LessonBillingStudentTotal(row.getStudentId(), row.getLessonCount(), row.getMinutes()))
+                .toList();
+        long lessonCount = students.stream().mapToLong(LessonBillingStudentTotal::lessonCount).sum();
+        long minutes = students.stream().mapToLong(LessonBillingStudentTotal::minutes).sum();
+        return new LessonBillingTotals(fromDate, toDate, zone.getId(), lessonCount, minutes, students);
+    }
+
     public List<LessonBillingFeedItem> getBillingFeed(UUID tutorId, LocalDate fromDate, LocalDate toDate, List<LessonStatus> statuses) {
         OffsetDateTime from = fromDate.atStartOfDay().atOffset(ZoneOffset.UTC);
         OffsetDateTime to = toDate.plusDays(1).atStartOfDay().minusNanos(1).atOffset(ZoneOffset.UTC);
@@ -280,4 +636,41 @@ public class LessonService {
                 .currency(null)
                 .build()).toList();
     }
+
+    /**
+     * Streams the billing feed row by row from a forward-only cursor so memory stays flat
+     * regardless of the date range. Only the billing columns are selected and the persistence
+     * context is cleared periodically, so nothing accumulates while the consumer writes out.
+     */
+    @Transactional(readOnly = true)
+    public void streamBillingFeed(UUID tutorId, LocalDate fromDate, LocalDate toDate, List<LessonStatus> statuses,
+                                  Consumer<LessonBillingFeedItem> consumer) {
+        OffsetDateTime from = fromDate.atStartOfDay().atOffset(ZoneOffset.UTC);
+        OffsetDateTime to = toDate.plusDays(1).atStartOfDay().minusNanos(1).atOffset(ZoneOffset.UTC);
+
+        try (Stream<LessonBillingRow> rows = lessonRepository.streamBillingRows(tutorId, statuses, from, to)) {
+            int[] emitted = {0};
+            rows.forEach(row -> {
+                consumer.accept(toBillingFeedItem(row));
+                if (++emitted[0] % BILLING_STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            });
+        }
+    }
+
+    private static LessonBillingFeedItem toBillingFeedItem(LessonBillingRow row) {
+        return LessonBillingFeedItem.builder()
+                .lessonId(row.getLessonId())
+                .tutorId(row.getTutorId())
+                .studentId(row.getStudentId())
+                .status(row.getStatus())
+                .startTime(row.getStartTime())
+                .durationMinutes(row.getDurationMinutes())
+                .completedAt(row.getStartTime())
+                .priceOverride(null)
+                .quantity(java.math.BigDecimal.ONE)
+                .currency(null)
+                .build();
+    }
 }
@@ -2,6 +2,7 @@ package com.mytutorplatform.lessonsservice.service;
 
 import com.mytutorplatform.lessonsservice.model.Lesson;
 import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.service.schedule.CurrentLessonIndex;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -15,6 +16,7 @@ import java.util.UUID;
 public class LessonTaskService {
 
     private final LessonRepository lessonRepository;
+    private final CurrentLessonIndex currentLessonIndex;
 
     @Transactional
     public void assignTaskToLesson(UUID lessonId, UUID taskId) {
@@ -30,6 +32,7 @@ public class LessonTaskService {
 
         lesson.setTaskIds(taskIds);
         lessonRepository.save(lesson);
+        currentLessonIndex.refreshAfterCommit(lessonId);
     }
 
     public void deleteTaskFromLesson(UUID lessonId, UUID taskId) {
@@ -44,5 +47,6 @@ public class LessonTaskService {
         taskIds.remove(taskId);
 
         lessonRepository.save(lesson);
+        currentLessonIndex.refreshAfterCommit(lessonId);
     }
 }
@@ -0,0 +1,127 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonAttachment;
+import com.mytutorplatform.lessonsservice.model.LessonField;
+import com.mytutorplatform.lessonsservice.model.response.LessonAttachmentView;
+import com.mytutorplatform.lessonsservice.model.response.LessonView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Column projections for lesson listings. Selects only the requested fields instead of hydrating
+ * entities (whose wide text columns and lazy attachments calendar views never show), and loads
+ * attachments for the whole result with one extra query when they are asked for.
+ */
+@Component
+@RequiredArgsConstructor
+public class LessonViewQuery {
+
+    private final EntityManager entityManager;
+
+    /** Rows matching {@code spec} in {@code (dateTime, id)} order, at most {@code limit} of them. */
+    public List<LessonView> find(Specification<Lesson> spec, Set<LessonField> fields, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Lesson> root = query.from(Lesson.class);
+
+        List<LessonField> columns = columns(fields);
+        query.multiselect(selections(root, columns));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("dateTime")), cb.asc(root.get("id")));
+
+        List<Tuple> rows = entityManager.createQuery(query).setMaxResults(limit).getResultList();
+        return toViews(rows, columns, fields);
+    }
+
+    /** Rows with the given ids, in no particular order. */
+    public List<LessonView> findByIds(Collection<UUID> ids, Set<LessonField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Lesson> root = query.from(Lesson.class);
+
+        List<LessonField> columns = columns(fields);
+        query.multiselect(selections(root, columns));
+        query.where(root.get("id").in(ids));
+
+        return toViews(entityManager.createQuery(query).getResultList(), columns, fields);
+    }
+
+    private List<LessonView> toViews(List<Tuple> rows, List<LessonField> columns, Set<LessonField> fields) {
+        List<LessonView> views = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            LessonView view = new LessonView();
+            for (LessonField field : fields) {
+                if (field == LessonField.VIRTUAL_OCCURRENCE) {
+                    view.put(field, false);
+                } else if (field != LessonField.ATTACHMENTS) {
+                    view.put(field, row.get(columns.indexOf(field)));
+                }
+            }
+            views.add(view);
+        }
+        if (fields.contains(LessonField.ATTACHMENTS)) {
+            attachAttachments(views);
+        }
+        return views;
+    }
+
+    private void attachAttachments(List<LessonView> views) {
+        Map<UUID, List<LessonAttachmentView>> byLesson = new HashMap<>();
+        if (!views.isEmpty()) {
+            List<UUID> ids = views.stream().map(LessonView::getId).toList();
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = cb.createTupleQuery();
+            Root<LessonAttachment> root = query.from(LessonAttachment.class);
+            Path<UUID> lessonId = root.get("lesson").get("id");
+            query.multiselect(lessonId, root.get("id"), root.get("fileName"), root.get("fileUrl"));
+            query.where(lessonId.in(ids));
+            for (Tuple row : entityManager.createQuery(query).getResultList()) {
+                byLesson.computeIfAbsent(row.get(0, UUID.class), id -> new ArrayList<>())
+                        .add(new LessonAttachmentView(row.get(1, UUID.class), row.get(2, String.class), row.get(3, String.class)));
+            }
+        }
+        for (LessonView view : views) {
+            view.put(LessonField.ATTACHMENTS, byLesson.getOrDefault(view.getId(), List.of()));
+        }
+    }
+
+    private static List<LessonField> columns(Set<LessonField> fields) {
+        return fields.stream().filter(field -> field.getAttributePath() != null).toList();
+    }
+
+    private static List<Selection<?>> selections(Root<Lesson> root, List<LessonField> columns) {
+        List<Selection<?>> selections = new ArrayList<>(columns.size());
+        for (LessonField field : columns) {
+            Path<?> path = root;
+            for (String attribute : field.getAttributePath().split("\\.")) {
+                path = path.get(attribute);
+            }
+            selections.add(path);
+        }
+        return selections;
+    }
+}
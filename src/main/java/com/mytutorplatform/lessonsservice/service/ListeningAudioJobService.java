@@ -9,6 +9,7 @@ import com.mytutorplatform.lessonsservice.model.request.AudioGenerateRequest;
 import com.mytutorplatform.lessonsservice.repository.ListeningAudioJobRepository;
 import com.mytutorplatform.lessonsservice.repository.ListeningTranscriptRepository;
 import com.mytutorplatform.lessonsservice.repository.MaterialRepository;
+import com.mytutorplatform.lessonsservice.util.UuidV7Generator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -96,7 +97,7 @@ public class ListeningAudioJobService {
         String norm = normalizeText(text);
 
         ListeningAudioJob job = new ListeningAudioJob();
-        job.setJobId(UUID.randomUUID());
+        job.setJobId(UuidV7Generator.next());
         job.setTeacherId(teacherId);
         job.setTranscriptId(transcriptId);
         job.setTranscriptText(norm);
@@ -0,0 +1,218 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Carries writes to the material catalogue's second-level cache to the other instances. Hibernate
+ * keeps the regions of the writing instance current; every other instance would serve its cached
+ * copy until it expires. Each transaction that writes a cached entity or collection sends one
+ * notification on the {@value #CHANNEL} channel from Hibernate's before-completion hook, so Postgres
+ * delivers it only once the write commits, and every other instance's {@code LessonEventListener}
+ * hands it to {@link #apply}: the named entities and the collections of their type are evicted, and
+ * the catalogue query results are dropped, since those are only invalidated by local writes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MaterialCacheBroadcast implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    public static final String CHANNEL = "material_cache";
+
+    /** Keeps a payload well below Postgres' 8000 byte limit; larger writes evict the whole catalogue. */
+    private static final int MAX_WRITTEN = 50;
+
+    /** Tells this instance's own notifications apart from those of the others. */
+    private final UUID origin = UUID.randomUUID();
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = sessionFactory().getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        entityWritten(event.getSession(), event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        entityWritten(event.getSession(), event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        entityWritten(event.getSession(), event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        collectionWritten(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        collectionWritten(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        collectionWritten(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /** Evicts what another instance wrote; notifications of this instance are skipped. */
+    public void apply(String payload) {
+        Notification notification;
+        try {
+            notification = objectMapper.readValue(payload, Notification.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable material cache notification: {}", e.getMessage());
+            return;
+        }
+        if (origin.equals(notification.origin())) {
+            return;
+        }
+        if (notification.all()) {
+            evictAll();
+            return;
+        }
+        Cache cache = sessionFactory().getCache();
+        for (Written written : notification.written()) {
+            cache.evictEntityData(written.entity(), written.id());
+            evictCollections(written.entity());
+        }
+        evictQueries(cache);
+    }
+
+    /** Drops every catalogue region, for when notifications may have been missed. */
+    public void evictAll() {
+        Cache cache = sessionFactory().getCache();
+        sessionFactory().getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            if (persister.canWriteToCache()) {
+                cache.evictEntityData(persister.getEntityName());
+                evictCollections(persister.getEntityName());
+            }
+        });
+        evictQueries(cache);
+    }
+
+    private void entityWritten(EventSource session, EntityPersister persister, Object id) {
+        if (persister.canWriteToCache() && id instanceof UUID uuid) {
+            pending(session).add(new Written(persister.getEntityName(), uuid));
+        }
+    }
+
+    /** The owner stands for its collections, which {@link #apply} evicts with it. */
+    private void collectionWritten(AbstractCollectionEvent event) {
+        EntityPersister owner = sessionFactory().getMappingMetamodel()
+                .getEntityDescriptor(event.getAffectedOwnerEntityName());
+        if (owner.canWriteToCache() && event.getAffectedOwnerIdOrNull() instanceof UUID ownerId) {
+            pending(event.getSession()).add(new Written(owner.getEntityName(), ownerId));
+        }
+    }
+
+    private void evictCollections(String entityName) {
+        Cache cache = sessionFactory().getCache();
+        sessionFactory().getMappingMetamodel().forEachCollectionDescriptor(collection -> {
+            if (collection.hasCache() && collection.getOwnerEntityPersister().getEntityName().equals(entityName)) {
+                cache.evictCollectionData(collection.getRole());
+            }
+        });
+    }
+
+    private static void evictQueries(Cache cache) {
+        cache.evictQueryRegion(MaterialCacheConfig.CATALOGUE_QUERIES);
+        cache.evictDefaultQueryRegion();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Written> pending(EventSource session) {
+        Set<Written> pending = (Set<Written>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Written> created = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MaterialCacheBroadcast.this);
+                }
+            });
+            // runs after Hibernate's final flush, so writes flushed at commit are included
+            session.getActionQueue().registerProcess(completingSession -> publish(created));
+            pending = created;
+        }
+        return pending;
+    }
+
+    private void publish(Set<Written> written) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(written.size() > MAX_WRITTEN
+                    ? new Notification(origin, true, List.of())
+                    : new Notification(origin, false, new ArrayList<>(written)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize material cache notification", e);
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, CHANNEL, payload);
+    }
+
+    private SessionFactoryImplementor sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    }
+
+    record Written(String entity, UUID id) {
+    }
+
+    record Notification(UUID origin, boolean all, List<Written> written) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.mytutorplatform.lessonsservice.service;
 
+import com.mytutorplatform.lessonsservice.config.datasource.ReadRouting;
 import com.mytutorplatform.lessonsservice.model.MaterialFolder;
 import com.mytutorplatform.lessonsservice.model.response.CreateMaterialFolderRequest;
 import com.mytutorplatform.lessonsservice.model.response.MaterialFolderDTO;
@@ -60,17 +61,21 @@ public class MaterialFolderService {
 
     @Transactional(readOnly = true)
     public List<MaterialFolder> findAll() {
+        // whatever this loads fills the shared catalogue cache, which must not take in replica lag
+        ReadRouting.requirePrimary();
         return repo.findAll();
     }
 
     @Transactional(readOnly = true)
     public List<MaterialFolder> findByParentId(UUID parentId) {
+        ReadRouting.requirePrimary();
         return repo.findByParentId(parentId);
     }
 
     /** builds a nested tree for the UI */
     @Transactional(readOnly = true)
     public List<MaterialFolderTreeDto> getTree() {
+        ReadRouting.requirePrimary();
         List<MaterialFolder> all = repo.findAll();
         Map<UUID, Integer> directMaterialCount = getDirectMaterialCounts();
         Map<UUID, MaterialFolderTreeDto> map = new HashMap<>();
@@ -1,5 +1,6 @@
 package com.mytutorplatform.lessonsservice.service;
 
+import com.mytutorplatform.lessonsservice.config.datasource.ReadRouting;
 import com.mytutorplatform.lessonsservice.model.ListeningTask;
 import com.mytutorplatform.lessonsservice.model.Material;
 import com.mytutorplatform.lessonsservice.repository.ListeningTaskRepository;
@@ -38,6 +39,8 @@ public class MaterialService {
             int page,
             int size
     ) {
+        // whatever this loads fills the shared catalogue cache, which must not take in replica lag
+        ReadRouting.requirePrimary();
         Specification<Material> spec = new MaterialSpecificationsBuilder()
                 .withFolderId(folderId)
                 .withSearch(search)
@@ -71,6 +74,7 @@ public class MaterialService {
 
     @Transactional(readOnly = true)
     public Material getMaterialById(UUID id) {
+        ReadRouting.requirePrimary();
         return repository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Material not found with id: " + id));
     }
@@ -147,6 +151,7 @@ public class MaterialService {
 
     @Transactional(readOnly = true)
     public List<String> getAllTags() {
+        ReadRouting.requirePrimary();
         return repository.findAllTags();
     }
 }
@@ -2,24 +2,31 @@ package com.mytutorplatform.lessonsservice.service;
 
 import com.mytutorplatform.lessonsservice.model.LessonStatus;
 import com.mytutorplatform.lessonsservice.model.TutorStatistics;
-import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.LessonRollupRepository;
+import com.mytutorplatform.lessonsservice.util.TimeZones;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.OffsetDateTime;
 import java.time.YearMonth;
-import java.time.ZoneOffset;
+import java.time.ZoneId;
 import java.util.UUID;
 
+/**
+ * Tutor statistics read from {@code lesson_rollups}, so their cost follows the number of
+ * students and buckets rather than the tutor's lesson history.
+ */
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
 
-    private final LessonRepository lessonRepository;
+    private final LessonRollupRepository lessonRollupRepository;
+    private final Clock clock;
 
-    public TutorStatistics getTutorStatistics(UUID tutorId) {
-        long count = lessonRepository.countDistinctStudentIdsByTutorIdAndStatus(tutorId, LessonStatus.COMPLETED);
-        long completedLessonsThisMonth = countCompletedLessonsThisMonth(tutorId);
+    public TutorStatistics getTutorStatistics(UUID tutorId, String timezone) {
+        long count = lessonRollupRepository.countDistinctStudents(tutorId, LessonStatus.COMPLETED);
+        long completedLessonsThisMonth = countCompletedLessonsThisMonth(tutorId, TimeZones.resolveOrUtc(timezone));
 
         TutorStatistics tutorStatistics = new TutorStatistics();
         tutorStatistics.setTaughtStudents(count);
@@ -27,10 +34,11 @@ public class StatisticsService {
         return tutorStatistics;
     }
 
-    private long countCompletedLessonsThisMonth(UUID tutorId) {
-        OffsetDateTime startOfMonth = YearMonth.now().atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
-        OffsetDateTime endOfMonth = YearMonth.now().atEndOfMonth().atTime(23, 59, 59).atOffset(ZoneOffset.UTC);
+    private long countCompletedLessonsThisMonth(UUID tutorId, ZoneId zone) {
+        YearMonth month = YearMonth.now(clock.withZone(zone));
+        OffsetDateTime startOfMonth = month.atDay(1).atStartOfDay(zone).toOffsetDateTime();
+        OffsetDateTime startOfNextMonth = month.plusMonths(1).atDay(1).atStartOfDay(zone).toOffsetDateTime();
 
-        return lessonRepository.countByTutorIdAndStatusAndDateTimeBetween(tutorId, LessonStatus.COMPLETED, startOfMonth, endOfMonth);
+        return lessonRollupRepository.sumLessons(tutorId, LessonStatus.COMPLETED, startOfMonth, startOfNextMonth);
     }
 }
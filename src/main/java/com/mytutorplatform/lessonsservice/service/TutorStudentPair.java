@@ -0,0 +1,20 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/** A tutor and one of their students, the unit the per-pair read models are locked and refreshed by. */
+public record TutorStudentPair(UUID tutorId, UUID studentId) {
+
+    /**
+     * The order pairs are locked in. A fixed order keeps two transactions touching the same pairs
+     * from deadlocking.
+     */
+    public static final Comparator<TutorStudentPair> LOCK_ORDER = Comparator.comparingInt(TutorStudentPair::lockKey)
+            .thenComparing(TutorStudentPair::tutorId)
+            .thenComparing(TutorStudentPair::studentId);
+
+    public int lockKey() {
+        return 31 * tutorId.hashCode() + studentId.hashCode();
+    }
+}
@@ -0,0 +1,127 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.repository.TutorStudentRelationRepository;
+import com.mytutorplatform.lessonsservice.service.lock.AdvisoryLocks;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps {@code tutor_student_relations} in step with lesson and series writes.
+ * Writers only {@link #touch} the pairs they changed; the rows are recomputed from the pair's
+ * lessons and series right before the writing transaction commits, so several writes to one
+ * pair cost a single refresh and a rolled back write leaves the row untouched.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TutorStudentRelationService {
+
+    /** Statuses that make a lesson count as the pair's last lesson. */
+    public static final List<LessonStatus> ACTIVITY_STATUSES = List.of(
+            LessonStatus.COMPLETED,
+            LessonStatus.MISSED,
+            LessonStatus.IN_PROGRESS,
+            LessonStatus.RESCHEDULED,
+            LessonStatus.SCHEDULED
+    );
+    /** Statuses of a lesson that is still going to happen once its start is ahead. */
+    public static final List<LessonStatus> BOOKED_STATUSES = List.of(
+            LessonStatus.SCHEDULED,
+            LessonStatus.IN_PROGRESS,
+            LessonStatus.RESCHEDULED
+    );
+
+    private final TutorStudentRelationRepository relationRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLocks advisoryLocks;
+
+    @Value("${lessons.relations.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    /** Schedules a refresh of the pair for the end of the current transaction. */
+    public void touch(UUID tutorId, UUID studentId) {
+        if (tutorId == null || studentId == null) {
+            return;
+        }
+        TutorStudentPair pair = new TutorStudentPair(tutorId, studentId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionTemplate.executeWithoutResult(status -> refresh(Set.of(pair)));
+            return;
+        }
+        pendingRefresh().pairs.add(pair);
+    }
+
+    /** Fills an empty table from the existing lessons, e.g. on the first start after the table was added. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup || relationRepository.count() > 0) {
+            return;
+        }
+        int rows = rebuild();
+        if (rows > 0) {
+            log.info("Backfilled {} tutor-student relations", rows);
+        }
+    }
+
+    public int rebuild() {
+        Integer rows = transactionTemplate.execute(status ->
+                relationRepository.rebuildAll(names(ACTIVITY_STATUSES), names(BOOKED_STATUSES)));
+        return rows != null ? rows : 0;
+    }
+
+    private void refresh(Set<TutorStudentPair> pairs) {
+        // the writes being committed may still sit in the persistence context
+        entityManager.flush();
+        List<TutorStudentPair> ordered = pairs.stream().sorted(TutorStudentPair.LOCK_ORDER).toList();
+        for (TutorStudentPair pair : ordered) {
+            // serializes refreshes of the same pair so the later one recomputes from the earlier commit
+            advisoryLocks.lock(AdvisoryLocks.Space.TUTOR_STUDENT_RELATIONS, pair.lockKey());
+            relationRepository.refreshPair(pair.tutorId(), pair.studentId(), names(ACTIVITY_STATUSES), names(BOOKED_STATUSES));
+            relationRepository.deleteIfEmpty(pair.tutorId(), pair.studentId());
+        }
+    }
+
+    private PendingRefresh pendingRefresh() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingRefresh pending && pending.owner == this) {
+                return pending;
+            }
+        }
+        PendingRefresh pending = new PendingRefresh(this);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private static List<String> names(List<LessonStatus> statuses) {
+        return statuses.stream().map(Enum::name).toList();
+    }
+
+    private static final class PendingRefresh implements TransactionSynchronization {
+        private final TutorStudentRelationService owner;
+        private final Set<TutorStudentPair> pairs = new LinkedHashSet<>();
+
+        private PendingRefresh(TutorStudentRelationService owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            owner.refresh(pairs);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mytutorplatform.lessonsservice.service.calendar;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Minimal RFC 5545 writer: content lines end in CRLF, are folded at 75 octets without splitting a
+ * UTF-8 sequence, and text values are escaped. Only the properties the lesson feed uses are offered.
+ */
+final class ICalendarWriter {
+
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final DateTimeFormatter UTC_DATE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final OutputStream out;
+
+    ICalendarWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void beginCalendar(String productId, String name) throws IOException {
+        line("BEGIN:VCALENDAR");
+        line("VERSION:2.0");
+        line("PRODID:" + productId);
+        line("CALSCALE:GREGORIAN");
+        line("METHOD:PUBLISH");
+        line("X-WR-CALNAME:" + escape(name));
+    }
+
+    void event(String uid, Instant stamp, Instant start, Instant end,
+               String summary, String location, String status) throws IOException {
+        line("BEGIN:VEVENT");
+        line("UID:" + uid);
+        line("DTSTAMP:" + UTC_DATE_TIME.format(stamp));
+        line("DTSTART:" + UTC_DATE_TIME.format(start));
+        line("DTEND:" + UTC_DATE_TIME.format(end));
+        line("SUMMARY:" + escape(summary));
+        if (location != null && !location.isBlank()) {
+            line("LOCATION:" + escape(location));
+        }
+        line("STATUS:" + status);
+        line("END:VEVENT");
+    }
+
+    void endCalendar() throws IOException {
+        line("END:VCALENDAR");
+    }
+
+    /** Escapes a TEXT value: backslash, semicolon, comma and line breaks. */
+    static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\', ';', ',' -> escaped.append('\\').append(c);
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> {
+                    // CRLF and lone CR both become one escaped newline
+                    if (i + 1 >= text.length() || text.charAt(i + 1) != '\n') {
+                        escaped.append("\\n");
+                    }
+                }
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void line(String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        int start = 0;
+        // continuation lines start with a space, which counts towards their 75 octets
+        int limit = MAX_LINE_OCTETS;
+        while (bytes.length - start > limit) {
+            int end = start + limit;
+            while ((bytes[end] & 0xC0) == 0x80) {
+                // never split a multi-byte character
+                end--;
+            }
+            out.write(bytes, start, end - start);
+            out.write(CRLF);
+            out.write(' ');
+            start = end;
+            limit = MAX_LINE_OCTETS - 1;
+        }
+        out.write(bytes, start, bytes.length - start);
+        out.write(CRLF);
+    }
+}
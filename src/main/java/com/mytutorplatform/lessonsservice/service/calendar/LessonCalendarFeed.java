@@ -0,0 +1,143 @@
+package com.mytutorplatform.lessonsservice.service.calendar;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mytutorplatform.lessonsservice.model.LessonField;
+import com.mytutorplatform.lessonsservice.model.response.LessonView;
+import com.mytutorplatform.lessonsservice.service.LessonService;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * iCalendar feeds of a tutor's and/or student's lessons for external calendar apps, covering
+ * {@code lessons.calendar.past-days} back to {@code lessons.calendar.future-days} ahead, recurring
+ * series expanded. Rendered feeds are kept per user under the ETag they were rendered for; that ETag
+ * is the users' {@link UserScheduleVersions schedule version} plus the window's first day, so a
+ * lesson write or the window moving on renders the feed afresh while every other poll is answered
+ * with a 304 or the cached bytes.
+ * <p>
+ * A feed is rendered into memory so that it can be cached, and only then written to the response.
+ * The cache is bounded by the total size of the feeds it holds, {@code lessons.calendar.max-bytes},
+ * rather than by their number, since one busy tutor's feed can be many times another's.
+ */
+@Component
+public class LessonCalendarFeed {
+
+    private static final String PRODUCT_ID = "-//MyTutorPlatform//Lessons//EN";
+
+    private final LessonService lessonService;
+    private final UserScheduleVersions userScheduleVersions;
+    private final Clock clock;
+    private final long pastDays;
+    private final long futureDays;
+    private final Cache<Key, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public LessonCalendarFeed(LessonService lessonService,
+                              UserScheduleVersions userScheduleVersions,
+                              Clock clock,
+                              MeterRegistry meterRegistry,
+                              @Value("${lessons.calendar.past-days:30}") long pastDays,
+                              @Value("${lessons.calendar.future-days:180}") long futureDays,
+                              @Value("${lessons.calendar.max-bytes:67108864}") long maxBytes) {
+        this.lessonService = lessonService;
+        this.userScheduleVersions = userScheduleVersions;
+        this.clock = clock;
+        this.pastDays = pastDays;
+        this.futureDays = futureDays;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Key, Entry>weigher((key, entry) -> entry.body().length)
+                .build();
+        this.hits = feeds(meterRegistry, "hit");
+        this.misses = feeds(meterRegistry, "miss");
+    }
+
+    /** ETag of the feed; take it before {@link #render rendering}, as with any schedule ETag. */
+    public String etag(UUID tutorId, UUID studentId) {
+        if (tutorId == null && studentId == null) {
+            throw new IllegalArgumentException("tutorId or studentId is required");
+        }
+        String versions = userScheduleVersions.etag(tutorId, studentId);
+        return versions.substring(0, versions.length() - 1) + "-d" + windowStart().toEpochDay() + "\"";
+    }
+
+    /** The feed for {@code etag}, from the cache when it was already rendered for it. */
+    public byte[] render(UUID tutorId, UUID studentId, String etag) {
+        Key key = new Key(tutorId, studentId);
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.etag().equals(etag)) {
+            hits.increment();
+            return entry.body();
+        }
+        misses.increment();
+
+        LocalDate from = windowStart();
+        List<LessonView> lessons = lessonService.getCalendarLessons(tutorId, studentId,
+                from.atStartOfDay().atOffset(ZoneOffset.UTC),
+                from.plusDays(pastDays + futureDays).atStartOfDay().atOffset(ZoneOffset.UTC));
+        byte[] body = write(lessons, clock.instant());
+        entries.put(key, new Entry(etag, body));
+        return body;
+    }
+
+    private LocalDate windowStart() {
+        return LocalDate.now(clock.withZone(ZoneOffset.UTC)).minusDays(pastDays);
+    }
+
+    private static byte[] write(List<LessonView> lessons, Instant stamp) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512 + lessons.size() * 256);
+        ICalendarWriter writer = new ICalendarWriter(out);
+        try {
+            writer.beginCalendar(PRODUCT_ID, "Lessons");
+            for (LessonView lesson : lessons) {
+                OffsetDateTime start = lesson.getDateTime();
+                OffsetDateTime end = (OffsetDateTime) lesson.get(LessonField.END_DATE);
+                if (end == null) {
+                    Integer duration = (Integer) lesson.get(LessonField.DURATION);
+                    end = start.plusMinutes(duration != null ? duration : 0);
+                }
+                String title = (String) lesson.get(LessonField.TITLE);
+                writer.event(lesson.getId() + "@lessons.mytutorplatform",
+                        stamp,
+                        start.toInstant(),
+                        end.toInstant(),
+                        title != null && !title.isBlank() ? title : "Lesson",
+                        (String) lesson.get(LessonField.LOCATION),
+                        // cancelled and missed lessons are left out of the feed altogether
+                        "CONFIRMED");
+            }
+            writer.endCalendar();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static Counter feeds(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("lessons.calendar.feeds")
+                .description("Calendar feed requests by whether the rendered feed was cached")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Key(UUID tutorId, UUID studentId) {}
+
+    private record Entry(String etag, byte[] body) {}
+}
@@ -0,0 +1,103 @@
+package com.mytutorplatform.lessonsservice.service.lifecycle;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel: timers are hashed by deadline tick into {@code wheelSize} slots, so
+ * scheduling and cancelling are O(1) and advancing the clock only visits the slots of the ticks
+ * that passed. Timers further out than one revolution share a slot with nearer ones and stay put
+ * until their own tick comes round. A key holds at most one timer; scheduling it again moves it.
+ * Not thread-safe.
+ */
+final class HashedTimingWheel<K> {
+
+    private final Instant origin;
+    private final long tickNanos;
+    private final List<List<Timer<K>>> slots;
+    private final int mask;
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    HashedTimingWheel(Instant origin, Duration tick, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        }
+        this.origin = origin;
+        this.tickNanos = tick.toNanos();
+        this.mask = wheelSize - 1;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /** (Re)schedules the key; a deadline already passed fires on the next {@link #advance}. */
+    void schedule(K key, Instant deadline) {
+        cancel(key);
+        long nanos = Duration.between(origin, deadline).toNanos();
+        long tick = Math.max(-Math.floorDiv(-nanos, tickNanos), currentTick + 1);
+        Timer<K> timer = new Timer<>(key, tick);
+        timers.put(key, timer);
+        slots.get((int) (tick & mask)).add(timer);
+    }
+
+    void cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer != null) {
+            // left in its slot and skipped when the slot is next visited
+            timer.cancelled = true;
+        }
+    }
+
+    boolean isScheduled(K key) {
+        return timers.containsKey(key);
+    }
+
+    int size() {
+        return timers.size();
+    }
+
+    /** Moves the clock to {@code now} and returns the keys whose deadline has passed, earliest first. */
+    List<K> advance(Instant now) {
+        long targetTick = Math.floorDiv(Duration.between(origin, now).toNanos(), tickNanos);
+        if (targetTick <= currentTick) {
+            return List.of();
+        }
+        // after a stall longer than one revolution every slot is visited once
+        long firstTick = Math.max(currentTick + 1, targetTick - mask);
+        List<Timer<K>> expired = new ArrayList<>();
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Iterator<Timer<K>> slot = slots.get((int) (tick & mask)).iterator();
+            while (slot.hasNext()) {
+                Timer<K> timer = slot.next();
+                if (timer.cancelled) {
+                    slot.remove();
+                } else if (timer.deadlineTick <= targetTick) {
+                    slot.remove();
+                    timers.remove(timer.key);
+                    expired.add(timer);
+                }
+            }
+        }
+        currentTick = targetTick;
+        expired.sort((left, right) -> Long.compare(left.deadlineTick, right.deadlineTick));
+        return expired.stream().map(timer -> timer.key).toList();
+    }
+
+    private static final class Timer<K> {
+        private final K key;
+        private final long deadlineTick;
+        private boolean cancelled;
+
+        private Timer(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.mytutorplatform.lessonsservice.service.lifecycle;
+
+import com.mytutorplatform.lessonsservice.kafka.producer.LessonEventOutbox;
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.kafka.Event;
+import com.mytutorplatform.lessonsservice.model.response.LessonStreamEvent;
+import com.mytutorplatform.lessonsservice.service.LessonReadModels;
+import com.mytutorplatform.lessonsservice.service.LessonRollupService;
+import com.mytutorplatform.lessonsservice.service.stream.LessonEventPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves lessons through their lifecycle on the clock: {@code SCHEDULED}/{@code RESCHEDULED} become
+ * {@code IN_PROGRESS} at their start, and at their end {@code IN_PROGRESS} becomes
+ * {@code COMPLETED} while a lesson that never started (e.g. its start passed while no instance was
+ * running) becomes {@code MISSED}. A starting-soon reminder goes out
+ * {@code lessons.lifecycle.reminder-lead-minutes} ahead of the start.
+ * <p>
+ * Upcoming starts and ends sit in a {@link HashedTimingWheel}. It is filled every
+ * {@code lessons.lifecycle.load-interval-ms} from the lessons starting in the next
+ * {@code lessons.lifecycle.lookahead-minutes} (and, for catch-up, those that started in the last
+ * {@code lessons.lifecycle.catch-up-hours}), and kept current in between by the committed lesson
+ * events. Writes that publish no event (series-level statements) are seen by the next load. Each
+ * tick applies what fell due as one set-based {@code UPDATE} per kind that re-checks status and
+ * time, so a stale timer is a no-op and two instances never apply the same transition twice.
+ * Transitions and reminders go into the lesson event outbox in the same transaction.
+ */
+@Slf4j
+@Component
+public class LessonLifecycleScheduler {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int BATCH_SIZE = 1_000;
+    private static final List<LessonStatus> ACTIVE_STATUSES =
+            List.of(LessonStatus.SCHEDULED, LessonStatus.RESCHEDULED, LessonStatus.IN_PROGRESS);
+
+    private static final String RETURNED = """
+            l.id, l.tutor_id, l.student_id, l.title, l.date_time, l.duration, due.status, l.status
+            """;
+    private static final String LOAD = """
+            SELECT id, status, date_time, end_date, reminder_sent_at
+            FROM lessons
+            WHERE date_time > ? AND date_time <= ?
+              AND status IN ('SCHEDULED', 'RESCHEDULED', 'IN_PROGRESS')
+            """;
+    // the updates join on date_time too, so a partitioned lessons table is probed in one partition per row
+    private static final String START = """
+            WITH due AS (
+                SELECT id, date_time, status FROM lessons
+                WHERE id = ANY (?) AND status IN ('SCHEDULED', 'RESCHEDULED') AND date_time <= ? AND end_date > ?
+                FOR UPDATE
+            )
+            UPDATE lessons l SET status = 'IN_PROGRESS', updated_at = ?
+            FROM due WHERE l.id = due.id AND l.date_time = due.date_time
+            RETURNING
+            """ + RETURNED;
+    private static final String END = """
+            WITH due AS (
+                SELECT id, date_time, status FROM lessons
+                WHERE id = ANY (?) AND status IN ('SCHEDULED', 'RESCHEDULED', 'IN_PROGRESS') AND end_date <= ?
+                FOR UPDATE
+            )
+            UPDATE lessons l SET status = CASE WHEN due.status = 'IN_PROGRESS' THEN 'COMPLETED' ELSE 'MISSED' END,
+                                 updated_at = ?
+            FROM due WHERE l.id = due.id AND l.date_time = due.date_time
+            RETURNING
+            """ + RETURNED;
+    private static final String REMIND = """
+            WITH due AS (
+                SELECT id, date_time, status FROM lessons
+                WHERE id = ANY (?) AND status IN ('SCHEDULED', 'RESCHEDULED') AND reminder_sent_at IS NULL
+                  AND date_time > ? AND date_time <= ?
+                FOR UPDATE
+            )
+            UPDATE lessons l SET reminder_sent_at = ?
+            FROM due WHERE l.id = due.id AND l.date_time = due.date_time
+            RETURNING
+            """ + RETURNED;
+
+    private static final RowMapper<Transition> TRANSITION = (resultSet, row) -> new Transition(
+            resultSet.getObject(1, UUID.class),
+            resultSet.getObject(2, UUID.class),
+            resultSet.getObject(3, UUID.class),
+            resultSet.getString(4),
+            resultSet.getObject(5, OffsetDateTime.class),
+            resultSet.getInt(6),
+            LessonStatus.valueOf(resultSet.getString(7)),
+            LessonStatus.valueOf(resultSet.getString(8)));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final LessonRollupService lessonRollupService;
+    private final LessonReadModels lessonReadModels;
+    private final LessonEventPublisher lessonEventPublisher;
+    private final LessonEventOutbox lessonEventOutbox;
+
+    private final boolean enabled;
+    private final Duration lookahead;
+    private final Duration reminderLead;
+    private final Duration catchUp;
+
+    /** Guards the wheel: ticks and loads run on the scheduler, events arrive on the listener thread. */
+    private final HashedTimingWheel<Timer> wheel;
+
+    public LessonLifecycleScheduler(JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    Clock clock,
+                                    LessonRollupService lessonRollupService,
+                                    LessonReadModels lessonReadModels,
+                                    LessonEventPublisher lessonEventPublisher,
+                                    LessonEventOutbox lessonEventOutbox,
+                                    @Value("${lessons.lifecycle.enabled:true}") boolean enabled,
+                                    @Value("${lessons.lifecycle.tick-ms:1000}") long tickMillis,
+                                    @Value("${lessons.lifecycle.lookahead-minutes:30}") long lookaheadMinutes,
+                                    @Value("${lessons.lifecycle.reminder-lead-minutes:10}") long reminderLeadMinutes,
+                                    @Value("${lessons.lifecycle.catch-up-hours:24}") long catchUpHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.lessonRollupService = lessonRollupService;
+        this.lessonReadModels = lessonReadModels;
+        this.lessonEventPublisher = lessonEventPublisher;
+        this.lessonEventOutbox = lessonEventOutbox;
+        this.enabled = enabled;
+        this.lookahead = Duration.ofMinutes(lookaheadMinutes);
+        this.reminderLead = Duration.ofMinutes(reminderLeadMinutes);
+        this.catchUp = Duration.ofHours(catchUpHours);
+        this.wheel = new HashedTimingWheel<>(clock.instant(), Duration.ofMillis(tickMillis), WHEEL_SIZE);
+    }
+
+    @Scheduled(initialDelay = 0L, fixedDelayString = "${lessons.lifecycle.load-interval-ms:60000}")
+    public void loadUpcoming() {
+        if (enabled) {
+            load(clock.instant());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lessons.lifecycle.tick-ms:1000}")
+    public void tick() {
+        if (enabled) {
+            advance(clock.instant());
+        }
+    }
+
+    /** Schedules the timers of the lessons starting in {@code (now - catch-up, now + lookahead]}. */
+    public void load(Instant now) {
+        OffsetDateTime at = now.atOffset(ZoneOffset.UTC);
+        List<LoadedLesson> lessons = jdbcTemplate.query(LOAD, (resultSet, row) -> new LoadedLesson(
+                        resultSet.getObject(1, UUID.class),
+                        LessonStatus.valueOf(resultSet.getString(2)),
+                        resultSet.getObject(3, OffsetDateTime.class).toInstant(),
+                        instantOrNull(resultSet.getObject(4, OffsetDateTime.class)),
+                        resultSet.getObject(5, OffsetDateTime.class) != null),
+                at.minus(catchUp), at.plus(lookahead));
+        synchronized (wheel) {
+            for (LoadedLesson lesson : lessons) {
+                schedule(lesson.id(), lesson.status(), lesson.start(), lesson.end(), !lesson.reminded(), now);
+            }
+        }
+        log.debug("Lesson lifecycle loaded {} lessons, {} timers pending", lessons.size(), pendingTimers());
+    }
+
+    /** Keeps the lesson's timers in line with a committed write from any instance. */
+    public void apply(LessonStreamEvent event) {
+        if (!enabled || event.lessonId() == null) {
+            return;
+        }
+        Instant now = clock.instant();
+        synchronized (wheel) {
+            if (event.type() == LessonStreamEvent.Type.DELETED
+                    || !ACTIVE_STATUSES.contains(event.status())
+                    || event.startsAtUtc() == null
+                    || event.startsAtUtc().isAfter(now.plus(lookahead))) {
+                // gone, settled, or far enough out for a later load to pick up
+                for (Timer.Kind kind : Timer.Kind.values()) {
+                    wheel.cancel(new Timer(event.lessonId(), kind));
+                }
+                return;
+            }
+            Instant end = event.startsAtUtc().plus(Duration.ofMinutes(event.duration()));
+            // whether the reminder already went out is not in the event; the UPDATE knows
+            schedule(event.lessonId(), event.status(), event.startsAtUtc(), end, true, now);
+        }
+    }
+
+    /** Applies every transition and reminder that fell due by {@code now}. */
+    public void advance(Instant now) {
+        Map<Timer.Kind, List<UUID>> due = new EnumMap<>(Timer.Kind.class);
+        synchronized (wheel) {
+            for (Timer timer : wheel.advance(now)) {
+                due.computeIfAbsent(timer.kind(), ignored -> new ArrayList<>()).add(timer.lessonId());
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        OffsetDateTime at = now.atOffset(ZoneOffset.UTC);
+        // like @UpdateTimestamp, in JVM-local time, which the change feed compares against
+        LocalDateTime updatedAt = LocalDateTime.ofInstant(now, ZoneId.systemDefault());
+        List<Event> events = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            // starts before ends, so a lesson whose start and end both passed goes straight to MISSED
+            for (List<UUID> batch : batches(due.get(Timer.Kind.START))) {
+                events.addAll(transition(START, batch, at, at, updatedAt));
+            }
+            for (List<UUID> batch : batches(due.get(Timer.Kind.END))) {
+                events.addAll(transition(END, batch, at, updatedAt));
+            }
+            for (List<UUID> batch : batches(due.get(Timer.Kind.REMIND))) {
+                for (Transition reminded : update(REMIND, batch, at, at.plus(reminderLead), at)) {
+                    events.add(event("LESSON_STARTING_SOON", reminded));
+                }
+            }
+            // announced if and only if the transitions commit
+            lessonEventOutbox.add(events);
+        });
+    }
+
+    int pendingTimers() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    private void schedule(UUID lessonId, LessonStatus status, Instant start, Instant end, boolean remind, Instant now) {
+        Timer startTimer = new Timer(lessonId, Timer.Kind.START);
+        Timer remindTimer = new Timer(lessonId, Timer.Kind.REMIND);
+        if (status == LessonStatus.IN_PROGRESS) {
+            wheel.cancel(startTimer);
+            wheel.cancel(remindTimer);
+        } else {
+            wheel.schedule(startTimer, start);
+            Instant remindAt = start.minus(reminderLead);
+            if (remind && start.isAfter(now)) {
+                wheel.schedule(remindTimer, remindAt.isAfter(now) ? remindAt : now);
+            } else {
+                wheel.cancel(remindTimer);
+            }
+        }
+        if (end != null) {
+            wheel.schedule(new Timer(lessonId, Timer.Kind.END), end);
+        }
+    }
+
+    private List<Event> transition(String sql, List<UUID> lessonIds, Object... parameters) {
+        List<Event> events = new ArrayList<>();
+        for (Transition transition : update(sql, lessonIds, parameters)) {
+            lessonRollupService.recordStatusChange(transition.tutorId(), transition.studentId(), transition.dateTime(),
+                    transition.duration(), transition.previousStatus(), transition.status());
+            Lesson lesson = transition.toLesson();
+            lessonReadModels.onLessonWritten(lesson);
+            lessonEventPublisher.updated(lesson, transition.previousStatus(),
+                    transition.tutorId(), transition.studentId());
+            events.add(event(transition.status() == LessonStatus.IN_PROGRESS
+                    ? "LESSON_STARTED"
+                    : "LESSON_" + transition.status().name(), transition));
+        }
+        return events;
+    }
+
+    private List<Transition> update(String sql, List<UUID> lessonIds, Object... parameters) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("uuid", lessonIds.toArray()));
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 2, parameters[i]);
+            }
+            return statement;
+        }, TRANSITION);
+    }
+
+    private static List<List<UUID>> batches(List<UUID> lessonIds) {
+        if (lessonIds == null) {
+            return List.of();
+        }
+        List<List<UUID>> batches = new ArrayList<>();
+        for (int from = 0; from < lessonIds.size(); from += BATCH_SIZE) {
+            batches.add(lessonIds.subList(from, Math.min(from + BATCH_SIZE, lessonIds.size())));
+        }
+        return batches;
+    }
+
+    private Event event(String type, Transition transition) {
+        Event event = new Event();
+        event.setEventType(type);
+        event.setTimestamp(Date.from(clock.instant()));
+        event.setLessonId(transition.lessonId());
+        event.setTutorId(transition.tutorId());
+        event.setStudentIds(new UUID[]{transition.studentId()});
+        event.setStartTime(transition.dateTime());
+        return event;
+    }
+
+    private static Instant instantOrNull(OffsetDateTime dateTime) {
+        return dateTime != null ? dateTime.toInstant() : null;
+    }
+
+    record Timer(UUID lessonId, Kind kind) {
+        enum Kind { REMIND, START, END }
+    }
+
+    private record LoadedLesson(UUID id, LessonStatus status, Instant start, Instant end, boolean reminded) {
+    }
+
+    private record Transition(UUID lessonId, UUID tutorId, UUID studentId, String title, OffsetDateTime dateTime,
+                              int duration, LessonStatus previousStatus, LessonStatus status) {
+        Lesson toLesson() {
+            Lesson lesson = new Lesson();
+            lesson.setId(lessonId);
+            lesson.setTutorId(tutorId);
+            lesson.setStudentId(studentId);
+            lesson.setTitle(title);
+            lesson.setDateTime(dateTime);
+            lesson.setDuration(duration);
+            lesson.setStatus(status);
+            return lesson;
+        }
+    }
+}
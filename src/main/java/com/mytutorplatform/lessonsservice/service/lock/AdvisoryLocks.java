@@ -0,0 +1,48 @@
+package com.mytutorplatform.lessonsservice.service.lock;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Postgres advisory locks held until the current transaction ends. Every lock uses the two-key form,
+ * a {@link Space} per purpose and a key within it, so locks taken for different purposes never
+ * collide; within a space, distinct objects may share a key and then merely wait for each other.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdvisoryLocks {
+
+    public enum Space {
+        TUTOR_STUDENT_RELATIONS(0x52454c41),
+        LESSON_ROLLUPS(0x524f4c4c),
+        OUTBOX_RELAY(0x4f555442),
+        LESSON_PARTITIONS(0x50415254),
+        TUTOR_SCHEDULE(0x53434844);
+
+        private final int id;
+
+        Space(int id) {
+            this.id = id;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Waits for the lock. */
+    public void lock(Space space, int key) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", resultSet -> null, space.id, key);
+    }
+
+    public void lock(Space space, UUID id) {
+        lock(space, id.hashCode());
+    }
+
+    /** Takes the lock only if nobody holds it. */
+    public boolean tryLock(Space space, int key) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?, ?)", Boolean.class, space.id, key));
+    }
+}
@@ -0,0 +1,392 @@
+package com.mytutorplatform.lessonsservice.service.partition;
+
+import com.mytutorplatform.lessonsservice.service.lock.AdvisoryLocks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code lessons} range-partitioned by month on {@code date_time}, so dashboard and schedule
+ * queries, which all bound {@code dateTime}, only descend the indexes of the months they touch.
+ * <p>
+ * With {@code lessons.partitioning.enabled} the plain table is converted once at startup:
+ * <ul>
+ *   <li>its rows are copied into monthly partitions named {@code lessons_pYYYY_MM};</li>
+ *   <li>lessons outside every month land in {@code lessons_default};</li>
+ *   <li>the primary key becomes {@code (id, date_time)};</li>
+ *   <li>the foreign keys of the {@link #CHILD_TABLES} are replaced by triggers, because no key on
+ *       {@code id} alone can exist any more: one rejects children of a lesson that does not exist, the
+ *       other deletes the children with their lesson but leaves them alone when a lesson only moves
+ *       between partitions.</li>
+ * </ul>
+ * Hibernate does not generate these keys, it could not reference a partitioned {@code lessons}; every
+ * start creates them here instead, as foreign keys on a plain table and as triggers on a partitioned one.
+ * Lessons are still looked up by {@code id} alone, which probes the primary key index of every live
+ * partition; entity updates and deletes also match on the {@code date_time} partition key and touch one.
+ * Every night, and at startup, partitions are created {@code lessons.partitioning.months-ahead}
+ * months into the future; lessons already waiting in the default partition move into them. Months
+ * older than {@code lessons.partitioning.archive-after-months} are detached and attached to
+ * {@code lessons_archive}, which the application does not read, so the data is kept without a copy.
+ * Instances take turns through an advisory lock.
+ * <p>
+ * Either way a trigger records every lesson that leaves {@code lessons} in {@code lesson_deletions},
+ * the tombstones of the change feed; archiving records its lessons there itself.
+ */
+@Slf4j
+@Component
+public class LessonPartitionMaintenance implements ApplicationRunner {
+
+    private static final String DEFAULT_PARTITION = "lessons_default";
+    private static final String ARCHIVE = "lessons_archive";
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("lessons_p(\\d{4})_(\\d{2})");
+    /** Set for the maintenance transaction, so moving rows between partitions keeps their children. */
+    private static final String MOVING_SETTING = "lessons.partition_maintenance";
+
+    /** Tables whose {@code lesson_id} references a lesson and goes with it when it is deleted. */
+    static final List<String> CHILD_TABLES = List.of(
+            "lesson_attachments", "lesson_content_links", "lesson_materials", "lesson_notes");
+
+    /** Indexes that later ones made redundant; ddl-auto only ever adds indexes, so they are dropped here. */
+    private static final List<String> OBSOLETE_INDEXES = List.of(
+            // a prefix of idx_lessons_tutor_datetime_id
+            "idx_lessons_tutor_datetime");
+
+    private static final String CHILD_KEYS = """
+            SELECT c.conrelid::regclass::text, c.conname
+            FROM pg_constraint c
+            WHERE c.contype = 'f' AND c.confrelid = 'lessons'::regclass
+            ORDER BY 1, 2
+            """;
+    private static final String CHECK_REFERENCE_FUNCTION = """
+            CREATE OR REPLACE FUNCTION lessons_check_reference() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                -- like a foreign key: the share lock keeps the lesson from being deleted until this commits
+                PERFORM 1 FROM lessons WHERE id = NEW.lesson_id FOR KEY SHARE;
+                IF NOT FOUND THEN
+                    RAISE foreign_key_violation USING MESSAGE = format('lesson %s referenced from %s does not exist',
+                            NEW.lesson_id, TG_TABLE_NAME);
+                END IF;
+                RETURN NEW;
+            END $$
+            """;
+    private static final String LOG_DELETION_FUNCTION = """
+            CREATE OR REPLACE FUNCTION lessons_log_deletion() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                IF current_setting('%s', true) = 'on' OR EXISTS (SELECT 1 FROM lessons WHERE id = OLD.id) THEN
+                    RETURN NULL;
+                END IF;
+                INSERT INTO lesson_deletions (lesson_id, tutor_id, student_id, deleted_at)
+                VALUES (OLD.id, OLD.tutor_id, OLD.student_id, clock_timestamp()::timestamp)
+                ON CONFLICT (lesson_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at;
+                RETURN NULL;
+            END $$
+            """.formatted(MOVING_SETTING);
+    /** Tombstones for the lessons of the {@code FROM} clause appended, which archiving takes out of {@code lessons}. */
+    private static final String LOG_ARCHIVED = """
+            INSERT INTO lesson_deletions (lesson_id, tutor_id, student_id, deleted_at)
+            SELECT id, tutor_id, student_id, clock_timestamp()::timestamp
+            """;
+    private static final String LOG_ARCHIVED_CONFLICT = " ON CONFLICT (lesson_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLocks advisoryLocks;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int archiveAfterMonths;
+
+    public LessonPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate,
+                                      AdvisoryLocks advisoryLocks,
+                                      Clock clock,
+                                      @Value("${lessons.partitioning.enabled:false}") boolean enabled,
+                                      @Value("${lessons.partitioning.months-ahead:3}") int monthsAhead,
+                                      @Value("${lessons.partitioning.archive-after-months:24}") int archiveAfterMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.advisoryLocks = advisoryLocks;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.archiveAfterMonths = Math.max(1, archiveAfterMonths);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            try {
+                convert();
+                maintain();
+            } catch (RuntimeException e) {
+                log.error("Partitioning lessons failed; the table is left as it was", e);
+            }
+        }
+        try {
+            enforceChildReferences();
+        } catch (RuntimeException e) {
+            log.error("Could not enforce the references of lesson child tables", e);
+        }
+        try {
+            OBSOLETE_INDEXES.forEach(index -> jdbcTemplate.execute("DROP INDEX IF EXISTS " + index));
+        } catch (RuntimeException e) {
+            log.error("Could not drop obsolete lesson indexes", e);
+        }
+    }
+
+    @Scheduled(cron = "${lessons.partitioning.cron:0 15 3 * * *}", zone = "UTC")
+    public void maintainScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.warn("Lesson partition maintenance failed, retrying with the next run", e);
+        }
+    }
+
+    /**
+     * Turns the plain {@code lessons} table into the partitioned one in a single transaction that
+     * locks out every reader and writer while the rows are copied; false when it already is partitioned.
+     */
+    public boolean convert() {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            advisoryLocks.lock(AdvisoryLocks.Space.LESSON_PARTITIONS, 0);
+            if (partitioned()) {
+                return false;
+            }
+            jdbcTemplate.execute("LOCK TABLE lessons IN ACCESS EXCLUSIVE MODE");
+
+            List<String> indexes = jdbcTemplate.queryForList("""
+                    SELECT pg_get_indexdef(i.indexrelid) FROM pg_index i
+                    WHERE i.indrelid = 'lessons'::regclass AND NOT i.indisprimary
+                    """, String.class);
+            List<String> indexNames = jdbcTemplate.queryForList("""
+                    SELECT i.indexrelid::regclass::text FROM pg_index i
+                    WHERE i.indrelid = 'lessons'::regclass AND NOT i.indisprimary
+                    """, String.class);
+            List<String> ownKeys = jdbcTemplate.queryForList("""
+                    SELECT format('ALTER TABLE lessons ADD CONSTRAINT %I %s', conname, pg_get_constraintdef(oid))
+                    FROM pg_constraint WHERE conrelid = 'lessons'::regclass AND contype = 'f'
+                    """, String.class);
+            List<ChildKey> childKeys = jdbcTemplate.query(CHILD_KEYS, (resultSet, row) -> new ChildKey(
+                    resultSet.getString(1), resultSet.getString(2)));
+            OffsetDateTime oldest = jdbcTemplate.queryForObject("SELECT min(date_time) FROM lessons", OffsetDateTime.class);
+
+            for (ChildKey key : childKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + key.table() + " DROP CONSTRAINT \"" + key.constraint() + "\"");
+            }
+            jdbcTemplate.execute("ALTER TABLE lessons RENAME TO lessons_unpartitioned");
+            jdbcTemplate.execute("ALTER TABLE lessons_unpartitioned RENAME CONSTRAINT lessons_pkey TO lessons_unpartitioned_pkey");
+            for (String index : indexNames) {
+                jdbcTemplate.execute("DROP INDEX " + index);
+            }
+
+            createParent("lessons", "lessons_unpartitioned");
+            indexes.forEach(jdbcTemplate::execute);
+            ownKeys.forEach(jdbcTemplate::execute);
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF lessons DEFAULT");
+            createParent(ARCHIVE, "lessons");
+            jdbcTemplate.execute("CREATE TABLE " + ARCHIVE + "_default PARTITION OF " + ARCHIVE + " DEFAULT");
+
+            YearMonth current = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+            YearMonth first = oldest != null
+                    ? YearMonth.from(oldest.withOffsetSameInstant(ZoneOffset.UTC))
+                    : current;
+            for (YearMonth month = first.isBefore(current) ? first : current;
+                 !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+                jdbcTemplate.execute("CREATE TABLE " + partitionName(month) + " PARTITION OF lessons " + bounds(month));
+            }
+            int copied = jdbcTemplate.update("INSERT INTO lessons SELECT * FROM lessons_unpartitioned");
+            jdbcTemplate.execute("DROP TABLE lessons_unpartitioned");
+
+            installReferenceTriggers();
+            installDeletionLog();
+            log.info("Partitioned lessons by month: {} rows copied, {} child keys replaced by triggers",
+                    copied, childKeys.size());
+            return true;
+        }));
+    }
+
+    /**
+     * Makes every {@link #CHILD_TABLES child table} reference its lesson: through a cascading foreign key
+     * while {@code lessons} is a plain table, through triggers once it is partitioned. A foreign key
+     * cannot be added while the table holds orphans; that is logged and retried at the next start.
+     * The deletion log trigger is installed along with them.
+     */
+    public void enforceChildReferences() {
+        transactionTemplate.executeWithoutResult(status -> {
+            advisoryLocks.lock(AdvisoryLocks.Space.LESSON_PARTITIONS, 0);
+            installDeletionLog();
+            if (partitioned()) {
+                installReferenceTriggers();
+                return;
+            }
+            for (String table : CHILD_TABLES) {
+                Boolean referenced = jdbcTemplate.queryForObject("""
+                        SELECT EXISTS (SELECT 1 FROM pg_constraint
+                                       WHERE contype = 'f' AND conrelid = ?::regclass AND confrelid = 'lessons'::regclass)
+                        """, Boolean.class, table);
+                if (!Boolean.TRUE.equals(referenced)) {
+                    jdbcTemplate.execute("ALTER TABLE " + table + " ADD CONSTRAINT fk_" + table + "_lesson"
+                            + " FOREIGN KEY (lesson_id) REFERENCES lessons (id) ON DELETE CASCADE");
+                    log.info("Added the lesson foreign key of {}", table);
+                }
+            }
+        });
+    }
+
+    private void installReferenceTriggers() {
+        jdbcTemplate.execute(deleteChildrenFunction());
+        jdbcTemplate.execute("""
+                CREATE OR REPLACE TRIGGER lessons_delete_children AFTER DELETE ON lessons
+                FOR EACH ROW EXECUTE FUNCTION lessons_delete_children()
+                """);
+        jdbcTemplate.execute(CHECK_REFERENCE_FUNCTION);
+        for (String table : CHILD_TABLES) {
+            jdbcTemplate.execute("CREATE OR REPLACE TRIGGER " + table + "_lesson_reference"
+                    + " BEFORE INSERT OR UPDATE OF lesson_id ON " + table
+                    + " FOR EACH ROW EXECUTE FUNCTION lessons_check_reference()");
+        }
+    }
+
+    /** Rows that left {@code lessons} only to enter another partition are not deleted lessons. */
+    private void installDeletionLog() {
+        jdbcTemplate.execute(LOG_DELETION_FUNCTION);
+        jdbcTemplate.execute("""
+                CREATE OR REPLACE TRIGGER lessons_log_deletion AFTER DELETE ON lessons
+                FOR EACH ROW EXECUTE FUNCTION lessons_log_deletion()
+                """);
+    }
+
+    /**
+     * Creates the partitions up to {@code months-ahead} and archives the months past
+     * {@code archive-after-months}; a no-op while another instance is at it or before conversion.
+     */
+    public void maintain() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!advisoryLocks.tryLock(AdvisoryLocks.Space.LESSON_PARTITIONS, 0) || !partitioned()) {
+                return;
+            }
+            jdbcTemplate.execute("SET LOCAL " + MOVING_SETTING + " = 'on'");
+            TreeSet<YearMonth> live = partitions("lessons");
+            TreeSet<YearMonth> archived = partitions(ARCHIVE);
+
+            YearMonth current = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+            int created = 0;
+            for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+                if (!live.contains(month) && !archived.contains(month)) {
+                    createPartition(month);
+                    created++;
+                }
+            }
+
+            YearMonth cutoff = current.minusMonths(archiveAfterMonths);
+            int archivedMonths = 0;
+            for (YearMonth month : live.headSet(cutoff)) {
+                String name = partitionName(month);
+                jdbcTemplate.update(LOG_ARCHIVED + "FROM " + name + LOG_ARCHIVED_CONFLICT);
+                jdbcTemplate.execute("ALTER TABLE lessons DETACH PARTITION " + name);
+                jdbcTemplate.execute("ALTER TABLE " + ARCHIVE + " ATTACH PARTITION " + name + " " + bounds(month));
+                archivedMonths++;
+            }
+            int archivedStrays = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                            + " WHERE date_time < ? RETURNING *), archived AS (INSERT INTO " + ARCHIVE + " SELECT * FROM moved) "
+                            + LOG_ARCHIVED + "FROM moved" + LOG_ARCHIVED_CONFLICT,
+                    start(cutoff));
+            if (created > 0 || archivedMonths > 0 || archivedStrays > 0) {
+                log.info("Lesson partitions: {} created, {} months and {} stray lessons archived",
+                        created, archivedMonths, archivedStrays);
+            }
+        });
+    }
+
+    /** Adds the month's partition, taking over its lessons that were waiting in the default partition. */
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE lessons INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE date_time >= ? AND date_time < ? RETURNING *) INSERT INTO " + name + " SELECT * FROM moved",
+                start(month), start(month.plusMonths(1)));
+        jdbcTemplate.execute("ALTER TABLE lessons ATTACH PARTITION " + name + " " + bounds(month));
+    }
+
+    private void createParent(String name, String template) {
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + template
+                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (date_time)");
+        // a key on a partitioned table has to contain the partition column
+        jdbcTemplate.execute("ALTER TABLE " + name + " ADD CONSTRAINT " + name + "_pkey PRIMARY KEY (id, date_time)");
+    }
+
+    private boolean partitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_class WHERE relname = 'lessons' AND relkind = 'p' AND pg_table_is_visible(oid))",
+                Boolean.class));
+    }
+
+    private TreeSet<YearMonth> partitions(String parent) {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass
+                """, String.class, parent).forEach(name -> {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        });
+        return months;
+    }
+
+    /**
+     * The cascade of the dropped foreign keys, now done by a trigger. Rows that left {@code lessons}
+     * only to enter another partition keep their children.
+     */
+    private static String deleteChildrenFunction() {
+        StringBuilder actions = new StringBuilder();
+        for (String table : CHILD_TABLES) {
+            actions.append("    DELETE FROM ").append(table).append(" WHERE lesson_id = OLD.id;\n");
+        }
+        return """
+                CREATE OR REPLACE FUNCTION lessons_delete_children() RETURNS trigger LANGUAGE plpgsql AS $$
+                BEGIN
+                    IF current_setting('%s', true) = 'on' OR EXISTS (SELECT 1 FROM lessons WHERE id = OLD.id) THEN
+                        RETURN NULL;
+                    END IF;
+                %s    RETURN NULL;
+                END $$
+                """.formatted(MOVING_SETTING, actions);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "lessons_p" + PARTITION_MONTH.format(month);
+    }
+
+    private static String bounds(YearMonth month) {
+        return "FOR VALUES FROM ('" + start(month) + "') TO ('" + start(month.plusMonths(1)) + "')";
+    }
+
+    private static OffsetDateTime start(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+
+    private record ChildKey(String table, String constraint) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.mytutorplatform.lessonsservice.service.recurrence;
+
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries.RecurrenceFrequency;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes occurrence start times of a recurrence rule inside a window.
+ * The n-th occurrence is always derived from the series start ({@code start + n * interval}),
+ * so expansion jumps straight to the window instead of walking the series from its beginning,
+ * and monthly rules anchored on the 29th-31st clamp to the month end without drifting.
+ */
+public final class RecurrenceExpander {
+
+    private RecurrenceExpander() {
+    }
+
+    /**
+     * Occurrences of the series starting within {@code [fromInclusive, toInclusive]}, capped at the
+     * series' {@code until} and at {@code limit} results.
+     */
+    public static List<OffsetDateTime> occurrences(RecurringLessonSeries series,
+                                                   OffsetDateTime fromInclusive,
+                                                   OffsetDateTime toInclusive,
+                                                   int limit) {
+        return occurrences(series.getStartDateTime(), series.getFrequency(), series.getInterval(),
+                series.getUntil(), fromInclusive, toInclusive, limit);
+    }
+
+    public static List<OffsetDateTime> occurrences(OffsetDateTime start,
+                                                   RecurrenceFrequency frequency,
+                                                   int interval,
+                                                   OffsetDateTime until,
+                                                   OffsetDateTime fromInclusive,
+                                                   OffsetDateTime toInclusive,
+                                                   int limit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Recurrence interval must be greater than 0");
+        }
+        OffsetDateTime upper = until != null && until.isBefore(toInclusive) ? until : toInclusive;
+        List<OffsetDateTime> result = new ArrayList<>();
+        if (limit <= 0 || upper.isBefore(start) || upper.isBefore(fromInclusive)) {
+            return result;
+        }
+
+        long index = firstIndexAtOrAfter(start, frequency, interval, fromInclusive);
+        OffsetDateTime occurrence = nth(start, frequency, interval, index);
+        while (!occurrence.isAfter(upper) && result.size() < limit) {
+            result.add(occurrence);
+            index++;
+            occurrence = nth(start, frequency, interval, index);
+        }
+        return result;
+    }
+
+    /** First occurrence of the series starting after {@code afterExclusive}; null once the rule has ended. */
+    public static OffsetDateTime nextAfter(RecurringLessonSeries series, OffsetDateTime afterExclusive) {
+        return nextAfter(series.getStartDateTime(), series.getFrequency(), series.getInterval(),
+                series.getUntil(), afterExclusive);
+    }
+
+    public static OffsetDateTime nextAfter(OffsetDateTime start,
+                                           RecurrenceFrequency frequency,
+                                           int interval,
+                                           OffsetDateTime until,
+                                           OffsetDateTime afterExclusive) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Recurrence interval must be greater than 0");
+        }
+        long index = firstIndexAtOrAfter(start, frequency, interval, afterExclusive.plus(1, ChronoUnit.MICROS));
+        OffsetDateTime next = nth(start, frequency, interval, index);
+        return until != null && next.isAfter(until) ? null : next;
+    }
+
+    /** Whether {@code candidate} is exactly one of the rule's occurrences. */
+    public static boolean isOccurrence(RecurringLessonSeries series, OffsetDateTime candidate) {
+        List<OffsetDateTime> match = occurrences(series, candidate, candidate, 1);
+        return !match.isEmpty() && match.get(0).isEqual(candidate);
+    }
+
+    static OffsetDateTime nth(OffsetDateTime start, RecurrenceFrequency frequency, int interval, long index) {
+        long steps = index * interval;
+        return switch (frequency) {
+            case DAILY -> start.plusDays(steps);
+            case WEEKLY -> start.plusWeeks(steps);
+            case MONTHLY -> start.plusMonths(steps);
+        };
+    }
+
+    private static long firstIndexAtOrAfter(OffsetDateTime start, RecurrenceFrequency frequency, int interval,
+                                            OffsetDateTime fromInclusive) {
+        if (!fromInclusive.isAfter(start)) {
+            return 0;
+        }
+        ChronoUnit unit = switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS;
+            case WEEKLY -> ChronoUnit.WEEKS;
+            case MONTHLY -> ChronoUnit.MONTHS;
+        };
+        // estimate from whole units elapsed, then correct for partial units and month-end clamping
+        long index = Math.max(0, unit.between(start, fromInclusive) / interval);
+        while (index > 0 && !nth(start, frequency, interval, index - 1).isBefore(fromInclusive)) {
+            index--;
+        }
+        while (nth(start, frequency, interval, index).isBefore(fromInclusive)) {
+            index++;
+        }
+        return index;
+    }
+}
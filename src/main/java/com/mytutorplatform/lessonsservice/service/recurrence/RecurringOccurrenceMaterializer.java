@@ -0,0 +1,27 @@
+package com.mytutorplatform.lessonsservice.service.recurrence;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes upcoming occurrences of rule-based series to {@code lessons} ahead of their start, so
+ * lifecycle processing and notes always work against real rows.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecurringOccurrenceMaterializer {
+
+    private final RecurringOccurrenceService recurringOccurrenceService;
+
+    @Scheduled(initialDelayString = "${lessons.recurrence.materialize-interval-ms:60000}",
+            fixedDelayString = "${lessons.recurrence.materialize-interval-ms:60000}")
+    public void materializeUpcomingOccurrences() {
+        int written = recurringOccurrenceService.materializeDue();
+        if (written > 0) {
+            log.info("Materialized {} upcoming recurring lesson occurrences", written);
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package com.mytutorplatform.lessonsservice.service.recurrence;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonOrderKey;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonException;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonExceptionRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonSeriesRepository;
+import com.mytutorplatform.lessonsservice.repository.specifications.RecurringLessonSeriesSpecificationsBuilder;
+import com.mytutorplatform.lessonsservice.service.LessonBatchWriter;
+import com.mytutorplatform.lessonsservice.service.TutorStudentRelationService;
+import com.mytutorplatform.lessonsservice.service.schedule.CurrentLessonIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.TutorScheduleIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Expands rule-based series into lesson occurrences on read and writes an occurrence to
+ * {@code lessons} only when it is edited, cancelled or about to start.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecurringOccurrenceService {
+
+    /** uuid order as PostgreSQL sorts it, by unsigned bytes, unlike {@link UUID#compareTo}. */
+    public static final Comparator<UUID> UUID_ORDER = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    /**
+     * {@code (dateTime, id)} order as PostgreSQL sorts it, so stored and expanded lessons interleave
+     * consistently with keyset cursors.
+     */
+    public static final Comparator<LessonOrderKey> KEYSET_ORDER = Comparator
+            .comparing((LessonOrderKey lesson) -> lesson.getDateTime().toInstant())
+            .thenComparing(LessonOrderKey::getId, UUID_ORDER);
+
+    private final RecurringLessonSeriesRepository seriesRepository;
+    private final RecurringLessonExceptionRepository exceptionRepository;
+    private final LessonRepository lessonRepository;
+    private final LessonBatchWriter lessonBatchWriter;
+    private final TutorScheduleIndex tutorScheduleIndex;
+    private final UserAgendaCache userAgendaCache;
+    private final UserScheduleVersions userScheduleVersions;
+    private final TutorStudentRelationService tutorStudentRelationService;
+    private final CurrentLessonIndex currentLessonIndex;
+    private final Clock clock;
+
+    @Value("${lessons.recurrence.max-expansion-days:366}")
+    private int maxExpansionDays;
+
+    @Value("${lessons.recurrence.materialize-ahead-minutes:60}")
+    private int materializeAheadMinutes;
+
+    @Value("${lessons.recurrence.materialize-batch-size:100}")
+    private int materializeBatchSize;
+
+    /**
+     * Virtual occurrences for the lesson filters used by listings and schedules, sorted by start.
+     */
+    @Transactional(readOnly = true)
+    public List<Lesson> expand(UUID tutorId,
+                               UUID studentId,
+                               List<LessonStatus> statuses,
+                               OffsetDateTime fromInclusive,
+                               OffsetDateTime toInclusive,
+                               int limit) {
+        if (!includesScheduled(statuses)) {
+            return List.of();
+        }
+        List<RecurringLessonSeries> series = seriesRepository.findAll(
+                RecurringLessonSeriesSpecificationsBuilder.expandableSeries(tutorId, studentId, fromInclusive, toInclusive));
+        return expandSeries(series, fromInclusive, toInclusive, limit);
+    }
+
+    /**
+     * Virtual occurrences of series where the user is either the tutor or the student.
+     */
+    @Transactional(readOnly = true)
+    public List<Lesson> expandForUser(UUID userId,
+                                      List<LessonStatus> statuses,
+                                      OffsetDateTime fromInclusive,
+                                      OffsetDateTime toInclusive,
+                                      int limit) {
+        if (!includesScheduled(statuses)) {
+            return List.of();
+        }
+        Specification<RecurringLessonSeries> spec =
+                RecurringLessonSeriesSpecificationsBuilder.expandableSeriesForUser(userId, fromInclusive, toInclusive);
+        return expandSeries(seriesRepository.findAll(spec), fromInclusive, toInclusive, limit);
+    }
+
+    /**
+     * Writes the occurrence to {@code lessons} (or returns the row it already has) so it can be edited.
+     */
+    @Transactional
+    public Lesson materialize(UUID seriesId, OffsetDateTime occurrenceStart) {
+        RecurringLessonSeries series = lockOccurrenceSeries(seriesId);
+        Optional<Lesson> stored = storedOccurrence(series, occurrenceStart);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        Optional<RecurringLessonException> existing = exceptionRepository.findBySeriesIdAndOccurrenceStart(seriesId, occurrenceStart);
+        if (existing.isPresent()) {
+            RecurringLessonException exception = existing.get();
+            if (exception.getType() == RecurringLessonException.Type.CANCELLED) {
+                throw new IllegalStateException("Occurrence has been cancelled");
+            }
+            return lessonRepository.findById(exception.getLessonId())
+                    .orElseThrow(() -> new EntityNotFoundException("Lesson not found"));
+        }
+
+        Lesson lesson = lessonRepository.save(buildOccurrence(series, occurrenceStart));
+
+        RecurringLessonException exception = new RecurringLessonException();
+        exception.setSeriesId(seriesId);
+        exception.setOccurrenceStart(occurrenceStart);
+        exception.setType(RecurringLessonException.Type.MATERIALIZED);
+        exception.setLessonId(lesson.getId());
+        exceptionRepository.save(exception);
+        evictSchedules(series);
+
+        return lesson;
+    }
+
+    /**
+     * Cancels a single occurrence, removing its row if it already had one. Returns the occurrence as
+     * it was: its stored row, or the virtual lesson it was expanded to.
+     */
+    @Transactional
+    public Lesson cancel(UUID seriesId, OffsetDateTime occurrenceStart) {
+        RecurringLessonSeries series = lockOccurrenceSeries(seriesId);
+        Optional<Lesson> stored = storedOccurrence(series, occurrenceStart);
+        if (stored.isPresent()) {
+            lessonRepository.delete(stored.get());
+            evictSchedules(series);
+            return stored.get();
+        }
+
+        RecurringLessonException exception = exceptionRepository.findBySeriesIdAndOccurrenceStart(seriesId, occurrenceStart)
+                .orElseGet(() -> {
+                    RecurringLessonException created = new RecurringLessonException();
+                    created.setSeriesId(seriesId);
+                    created.setOccurrenceStart(occurrenceStart);
+                    return created;
+                });
+        Lesson cancelled = toVirtualLesson(series, occurrenceStart);
+        if (exception.getLessonId() != null) {
+            cancelled = lessonRepository.findById(exception.getLessonId()).orElse(cancelled);
+            lessonRepository.deleteById(exception.getLessonId());
+        }
+        exception.setType(RecurringLessonException.Type.CANCELLED);
+        exception.setLessonId(null);
+        exceptionRepository.save(exception);
+        evictSchedules(series);
+        return cancelled;
+    }
+
+    /**
+     * Keeps a deleted early-materialized occurrence from being expanded again.
+     */
+    @Transactional
+    public void onLessonDeleted(UUID lessonId) {
+        exceptionRepository.findByLessonId(lessonId).ifPresent(exception -> {
+            exception.setType(RecurringLessonException.Type.CANCELLED);
+            exception.setLessonId(null);
+            exceptionRepository.save(exception);
+        });
+    }
+
+    @Transactional
+    public void onLessonRescheduled(UUID lessonId) {
+        exceptionRepository.findByLessonId(lessonId)
+                .filter(exception -> exception.getType() == RecurringLessonException.Type.MATERIALIZED)
+                .ifPresent(exception -> {
+                    exception.setType(RecurringLessonException.Type.MOVED);
+                    exceptionRepository.save(exception);
+                });
+    }
+
+    /**
+     * Stops the rule after {@code endInclusive}; occurrences that are already rows are left to the caller.
+     */
+    @Transactional
+    public void endSeries(RecurringLessonSeries series, OffsetDateTime endInclusive) {
+        if (!series.isRuleBased()) {
+            return;
+        }
+        if (series.getUntil() == null || series.getUntil().isAfter(endInclusive)) {
+            series.setUntil(endInclusive);
+        }
+        moveWatermark(series, series.getMaterializedThrough().isAfter(endInclusive) ? endInclusive : series.getMaterializedThrough());
+        seriesRepository.save(series);
+        exceptionRepository.deleteBySeriesIdAfter(series.getSeriesId(), endInclusive);
+        evictSchedules(series);
+    }
+
+    /**
+     * Writes occurrences starting within the look-ahead window and advances the watermark of the
+     * series they belong to. Only series whose next occurrence falls in the window are read, so a
+     * tick with nothing to write touches no series. Series rows are locked with SKIP LOCKED so
+     * several nodes can run this concurrently.
+     */
+    @Transactional
+    public int materializeDue() {
+        OffsetDateTime horizon = OffsetDateTime.now(clock).plusMinutes(materializeAheadMinutes);
+        List<RecurringLessonSeries> due = seriesRepository.lockDueForMaterialization(horizon, PageRequest.of(0, materializeBatchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        List<Lesson> lessons = materializeUpTo(due, horizon);
+        log.debug("Materialized {} occurrences for {} series up to {}", lessons.size(), due.size(), horizon);
+        return lessons.size();
+    }
+
+    /**
+     * Moves the rule's not-yet-written occurrences starting at or after {@code fromInclusive} by
+     * {@code shiftMinutes}. Unwritten occurrences between the watermark and {@code fromInclusive}
+     * keep their time: they are split off into a new series with the unshifted rule, so nothing
+     * has to be written and the whole remaining rule can be shifted. The caller shifts the stored rows.
+     */
+    @Transactional
+    public void shiftRule(RecurringLessonSeries series, OffsetDateTime fromInclusive, long shiftMinutes) {
+        if (!series.isRuleBased()) {
+            return;
+        }
+        OffsetDateTime next = RecurrenceExpander.nextAfter(series, series.getMaterializedThrough());
+        if (next != null && next.isBefore(fromInclusive)) {
+            splitBefore(series, fromInclusive);
+        }
+        exceptionRepository.shiftBySeriesIdFrom(series.getSeriesId(), fromInclusive, shiftMinutes);
+
+        series.setStartDateTime(series.getStartDateTime().plusMinutes(shiftMinutes));
+        if (series.getUntil() != null) {
+            series.setUntil(series.getUntil().plusMinutes(shiftMinutes));
+        }
+        // the shifted rule yields only the occurrences from fromInclusive on; earlier ones are rows or split off
+        OffsetDateTime through = series.getMaterializedThrough().isBefore(fromInclusive)
+                ? fromInclusive.minus(1, ChronoUnit.MICROS)
+                : series.getMaterializedThrough();
+        moveWatermark(series, through.plusMinutes(shiftMinutes));
+        seriesRepository.save(series);
+        evictSchedules(series);
+    }
+
+    /** Starts of a new or changed rule that are checked for conflicts up front, bounded by the expansion horizon. */
+    public List<OffsetDateTime> upcomingStarts(RecurringLessonSeries series) {
+        OffsetDateTime start = series.getStartDateTime();
+        return RecurrenceExpander.occurrences(series, start, start.plusDays(maxExpansionDays), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Moves the watermark to {@code through} and records the next occurrence after it. A rule with
+     * no occurrence left is closed at its {@code until}, so it is never selected as due again.
+     */
+    public static void moveWatermark(RecurringLessonSeries series, OffsetDateTime through) {
+        series.setMaterializedThrough(through);
+        OffsetDateTime next = RecurrenceExpander.nextAfter(series, through);
+        series.setNextOccurrenceStart(next);
+        if (next == null && series.getUntil() != null && series.getUntil().isAfter(through)) {
+            series.setMaterializedThrough(series.getUntil());
+        }
+    }
+
+    /** Merges stored lessons with expanded occurrences in {@link #KEYSET_ORDER}, keeping the overall limit. */
+    public static <T extends LessonOrderKey> List<T> mergeByStart(List<? extends T> stored, List<? extends T> virtual, int limit) {
+        if (virtual.isEmpty()) {
+            return new ArrayList<>(stored.size() > limit ? stored.subList(0, limit) : stored);
+        }
+        List<T> merged = new ArrayList<>(stored.size() + virtual.size());
+        merged.addAll(stored);
+        merged.addAll(virtual);
+        merged.sort(KEYSET_ORDER);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    public Lesson buildOccurrence(RecurringLessonSeries series, OffsetDateTime start) {
+        int duration = series.getDuration() != null ? series.getDuration() : 0;
+
+        Lesson lesson = new Lesson();
+        lesson.setTitle(series.getTitle());
+        lesson.setDateTime(start);
+        lesson.setDuration(duration);
+        lesson.setEndDate(start.plusMinutes(duration));
+        lesson.setTutorId(series.getTutorId());
+        lesson.setStudentId(series.getStudentId());
+        lesson.setLocation(series.getLocation());
+        lesson.setLessonPlan(series.getLessonPlan());
+        lesson.setLearningObjectives(series.getLearningObjectives());
+        lesson.setSeries(series);
+        return lesson;
+    }
+
+    /**
+     * Hands the unwritten occurrences before {@code endExclusive}, and their exceptions, to a new
+     * series with the same rule and template that ends there.
+     */
+    private void splitBefore(RecurringLessonSeries series, OffsetDateTime endExclusive) {
+        RecurringLessonSeries head = new RecurringLessonSeries();
+        head.setFrequency(series.getFrequency());
+        head.setInterval(series.getInterval());
+        head.setStartDateTime(series.getStartDateTime());
+        OffsetDateTime end = endExclusive.minus(1, ChronoUnit.MICROS);
+        head.setUntil(series.getUntil() != null && series.getUntil().isBefore(end) ? series.getUntil() : end);
+        head.setTutorId(series.getTutorId());
+        head.setStudentId(series.getStudentId());
+        head.setTitle(series.getTitle());
+        head.setDuration(series.getDuration());
+        head.setLocation(series.getLocation());
+        head.setLessonPlan(series.getLessonPlan());
+        head.setLearningObjectives(series.getLearningObjectives());
+        moveWatermark(head, series.getMaterializedThrough());
+        head = seriesRepository.save(head);
+        exceptionRepository.moveBySeriesIdBetween(series.getSeriesId(), head.getSeriesId(),
+                series.getMaterializedThrough(), endExclusive);
+        log.debug("Split series {} into {} before {}", series.getSeriesId(), head.getSeriesId(), endExclusive);
+    }
+
+    private List<Lesson> materializeUpTo(List<RecurringLessonSeries> seriesList, OffsetDateTime horizon) {
+        OffsetDateTime lowest = seriesList.get(0).getMaterializedThrough();
+        List<UUID> seriesIds = new ArrayList<>(seriesList.size());
+        for (RecurringLessonSeries series : seriesList) {
+            seriesIds.add(series.getSeriesId());
+            lowest = series.getMaterializedThrough().isBefore(lowest) ? series.getMaterializedThrough() : lowest;
+        }
+
+        Map<UUID, Set<Instant>> overridden = overriddenOccurrences(seriesIds, lowest, horizon);
+        List<Lesson> lessons = new ArrayList<>();
+        for (RecurringLessonSeries series : seriesList) {
+            OffsetDateTime lower = series.getMaterializedThrough().plus(1, ChronoUnit.MICROS);
+            Set<Instant> skip = overridden.getOrDefault(series.getSeriesId(), Set.of());
+            int written = lessons.size();
+            for (OffsetDateTime start : RecurrenceExpander.occurrences(series, lower, horizon, Integer.MAX_VALUE)) {
+                if (!skip.contains(start.toInstant())) {
+                    lessons.add(buildOccurrence(series, start));
+                }
+            }
+
+            OffsetDateTime through = series.getUntil() != null && series.getUntil().isBefore(horizon) ? series.getUntil() : horizon;
+            if (through.isAfter(series.getMaterializedThrough()) || series.getNextOccurrenceStart() == null) {
+                moveWatermark(series, through.isAfter(series.getMaterializedThrough()) ? through : series.getMaterializedThrough());
+                seriesRepository.save(series);
+                // exceptions at or before the watermark no longer shadow anything
+                exceptionRepository.deleteBySeriesIdUpTo(series.getSeriesId(), series.getMaterializedThrough());
+            }
+            // a watermark that only moved past overridden starts changes no schedule
+            if (lessons.size() > written) {
+                evictSchedules(series);
+            }
+        }
+
+        lessonBatchWriter.insertAll(lessons);
+        return lessons;
+    }
+
+    private List<Lesson> expandSeries(List<RecurringLessonSeries> seriesList,
+                                      OffsetDateTime fromInclusive,
+                                      OffsetDateTime toInclusive,
+                                      int limit) {
+        if (seriesList.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Map<UUID, Window> windows = new HashMap<>();
+        OffsetDateTime lowest = null;
+        OffsetDateTime highest = null;
+        for (RecurringLessonSeries series : seriesList) {
+            // everything up to the watermark is already a row in lessons
+            OffsetDateTime lower = series.getMaterializedThrough().plus(1, ChronoUnit.MICROS);
+            if (fromInclusive != null && fromInclusive.isAfter(lower)) {
+                lower = fromInclusive;
+            }
+            OffsetDateTime upper = toInclusive != null ? toInclusive : lower.plusDays(maxExpansionDays);
+            windows.put(series.getSeriesId(), new Window(lower, upper));
+            lowest = lowest == null || lower.isBefore(lowest) ? lower : lowest;
+            highest = highest == null || upper.isAfter(highest) ? upper : highest;
+        }
+
+        Map<UUID, Set<Instant>> overridden = overriddenOccurrences(windows.keySet(), lowest, highest);
+        List<Lesson> occurrences = new ArrayList<>();
+        for (RecurringLessonSeries series : seriesList) {
+            Window window = windows.get(series.getSeriesId());
+            Set<Instant> skip = overridden.getOrDefault(series.getSeriesId(), Set.of());
+            // over-fetch by the number of overridden starts so skipping them cannot shorten the page
+            int fetch = (int) Math.min(Integer.MAX_VALUE, (long) limit + skip.size());
+            for (OffsetDateTime start : RecurrenceExpander.occurrences(series, window.from(), window.to(), fetch)) {
+                if (!skip.contains(start.toInstant())) {
+                    occurrences.add(toVirtualLesson(series, start));
+                }
+            }
+        }
+
+        occurrences.sort(KEYSET_ORDER);
+        return occurrences.size() > limit ? new ArrayList<>(occurrences.subList(0, limit)) : occurrences;
+    }
+
+    private Map<UUID, Set<Instant>> overriddenOccurrences(Collection<UUID> seriesIds,
+                                                          OffsetDateTime fromInclusive,
+                                                          OffsetDateTime toInclusive) {
+        Map<UUID, Set<Instant>> result = new HashMap<>();
+        for (RecurringLessonException exception : exceptionRepository.findBySeriesIdInAndOccurrenceStartBetween(seriesIds, fromInclusive, toInclusive)) {
+            result.computeIfAbsent(exception.getSeriesId(), key -> new HashSet<>()).add(exception.getOccurrenceStart().toInstant());
+        }
+        return result;
+    }
+
+    private RecurringLessonSeries lockOccurrenceSeries(UUID seriesId) {
+        RecurringLessonSeries series = seriesRepository.findByIdForUpdate(seriesId)
+                .orElseThrow(() -> new EntityNotFoundException("Lesson series not found"));
+        if (!series.isRuleBased()) {
+            throw new EntityNotFoundException("Occurrence not found in series");
+        }
+        return series;
+    }
+
+    /**
+     * The row of an occurrence that is already written, or empty when the rule still expands it.
+     * Rows are looked up before the rule is consulted: one written before the rule was shifted
+     * keeps its time and is no longer an occurrence of the rule.
+     */
+    private Optional<Lesson> storedOccurrence(RecurringLessonSeries series, OffsetDateTime occurrenceStart) {
+        if (!occurrenceStart.isAfter(series.getMaterializedThrough())) {
+            return Optional.of(lessonRepository.findFirstBySeriesAndDateTime(series, occurrenceStart)
+                    .orElseThrow(() -> new EntityNotFoundException("Lesson not found")));
+        }
+        if (RecurrenceExpander.isOccurrence(series, occurrenceStart)) {
+            return Optional.empty();
+        }
+        return Optional.of(lessonRepository.findFirstBySeriesAndDateTime(series, occurrenceStart)
+                .orElseThrow(() -> new EntityNotFoundException("Occurrence not found in series")));
+    }
+
+    private Lesson toVirtualLesson(RecurringLessonSeries series, OffsetDateTime start) {
+        Lesson lesson = buildOccurrence(series, start);
+        lesson.setId(virtualOccurrenceId(series.getSeriesId(), start));
+        lesson.setVirtualOccurrence(true);
+        return lesson;
+    }
+
+    /** Stable id for an unwritten occurrence so clients can key it across polls. */
+    public static UUID virtualOccurrenceId(UUID seriesId, OffsetDateTime start) {
+        return UUID.nameUUIDFromBytes((seriesId + "|" + start.toInstant()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Window(OffsetDateTime from, OffsetDateTime to) {}
+
+    /**
+     * Series writes move occurrences of both participants; the tutor index reloads, both agendas
+     * drop, both schedule versions move, the pair's relation row is recomputed and the current
+     * lesson index reloads at commit.
+     */
+    private void evictSchedules(RecurringLessonSeries series) {
+        tutorScheduleIndex.evict(series.getTutorId());
+        userAgendaCache.invalidate(series.getTutorId(), series.getStudentId());
+        userScheduleVersions.bump(series.getTutorId(), series.getStudentId());
+        tutorStudentRelationService.touch(series.getTutorId(), series.getStudentId());
+        currentLessonIndex.reloadAfterCommit();
+    }
+
+    private static boolean includesScheduled(List<LessonStatus> statuses) {
+        return statuses == null || statuses.isEmpty() || statuses.contains(LessonStatus.SCHEDULED);
+    }
+}
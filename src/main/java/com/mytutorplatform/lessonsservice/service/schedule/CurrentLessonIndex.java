@@ -0,0 +1,229 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.response.LessonStreamEvent;
+import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Node-local copy of the lessons running in the next {@code lessons.now-index.horizon-minutes},
+ * answering the constantly polled {@code /api/lessons/now} lookup without a query.
+ * <p>
+ * The window is reloaded every {@code lessons.now-index.sweep-seconds}. In between, the lesson
+ * events every instance publishes on commit are {@link #apply applied} as they arrive, re-reading
+ * the one lesson they name. Writes that publish no event ask for the same from this instance after
+ * they commit: series-level writes request an early reload, task assignments a re-read of their
+ * lesson; other instances pick those up with their next sweep. Lookups before the first load,
+ * after the event listener lost notifications, or for an instant outside the window are cold
+ * misses answered by the database.
+ */
+@Slf4j
+@Component
+public class CurrentLessonIndex {
+
+    /** Statuses a lesson can have and still be reported as the current one. */
+    public static final List<LessonStatus> CURRENT_STATUSES =
+            List.of(LessonStatus.SCHEDULED, LessonStatus.IN_PROGRESS, LessonStatus.RESCHEDULED);
+
+    /** Covers lessons that started before now and are still running. */
+    private static final Duration LOOKBACK = Duration.ofDays(1);
+
+    private final LessonRepository lessonRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final Duration sweepInterval;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Serializes reloads and re-reads, so a lesson re-read from an older state can never be put
+     * into a window that was loaded after it.
+     */
+    private final Object writeLock = new Object();
+    private final AtomicBoolean reloadRequested = new AtomicBoolean(true);
+    private final Queue<UUID> pendingRefreshes = new ConcurrentLinkedQueue<>();
+    private volatile CurrentLessonWindow window;
+    private volatile long loadedAtNanos;
+
+    public CurrentLessonIndex(LessonRepository lessonRepository,
+                              TransactionTemplate transactionTemplate,
+                              Clock clock,
+                              MeterRegistry meterRegistry,
+                              @Value("${lessons.now-index.enabled:true}") boolean enabled,
+                              @Value("${lessons.now-index.horizon-minutes:180}") long horizonMinutes,
+                              @Value("${lessons.now-index.sweep-seconds:60}") long sweepSeconds) {
+        this.lessonRepository = lessonRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.horizon = Duration.ofMinutes(horizonMinutes);
+        this.sweepInterval = Duration.ofSeconds(sweepSeconds);
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    /**
+     * The lesson of the tutor and/or student running at {@code at}, or null. Answered from memory
+     * when the window covers {@code at}, otherwise by {@code loader}.
+     */
+    public Lesson find(UUID tutorId, UUID studentId, OffsetDateTime at, Supplier<Lesson> loader) {
+        CurrentLessonWindow current = window;
+        Instant instant = at.toInstant();
+        if (current == null || !current.covers(instant)) {
+            misses.increment();
+            return loader.get();
+        }
+        hits.increment();
+        return current.find(tutorId, studentId, instant).orElse(null);
+    }
+
+    /** Brings the lesson named by a committed lesson event up to date. */
+    public void apply(LessonStreamEvent event) {
+        if (window == null || event.lessonId() == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            CurrentLessonWindow current = window;
+            if (current == null) {
+                return;
+            }
+            // the event tells whether the lesson can matter here; only then is it worth a read
+            boolean relevant = event.type() != LessonStreamEvent.Type.DELETED
+                    && CURRENT_STATUSES.contains(event.status())
+                    && event.startsAtUtc() != null
+                    && current.overlaps(event.startsAtUtc(), event.startsAtUtc().plus(event.duration(), ChronoUnit.MINUTES));
+            if (relevant) {
+                reread(current, event.lessonId());
+            } else {
+                current.remove(event.lessonId());
+            }
+        }
+    }
+
+    /** Re-reads the lesson once the current transaction commits, for writes that publish no event. */
+    public void refreshAfterCommit(UUID lessonId) {
+        afterCommit(() -> pendingRefreshes.add(lessonId));
+    }
+
+    /** Reloads the window soon after the current transaction commits, for series-level writes. */
+    public void reloadAfterCommit() {
+        afterCommit(() -> reloadRequested.set(true));
+    }
+
+    /** Notifications may have been lost: stop answering from memory until the next reload. */
+    public void markStale() {
+        window = null;
+        reloadRequested.set(true);
+    }
+
+    @Scheduled(fixedDelay = 1_000L)
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (reloadRequested.getAndSet(false)
+                    || System.nanoTime() - loadedAtNanos >= sweepInterval.toNanos()) {
+                pendingRefreshes.clear();
+                reload();
+                return;
+            }
+            Set<UUID> lessonIds = new HashSet<>();
+            for (UUID lessonId; (lessonId = pendingRefreshes.poll()) != null; ) {
+                lessonIds.add(lessonId);
+            }
+            synchronized (writeLock) {
+                CurrentLessonWindow current = window;
+                if (current != null) {
+                    lessonIds.forEach(lessonId -> reread(current, lessonId));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Current lesson index maintenance failed, answering from the database until it recovers", e);
+            markStale();
+        }
+    }
+
+    private void reload() {
+        synchronized (writeLock) {
+            Instant now = clock.instant();
+            OffsetDateTime from = now.atOffset(ZoneOffset.UTC);
+            CurrentLessonWindow loaded = new CurrentLessonWindow(now, now.plus(horizon));
+            List<Lesson> lessons = transactionTemplate.execute(status -> {
+                List<Lesson> running = lessonRepository.findRunningWithin(
+                        from.minus(LOOKBACK), from.plus(horizon), from, CURRENT_STATUSES);
+                running.forEach(lesson -> Hibernate.initialize(lesson.getAttachments()));
+                return running;
+            });
+            lessons.forEach(loaded::put);
+            window = loaded;
+            loadedAtNanos = System.nanoTime();
+            log.debug("Loaded current lesson index: {} lessons until {}", loaded.size(), now.plus(horizon));
+        }
+    }
+
+    private void reread(CurrentLessonWindow current, UUID lessonId) {
+        Optional<Lesson> lesson = transactionTemplate.execute(status -> {
+            Optional<Lesson> stored = lessonRepository.findById(lessonId);
+            stored.ifPresent(found -> Hibernate.initialize(found.getAttachments()));
+            return stored;
+        });
+        if (lesson.isPresent() && CURRENT_STATUSES.contains(lesson.get().getStatus())) {
+            current.put(lesson.get());
+        } else {
+            current.remove(lessonId);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("lessons.now.index.lookups")
+                .description("Current lesson lookups by whether they were answered from memory")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,125 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The lessons that run at some point in {@code [coveredFrom, coveredUntil]}, sorted by start in
+ * skip lists per tutor, per student and overall. A lookup walks back from the probe instant and
+ * stops once no lesson that started earlier can still be running, so it touches O(log n) entries
+ * plus the handful that overlap the probe. Reads are lock-free; writes are serialized.
+ */
+final class CurrentLessonWindow {
+
+    // UUID compares its halves as signed longs
+    private static final UUID MAX_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final Instant coveredFrom;
+    private final Instant coveredUntil;
+    private final ConcurrentSkipListMap<Key, Lesson> all = new ConcurrentSkipListMap<>();
+    private final Map<UUID, ConcurrentSkipListMap<Key, Lesson>> byTutor = new ConcurrentHashMap<>();
+    private final Map<UUID, ConcurrentSkipListMap<Key, Lesson>> byStudent = new ConcurrentHashMap<>();
+    private final Map<UUID, Key> keys = new ConcurrentHashMap<>();
+    /** Longest lesson ever put; bounds how far back a lookup has to walk. */
+    private volatile Duration longest = Duration.ZERO;
+
+    CurrentLessonWindow(Instant coveredFrom, Instant coveredUntil) {
+        this.coveredFrom = coveredFrom;
+        this.coveredUntil = coveredUntil;
+    }
+
+    boolean covers(Instant at) {
+        return !at.isBefore(coveredFrom) && !at.isAfter(coveredUntil);
+    }
+
+    /** Whether a lesson from {@code start} to {@code end} belongs here at all. */
+    boolean overlaps(Instant start, Instant end) {
+        return !start.isAfter(coveredUntil) && end.isAfter(coveredFrom);
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /** Adds or replaces the lesson; one that does not overlap the window is only removed. */
+    synchronized void put(Lesson lesson) {
+        remove(lesson.getId());
+        if (lesson.getDateTime() == null || lesson.getEndDate() == null) {
+            return;
+        }
+        Instant start = lesson.getDateTime().toInstant();
+        Instant end = lesson.getEndDate().toInstant();
+        if (!end.isAfter(start) || !overlaps(start, end)) {
+            return;
+        }
+        Key key = new Key(start, lesson.getId());
+        Duration span = Duration.between(start, end);
+        if (span.compareTo(longest) > 0) {
+            longest = span;
+        }
+        all.put(key, lesson);
+        byTutor.computeIfAbsent(lesson.getTutorId(), ignored -> new ConcurrentSkipListMap<>()).put(key, lesson);
+        byStudent.computeIfAbsent(lesson.getStudentId(), ignored -> new ConcurrentSkipListMap<>()).put(key, lesson);
+        keys.put(lesson.getId(), key);
+    }
+
+    synchronized void remove(UUID lessonId) {
+        Key key = keys.remove(lessonId);
+        if (key == null) {
+            return;
+        }
+        Lesson lesson = all.remove(key);
+        removeFrom(byTutor, lesson.getTutorId(), key);
+        removeFrom(byStudent, lesson.getStudentId(), key);
+    }
+
+    /**
+     * The lesson of the tutor and/or student running at {@code at} ({@code start <= at < end}),
+     * the latest-starting one when several overlap. Either id may be null.
+     */
+    Optional<Lesson> find(UUID tutorId, UUID studentId, Instant at) {
+        NavigableMap<Key, Lesson> candidates = tutorId != null ? byTutor.get(tutorId)
+                : studentId != null ? byStudent.get(studentId)
+                : all;
+        if (candidates == null) {
+            return Optional.empty();
+        }
+        Instant earliestRunning = at.minus(longest);
+        for (Map.Entry<Key, Lesson> entry : candidates.headMap(new Key(at, MAX_ID), true).descendingMap().entrySet()) {
+            if (!entry.getKey().start().isAfter(earliestRunning)) {
+                break;
+            }
+            Lesson lesson = entry.getValue();
+            if (lesson.getEndDate().toInstant().isAfter(at)
+                    && (studentId == null || studentId.equals(lesson.getStudentId()))) {
+                return Optional.of(lesson);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static void removeFrom(Map<UUID, ConcurrentSkipListMap<Key, Lesson>> index, UUID userId, Key key) {
+        ConcurrentSkipListMap<Key, Lesson> lessons = index.get(userId);
+        if (lessons != null) {
+            lessons.remove(key);
+        }
+    }
+
+    private record Key(Instant start, UUID lessonId) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::start).thenComparing(Key::lessonId);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurrenceExpander;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * One tutor's busy time. Stored lessons are kept as disjoint busy blocks in a {@link TreeMap}
+ * keyed by block start, each block remembering the lessons it was merged from, so an overlap
+ * probe is a {@code lowerEntry} lookup plus the few blocks that actually intersect the probe.
+ * Rule-based series are kept as rules and probed by computing the occurrence nearest the window.
+ */
+final class TutorIntervals {
+
+    private final TreeMap<Instant, Block> blocks = new TreeMap<>();
+    private final Map<UUID, Interval> lessons = new HashMap<>();
+    private final List<SeriesRule> rules;
+    private final long loadedAtNanos;
+
+    TutorIntervals(List<SeriesRule> rules, long loadedAtNanos) {
+        this.rules = rules;
+        this.loadedAtNanos = loadedAtNanos;
+    }
+
+    long loadedAtNanos() {
+        return loadedAtNanos;
+    }
+
+    synchronized void put(UUID lessonId, Instant start, Instant end) {
+        remove(lessonId);
+        if (!end.isAfter(start)) {
+            return;
+        }
+        Interval interval = new Interval(lessonId, start, end);
+        lessons.put(lessonId, interval);
+        insert(interval);
+    }
+
+    synchronized void remove(UUID lessonId) {
+        Interval interval = lessons.remove(lessonId);
+        if (interval == null) {
+            return;
+        }
+        Block block = blocks.remove(blocks.floorKey(interval.start()));
+        // the block may split once this member is gone, so rebuild it from what is left
+        for (Interval member : block.members) {
+            if (!member.lessonId().equals(lessonId)) {
+                insert(member);
+            }
+        }
+    }
+
+    /** First lesson or rule occurrence overlapping {@code [start, end)}, ignoring {@code ignoreLessonId}. */
+    synchronized Optional<Interval> findOverlap(Instant start, Instant end, UUID ignoreLessonId) {
+        for (Map.Entry<Instant, Block> entry = blocks.lowerEntry(end);
+             entry != null && entry.getValue().end.isAfter(start);
+             entry = blocks.lowerEntry(entry.getKey())) {
+            for (Interval member : entry.getValue().members) {
+                if (!member.lessonId().equals(ignoreLessonId) && member.overlaps(start, end)) {
+                    return Optional.of(member);
+                }
+            }
+        }
+        for (SeriesRule rule : rules) {
+            Optional<Interval> occurrence = rule.firstOverlap(start, end);
+            if (occurrence.isPresent()) {
+                return occurrence;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Busy time intersecting {@code [from, to)}, merged and sorted. */
+    synchronized List<Interval> busyBetween(Instant from, Instant to) {
+        List<Interval> busy = new ArrayList<>();
+        Map.Entry<Instant, Block> before = blocks.lowerEntry(from);
+        if (before != null && before.getValue().end.isAfter(from)) {
+            busy.add(before.getValue().asInterval());
+        }
+        for (Block block : blocks.subMap(from, true, to, false).values()) {
+            busy.add(block.asInterval());
+        }
+        for (SeriesRule rule : rules) {
+            busy.addAll(rule.occurrencesBetween(from, to));
+        }
+        return merge(busy);
+    }
+
+    private void insert(Interval interval) {
+        Block merged = new Block(interval.start(), interval.end());
+        merged.members.add(interval);
+        for (Map.Entry<Instant, Block> entry = blocks.lowerEntry(merged.end);
+             entry != null && entry.getValue().end.isAfter(merged.start);
+             entry = blocks.lowerEntry(merged.end)) {
+            Block absorbed = blocks.remove(entry.getKey());
+            merged.start = absorbed.start.isBefore(merged.start) ? absorbed.start : merged.start;
+            merged.end = absorbed.end.isAfter(merged.end) ? absorbed.end : merged.end;
+            merged.members.addAll(absorbed.members);
+        }
+        blocks.put(merged.start, merged);
+    }
+
+    private static List<Interval> merge(List<Interval> intervals) {
+        intervals.sort((a, b) -> a.start().compareTo(b.start()));
+        List<Interval> merged = new ArrayList<>();
+        for (Interval interval : intervals) {
+            Interval last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && !interval.start().isAfter(last.end())) {
+                if (interval.end().isAfter(last.end())) {
+                    merged.set(merged.size() - 1, new Interval(null, last.start(), interval.end()));
+                }
+            } else {
+                merged.add(interval);
+            }
+        }
+        return merged;
+    }
+
+    record Interval(UUID lessonId, Instant start, Instant end) {
+        boolean overlaps(Instant otherStart, Instant otherEnd) {
+            return start.isBefore(otherEnd) && end.isAfter(otherStart);
+        }
+    }
+
+    private static final class Block {
+        private Instant start;
+        private Instant end;
+        private final List<Interval> members = new ArrayList<>(2);
+
+        private Block(Instant start, Instant end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private Interval asInterval() {
+            return new Interval(null, start, end);
+        }
+    }
+
+    /** Occurrences of a rule-based series after its materialization watermark, minus overridden starts. */
+    record SeriesRule(RecurringLessonSeries series, Set<Instant> overridden) {
+
+        Optional<Interval> firstOverlap(Instant start, Instant end) {
+            // an occurrence overlaps if it starts before the end and finishes after the start
+            List<Interval> candidates = occurrencesBetween(start, end);
+            return candidates.stream().filter(candidate -> candidate.overlaps(start, end)).findFirst();
+        }
+
+        List<Interval> occurrencesBetween(Instant from, Instant to) {
+            long durationMinutes = series.getDuration() != null ? series.getDuration() : 0;
+            if (durationMinutes <= 0) {
+                return List.of();
+            }
+            OffsetDateTime lower = from.minus(durationMinutes, ChronoUnit.MINUTES).atOffset(ZoneOffset.UTC);
+            OffsetDateTime watermark = series.getMaterializedThrough().plus(1, ChronoUnit.MICROS);
+            if (watermark.isAfter(lower)) {
+                lower = watermark;
+            }
+            OffsetDateTime upper = to.atOffset(ZoneOffset.UTC);
+
+            List<Interval> result = new ArrayList<>();
+            for (OffsetDateTime occurrence : RecurrenceExpander.occurrences(series, lower, upper, Integer.MAX_VALUE)) {
+                Instant occurrenceStart = occurrence.toInstant();
+                Instant occurrenceEnd = occurrenceStart.plus(durationMinutes, ChronoUnit.MINUTES);
+                if (!overridden.contains(occurrenceStart) && occurrenceStart.isBefore(to) && occurrenceEnd.isAfter(from)) {
+                    result.add(new Interval(null, occurrenceStart, occurrenceEnd));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonException;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.model.response.FreeSlot;
+import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonExceptionRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonSeriesRepository;
+import com.mytutorplatform.lessonsservice.repository.projection.LessonIntervalRow;
+import com.mytutorplatform.lessonsservice.repository.specifications.RecurringLessonSeriesSpecificationsBuilder;
+import com.mytutorplatform.lessonsservice.service.lock.AdvisoryLocks;
+import com.mytutorplatform.lessonsservice.service.schedule.TutorIntervals.Interval;
+import com.mytutorplatform.lessonsservice.service.schedule.TutorIntervals.SeriesRule;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-tutor interval index over upcoming lessons and series rules, used to reject double
+ * bookings and to answer free-slot searches without reading the {@code lessons} table.
+ * A tutor's entry is loaded on first use with one query on {@code idx_lessons_tutor_datetime_id},
+ * updated in place by single-lesson writes and dropped after series-level writes. Entries also
+ * expire after {@code lessons.schedule-index.ttl-seconds} so writes made by other instances are
+ * picked up.
+ * <p>
+ * The index only serves as a pre-check for bookings: a slot it considers free is checked again
+ * against the database under the tutor's advisory lock, which stays held until the booking
+ * transaction ends, so concurrent bookings on any instance cannot both take the slot.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TutorScheduleIndex {
+
+    /** Covers lessons that started before now and are still running. */
+    private static final Duration LOOKBACK = Duration.ofDays(1);
+    private static final int MAX_FREE_SLOT_RANGE_DAYS = 62;
+    private static final int DEFAULT_MIN_SLOT_MINUTES = 30;
+
+    private final LessonRepository lessonRepository;
+    private final RecurringLessonSeriesRepository recurringLessonSeriesRepository;
+    private final RecurringLessonExceptionRepository recurringLessonExceptionRepository;
+    private final AdvisoryLocks advisoryLocks;
+    private final Clock clock;
+
+    private final Map<UUID, TutorIntervals> tutors = new ConcurrentHashMap<>();
+
+    @Value("${lessons.schedule-index.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${lessons.schedule-index.max-tutors:10000}")
+    private int maxTutors;
+
+    /**
+     * Throws {@link IllegalStateException} when {@code [start, start + duration)} overlaps another
+     * lesson or series occurrence of the tutor. Must run in the transaction that writes the booking:
+     * it takes the tutor's schedule lock and re-reads the window from the database.
+     */
+    public void assertNoConflict(UUID tutorId, OffsetDateTime start, int durationMinutes, UUID ignoreLessonId) {
+        if (start != null) {
+            assertNoConflicts(tutorId, List.of(start), durationMinutes, ignoreLessonId);
+        }
+    }
+
+    /**
+     * {@link #assertNoConflict} for every occurrence of a new series at once: the lock is taken and
+     * the window from the first start to the last end is read from the database a single time.
+     */
+    public void assertNoConflicts(UUID tutorId, List<OffsetDateTime> starts, int durationMinutes) {
+        assertNoConflicts(tutorId, starts, durationMinutes, null);
+    }
+
+    private void assertNoConflicts(UUID tutorId, List<OffsetDateTime> starts, int durationMinutes, UUID ignoreLessonId) {
+        if (tutorId == null || starts.isEmpty() || durationMinutes <= 0) {
+            return;
+        }
+        TutorIntervals cached = intervals(tutorId);
+        Instant first = null;
+        Instant last = null;
+        for (OffsetDateTime start : starts) {
+            Instant from = start.toInstant();
+            rejectOverlap(cached.findOverlap(from, from.plus(durationMinutes, ChronoUnit.MINUTES), ignoreLessonId));
+            first = first == null || from.isBefore(first) ? from : first;
+            last = last == null || from.isAfter(last) ? from : last;
+        }
+
+        advisoryLocks.lock(AdvisoryLocks.Space.TUTOR_SCHEDULE, tutorId);
+        OffsetDateTime windowStart = first.atOffset(ZoneOffset.UTC).minus(LOOKBACK);
+        OffsetDateTime windowEnd = last.plus(durationMinutes, ChronoUnit.MINUTES).atOffset(ZoneOffset.UTC);
+        TutorIntervals stored = read(tutorId, windowStart, windowEnd,
+                lessonRepository.findTutorIntervalsBetween(tutorId, windowStart, windowEnd, LessonStatus.CANCELED));
+        for (OffsetDateTime start : starts) {
+            Instant from = start.toInstant();
+            rejectOverlap(stored.findOverlap(from, from.plus(durationMinutes, ChronoUnit.MINUTES), ignoreLessonId));
+        }
+    }
+
+    public List<FreeSlot> findFreeSlots(UUID tutorId, OffsetDateTime from, OffsetDateTime to, Integer minMinutes) {
+        int minimum = minMinutes == null ? DEFAULT_MIN_SLOT_MINUTES : minMinutes;
+        if (minimum <= 0) {
+            throw new IllegalArgumentException("minMinutes must be greater than 0");
+        }
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("to must be after from");
+        }
+        if (Duration.between(from, to).toDays() > MAX_FREE_SLOT_RANGE_DAYS) {
+            throw new IllegalArgumentException("Free slot range must not exceed " + MAX_FREE_SLOT_RANGE_DAYS + " days");
+        }
+
+        // past time is never free, which also keeps queries inside the loaded window
+        Instant cursor = from.toInstant();
+        Instant now = Instant.now(clock);
+        if (cursor.isBefore(now)) {
+            cursor = now;
+        }
+        Instant end = to.toInstant();
+        ZoneOffset offset = from.getOffset();
+
+        List<FreeSlot> slots = new ArrayList<>();
+        if (!cursor.isBefore(end)) {
+            return slots;
+        }
+        for (Interval busy : intervals(tutorId).busyBetween(cursor, end)) {
+            addSlot(slots, cursor, busy.start(), minimum, offset);
+            if (busy.end().isAfter(cursor)) {
+                cursor = busy.end();
+            }
+        }
+        addSlot(slots, cursor, end, minimum, offset);
+        return slots;
+    }
+
+    /** Reflects a created or updated lesson; cancelled lessons stop occupying time. */
+    public void onLessonSaved(Lesson lesson) {
+        TutorIntervals entry = tutors.get(lesson.getTutorId());
+        if (entry != null) {
+            if (lesson.getStatus() == LessonStatus.CANCELED) {
+                entry.remove(lesson.getId());
+            } else {
+                Instant start = lesson.getDateTime().toInstant();
+                entry.put(lesson.getId(), start, lessonEnd(lesson, start));
+            }
+        }
+        evictOnRollback(lesson.getTutorId());
+    }
+
+    public void onLessonDeleted(Lesson lesson) {
+        TutorIntervals entry = tutors.get(lesson.getTutorId());
+        if (entry != null) {
+            entry.remove(lesson.getId());
+        }
+        evictOnRollback(lesson.getTutorId());
+    }
+
+    /** Drops a tutor's entry after writes that are cheaper to reload than to replay. */
+    public void evict(UUID tutorId) {
+        if (tutorId == null) {
+            tutors.clear();
+            return;
+        }
+        tutors.remove(tutorId);
+        evictAfterCompletion(tutorId);
+    }
+
+    private TutorIntervals intervals(UUID tutorId) {
+        TutorIntervals entry = tutors.get(tutorId);
+        if (entry != null && isFresh(entry, System.nanoTime())) {
+            return entry;
+        }
+        TutorIntervals loaded = load(tutorId);
+        if (tutors.size() >= maxTutors) {
+            evictExpired();
+        }
+        tutors.put(tutorId, loaded);
+        return loaded;
+    }
+
+    private TutorIntervals load(UUID tutorId) {
+        OffsetDateTime loadedFrom = OffsetDateTime.now(clock).minus(LOOKBACK);
+        TutorIntervals entry = read(tutorId, loadedFrom, null,
+                lessonRepository.findTutorIntervals(tutorId, loadedFrom, LessonStatus.CANCELED));
+        log.debug("Loaded schedule index for tutor {}", tutorId);
+        return entry;
+    }
+
+    /** Busy time from the given lesson rows and the tutor's series rules that can expand in the window. */
+    private TutorIntervals read(UUID tutorId, OffsetDateTime from, OffsetDateTime to, List<LessonIntervalRow> lessons) {
+        long loadedAt = System.nanoTime();
+        List<RecurringLessonSeries> series = recurringLessonSeriesRepository.findAll(
+                RecurringLessonSeriesSpecificationsBuilder.expandableSeries(tutorId, null, from, to));
+        Map<UUID, Set<Instant>> overridden = new HashMap<>();
+        if (!series.isEmpty()) {
+            List<UUID> seriesIds = series.stream().map(RecurringLessonSeries::getSeriesId).toList();
+            List<RecurringLessonException> exceptions = to == null
+                    ? recurringLessonExceptionRepository.findBySeriesIdIn(seriesIds)
+                    : recurringLessonExceptionRepository.findBySeriesIdInAndOccurrenceStartBetween(seriesIds, from, to);
+            for (RecurringLessonException exception : exceptions) {
+                overridden.computeIfAbsent(exception.getSeriesId(), key -> new HashSet<>())
+                        .add(exception.getOccurrenceStart().toInstant());
+            }
+        }
+        List<SeriesRule> rules = series.stream()
+                .map(rule -> new SeriesRule(rule, overridden.getOrDefault(rule.getSeriesId(), Set.of())))
+                .toList();
+
+        TutorIntervals entry = new TutorIntervals(rules, loadedAt);
+        for (LessonIntervalRow row : lessons) {
+            Instant start = row.getDateTime().toInstant();
+            Instant end = row.getEndDate() != null
+                    ? row.getEndDate().toInstant()
+                    : start.plus(row.getDuration(), ChronoUnit.MINUTES);
+            entry.put(row.getId(), start, end);
+        }
+        return entry;
+    }
+
+    private static void rejectOverlap(Optional<Interval> conflict) {
+        if (conflict.isPresent()) {
+            Interval existing = conflict.get();
+            throw new IllegalStateException("Tutor already has a lesson from " + existing.start() + " to " + existing.end());
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        tutors.values().removeIf(entry -> !isFresh(entry, now));
+        if (tutors.size() >= maxTutors) {
+            tutors.clear();
+        }
+    }
+
+    private void evictOnRollback(UUID tutorId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    tutors.remove(tutorId);
+                }
+            }
+        });
+    }
+
+    private void evictAfterCompletion(UUID tutorId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        // a reload inside the writing transaction could cache state that is then rolled back
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                tutors.remove(tutorId);
+            }
+        });
+    }
+
+    private boolean isFresh(TutorIntervals entry, long nowNanos) {
+        return nowNanos - entry.loadedAtNanos() < Duration.ofSeconds(ttlSeconds).toNanos();
+    }
+
+    private static Instant lessonEnd(Lesson lesson, Instant start) {
+        return lesson.getEndDate() != null
+                ? lesson.getEndDate().toInstant()
+                : start.plus(lesson.getDuration(), ChronoUnit.MINUTES);
+    }
+
+    private static void addSlot(List<FreeSlot> slots, Instant start, Instant end, int minimumMinutes, ZoneOffset offset) {
+        long minutes = Duration.between(start, end).toMinutes();
+        if (minutes >= minimumMinutes) {
+            slots.add(new FreeSlot(start.atOffset(offset), end.atOffset(offset), minutes));
+        }
+    }
+}
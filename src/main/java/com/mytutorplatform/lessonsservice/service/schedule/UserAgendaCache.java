@@ -0,0 +1,162 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.model.response.LessonSummaryItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded per-user cache of the near-term agenda behind the dashboard's next/upcoming polls.
+ * Entries expire after {@code lessons.agenda-cache.ttl-seconds} (which also bounds staleness for
+ * writes made by other instances), the least recently used entry goes once
+ * {@code lessons.agenda-cache.max-users} is reached, and lesson writes invalidate the tutor's
+ * and the student's entries. Hits, misses and evictions are exported as
+ * {@code lessons.agenda.cache.*} meters.
+ */
+@Component
+public class UserAgendaCache {
+
+    private final Map<UUID, Entry> entries;
+    /** Bumped by every invalidation; a load that raced one is returned but not cached. */
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Duration ttl;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidatedEvictions;
+
+    public UserAgendaCache(MeterRegistry meterRegistry,
+                           @Value("${lessons.agenda-cache.ttl-seconds:30}") long ttlSeconds,
+                           @Value("${lessons.agenda-cache.max-users:20000}") int maxUsers) {
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.sizeEvictions = evictions(meterRegistry, "size");
+        this.expiredEvictions = evictions(meterRegistry, "expired");
+        this.invalidatedEvictions = evictions(meterRegistry, "invalidated");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                boolean full = size() > maxUsers;
+                if (full) {
+                    sizeEvictions.increment();
+                }
+                return full;
+            }
+        };
+        Gauge.builder("lessons.agenda.cache.size", this, UserAgendaCache::size)
+                .description("Users with a cached dashboard agenda")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached agenda when it is fresh and {@code usable} accepts it, otherwise loads,
+     * caches and returns a new one.
+     */
+    public UserAgenda get(UUID userId, Predicate<UserAgenda> usable, Supplier<UserAgenda> loader) {
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(userId);
+        }
+        if (entry != null) {
+            if (now - entry.loadedAtNanos() >= ttl.toNanos()) {
+                expiredEvictions.increment();
+            } else if (usable.test(entry.agenda())) {
+                hits.increment();
+                return entry.agenda();
+            }
+        }
+        misses.increment();
+
+        long generation = invalidations.get();
+        UserAgenda loaded = loader.get();
+        synchronized (entries) {
+            if (invalidations.get() == generation) {
+                entries.put(userId, new Entry(loaded, now));
+            } else {
+                entries.remove(userId);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the users' agendas now and again when the surrounding transaction completes, so a
+     * read that loaded pre-commit state in between is not kept. A null id (series written before
+     * they carried participants) drops every entry.
+     */
+    public void invalidate(UUID... userIds) {
+        evict(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userIds);
+                }
+            });
+        }
+    }
+
+    private void evict(UUID... userIds) {
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            for (UUID userId : userIds) {
+                if (userId == null) {
+                    invalidatedEvictions.increment(entries.size());
+                    entries.clear();
+                    return;
+                }
+                if (entries.remove(userId) != null) {
+                    invalidatedEvictions.increment();
+                }
+            }
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("lessons.agenda.cache.requests")
+                .description("Dashboard agenda lookups by cache outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter evictions(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("lessons.agenda.cache.evictions")
+                .description("Dashboard agenda entries dropped, by cause")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The user's next lessons starting at or after {@code from}, in start order. {@code complete}
+     * means nothing else starts after the last item; otherwise the list was cut at its capacity.
+     */
+    public record UserAgenda(Instant from, List<LessonSummaryItem> lessons, boolean complete) {
+    }
+
+    private record Entry(UserAgenda agenda, long loadedAtNanos) {
+    }
+}
@@ -0,0 +1,269 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.config.datasource.ReadRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Per-user schedule versions behind the ETags of the schedule and dashboard endpoints.
+ * Writers {@link #bump} the participants of what they wrote; the counters live in
+ * {@code user_schedule_versions} and are incremented right before the writing transaction commits,
+ * so they commit or roll back with the write. Readers are served from a bounded in-memory copy that
+ * this instance's own commits update at once; versions bumped by other instances are picked up once
+ * the copy is older than {@code lessons.schedule-versions.ttl-seconds}.
+ * <p>
+ * Callers must take the ETag before reading the data it describes: a write that commits in between
+ * then only costs the client a full response, never a 304 for data it has not seen. Taking it also
+ * tells the request's {@link ReadRouting} when the versions were committed, so the data is not read
+ * from a replica that has not replayed them yet; versions first seen by this instance count as just
+ * committed.
+ */
+@Component
+public class UserScheduleVersions {
+
+    /** Row bumped by writes whose participants are unknown, e.g. series written before they carried them. */
+    static final UUID EVERYONE = new UUID(0, 0);
+
+    private static final String BUMP = """
+            INSERT INTO user_schedule_versions (user_id, version) VALUES (?, 1)
+            ON CONFLICT (user_id) DO UPDATE SET version = user_schedule_versions.version + 1
+            RETURNING version
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final Duration ttl;
+    private final long timeBucketSeconds;
+    private final Map<UUID, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserScheduleVersions(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                Clock clock,
+                                MeterRegistry meterRegistry,
+                                @Value("${lessons.schedule-versions.ttl-seconds:5}") long ttlSeconds,
+                                @Value("${lessons.schedule-versions.max-users:50000}") int maxUsers,
+                                @Value("${lessons.schedule-versions.time-bucket-seconds:30}") long timeBucketSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.timeBucketSeconds = Math.max(1, timeBucketSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > maxUsers;
+            }
+        };
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    /**
+     * Schedules a version bump of the users for the end of the current transaction. A null id bumps
+     * every user's ETag.
+     */
+    public void bump(UUID... userIds) {
+        Set<UUID> users = new TreeSet<>();
+        for (UUID userId : userIds) {
+            users.add(userId != null ? userId : EVERYONE);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<UUID, Long> bumped = transactionTemplate.execute(status -> increment(users));
+            remember(users, bumped);
+            return;
+        }
+        pendingBump().users.addAll(users);
+    }
+
+    /**
+     * ETag of data that changes only with the users' writes, e.g. a schedule between fixed dates.
+     * Null ids are skipped; null when no id is given.
+     */
+    public String etag(UUID... userIds) {
+        List<UUID> users = new ArrayList<>();
+        for (UUID userId : userIds) {
+            if (userId != null) {
+                users.add(userId);
+            }
+        }
+        if (users.isEmpty()) {
+            return null;
+        }
+        users.add(EVERYONE);
+        Map<UUID, Entry> versions = versions(users);
+        StringJoiner tag = new StringJoiner("-", "W/\"", "\"");
+        long committedAt = Long.MIN_VALUE;
+        for (UUID user : users) {
+            Entry entry = versions.get(user);
+            tag.add(Long.toString(entry.version()));
+            committedAt = Math.max(committedAt, entry.committedAtNanos());
+        }
+        ReadRouting.mustSee(committedAt);
+        return tag.toString();
+    }
+
+    /**
+     * ETag of data that also moves with the clock, like the next lesson or today's agenda. It
+     * additionally changes every {@code lessons.schedule-versions.time-bucket-seconds}, which bounds
+     * how long a client keeps a payload the clock has overtaken.
+     */
+    public String timedEtag(UUID userId) {
+        String etag = etag(userId);
+        if (etag == null) {
+            return null;
+        }
+        long bucket = Math.floorDiv(clock.instant().getEpochSecond(), timeBucketSeconds);
+        return etag.substring(0, etag.length() - 1) + "-t" + bucket + "\"";
+    }
+
+    private Map<UUID, Entry> versions(List<UUID> users) {
+        long now = System.nanoTime();
+        Map<UUID, Entry> versions = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        synchronized (entries) {
+            for (UUID user : users) {
+                Entry entry = entries.get(user);
+                if (entry != null && now - entry.loadedAtNanos() < ttl.toNanos()) {
+                    versions.put(user, entry);
+                } else {
+                    missing.add(user);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            hits.increment();
+            return versions;
+        }
+        misses.increment();
+
+        Map<UUID, Long> loaded = new HashMap<>();
+        missing.forEach(user -> loaded.put(user, 0L));
+        String placeholders = String.join(", ", Collections.nCopies(missing.size(), "?"));
+        jdbcTemplate.query("SELECT user_id, version FROM user_schedule_versions WHERE user_id IN (" + placeholders + ")",
+                (RowCallbackHandler) resultSet -> loaded.put(resultSet.getObject(1, UUID.class), resultSet.getLong(2)),
+                missing.toArray());
+        long loadedAt = System.nanoTime();
+        synchronized (entries) {
+            for (Map.Entry<UUID, Long> version : loaded.entrySet()) {
+                // a commit remembered while the row was read must not be rolled back to the older value
+                Entry current = entries.get(version.getKey());
+                Entry entry;
+                if (current != null && current.version() >= version.getValue()) {
+                    entry = new Entry(current.version(), now, current.committedAtNanos());
+                } else if (version.getValue() == 0L) {
+                    entry = new Entry(0L, now, Long.MIN_VALUE);
+                } else {
+                    // committed at some point before the row was read
+                    entry = new Entry(version.getValue(), now, loadedAt);
+                }
+                entries.put(version.getKey(), entry);
+                versions.put(version.getKey(), entry);
+            }
+        }
+        return versions;
+    }
+
+    private Map<UUID, Long> increment(Set<UUID> users) {
+        // sorted, so two transactions bumping the same users lock the rows in the same order
+        Map<UUID, Long> bumped = new HashMap<>();
+        for (UUID user : users) {
+            bumped.put(user, jdbcTemplate.queryForObject(BUMP, Long.class, user));
+        }
+        return bumped;
+    }
+
+    /** Holds replica reads of the users off until {@link #remember} settles their bump. */
+    private void committing(Set<UUID> users) {
+        synchronized (entries) {
+            for (UUID user : users) {
+                Entry current = entries.get(user);
+                if (current != null) {
+                    entries.put(user, new Entry(current.version(), current.loadedAtNanos(), Long.MAX_VALUE));
+                }
+            }
+        }
+    }
+
+    /** Records the end of a bump of the users; {@code bumped} is null when it rolled back. */
+    private void remember(Set<UUID> users, Map<UUID, Long> bumped) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            for (UUID user : users) {
+                Entry current = entries.get(user);
+                Long version = bumped != null ? bumped.get(user) : null;
+                if (version != null && (current == null || current.version() < version)) {
+                    entries.put(user, new Entry(version, now, now));
+                } else if (current != null) {
+                    entries.put(user, new Entry(current.version(), current.loadedAtNanos(), now));
+                }
+            }
+        }
+    }
+
+    private PendingBump pendingBump() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingBump pending && pending.owner == this) {
+                return pending;
+            }
+        }
+        PendingBump pending = new PendingBump(this);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("lessons.schedule.versions.lookups")
+                .description("Schedule version lookups by whether every version was served from memory")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Entry(long version, long loadedAtNanos, long committedAtNanos) {
+    }
+
+    private static final class PendingBump implements TransactionSynchronization {
+        private final UserScheduleVersions owner;
+        private final Set<UUID> users = new TreeSet<>();
+        private Map<UUID, Long> bumped;
+
+        private PendingBump(UserScheduleVersions owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            owner.committing(users);
+            bumped = owner.increment(users);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // only now can a reader on this instance see the data the new versions describe
+            owner.remember(users, status == STATUS_COMMITTED ? bumped : null);
+        }
+    }
+}
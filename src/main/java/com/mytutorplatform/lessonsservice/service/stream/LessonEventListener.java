@@ -0,0 +1,120 @@
+package com.mytutorplatform.lessonsservice.service.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.service.MaterialCacheBroadcast;
+import com.mytutorplatform.lessonsservice.service.lifecycle.LessonLifecycleScheduler;
+import com.mytutorplatform.lessonsservice.service.schedule.CurrentLessonIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Listens on the {@value LessonEventPublisher#CHANNEL} channel over a connection of its own (a
+ * pooled one would be held forever) and hands every notification to {@link LessonEventStream},
+ * {@link CurrentLessonIndex} and {@link LessonLifecycleScheduler}. The same connection listens on
+ * {@value MaterialCacheBroadcast#CHANNEL} for {@link MaterialCacheBroadcast}. Notifications sent
+ * while the connection is down are lost, so after a reconnect the open streams are told to resync,
+ * the index reloads and the material cache is dropped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LessonEventListener {
+
+    private static final int POLL_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final LessonEventStream lessonEventStream;
+    private final CurrentLessonIndex currentLessonIndex;
+    private final LessonLifecycleScheduler lessonLifecycleScheduler;
+    private final MaterialCacheBroadcast materialCacheBroadcast;
+    private final ObjectMapper objectMapper;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    @PostConstruct
+    void start() {
+        running = true;
+        thread = new Thread(this::run, "lesson-event-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        thread.interrupt();
+        thread.join(POLL_MILLIS * 2L);
+    }
+
+    private void run() {
+        long backoff = POLL_MILLIS;
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + LessonEventPublisher.CHANNEL);
+                    statement.execute("LISTEN " + MaterialCacheBroadcast.CHANNEL);
+                }
+                if (reconnect) {
+                    log.info("Lesson event listener reconnected; asking open streams to resync");
+                    lessonEventStream.resync();
+                    currentLessonIndex.markStale();
+                    materialCacheBroadcast.evictAll();
+                }
+                backoff = POLL_MILLIS;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            if (MaterialCacheBroadcast.CHANNEL.equals(notification.getName())) {
+                                materialCacheBroadcast.apply(notification.getParameter());
+                            } else {
+                                deliver(notification.getParameter());
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lesson event listener lost its connection, retrying in {} ms: {}", backoff, e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        try {
+            LessonEventPublisher.LessonEventNotification notification =
+                    objectMapper.readValue(payload, LessonEventPublisher.LessonEventNotification.class);
+            lessonEventStream.dispatch(notification.recipients(), notification.event());
+            currentLessonIndex.apply(notification.event());
+            lessonLifecycleScheduler.apply(notification.event());
+        } catch (Exception e) {
+            log.warn("Skipping unreadable lesson event notification: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mytutorplatform.lessonsservice.service.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.response.LessonStreamEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Announces lesson writes on the {@value #CHANNEL} Postgres channel. {@code pg_notify} runs in the
+ * writing transaction, so Postgres delivers the notification only if and when it commits, in commit
+ * order, to the {@link LessonEventListener} of every instance.
+ */
+@Component
+@RequiredArgsConstructor
+public class LessonEventPublisher {
+
+    static final String CHANNEL = "lesson_events";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    public void created(Lesson lesson) {
+        publish(LessonStreamEvent.Type.CREATED, lesson, null);
+    }
+
+    /**
+     * An update reported as {@link LessonStreamEvent.Type#STATUS_CHANGED} when the status moved.
+     * Participants the lesson had before the update are notified as well.
+     */
+    public void updated(Lesson lesson, LessonStatus previousStatus, UUID previousTutorId, UUID previousStudentId) {
+        LessonStreamEvent.Type type = previousStatus != lesson.getStatus()
+                ? LessonStreamEvent.Type.STATUS_CHANGED
+                : LessonStreamEvent.Type.UPDATED;
+        publish(type, lesson, previousStatus, previousTutorId, previousStudentId);
+    }
+
+    public void deleted(Lesson lesson) {
+        publish(LessonStreamEvent.Type.DELETED, lesson, null);
+    }
+
+    private void publish(LessonStreamEvent.Type type, Lesson lesson, LessonStatus previousStatus, UUID... previousParticipants) {
+        Set<UUID> recipients = new LinkedHashSet<>();
+        recipients.add(lesson.getTutorId());
+        recipients.add(lesson.getStudentId());
+        recipients.addAll(List.of(previousParticipants));
+        recipients.remove(null);
+
+        LessonStreamEvent event = new LessonStreamEvent(
+                type,
+                lesson.getId(),
+                lesson.getTutorId(),
+                lesson.getStudentId(),
+                lesson.getTitle(),
+                lesson.getStatus(),
+                type == LessonStreamEvent.Type.STATUS_CHANGED ? previousStatus : null,
+                lesson.getDateTime() != null ? lesson.getDateTime().toInstant() : null,
+                lesson.getDuration(),
+                Instant.now(clock)
+        );
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(new LessonEventNotification(List.copyOf(recipients), event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize lesson event", e);
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, CHANNEL, payload);
+    }
+
+    /** Payload of one notification: the event and the users whose streams receive it. */
+    record LessonEventNotification(List<UUID> recipients, LessonStreamEvent event) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.mytutorplatform.lessonsservice.service.stream;
+
+import com.mytutorplatform.lessonsservice.model.response.LessonStreamEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans committed lesson events out to the open dashboard streams of this instance.
+ * <p>
+ * Events are numbered {@code <epoch>-<sequence>} in the order they arrive and the last
+ * {@code lessons.events.stream.replay-size} are kept, so a client reconnecting with its
+ * {@code Last-Event-ID} is sent what it missed. When that is no longer possible (the id is older
+ * than the kept events, comes from another instance or from before a listener reconnect) the client
+ * gets a {@value #RESYNC} event instead and reloads over the REST endpoints. A client that does not
+ * keep up with its buffer is disconnected and resumes the same way.
+ */
+@Component
+public class LessonEventStream {
+
+    static final String LESSON = "lesson";
+    static final String RESYNC = "resync";
+
+    private final int replaySize;
+    private final int bufferSize;
+    private final Counter dropped;
+
+    /** Guards everything below; emissions happen under it, which keeps each sink's signals serialized. */
+    private final Object lock = new Object();
+    private final Map<UUID, Set<Subscription>> subscriptions = new HashMap<>();
+    private final Deque<Numbered> replay = new ArrayDeque<>();
+    private String epoch = newEpoch();
+    private long sequence;
+    private int open;
+
+    public LessonEventStream(MeterRegistry meterRegistry,
+                             @Value("${lessons.events.stream.replay-size:10000}") int replaySize,
+                             @Value("${lessons.events.stream.buffer-size:256}") int bufferSize) {
+        this.replaySize = replaySize;
+        this.bufferSize = bufferSize;
+        this.dropped = Counter.builder("lessons.events.stream.dropped")
+                .description("Dashboard streams closed because the client fell behind its buffer")
+                .register(meterRegistry);
+        Gauge.builder("lessons.events.stream.open", this, LessonEventStream::openStreams)
+                .description("Open dashboard event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the user's lesson events, first replaying what came after
+     * {@code lastEventId} when one is given.
+     */
+    public Flux<ServerSentEvent<LessonStreamEvent>> subscribe(UUID userId, String lastEventId) {
+        Sinks.Many<ServerSentEvent<LessonStreamEvent>> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<ServerSentEvent<LessonStreamEvent>>get(bufferSize).get());
+        Subscription subscription = new Subscription(userId, sink);
+        synchronized (lock) {
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                replayTo(subscription, lastEventId);
+            }
+            subscriptions.computeIfAbsent(userId, ignored -> new LinkedHashSet<>()).add(subscription);
+            open++;
+        }
+        return sink.asFlux().doFinally(signal -> remove(subscription));
+    }
+
+    /** Numbers the event, keeps it for replay and sends it to the recipients' open streams. */
+    public void dispatch(Collection<UUID> recipients, LessonStreamEvent event) {
+        synchronized (lock) {
+            Numbered numbered = new Numbered(++sequence, Set.copyOf(recipients), event);
+            replay.addLast(numbered);
+            if (replay.size() > replaySize) {
+                replay.removeFirst();
+            }
+            for (UUID recipient : numbered.recipients()) {
+                for (Subscription subscription : List.copyOf(subscriptions.getOrDefault(recipient, Set.of()))) {
+                    emit(subscription, lessonEvent(numbered));
+                }
+            }
+        }
+    }
+
+    /**
+     * Events may have been lost (e.g. the listener connection dropped): every open stream is told to
+     * reload, and ids handed out so far no longer resume.
+     */
+    public void resync() {
+        synchronized (lock) {
+            epoch = newEpoch();
+            sequence = 0;
+            replay.clear();
+            for (Subscription subscription : allSubscriptions()) {
+                emit(subscription, resyncEvent());
+            }
+        }
+    }
+
+    /** Keeps idle connections from being closed by proxies and lets the server notice gone clients. */
+    @Scheduled(fixedRateString = "${lessons.events.stream.heartbeat-seconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        synchronized (lock) {
+            ServerSentEvent<LessonStreamEvent> heartbeat = ServerSentEvent.<LessonStreamEvent>builder().comment("heartbeat").build();
+            for (Subscription subscription : allSubscriptions()) {
+                emit(subscription, heartbeat);
+            }
+        }
+    }
+
+    private void replayTo(Subscription subscription, String lastEventId) {
+        long after = parseSequence(lastEventId);
+        long oldestKept = replay.isEmpty() ? sequence + 1 : replay.peekFirst().sequence();
+        // everything from after + 1 on must still be here, otherwise the client has a gap
+        if (after < 0 || after > sequence || after + 1 < oldestKept) {
+            emit(subscription, resyncEvent());
+            return;
+        }
+        for (Numbered numbered : replay) {
+            if (numbered.sequence() > after && numbered.recipients().contains(subscription.userId())) {
+                emit(subscription, lessonEvent(numbered));
+            }
+        }
+    }
+
+    /** The sequence of an id handed out in the current epoch, -1 for anything else. */
+    private long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator <= 0 || !eventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void emit(Subscription subscription, ServerSentEvent<LessonStreamEvent> event) {
+        Sinks.EmitResult result = subscription.sink().tryEmitNext(event);
+        if (result.isFailure()) {
+            // a full buffer reports as overflow, or as zero subscribers before the stream is subscribed
+            if (result != Sinks.EmitResult.FAIL_CANCELLED && result != Sinks.EmitResult.FAIL_TERMINATED) {
+                // the client resumes from its last delivered id once it reconnects
+                dropped.increment();
+                subscription.sink().tryEmitComplete();
+            }
+            removeLocked(subscription);
+        }
+    }
+
+    private ServerSentEvent<LessonStreamEvent> lessonEvent(Numbered numbered) {
+        return ServerSentEvent.<LessonStreamEvent>builder()
+                .id(epoch + "-" + numbered.sequence())
+                .event(LESSON)
+                .data(numbered.event())
+                .build();
+    }
+
+    private ServerSentEvent<LessonStreamEvent> resyncEvent() {
+        // resuming from here is safe: the client reloads everything up to this point
+        return ServerSentEvent.<LessonStreamEvent>builder()
+                .id(epoch + "-" + sequence)
+                .event(RESYNC)
+                .build();
+    }
+
+    private List<Subscription> allSubscriptions() {
+        List<Subscription> all = new ArrayList<>(open);
+        subscriptions.values().forEach(all::addAll);
+        return all;
+    }
+
+    private void remove(Subscription subscription) {
+        synchronized (lock) {
+            removeLocked(subscription);
+        }
+    }
+
+    private void removeLocked(Subscription subscription) {
+        Set<Subscription> userSubscriptions = subscriptions.get(subscription.userId());
+        if (userSubscriptions != null && userSubscriptions.remove(subscription)) {
+            open--;
+            if (userSubscriptions.isEmpty()) {
+                subscriptions.remove(subscription.userId());
+            }
+        }
+    }
+
+    private int openStreams() {
+        synchronized (lock) {
+            return open;
+        }
+    }
+
+    private static String newEpoch() {
+        return Long.toString(System.currentTimeMillis(), 36) + Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36), 36);
+    }
+
+    private record Subscription(UUID userId, Sinks.Many<ServerSentEvent<LessonStreamEvent>> sink) {
+    }
+
+    private record Numbered(long sequence, Set<UUID> recipients, LessonStreamEvent event) {
+    }
+}
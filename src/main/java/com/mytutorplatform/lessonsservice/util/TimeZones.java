@@ -0,0 +1,26 @@
+package com.mytutorplatform.lessonsservice.util;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Resolves the optional {@code timezone} request parameter used to bucket lessons into local days.
+ */
+public final class TimeZones {
+
+    private TimeZones() {
+    }
+
+    /** The named zone, or UTC when the name is missing or unknown. */
+    public static ZoneId resolveOrUtc(String timezone) {
+        if (timezone == null || timezone.isBlank()) {
+            return ZoneOffset.UTC;
+        }
+        try {
+            return ZoneId.of(timezone.trim());
+        } catch (DateTimeException ex) {
+            return ZoneOffset.UTC;
+        }
+    }
+}
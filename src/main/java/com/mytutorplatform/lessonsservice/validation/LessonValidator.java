@@ -16,13 +16,13 @@ public class LessonValidator {
         validateCommonFields(createLessonRequest);
 
         // Validate recurring lesson fields if applicable
-        if (Boolean.TRUE.equals(createLessonRequest.getRepeatWeekly())) {
+        if (createLessonRequest.isRecurring()) {
             validateRecurringLessonFields(createLessonRequest);
         }
     }
 
     private void validateRecurringLessonFields(CreateLessonRequest createLessonRequest) {
-        // If repeatWeekly is true, at least one of repeatWeeksCount or repeatUntil should be provided
+        // For a recurring lesson, at least one of repeatWeeksCount or repeatUntil should be provided
         if (createLessonRequest.getRepeatWeeksCount() == null && createLessonRequest.getRepeatUntil() == null) {
             throw new IllegalArgumentException("Either repeatWeeksCount or repeatUntil must be provided for recurring lessons");
         }
@@ -32,6 +32,10 @@ public class LessonValidator {
             throw new IllegalArgumentException("repeatWeeksCount must be greater than 0");
         }
 
+        if (createLessonRequest.getRepeatInterval() != null && createLessonRequest.getRepeatInterval() <= 0) {
+            throw new IllegalArgumentException("repeatInterval must be greater than 0");
+        }
+
         // Validate repeatUntil if provided
         if (createLessonRequest.getRepeatUntil() != null && createLessonRequest.getRepeatUntil().isBefore(OffsetDateTime.now())) {
             throw new IllegalArgumentException("repeatUntil must be in the future");
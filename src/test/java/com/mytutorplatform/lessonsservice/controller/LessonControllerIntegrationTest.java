@@ -1,37 +1,108 @@
 package com.mytutorplatform.lessonsservice.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytutorplatform.lessonsservice.config.MaterialCacheConfig;
+import com.mytutorplatform.lessonsservice.config.datasource.ReplicaLagMonitor;
+import com.mytutorplatform.lessonsservice.kafka.producer.LessonEventProducer;
+import com.mytutorplatform.lessonsservice.kafka.producer.LessonOutboxRelay;
 import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.LessonAttachment;
+import com.mytutorplatform.lessonsservice.model.LessonMaterial;
 import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.Material;
 import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.model.kafka.Event;
+import com.mytutorplatform.lessonsservice.model.kafka.LessonBatchEvent;
 import com.mytutorplatform.lessonsservice.model.request.CreateLessonRequest;
+import com.mytutorplatform.lessonsservice.repository.LessonDeletionRepository;
+import com.mytutorplatform.lessonsservice.repository.LessonMaterialRepository;
 import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.MaterialRepository;
 import com.mytutorplatform.lessonsservice.repository.RecurringLessonSeriesRepository;
+import com.mytutorplatform.lessonsservice.service.LessonBatchWriter;
+import com.mytutorplatform.lessonsservice.service.LessonChangeFeedService;
+import com.mytutorplatform.lessonsservice.service.LessonRollupService;
+import com.mytutorplatform.lessonsservice.service.MaterialCacheBroadcast;
+import com.mytutorplatform.lessonsservice.service.TutorStudentRelationService;
+import com.mytutorplatform.lessonsservice.service.lifecycle.LessonLifecycleScheduler;
+import com.mytutorplatform.lessonsservice.service.lock.AdvisoryLocks;
+import com.mytutorplatform.lessonsservice.service.partition.LessonPartitionMaintenance;
+import com.mytutorplatform.lessonsservice.service.recurrence.RecurringOccurrenceService;
+import com.mytutorplatform.lessonsservice.service.schedule.CurrentLessonIndex;
+import com.mytutorplatform.lessonsservice.service.schedule.UserScheduleVersions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.invocation.Invocation;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.YearMonth;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+// lifecycle transitions would move the fixtures' statuses under the tests; its test drives it by hand.
+// A second pool on the test database stands in for the replica; its lag probe is driven by hand too
+@SpringBootTest(properties = {"lessons.lifecycle.enabled=false", "lessons.outbox.relay.enabled=false",
+        "lessons.outbox.relay.envelopes.enabled=true", "lessons.outbox.relay.coalesce-window-ms=0",
+        "lessons.datasource.replica.url=${spring.datasource.url}?ApplicationName=lessons-replica",
+        "lessons.datasource.replica.probe-interval-ms=3600000",
+        "lessons.partitioning.enabled=true"})
 @AutoConfigureMockMvc
 public class LessonControllerIntegrationTest {
 
@@ -44,18 +115,88 @@ public class LessonControllerIntegrationTest {
     @Autowired
     private RecurringLessonSeriesRepository recurringLessonSeriesRepository;
 
+    @Autowired
+    private LessonDeletionRepository lessonDeletionRepository;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MaterialRepository materialRepository;
+
+    @Autowired
+    private LessonMaterialRepository lessonMaterialRepository;
+
+    @Autowired
+    private LessonChangeFeedService lessonChangeFeedService;
+
+    @Autowired
+    private TutorStudentRelationService tutorStudentRelationService;
+
+    @Autowired
+    private LessonRollupService lessonRollupService;
+
+    @Autowired
+    private UserScheduleVersions userScheduleVersions;
+
+    @Autowired
+    private CurrentLessonIndex currentLessonIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LessonLifecycleScheduler lessonLifecycleScheduler;
+
+    @Autowired
+    private RecurringOccurrenceService recurringOccurrenceService;
+
+    @Autowired
+    private LessonBatchWriter lessonBatchWriter;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private LessonEventProducer lessonEventProducer;
+
+    @Autowired
+    private LessonOutboxRelay lessonOutboxRelay;
+
+    @Autowired
+    private AdvisoryLocks advisoryLocks;
+
+    @Autowired
+    private Clock clock;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private LessonPartitionMaintenance lessonPartitionMaintenance;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
     private UUID tutorId1;
     private UUID studentId1;
     private UUID studentId2;
 
     @BeforeEach
     void setup() {
+        when(lessonEventProducer.sendLessonEvents(any())).thenReturn(CompletableFuture.completedFuture(null));
+
         // Clear repositories before each test
         lessonRepository.deleteAll();
         recurringLessonSeriesRepository.deleteAll();
+        lessonDeletionRepository.deleteAll();
 
         // Define IDs for tutors and students
         tutorId1 = UUID.randomUUID();
@@ -199,7 +340,8 @@ public class LessonControllerIntegrationTest {
 
         CreateLessonRequest request = new CreateLessonRequest();
         request.setTitle("Recurring Math Lesson");
-        request.setDateTime(OffsetDateTime.now().plusDays(1)); // Future date
+        // Future date, at the precision PostgreSQL stores
+        request.setDateTime(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS));
         request.setDuration(60);
         request.setStudentId(studentId1);
         request.setTutorId(tutorId1);
@@ -210,11 +352,11 @@ public class LessonControllerIntegrationTest {
         request.setRepeatWeekly(true);
         request.setRepeatWeeksCount(4); // Create 4 weekly lessons
 
-        String responseJson = mockMvc.perform(post("/api/lessons")
+        mockMvc.perform(post("/api/lessons")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk())
-                .andReturn().getResponse().getContentAsString();
+                .andExpect(jsonPath("$.virtualOccurrence", is(false)));
 
         List<RecurringLessonSeries> allSeries = recurringLessonSeriesRepository.findAll();
         assertEquals(1, allSeries.size());
@@ -222,27 +364,1384 @@ public class LessonControllerIntegrationTest {
         assertNotNull(series);
         assertEquals(RecurringLessonSeries.RecurrenceFrequency.WEEKLY, series.getFrequency());
         assertEquals(1, series.getInterval());
+        assertTrue(request.getDateTime().plusWeeks(3).isEqual(series.getUntil()));
+        assertEquals("Recurring Math Lesson", series.getTitle());
 
+        // Only the first occurrence is written up front; the rest are expanded from the rule
         List<Lesson> allLessons = lessonRepository.findAll();
-        assertEquals(4, allLessons.size());
-
-        for (Lesson lesson : allLessons) {
-            assertNotNull(lesson.getSeries());
-            assertEquals(series.getSeriesId(), lesson.getSeries().getSeriesId());
-        }
+        assertEquals(1, allLessons.size());
+        assertEquals(series.getSeriesId(), allLessons.get(0).getSeries().getSeriesId());
 
+        List<JsonNode> expanded = listLessons(tutorId1, request.getDateTime().minusDays(1), request.getDateTime().plusWeeks(5));
+        assertEquals(4, expanded.size());
         OffsetDateTime expectedDateTime = request.getDateTime();
         for (int i = 0; i < 4; i++) {
-            boolean foundMatch = false;
-            for (Lesson lesson : allLessons) {
-                if (lesson.getDateTime().isEqual(expectedDateTime)) {
-                    foundMatch = true;
-                    break;
-                }
-            }
-            assertTrue(foundMatch, "No lesson found for expected date: " + expectedDateTime);
+            JsonNode lesson = expanded.get(i);
+            assertTrue(expectedDateTime.isEqual(OffsetDateTime.parse(lesson.get("dateTime").asText())),
+                    "No lesson found for expected date: " + expectedDateTime);
+            assertEquals(series.getSeriesId().toString(), lesson.get("seriesId").asText());
+            assertEquals(i > 0, lesson.get("virtualOccurrence").asBoolean());
             expectedDateTime = expectedDateTime.plusDays(7); // Next week
         }
+
+        // Editing an occurrence writes it; cancelling one removes it from the expansion
+        String secondStart = request.getDateTime().plusWeeks(1).toString();
+        mockMvc.perform(patch("/api/lessons/series/" + series.getSeriesId() + "/occurrences")
+                        .param("start", secondStart)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Moved Math Lesson\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Moved Math Lesson")))
+                .andExpect(jsonPath("$.virtualOccurrence", is(false)));
+        mockMvc.perform(delete("/api/lessons/series/" + series.getSeriesId() + "/occurrences")
+                        .param("start", request.getDateTime().plusWeeks(2).toString()))
+                .andExpect(status().isNoContent());
+
+        assertEquals(2, lessonRepository.count());
+        List<JsonNode> afterEdits = listLessons(tutorId1, request.getDateTime().minusDays(1), request.getDateTime().plusWeeks(5));
+        assertEquals(3, afterEdits.size());
+        assertEquals("Moved Math Lesson", afterEdits.get(1).get("title").asText());
+        assertTrue(request.getDateTime().plusWeeks(3).isEqual(OffsetDateTime.parse(afterEdits.get(2).get("dateTime").asText())));
+    }
+
+    @Test
+    public void testSeriesOperationsRunAsBulkStatements() throws Exception {
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Series Lesson");
+        request.setDateTime(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS));
+        request.setDuration(60);
+        request.setStudentId(studentId1);
+        request.setTutorId(tutorId1);
+        request.setRepeatWeekly(true);
+        request.setRepeatWeeksCount(4);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        UUID seriesId = recurringLessonSeriesRepository.findAll().get(0).getSeriesId();
+        OffsetDateTime first = request.getDateTime();
+        OffsetDateTime rangeFrom = first.minusDays(1);
+        OffsetDateTime rangeTo = first.plusWeeks(6);
+
+        // write the second occurrence and hang a material off it so the delete has to cascade
+        mockMvc.perform(patch("/api/lessons/series/" + seriesId + "/occurrences")
+                        .param("start", first.plusWeeks(1).toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"location\":\"Room 1\"}"))
+                .andExpect(status().isOk());
+        Lesson second = lessonRepository.findAll().stream()
+                .filter(lesson -> lesson.getDateTime().isEqual(first.plusWeeks(1)))
+                .findFirst().orElseThrow();
+        Material material = materialRepository.save(Material.builder()
+                .title("Worksheet").type(Material.AssetType.DOCUMENT).sourceUrl("https://example.com/w.pdf").build());
+        lessonMaterialRepository.save(LessonMaterial.builder().lesson(second).material(material).sortOrder(0).build());
+
+        mockMvc.perform(post("/api/lessons/series/" + seriesId + "/shift")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"from\":\"" + first.plusDays(1) + "\",\"shiftMinutes\":30}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affectedLessons", is(1)));
+
+        List<JsonNode> shifted = listLessons(tutorId1, rangeFrom, rangeTo);
+        assertEquals(4, shifted.size());
+        assertTrue(first.isEqual(OffsetDateTime.parse(shifted.get(0).get("dateTime").asText())));
+        for (int i = 1; i < 4; i++) {
+            assertTrue(first.plusWeeks(i).plusMinutes(30).isEqual(OffsetDateTime.parse(shifted.get(i).get("dateTime").asText())));
+        }
+
+        mockMvc.perform(patch("/api/lessons/series/" + seriesId + "/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"from\":\"" + first.plusWeeks(3) + "\",\"status\":\"CANCELED\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affectedLessons", is(0)));
+        assertEquals(3, listLessons(tutorId1, rangeFrom, rangeTo).size());
+
+        mockMvc.perform(delete("/api/lessons/series/" + seriesId)
+                        .param("from", first.plusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affectedLessons", is(1)))
+                .andExpect(jsonPath("$.seriesDeleted", is(false)));
+        assertEquals(0, lessonMaterialRepository.count());
+        assertEquals(1, listLessons(tutorId1, rangeFrom, rangeTo).size());
+
+        mockMvc.perform(delete("/api/lessons/series/" + seriesId)
+                        .param("from", rangeFrom.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.seriesDeleted", is(true)));
+        assertTrue(recurringLessonSeriesRepository.findById(seriesId).isEmpty());
+    }
+
+    @Test
+    public void testShiftSplitsOffUnwrittenEarlierOccurrencesInsteadOfWritingThem() throws Exception {
+        UUID tutorId = UUID.randomUUID();
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Split Series");
+        request.setDateTime(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS));
+        request.setDuration(60);
+        request.setStudentId(studentId1);
+        request.setTutorId(tutorId);
+        request.setRepeatWeekly(true);
+        request.setRepeatWeeksCount(6);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        UUID seriesId = recurringLessonSeriesRepository.findAll().stream()
+                .filter(series -> tutorId.equals(series.getTutorId()))
+                .findFirst().orElseThrow().getSeriesId();
+        OffsetDateTime first = request.getDateTime();
+        OffsetDateTime rangeFrom = first.minusDays(1);
+        OffsetDateTime rangeTo = first.plusWeeks(8);
+
+        // weeks 1 and 2 are not written yet and keep their time
+        mockMvc.perform(post("/api/lessons/series/" + seriesId + "/shift")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"from\":\"" + first.plusWeeks(3) + "\",\"shiftMinutes\":30}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affectedLessons", is(0)));
+        assertEquals(1, lessonRepository.findAll().stream().filter(lesson -> tutorId.equals(lesson.getTutorId())).count());
+        assertEquals(2, recurringLessonSeriesRepository.findAll().stream()
+                .filter(series -> tutorId.equals(series.getTutorId())).count());
+        List<JsonNode> lessons = listLessons(tutorId, rangeFrom, rangeTo);
+        assertEquals(6, lessons.size());
+        for (int i = 0; i < 6; i++) {
+            OffsetDateTime expected = first.plusWeeks(i).plusMinutes(i < 3 ? 0 : 30);
+            assertTrue(expected.isEqual(OffsetDateTime.parse(lessons.get(i).get("dateTime").asText())));
+        }
+
+        // the stored first occurrence no longer fits the shifted rule but is still found
+        mockMvc.perform(delete("/api/lessons/series/" + seriesId + "/occurrences")
+                        .param("start", first.toString()))
+                .andExpect(status().isNoContent());
+        assertEquals(5, listLessons(tutorId, rangeFrom, rangeTo).size());
+    }
+
+    @Test
+    public void testOverlappingLessonsAreRejectedAndFreeSlotsReported() throws Exception {
+        UUID tutorId = UUID.randomUUID();
+        OffsetDateTime dayStart = OffsetDateTime.now(ZoneOffset.UTC).plusDays(2).truncatedTo(ChronoUnit.DAYS);
+
+        CreateLessonRequest first = new CreateLessonRequest();
+        first.setTitle("Morning");
+        first.setTutorId(tutorId);
+        first.setStudentId(studentId1);
+        first.setDateTime(dayStart.plusHours(9));
+        first.setDuration(60);
+        String createdJson = mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(first)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String firstId = objectMapper.readTree(createdJson).get("id").asText();
+
+        CreateLessonRequest overlapping = new CreateLessonRequest();
+        overlapping.setTitle("Clash");
+        overlapping.setTutorId(tutorId);
+        overlapping.setStudentId(studentId2);
+        overlapping.setDateTime(dayStart.plusHours(9).plusMinutes(30));
+        overlapping.setDuration(60);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(overlapping)))
+                .andExpect(status().isConflict());
+
+        // back-to-back is fine
+        overlapping.setDateTime(dayStart.plusHours(10));
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(overlapping)))
+                .andExpect(status().isOk());
+
+        // a lesson may be moved over its own old slot but not onto another lesson
+        mockMvc.perform(patch("/api/lessons/" + firstId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"dateTime\":\"" + dayStart.plusHours(8).plusMinutes(30) + "\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/api/lessons/" + firstId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"dateTime\":\"" + dayStart.plusHours(10).plusMinutes(15) + "\"}"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(get("/api/lessons/tutor/" + tutorId + "/free-slots")
+                        .param("from", dayStart.plusHours(8).toString())
+                        .param("to", dayStart.plusHours(12).toString())
+                        .param("minMinutes", "30"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].durationMinutes", is(30)))
+                .andExpect(jsonPath("$[1].durationMinutes", is(30)))
+                .andExpect(jsonPath("$[2].durationMinutes", is(60)));
+
+        // booked on another instance: this instance's index has not seen it, the database has
+        Lesson elsewhere = new Lesson();
+        elsewhere.setTitle("Elsewhere");
+        elsewhere.setTutorId(tutorId);
+        elsewhere.setStudentId(studentId1);
+        elsewhere.setDateTime(dayStart.plusHours(11));
+        elsewhere.setDuration(60);
+        lessonRepository.save(elsewhere);
+        overlapping.setDateTime(dayStart.plusHours(11).plusMinutes(30));
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(overlapping)))
+                .andExpect(status().isConflict());
+
+        // a weekly series is checked as a whole; only its third occurrence clashes
+        Lesson later = new Lesson();
+        later.setTitle("Later");
+        later.setTutorId(tutorId);
+        later.setStudentId(studentId1);
+        later.setDateTime(dayStart.plusWeeks(2).plusHours(15));
+        later.setDuration(60);
+        lessonRepository.save(later);
+        CreateLessonRequest weekly = new CreateLessonRequest();
+        weekly.setTitle("Weekly");
+        weekly.setTutorId(tutorId);
+        weekly.setStudentId(studentId2);
+        weekly.setDateTime(dayStart.plusHours(15).plusMinutes(30));
+        weekly.setDuration(60);
+        weekly.setRepeatWeekly(true);
+        weekly.setRepeatWeeksCount(4);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(weekly)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testLessonPagesWalkStoredAndExpandedLessonsInKeysetOrder() throws Exception {
+        lessonRepository.deleteAll();
+        recurringLessonSeriesRepository.deleteAll();
+
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS);
+        // three stored lessons sharing one start, so the id decides their order
+        for (int i = 0; i < 3; i++) {
+            Lesson lesson = new Lesson();
+            lesson.setTutorId(UUID.randomUUID());
+            lesson.setStudentId(studentId1);
+            lesson.setDateTime(start);
+            lesson.setDuration(60);
+            lessonRepository.save(lesson);
+        }
+
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Paged series");
+        request.setDateTime(start);
+        request.setDuration(60);
+        request.setStudentId(studentId1);
+        request.setTutorId(tutorId1);
+        request.setRepeatWeekly(true);
+        request.setRepeatWeeksCount(6);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        List<JsonNode> collected = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var pageRequest = get("/api/lessons/page")
+                    .param("studentId", studentId1.toString())
+                    .param("startDate", start.minusDays(1).toString())
+                    .param("endDate", start.plusWeeks(8).toString())
+                    .param("limit", "2");
+            if (cursor != null) {
+                pageRequest.param("cursor", cursor);
+            }
+            JsonNode page = objectMapper.readTree(mockMvc.perform(pageRequest)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            page.get("items").forEach(collected::add);
+            cursor = page.get("hasMore").asBoolean() ? page.get("nextCursor").asText() : null;
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        // 3 stored lessons + 6 series occurrences (1 stored, 5 expanded), each exactly once
+        assertEquals(9, collected.size());
+        assertEquals(5, pages);
+        assertEquals(9, collected.stream().map(lesson -> lesson.get("id").asText()).distinct().count());
+        for (int i = 1; i < collected.size(); i++) {
+            OffsetDateTime previous = OffsetDateTime.parse(collected.get(i - 1).get("dateTime").asText());
+            OffsetDateTime current = OffsetDateTime.parse(collected.get(i).get("dateTime").asText());
+            assertFalse(current.isBefore(previous));
+        }
+
+        mockMvc.perform(get("/api/lessons/page").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSparseFieldsSelectOnlyRequestedProperties() throws Exception {
+        lessonRepository.deleteAll();
+        recurringLessonSeriesRepository.deleteAll();
+
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS);
+        Lesson single = new Lesson();
+        single.setTitle("Single");
+        single.setTutorId(tutorId1);
+        single.setStudentId(studentId1);
+        single.setDateTime(start.minusHours(3));
+        single.setDuration(60);
+        single.setLessonPlan("Long plan the calendar never shows");
+        LessonAttachment attachment = new LessonAttachment();
+        attachment.setLesson(single);
+        attachment.setFileName("worksheet.pdf");
+        attachment.setFileUrl("https://files.example/worksheet.pdf");
+        single.setAttachments(new ArrayList<>(List.of(attachment)));
+        lessonRepository.save(single);
+        // time-ordered keys for lessons and their link rows
+        assertEquals(7, single.getId().version());
+        assertEquals(7, attachment.getId().version());
+
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Series");
+        request.setDateTime(start);
+        request.setDuration(60);
+        request.setStudentId(studentId1);
+        request.setTutorId(tutorId1);
+        request.setRepeatWeekly(true);
+        request.setRepeatWeeksCount(2);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        JsonNode lessons = objectMapper.readTree(mockMvc.perform(get("/api/lessons")
+                        .param("tutorId", tutorId1.toString())
+                        .param("startDate", start.minusDays(1).toString())
+                        .param("endDate", start.plusWeeks(2).toString())
+                        .param("fields", "title,seriesId,attachments"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        // stand-alone lesson, stored first occurrence, expanded second occurrence
+        assertEquals(3, lessons.size());
+        List<String> names = new ArrayList<>();
+        lessons.get(0).fieldNames().forEachRemaining(names::add);
+        assertEquals(List.of("id", "title", "dateTime", "seriesId", "attachments"), names);
+        assertEquals("Single", lessons.get(0).get("title").asText());
+        assertTrue(lessons.get(0).get("seriesId").isNull());
+        assertEquals("worksheet.pdf", lessons.get(0).get("attachments").get(0).get("fileName").asText());
+        assertEquals(lessons.get(1).get("seriesId"), lessons.get(2).get("seriesId"));
+        assertEquals(0, lessons.get(2).get("attachments").size());
+
+        mockMvc.perform(get("/api/lessons").param("tutorId", tutorId1.toString()).param("fields", "title,password"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                        .param("tutorId", tutorId1.toString())
+                        .param("startDate", start.minusDays(1).toString())
+                        .param("endDate", start.plusWeeks(2).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].duration", is(60)))
+                .andExpect(jsonPath("$[0].lessonPlan").doesNotExist());
+    }
+
+    @Test
+    public void testLookupResolvesIdsInRequestOrderAndReportsMissing() throws Exception {
+        List<Lesson> stored = lessonRepository.findAll();
+        UUID first = stored.get(0).getId();
+        UUID second = stored.get(1).getId();
+        UUID unknown = UUID.randomUUID();
+
+        String body = objectMapper.writeValueAsString(Map.of("ids", List.of(second, unknown, first, second)));
+        mockMvc.perform(post("/api/lessons/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].id", is(second.toString())))
+                .andExpect(jsonPath("$.items[1].id", is(first.toString())))
+                .andExpect(jsonPath("$.missing", hasSize(1)))
+                .andExpect(jsonPath("$.missing[0]", is(unknown.toString())));
+
+        mockMvc.perform(post("/api/lessons/lookup")
+                        .param("fields", "status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status", is("COMPLETED")))
+                .andExpect(jsonPath("$.items[0].tutorId").doesNotExist());
+    }
+
+    @Test
+    public void testDashboardAgendaFollowsLessonWrites() throws Exception {
+        UUID student = UUID.randomUUID();
+        mockMvc.perform(get("/api/lessons/dashboard/next").param("userId", student.toString()))
+                .andExpect(status().isNoContent());
+
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Cached agenda");
+        request.setDateTime(OffsetDateTime.now(ZoneOffset.UTC).plusHours(2).truncatedTo(ChronoUnit.MICROS));
+        request.setDuration(45);
+        request.setStudentId(student);
+        request.setTutorId(tutorId1);
+        JsonNode created = objectMapper.readTree(mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        // the empty agenda cached by the first poll was invalidated by the create
+        mockMvc.perform(get("/api/lessons/dashboard/next").param("userId", student.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Cached agenda")));
+        mockMvc.perform(get("/api/lessons/dashboard/upcoming").param("userId", tutorId1.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/api/lessons/dashboard/overview").param("userId", tutorId1.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.next.title", is("Cached agenda")))
+                .andExpect(jsonPath("$.upcoming", hasSize(1)))
+                .andExpect(jsonPath("$.tutorActions.missingNotesCount", is(2)))
+                .andExpect(jsonPath("$.studentMetrics.completedThisMonth").isNumber())
+                .andExpect(jsonPath("$.unavailableSections", hasSize(0)));
+
+        mockMvc.perform(delete("/api/lessons/{id}", created.get("id").asText()))
+                .andExpect(status().is2xxSuccessful());
+        mockMvc.perform(get("/api/lessons/dashboard/next").param("userId", student.toString()))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testStudentsWithoutNextLessonFollowLessonWrites() throws Exception {
+        UUID tutor = UUID.randomUUID();
+        UUID seenEarlier = UUID.randomUUID();
+        UUID seenLater = UUID.randomUUID();
+        UUID booked = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        lessonRepository.save(pastLesson(tutor, seenEarlier, now.minusDays(3)));
+        lessonRepository.save(pastLesson(tutor, seenLater, now.minusDays(2)));
+        lessonRepository.save(pastLesson(tutor, booked, now.minusDays(1)));
+        Lesson upcoming = pastLesson(tutor, booked, now.plusDays(1));
+        upcoming.setStatus(LessonStatus.SCHEDULED);
+        lessonRepository.save(upcoming);
+        // rows written behind the service's back only show up after a rebuild
+        tutorStudentRelationService.rebuild();
+
+        mockMvc.perform(get("/api/lessons/dashboard/tutor/actions").param("userId", tutor.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.studentsWithoutNextLessonCount", is(2)));
+        JsonNode firstPage = objectMapper.readTree(mockMvc.perform(get("/api/lessons/dashboard/tutor/students-without-next-lesson")
+                        .param("userId", tutor.toString())
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].studentId", is(seenLater.toString())))
+                .andExpect(jsonPath("$.items[0].lastLessonStatus", is("COMPLETED")))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andReturn().getResponse().getContentAsString());
+        mockMvc.perform(get("/api/lessons/dashboard/tutor/students-without-next-lesson")
+                        .param("userId", tutor.toString())
+                        .param("limit", "1")
+                        .param("cursor", firstPage.get("nextCursor").asText()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].studentId", is(seenEarlier.toString())))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+
+        // booking through the API updates the read model in the same transaction
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Follow-up");
+        request.setDateTime(now.plusDays(3));
+        request.setDuration(60);
+        request.setStudentId(seenEarlier);
+        request.setTutorId(tutor);
+        JsonNode created = objectMapper.readTree(mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        mockMvc.perform(get("/api/lessons/dashboard/tutor/students-without-next-lesson").param("userId", tutor.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].studentId", is(seenLater.toString())));
+
+        mockMvc.perform(delete("/api/lessons/{id}", created.get("id").asText()))
+                .andExpect(status().is2xxSuccessful());
+        mockMvc.perform(get("/api/lessons/dashboard/tutor/actions").param("userId", tutor.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.studentsWithoutNextLessonCount", is(2)));
+        mockMvc.perform(get("/api/lessons/dashboard/tutor/students-without-next-lesson")
+                        .param("userId", tutor.toString())
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testRollupsBucketLessonsByLocalDayAndFollowWrites() throws Exception {
+        UUID tutor = UUID.randomUUID();
+        UUID student = UUID.randomUUID();
+        // 23:30 UTC on March 31st is already April 1st in Kolkata (+05:30)
+        Lesson lesson = pastLesson(tutor, student, OffsetDateTime.parse("2024-03-31T23:30:00Z"));
+        lesson = lessonRepository.save(lesson);
+        lessonRepository.save(pastLesson(tutor, student, OffsetDateTime.parse("2024-03-31T10:00:00Z")));
+
+        mockMvc.perform(get("/api/lessons/month-counts")
+                        .param("year", "2024").param("month", "3").param("tutorId", tutor.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.2024-03-31").value(2));
+        mockMvc.perform(get("/api/lessons/month-counts")
+                        .param("year", "2024").param("month", "3").param("tutorId", tutor.toString())
+                        .param("timezone", "Asia/Kolkata"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.2024-03-31").value(1));
+        mockMvc.perform(get("/api/lessons/month-counts")
+                        .param("year", "2024").param("month", "4").param("studentId", student.toString())
+                        .param("timezone", "Asia/Kolkata"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.2024-04-01").value(1));
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", tutor.toString()).param("from", "2024-03-31").param("to", "2024-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(2)))
+                .andExpect(jsonPath("$.minutes", is(120)))
+                .andExpect(jsonPath("$.students[0].studentId", is(student.toString())));
+
+        // an update moves the lesson between buckets, a delete takes it out
+        lesson.setDuration(90);
+        lesson.setDateTime(OffsetDateTime.parse("2024-03-30T12:00:00Z"));
+        lessonRepository.save(lesson);
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", tutor.toString()).param("from", "2024-03-30").param("to", "2024-03-30")
+                        .param("timezone", "Asia/Kolkata"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(1)))
+                .andExpect(jsonPath("$.minutes", is(90)));
+
+        // the backfill job rebuilds the same rows the incremental path maintained
+        lessonRollupService.rebuild();
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", tutor.toString()).param("from", "2024-03-01").param("to", "2024-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(2)))
+                .andExpect(jsonPath("$.minutes", is(150)));
+
+        lessonRepository.deleteById(lesson.getId());
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", tutor.toString()).param("from", "2024-03-01").param("to", "2024-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(1)))
+                .andExpect(jsonPath("$.minutes", is(60)));
+
+        // 18:45 UTC is 00:15 the next day in Kolkata, a quarter past local midnight
+        UUID nightTutor = UUID.randomUUID();
+        lessonRepository.save(pastLesson(nightTutor, student, OffsetDateTime.parse("2024-03-31T18:45:00Z")));
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", nightTutor.toString()).param("from", "2024-04-01").param("to", "2024-04-01")
+                        .param("timezone", "Asia/Kolkata"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(1)));
+        mockMvc.perform(get("/api/lessons/month-counts")
+                        .param("year", "2024").param("month", "3").param("tutorId", nightTutor.toString())
+                        .param("timezone", "Asia/Kolkata"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.2024-03-31").value(0));
+    }
+
+    @Test
+    public void testScheduleAndDashboardAnswerConditionalGets() throws Exception {
+        // one bucket for the whole test, so only writes change the dashboard ETag
+        Object timeBucketSeconds = ReflectionTestUtils.getField(userScheduleVersions, "timeBucketSeconds");
+        ReflectionTestUtils.setField(userScheduleVersions, "timeBucketSeconds", Long.MAX_VALUE);
+        try {
+            UUID student = UUID.randomUUID();
+            OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS);
+            String from = start.minusDays(1).toString();
+            String to = start.plusDays(1).toString();
+
+            String scheduleEtag = mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                            .param("studentId", student.toString()).param("startDate", from).param("endDate", to))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(0)))
+                    .andReturn().getResponse().getHeader("ETag");
+            assertNotNull(scheduleEtag);
+            mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                            .param("studentId", student.toString()).param("startDate", from).param("endDate", to)
+                            .header("If-None-Match", scheduleEtag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            String nextEtag = mockMvc.perform(get("/api/lessons/dashboard/next").param("userId", student.toString()))
+                    .andExpect(status().isNoContent())
+                    .andReturn().getResponse().getHeader("ETag");
+            assertNotNull(nextEtag);
+            mockMvc.perform(get("/api/lessons/dashboard/next").param("userId", student.toString())
+                            .header("If-None-Match", nextEtag))
+                    .andExpect(status().isNotModified());
+
+            CreateLessonRequest request = new CreateLessonRequest();
+            request.setTitle("Conditional");
+            request.setDateTime(start);
+            request.setDuration(30);
+            request.setStudentId(student);
+            request.setTutorId(tutorId1);
+            mockMvc.perform(post("/api/lessons")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk());
+
+            // the create bumped the student's version, so the old ETags no longer match
+            String changedEtag = mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                            .param("studentId", student.toString()).param("startDate", from).param("endDate", to)
+                            .header("If-None-Match", scheduleEtag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andReturn().getResponse().getHeader("ETag");
+            assertNotEquals(scheduleEtag, changedEtag);
+            mockMvc.perform(get("/api/lessons/dashboard/next").param("userId", student.toString())
+                            .header("If-None-Match", nextEtag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.title", is("Conditional")));
+            mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                            .param("studentId", student.toString()).param("startDate", from).param("endDate", to)
+                            .header("If-None-Match", changedEtag))
+                    .andExpect(status().isNotModified());
+        } finally {
+            ReflectionTestUtils.setField(userScheduleVersions, "timeBucketSeconds", timeBucketSeconds);
+        }
+    }
+
+    @Test
+    public void testReadOnlyRequestsReadTheReplicaUnlessTheyMustSeeNewerWrites() throws Exception {
+        UUID student = UUID.randomUUID();
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS);
+        String from = start.minusDays(1).toString();
+        String to = start.plusDays(1).toString();
+        assertEquals("lessons-replica", new JdbcTemplate(replicaDataSource)
+                .queryForObject("SELECT current_setting('application_name')", String.class));
+
+        replicaLagMonitor.probe();
+        double replicaReads = reads("replica");
+        mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                        .param("studentId", student.toString()).param("startDate", from).param("endDate", to))
+                .andExpect(status().isOk());
+        assertTrue(reads("replica") > replicaReads);
+
+        // the client's own write pins its next reads to the primary
+        Material material = Material.builder()
+                .title("Routed").type(Material.AssetType.DOCUMENT).sourceUrl("https://example.com/r.pdf").build();
+        Cookie pin = mockMvc.perform(post("/api/materials")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(material)))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists("lessons_primary_until"))
+                .andReturn().getResponse().getCookie("lessons_primary_until");
+        replicaLagMonitor.probe();
+        replicaReads = reads("replica");
+        double primaryReads = reads("primary");
+        mockMvc.perform(get("/api/lessons/mytutor/schedule").cookie(pin)
+                        .param("studentId", student.toString()).param("startDate", from).param("endDate", to))
+                .andExpect(status().isOk());
+        assertEquals(replicaReads, reads("replica"));
+        assertTrue(reads("primary") > primaryReads);
+
+        // someone else's write: the schedule behind the new ETag waits for the replica to replay it
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Replicated");
+        request.setDateTime(start);
+        request.setDuration(30);
+        request.setStudentId(student);
+        request.setTutorId(tutorId1);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        replicaReads = reads("replica");
+        mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                        .param("studentId", student.toString()).param("startDate", from).param("endDate", to))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        assertEquals(replicaReads, reads("replica"));
+
+        replicaLagMonitor.probe();
+        mockMvc.perform(get("/api/lessons/mytutor/schedule")
+                        .param("studentId", student.toString()).param("startDate", from).param("endDate", to))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        assertTrue(reads("replica") > replicaReads);
+    }
+
+    @Test
+    public void testPartitionedLessonsArchiveOldMonthsAndKeepChildrenOfMovedRows() {
+        assertEquals("p", jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE relname = 'lessons'", String.class));
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        Lesson moving = lessonRepository.save(lessonWithAttachment("Moving", now.plusDays(1)));
+        Lesson deleted = lessonRepository.save(lessonWithAttachment("Deleted", now.plusDays(2)));
+        Lesson old = lessonRepository.save(lessonWithAttachment("Old", now.minusYears(3)));
+
+        // a reschedule into another month moves the row to another partition, its attachment stays
+        moving.setDateTime(now.plusMonths(2));
+        lessonRepository.save(moving);
+        assertEquals(1, attachmentCount(moving.getId()));
+        assertTrue(lessonRepository.findById(moving.getId()).isPresent());
+
+        // deleting the lesson still takes its children along, and children of missing lessons are rejected
+        jdbcTemplate.update("DELETE FROM lessons WHERE id = ?", deleted.getId());
+        assertEquals(0, attachmentCount(deleted.getId()));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO lesson_attachments (id, lesson_id, file_name, file_url) VALUES (?, ?, 'orphan.pdf', 'x')",
+                UUID.randomUUID(), deleted.getId()));
+
+        lessonPartitionMaintenance.maintain();
+        assertTrue(lessonRepository.findById(old.getId()).isEmpty());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM lessons_archive WHERE id = ?", Integer.class, old.getId()));
+        assertEquals(1, attachmentCount(old.getId()));
+
+        // recomputing the pair's rollups keeps counting the archived lesson
+        lessonRollupService.touch(tutorId1, studentId1);
+        assertEquals(1, jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(lesson_count), 0) FROM lesson_rollups
+                WHERE tutor_id = ? AND student_id = ? AND bucket_start = ?
+                """, Integer.class, tutorId1, studentId1, LessonRollupService.bucketOf(old.getDateTime())));
+        String lastMonth = "lessons_p" + now.plusMonths(3).format(DateTimeFormatter.ofPattern("yyyy_MM"));
+        assertEquals(1, jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'lessons'::regclass AND c.relname = ?
+                """, Integer.class, lastMonth));
+    }
+
+    @Test
+    public void testMaterializerOnlyTouchesSeriesWithAnOccurrenceDue() throws Exception {
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Weekly");
+        request.setDateTime(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MICROS));
+        request.setDuration(60);
+        request.setStudentId(studentId1);
+        request.setTutorId(tutorId1);
+        request.setRepeatWeekly(true);
+        request.setRepeatWeeksCount(4);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        RecurringLessonSeries series = recurringLessonSeriesRepository.findAll().get(0);
+        assertTrue(request.getDateTime().plusWeeks(1).isEqual(series.getNextOccurrenceStart()));
+
+        String etag = userScheduleVersions.etag(tutorId1, studentId1);
+        recurringOccurrenceService.materializeDue();
+        assertEquals(etag, userScheduleVersions.etag(tutorId1, studentId1));
+        assertTrue(series.getUpdatedAt().isEqual(recurringLessonSeriesRepository.findById(series.getSeriesId()).orElseThrow().getUpdatedAt()));
+
+        // a week on: the next occurrence is inside the look-ahead window
+        OffsetDateTime due = OffsetDateTime.now(ZoneOffset.UTC).plusMinutes(30).truncatedTo(ChronoUnit.MICROS);
+        jdbcTemplate.update("""
+                UPDATE recurring_lesson_series
+                SET start_date_time = ?, materialized_through = ?, next_occurrence_start = ?, until = ?
+                WHERE series_id = ?
+                """, due.minusWeeks(1), due.minusWeeks(1), due, due.plusWeeks(2), series.getSeriesId());
+        recurringOccurrenceService.materializeDue();
+
+        assertEquals(1, lessonRepository.findAll().stream().filter(lesson -> lesson.getDateTime().isEqual(due)).count());
+        assertTrue(due.plusWeeks(1).isEqual(recurringLessonSeriesRepository.findById(series.getSeriesId()).orElseThrow().getNextOccurrenceStart()));
+        assertNotEquals(etag, userScheduleVersions.etag(tutorId1, studentId1));
+    }
+
+    @Test
+    public void testBatchWriterLeavesTheCallersEntitiesManaged() {
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(3).truncatedTo(ChronoUnit.MICROS);
+        transactionTemplate.executeWithoutResult(status -> {
+            Lesson existing = lessonRepository.findAll().get(0);
+            List<Lesson> lessons = new ArrayList<>();
+            // more than one JDBC batch
+            for (int i = 0; i < 120; i++) {
+                Lesson lesson = new Lesson();
+                lesson.setTitle("Batch " + i);
+                lesson.setTutorId(tutorId1);
+                lesson.setStudentId(studentId2);
+                lesson.setDateTime(start.plusHours(i));
+                lesson.setDuration(30);
+                lessons.add(lesson);
+            }
+            lessonBatchWriter.insertAll(lessons);
+
+            assertTrue(entityManager.contains(existing));
+            assertFalse(entityManager.contains(lessons.get(0)));
+            existing.setLocation("Still managed");
+        });
+
+        assertEquals(120, lessonRepository.findAll().stream().filter(lesson -> studentId2.equals(lesson.getStudentId())
+                && lesson.getTitle() != null && lesson.getTitle().startsWith("Batch ")).count());
+        assertEquals(1, lessonRepository.findAll().stream().filter(lesson -> "Still managed".equals(lesson.getLocation())).count());
+    }
+
+    private Lesson lessonWithAttachment(String title, OffsetDateTime dateTime) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle(title);
+        lesson.setTutorId(tutorId1);
+        lesson.setStudentId(studentId1);
+        lesson.setDateTime(dateTime);
+        lesson.setDuration(60);
+        LessonAttachment attachment = new LessonAttachment();
+        attachment.setLesson(lesson);
+        attachment.setFileName(title + ".pdf");
+        attachment.setFileUrl("https://files.example/" + title + ".pdf");
+        lesson.setAttachments(new ArrayList<>(List.of(attachment)));
+        return lesson;
+    }
+
+    private int attachmentCount(UUID lessonId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM lesson_attachments WHERE lesson_id = ?", Integer.class, lessonId);
+    }
+
+    private double reads(String target) {
+        return meterRegistry.counter("lessons.datasource.reads", "target", target).count();
+    }
+
+    @Test
+    public void testMaterialCatalogueIsCachedAndFollowsWritesThroughTheServices() throws Exception {
+        String oldTag = "cached-" + UUID.randomUUID();
+        String newTag = "cached-" + UUID.randomUUID();
+        MvcResult folderResult = mockMvc.perform(post("/api/material-folders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Cached\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String folderId = objectMapper.readTree(folderResult.getResponse().getContentAsString()).get("id").asText();
+        Material material = Material.builder()
+                .title("Cached").type(Material.AssetType.DOCUMENT).sourceUrl("https://example.com/c.pdf")
+                .tags(Set.of(oldTag)).build();
+        MvcResult materialResult = mockMvc.perform(post("/api/materials")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(material)))
+                .andExpect(status().isOk())
+                .andReturn();
+        String materialId = objectMapper.readTree(materialResult.getResponse().getContentAsString()).get("id").asText();
+
+        // the second read of a query is answered by the query cache, on the primary even for replica-eligible clients
+        replicaLagMonitor.probe();
+        double replicaReads = reads("replica");
+        mockMvc.perform(get("/api/materials/tags"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasItem(oldTag)));
+        double queryHits = queryCacheRequests("hit");
+        mockMvc.perform(get("/api/materials/tags"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasItem(oldTag)));
+        assertEquals(queryHits + 1, queryCacheRequests("hit"));
+        assertEquals(replicaReads, reads("replica"));
+
+        mockMvc.perform(get("/api/materials/" + materialId))
+                .andExpect(status().isOk());
+        double materialHits = cacheRequests(MaterialCacheConfig.MATERIAL, "hit");
+        mockMvc.perform(get("/api/materials/" + materialId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags", hasItem(oldTag)));
+        assertTrue(cacheRequests(MaterialCacheConfig.MATERIAL, "hit") > materialHits);
+
+        mockMvc.perform(get("/api/material-folders/tree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == '" + folderId + "')].materialCount", contains(0)));
+
+        // a write through MaterialService invalidates the cached entity, collection and queries
+        mockMvc.perform(patch("/api/materials/" + materialId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tags\":[\"" + newTag + "\"],\"folderId\":\"" + folderId + "\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/materials/tags"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasItem(newTag)))
+                .andExpect(jsonPath("$", not(hasItem(oldTag))));
+        mockMvc.perform(get("/api/materials/" + materialId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags", contains(newTag)));
+        mockMvc.perform(get("/api/material-folders/tree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == '" + folderId + "')].materialCount", contains(1)));
+
+        // and so does one through MaterialFolderService
+        mockMvc.perform(delete("/api/material-folders/" + folderId))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/materials/tags"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", not(hasItem(newTag))));
+        mockMvc.perform(get("/api/material-folders/tree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == '" + folderId + "')]", empty()));
+        mockMvc.perform(get("/api/materials/" + materialId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testMaterialCacheWritesAreBroadcastToOtherInstances() throws Exception {
+        Material material = Material.builder()
+                .title("Shared").type(Material.AssetType.DOCUMENT).sourceUrl("https://example.com/s.pdf").build();
+        MvcResult created = mockMvc.perform(post("/api/materials")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(material)))
+                .andExpect(status().isOk())
+                .andReturn();
+        String materialId = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asText();
+
+        // a write through the service is announced once it commits
+        try (Connection listener = jdbcTemplate.getDataSource().getConnection()) {
+            try (Statement statement = listener.createStatement()) {
+                statement.execute("LISTEN " + MaterialCacheBroadcast.CHANNEL);
+            }
+            mockMvc.perform(patch("/api/materials/" + materialId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"title\":\"Shared 2\"}"))
+                    .andExpect(status().isOk());
+            PGNotification[] notifications = listener.unwrap(PGConnection.class).getNotifications(5_000);
+            try (Statement statement = listener.createStatement()) {
+                statement.execute("UNLISTEN *");
+            }
+            assertNotNull(notifications);
+            assertTrue(notifications[0].getParameter().contains(materialId), notifications[0].getParameter());
+        }
+
+        // a write on another instance: the row changes underneath this instance's cached copy
+        mockMvc.perform(get("/api/materials/" + materialId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Shared 2")));
+        jdbcTemplate.update("UPDATE materials SET title = 'Shared 3' WHERE id = ?", UUID.fromString(materialId));
+        mockMvc.perform(get("/api/materials/" + materialId))
+                .andExpect(jsonPath("$.title", is("Shared 2")));
+
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, MaterialCacheBroadcast.CHANNEL,
+                "{\"origin\":\"" + UUID.randomUUID() + "\",\"all\":false,\"written\":[{\"entity\":\""
+                        + Material.class.getName() + "\",\"id\":\"" + materialId + "\"}]}");
+        long deadline = System.currentTimeMillis() + 5_000;
+        String title = "";
+        while (!title.equals("Shared 3") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            String body = mockMvc.perform(get("/api/materials/" + materialId)).andReturn().getResponse().getContentAsString();
+            title = objectMapper.readTree(body).get("title").asText();
+        }
+        assertEquals("Shared 3", title);
+    }
+
+    private double queryCacheRequests(String result) {
+        return cacheRequests(MaterialCacheConfig.CATALOGUE_QUERIES, result);
+    }
+
+    private double cacheRequests(String region, String result) {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", region, "result", result).functionCounter().count();
+    }
+
+    @Test
+    public void testDashboardStreamPushesCommittedLessonWrites() throws Exception {
+        UUID student = UUID.randomUUID();
+        MvcResult stream = mockMvc.perform(get("/api/lessons/dashboard/stream").param("userId", student.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Streamed");
+        request.setDateTime(OffsetDateTime.now(ZoneOffset.UTC).plusDays(3).truncatedTo(ChronoUnit.MICROS));
+        request.setDuration(45);
+        request.setStudentId(student);
+        request.setTutorId(tutorId1);
+        JsonNode created = objectMapper.readTree(mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        mockMvc.perform(patch("/api/lessons/{id}", created.get("id").asText())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\": \"CANCELED\"}"))
+                .andExpect(status().isOk());
+
+        String body = awaitStream(stream, "STATUS_CHANGED");
+        assertTrue(body.contains("event:lesson"));
+        assertTrue(body.contains("\"type\":\"CREATED\""));
+        assertTrue(body.contains("\"previousStatus\":\"SCHEDULED\""));
+
+        // reconnecting after the create replays only the status change
+        String createdId = body.lines().filter(line -> line.startsWith("id:")).findFirst().orElseThrow().substring(3);
+        MvcResult resumed = mockMvc.perform(get("/api/lessons/dashboard/stream")
+                        .param("userId", student.toString())
+                        .header("Last-Event-ID", createdId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String replayed = awaitStream(resumed, "STATUS_CHANGED");
+        assertFalse(replayed.contains("\"type\":\"CREATED\""));
+    }
+
+    @Test
+    public void testCurrentLessonIsAnsweredFromTheIndexAndFollowsWrites() throws Exception {
+        UUID tutor = UUID.randomUUID();
+        UUID student = UUID.randomUUID();
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusMinutes(5).truncatedTo(ChronoUnit.MICROS);
+        String lessonId = createLesson(tutor, student, start).get("id").asText();
+        currentLessonIndex.markStale();
+        currentLessonIndex.maintain();
+
+        double hits = meterRegistry.counter("lessons.now.index.lookups", "result", "hit").count();
+        assertEquals(lessonId, awaitCurrentLesson(tutor, null, lessonId));
+        assertEquals(hits + 1, meterRegistry.counter("lessons.now.index.lookups", "result", "hit").count());
+
+        // writes reach the loaded index through the committed lesson events
+        mockMvc.perform(patch("/api/lessons/{id}", lessonId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\": \"CANCELED\"}"))
+                .andExpect(status().isOk());
+        assertEquals("", awaitCurrentLesson(tutor, null, ""));
+
+        UUID otherStudent = UUID.randomUUID();
+        String rebooked = createLesson(tutor, otherStudent, start).get("id").asText();
+        assertEquals(rebooked, awaitCurrentLesson(null, otherStudent, rebooked));
+        assertEquals("", awaitCurrentLesson(tutor, student, ""));
+    }
+
+    @Test
+    public void testLifecycleSchedulerMovesLessonsOnTheClockOnce() throws Exception {
+        UUID tutor = UUID.randomUUID();
+        UUID student = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        Lesson running = lessonRepository.save(lifecycleLesson(tutor, student, now.minusMinutes(5), LessonStatus.SCHEDULED));
+        Lesson finished = lessonRepository.save(lifecycleLesson(tutor, student, now.minusMinutes(90), LessonStatus.IN_PROGRESS));
+        Lesson neverStarted = lessonRepository.save(lifecycleLesson(tutor, student, now.minusHours(3), LessonStatus.SCHEDULED));
+        Lesson soon = lessonRepository.save(lifecycleLesson(tutor, student, now.plusMinutes(5), LessonStatus.SCHEDULED));
+        Lesson later = lessonRepository.save(lifecycleLesson(tutor, student, now.plusHours(2), LessonStatus.SCHEDULED));
+        clearInvocations(lessonEventProducer);
+
+        // what is already due fires on the tick after the load
+        Instant tick = Instant.now().plusSeconds(2);
+        lessonLifecycleScheduler.load(tick);
+        lessonLifecycleScheduler.advance(tick.plusSeconds(1));
+
+        assertEquals(LessonStatus.IN_PROGRESS, lessonRepository.findById(running.getId()).orElseThrow().getStatus());
+        assertEquals(LessonStatus.COMPLETED, lessonRepository.findById(finished.getId()).orElseThrow().getStatus());
+        assertEquals(LessonStatus.MISSED, lessonRepository.findById(neverStarted.getId()).orElseThrow().getStatus());
+        Lesson reminded = lessonRepository.findById(soon.getId()).orElseThrow();
+        assertEquals(LessonStatus.SCHEDULED, reminded.getStatus());
+        assertNotNull(reminded.getReminderSentAt());
+        assertNull(lessonRepository.findById(later.getId()).orElseThrow().getReminderSentAt());
+
+        lessonOutboxRelay.relay();
+        Map<UUID, String> types = new HashMap<>();
+        sentEvents().forEach(event -> types.put(event.getLessonId(), event.getEventType()));
+        assertEquals("LESSON_STARTED", types.get(running.getId()));
+        assertEquals("LESSON_COMPLETED", types.get(finished.getId()));
+        assertEquals("LESSON_MISSED", types.get(neverStarted.getId()));
+        assertEquals("LESSON_STARTING_SOON", types.get(soon.getId()));
+        assertFalse(types.containsKey(later.getId()));
+
+        // the status changes were counted into the rollups without a recompute
+        String from = now.minusDays(1).toLocalDate().toString();
+        String to = now.plusDays(1).toLocalDate().toString();
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", tutor.toString()).param("from", from).param("to", to).param("status", "MISSED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(1)));
+        mockMvc.perform(get("/api/lessons/billing-feed/totals")
+                        .param("tutorId", tutor.toString()).param("from", from).param("to", to).param("status", "IN_PROGRESS"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lessonCount", is(1)));
+
+        // a second pass (or another instance) finds nothing left to do for these lessons
+        clearInvocations(lessonEventProducer);
+        lessonLifecycleScheduler.load(tick.plusSeconds(2));
+        lessonLifecycleScheduler.advance(tick.plusSeconds(3));
+        lessonOutboxRelay.relay();
+        List<UUID> ours = List.of(running.getId(), finished.getId(), neverStarted.getId(), soon.getId());
+        assertTrue(sentEvents().stream().noneMatch(event -> ours.contains(event.getLessonId())));
+    }
+
+    @Test
+    public void testCalendarFeedRendersSeriesAndAnswersConditionalGets() throws Exception {
+        UUID tutor = UUID.randomUUID();
+        UUID student = UUID.randomUUID();
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.HOURS);
+        JsonNode single = createLesson(tutor, student, start);
+
+        CreateLessonRequest weekly = new CreateLessonRequest();
+        weekly.setTitle("Grammar; tenses, part 1");
+        weekly.setDateTime(start.plusHours(3));
+        weekly.setDuration(45);
+        weekly.setTutorId(tutor);
+        weekly.setStudentId(UUID.randomUUID());
+        weekly.setRepeatWeekly(true);
+        weekly.setRepeatWeeksCount(3);
+        mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(weekly)))
+                .andExpect(status().isOk());
+
+        MvcResult started = mockMvc.perform(get("/api/lessons/calendar.ics").param("tutorId", tutor.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String etag = started.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        String feed = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/calendar"))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(feed.startsWith("BEGIN:VCALENDAR\r\n"));
+        assertEquals(4, feed.split("BEGIN:VEVENT", -1).length - 1);
+        assertTrue(feed.contains("UID:" + single.get("id").asText() + "@"));
+        assertTrue(feed.contains("SUMMARY:Grammar\\; tenses\\, part 1\r\n"));
+        assertTrue(feed.contains("DTSTART:" + DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").format(start) + "\r\n"));
+
+        mockMvc.perform(get("/api/lessons/calendar.ics").param("tutorId", tutor.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // the delete bumps the tutor's schedule version, so the cached feed is rendered again
+        mockMvc.perform(delete("/api/lessons/" + single.get("id").asText()))
+                .andExpect(status().isNoContent());
+        MvcResult changed = mockMvc.perform(get("/api/lessons/calendar.ics").param("tutorId", tutor.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertNotEquals(etag, changed.getResponse().getHeader("ETag"));
+        String changedFeed = mockMvc.perform(asyncDispatch(changed))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(3, changedFeed.split("BEGIN:VEVENT", -1).length - 1);
+        assertFalse(changedFeed.contains(single.get("id").asText()));
+
+        mockMvc.perform(get("/api/lessons/calendar.ics"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testRescheduleEventsAreRelayedFromTheOutboxInOrder() throws Exception {
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(2).truncatedTo(ChronoUnit.MINUTES);
+        String lessonId = createLesson(UUID.randomUUID(), UUID.randomUUID(), start).get("id").asText();
+        for (OffsetDateTime moved : List.of(start.plusHours(1), start.plusHours(2), start.plusHours(2))) {
+            mockMvc.perform(patch("/api/lessons/" + lessonId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"dateTime\":\"" + moved + "\"}"))
+                    .andExpect(status().isOk());
+        }
+        // the last update kept the start, so it added nothing
+        String pending = "SELECT COUNT(*) FROM lesson_outbox WHERE lesson_id = ?";
+        assertEquals(2, jdbcTemplate.queryForObject(pending, Integer.class, UUID.fromString(lessonId)));
+
+        // a batch the broker did not acknowledge stays in the outbox
+        when(lessonEventProducer.sendLessonEvents(any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        assertThrows(IllegalStateException.class, () -> lessonOutboxRelay.relay());
+        assertEquals(2, jdbcTemplate.queryForObject(pending, Integer.class, UUID.fromString(lessonId)));
+
+        when(lessonEventProducer.sendLessonEvents(any())).thenReturn(CompletableFuture.completedFuture(null));
+        clearInvocations(lessonEventProducer);
+        lessonOutboxRelay.relay();
+        assertEquals(0, jdbcTemplate.queryForObject(pending, Integer.class, UUID.fromString(lessonId)));
+
+        List<Event> ours = sentEvents().stream()
+                .filter(event -> event.getLessonId().toString().equals(lessonId))
+                .toList();
+        // both changes were pending together, so the tutor's burst went out as one message
+        LessonBatchEvent coalesced = sentMessages().stream()
+                .filter(message -> message instanceof LessonBatchEvent batch
+                        && batch.getLessons().stream().anyMatch(event -> event.getLessonId().toString().equals(lessonId)))
+                .map(LessonBatchEvent.class::cast)
+                .findFirst().orElseThrow();
+        assertEquals(LessonBatchEvent.COALESCED, coalesced.getOperation());
+        assertEquals(2, coalesced.getLessons().size());
+        assertEquals(2, ours.size());
+        assertEquals("LESSON_RESCHEDULED", ours.get(0).getEventType());
+        assertTrue(start.isEqual(ours.get(0).getOldStartTime()));
+        assertTrue(start.plusHours(1).isEqual(ours.get(0).getStartTime()));
+        assertTrue(start.plusHours(1).isEqual(ours.get(1).getOldStartTime()));
+        assertTrue(start.plusHours(2).isEqual(ours.get(1).getStartTime()));
+    }
+
+    @Test
+    public void testSeriesOperationsPublishOneEnvelopeEach() throws Exception {
+        UUID tutor = UUID.randomUUID();
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MINUTES);
+        CreateLessonRequest weekly = new CreateLessonRequest();
+        weekly.setTitle("Weekly");
+        weekly.setDateTime(start);
+        weekly.setDuration(60);
+        weekly.setTutorId(tutor);
+        weekly.setStudentId(UUID.randomUUID());
+        weekly.setRepeatWeekly(true);
+        weekly.setRepeatWeeksCount(4);
+        JsonNode first = objectMapper.readTree(mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(weekly)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        String seriesId = first.get("seriesId").asText();
+
+        mockMvc.perform(post("/api/lessons/series/" + seriesId + "/shift")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"shiftMinutes\":30}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/lessons/series/" + seriesId))
+                .andExpect(status().isOk());
+
+        clearInvocations(lessonEventProducer);
+        lessonOutboxRelay.relay();
+        List<LessonBatchEvent> envelopes = sentMessages().stream()
+                .filter(message -> message instanceof LessonBatchEvent batch && tutor.equals(batch.getTutorId()))
+                .map(LessonBatchEvent.class::cast)
+                .toList();
+        assertEquals(List.of(LessonBatchEvent.SERIES_CREATED, LessonBatchEvent.SERIES_SHIFTED, LessonBatchEvent.SERIES_DELETED),
+                envelopes.stream().map(LessonBatchEvent::getOperation).toList());
+        envelopes.forEach(envelope -> assertEquals(seriesId, envelope.getSeriesId().toString()));
+
+        // every occurrence is announced at creation, the stored first one under its own id
+        List<Event> created = envelopes.get(0).getLessons();
+        assertEquals(4, created.size());
+        assertEquals(first.get("id").asText(), created.get(0).getLessonId().toString());
+        assertEquals(4, created.stream().map(Event::getLessonId).distinct().count());
+
+        // later operations list the stored lessons they changed
+        Event shifted = envelopes.get(1).getLessons().get(0);
+        assertEquals(1, envelopes.get(1).getLessons().size());
+        assertEquals("LESSON_RESCHEDULED", shifted.getEventType());
+        assertTrue(start.plusMinutes(30).isEqual(shifted.getStartTime()));
+        assertTrue(start.isEqual(shifted.getOldStartTime()));
+        assertEquals(List.of("LESSON_DELETED"),
+                envelopes.get(2).getLessons().stream().map(Event::getEventType).toList());
+    }
+
+    @Test
+    public void testRelayWithoutEnvelopesSendsSingleEventsRightAway() throws Exception {
+        // the default: consumers that only know single events get the deltas of series operations
+        LessonOutboxRelay singlesRelay = new LessonOutboxRelay(jdbcTemplate, transactionTemplate, advisoryLocks,
+                lessonEventProducer, objectMapper, clock, new SimpleMeterRegistry(), true, 500, 10_000L, false, 60_000L);
+        UUID tutor = UUID.randomUUID();
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).plusDays(1).truncatedTo(ChronoUnit.MINUTES);
+        CreateLessonRequest weekly = new CreateLessonRequest();
+        weekly.setTitle("Weekly");
+        weekly.setDateTime(start);
+        weekly.setDuration(60);
+        weekly.setTutorId(tutor);
+        weekly.setStudentId(UUID.randomUUID());
+        weekly.setRepeatWeekly(true);
+        weekly.setRepeatWeeksCount(4);
+        String seriesId = objectMapper.readTree(mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(weekly)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).get("seriesId").asText();
+        mockMvc.perform(post("/api/lessons/series/" + seriesId + "/shift")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"shiftMinutes\":30}"))
+                .andExpect(status().isOk());
+
+        clearInvocations(lessonEventProducer);
+        singlesRelay.relay();
+        // the coalescing window does not apply without envelopes, so nothing was held back
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lesson_outbox", Integer.class));
+
+        List<Object> sent = sentMessages();
+        assertTrue(sent.stream().allMatch(Event.class::isInstance));
+        List<Event> ours = sent.stream()
+                .map(Event.class::cast)
+                .filter(event -> tutor.equals(event.getTutorId()))
+                .toList();
+        assertEquals(4, ours.stream().filter(event -> "LESSON_SCHEDULED".equals(event.getEventType())).count());
+        Event shifted = ours.get(ours.size() - 1);
+        assertEquals("LESSON_RESCHEDULED", shifted.getEventType());
+        assertTrue(start.plusMinutes(30).isEqual(shifted.getStartTime()));
+        ours.forEach(event -> assertNotNull(event.getTimestamp()));
+    }
+
+    /** Every message handed to the producer since its invocations were last cleared. */
+    private List<Object> sentMessages() {
+        List<Object> messages = new ArrayList<>();
+        for (Invocation invocation : mockingDetails(lessonEventProducer).getInvocations()) {
+            List<?> sent = invocation.getArgument(0);
+            if (sent != null) {
+                messages.addAll(sent);
+            }
+        }
+        return messages;
+    }
+
+    /** {@link #sentMessages()} with envelopes unpacked into their lesson deltas. */
+    private List<Event> sentEvents() {
+        List<Event> events = new ArrayList<>();
+        for (Object message : sentMessages()) {
+            if (message instanceof LessonBatchEvent batch) {
+                events.addAll(batch.getLessons());
+            } else {
+                events.add((Event) message);
+            }
+        }
+        return events;
+    }
+
+    private static Lesson lifecycleLesson(UUID tutorId, UUID studentId, OffsetDateTime start, LessonStatus status) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle("Lifecycle");
+        lesson.setTutorId(tutorId);
+        lesson.setStudentId(studentId);
+        lesson.setStatus(status);
+        lesson.setDateTime(start);
+        lesson.setEndDate(start.plusMinutes(60));
+        lesson.setDuration(60);
+        return lesson;
+    }
+
+    private JsonNode createLesson(UUID tutorId, UUID studentId, OffsetDateTime start) throws Exception {
+        CreateLessonRequest request = new CreateLessonRequest();
+        request.setTitle("Live");
+        request.setDateTime(start);
+        request.setDuration(60);
+        request.setTutorId(tutorId);
+        request.setStudentId(studentId);
+        return objectMapper.readTree(mockMvc.perform(post("/api/lessons")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    /** Polls {@code /now} until it reports the expected lesson id ("" for none), returning the last answer. */
+    private String awaitCurrentLesson(UUID tutorId, UUID studentId, String expectedId) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            var request = get("/api/lessons/now").param("currentDate", OffsetDateTime.now(ZoneOffset.UTC).toString());
+            if (tutorId != null) {
+                request.param("tutorId", tutorId.toString());
+            }
+            if (studentId != null) {
+                request.param("studentId", studentId.toString());
+            }
+            String body = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+            String id = body.isEmpty() ? "" : objectMapper.readTree(body).get("id").asText();
+            if (id.equals(expectedId) || System.currentTimeMillis() >= deadline) {
+                return id;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static String awaitStream(MvcResult stream, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String body = stream.getResponse().getContentAsString();
+        while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            body = stream.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains(expected), body);
+        return body;
+    }
+
+    private static Lesson pastLesson(UUID tutorId, UUID studentId, OffsetDateTime start) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle("History");
+        lesson.setTutorId(tutorId);
+        lesson.setStudentId(studentId);
+        lesson.setStatus(LessonStatus.COMPLETED);
+        lesson.setDateTime(start);
+        lesson.setDuration(60);
+        return lesson;
+    }
+
+    private List<JsonNode> listLessons(UUID tutorId, OffsetDateTime startDate, OffsetDateTime endDate) throws Exception {
+        String json = mockMvc.perform(get("/api/lessons")
+                        .param("tutorId", tutorId.toString())
+                        .param("startDate", startDate.toString())
+                        .param("endDate", endDate.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> lessons = new ArrayList<>();
+        objectMapper.readTree(json).forEach(lessons::add);
+        return lessons;
     }
 
     @Test
@@ -311,4 +1810,93 @@ public class LessonControllerIntegrationTest {
                 .andExpect(jsonPath("$." + day1Str).value(3))
                 .andExpect(jsonPath("$." + day2Str).value(1));
     }
+
+    @Test
+    public void testStreamBillingFeed() throws Exception {
+        lessonRepository.deleteAll();
+
+        UUID tutorId = UUID.randomUUID();
+        OffsetDateTime day = LocalDate.now().minusDays(3).atStartOfDay().atOffset(ZoneOffset.UTC);
+
+        for (int i = 0; i < 3; i++) {
+            Lesson lesson = new Lesson();
+            lesson.setTutorId(tutorId);
+            lesson.setStudentId(studentId1);
+            lesson.setStatus(i < 2 ? LessonStatus.COMPLETED : LessonStatus.CANCELED);
+            lesson.setDateTime(day.plusHours(i));
+            lesson.setDuration(45);
+            lessonRepository.save(lesson);
+        }
+
+        MvcResult started = mockMvc.perform(get("/api/lessons/billing-feed/stream")
+                        .param("tutorId", tutorId.toString())
+                        .param("from", day.toLocalDate().toString())
+                        .param("to", day.toLocalDate().toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> lines = body.lines().toList();
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            JsonNode item = objectMapper.readTree(line);
+            assertEquals(tutorId.toString(), item.get("tutorId").asText());
+            assertEquals(LessonStatus.COMPLETED.name(), item.get("status").asText());
+            assertEquals(45, item.get("durationMinutes").asInt());
+        }
+    }
+
+    @Test
+    public void testLessonChangeFeedPagesByWatermark() throws Exception {
+        // setup() already stored two lessons; add one more so the feed spans two pages
+        Lesson lesson = new Lesson();
+        lesson.setTutorId(tutorId1);
+        lesson.setStudentId(studentId1);
+        lesson.setDateTime(OffsetDateTime.now().plusDays(3));
+        lessonRepository.save(lesson);
+
+        ReflectionTestUtils.setField(lessonChangeFeedService, "settleSeconds", 0L);
+        try {
+            String firstPage = mockMvc.perform(get("/api/lessons/changes").param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(2)))
+                    .andExpect(jsonPath("$.hasMore", is(true)))
+                    .andReturn().getResponse().getContentAsString();
+            String watermark = objectMapper.readTree(firstPage).get("nextWatermark").asText();
+
+            String secondPage = mockMvc.perform(get("/api/lessons/changes")
+                            .param("since", watermark)
+                            .param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)))
+                    .andExpect(jsonPath("$.hasMore", is(false)))
+                    .andReturn().getResponse().getContentAsString();
+            String lastWatermark = objectMapper.readTree(secondPage).get("nextWatermark").asText();
+
+            mockMvc.perform(get("/api/lessons/changes").param("since", lastWatermark))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(0)))
+                    .andExpect(jsonPath("$.nextWatermark", is(lastWatermark)));
+
+            // a deleted lesson comes after the watermark as a tombstone
+            mockMvc.perform(delete("/api/lessons/" + lesson.getId()))
+                    .andExpect(status().isNoContent());
+            mockMvc.perform(get("/api/lessons/changes").param("since", lastWatermark))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)))
+                    .andExpect(jsonPath("$.items[0].lessonId", is(lesson.getId().toString())))
+                    .andExpect(jsonPath("$.items[0].tutorId", is(tutorId1.toString())))
+                    .andExpect(jsonPath("$.items[0].deleted", is(true)))
+                    .andExpect(jsonPath("$.hasMore", is(false)));
+
+            mockMvc.perform(get("/api/lessons/changes").param("since", "not-a-watermark"))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            ReflectionTestUtils.setField(lessonChangeFeedService, "settleSeconds", 5L);
+        }
+    }
 }
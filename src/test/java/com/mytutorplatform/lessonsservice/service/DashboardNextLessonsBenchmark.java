@@ -0,0 +1,168 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the single {@code studentId = :u OR tutorId = :u} query against the split tutor/student
+ * queries behind {@link LessonDashboardService#findNextStored}, on two years of lessons for
+ * {@value #TUTORS} tutors and {@value #STUDENTS} students.
+ * Needs the PostgreSQL configured through SPRING_DATASOURCE_*; run with {@code mvn -Pbenchmark test}.
+ */
+// the seeded statuses must stay as written while the queries are timed
+@SpringBootTest(properties = "lessons.lifecycle.enabled=false")
+public class DashboardNextLessonsBenchmark {
+
+    private static final int LESSONS = 400_000;
+    private static final int TUTORS = 1_000;
+    private static final int STUDENTS = 12_000;
+    private static final int SAMPLED_USERS = 200;
+    private static final int LIMIT = 20;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final String TITLE = "Dashboard benchmark";
+
+    @Autowired
+    private LessonDashboardService lessonDashboardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void seed() {
+        cleanup();
+        // tutor i teaches every 1000th lesson, student j attends every 12000th; past lessons are completed
+        jdbcTemplate.update("""
+                INSERT INTO lessons (id, title, date_time, end_date, duration, status, tutor_id, student_id, created_at, updated_at)
+                SELECT gen_random_uuid(), ?,
+                       now() + ((g % 730) - 365) * interval '1 day' + (g % 12) * interval '1 hour',
+                       now() + ((g % 730) - 365) * interval '1 day' + (g % 12) * interval '1 hour' + interval '1 hour',
+                       60,
+                       CASE WHEN g % 730 < 365 THEN 'COMPLETED' ELSE 'SCHEDULED' END,
+                       md5('tutor-' || g % ?)::uuid,
+                       md5('student-' || g % ?)::uuid,
+                       now(), now()
+                FROM generate_series(1, ?) g
+                """, TITLE, TUTORS, STUDENTS, LESSONS);
+        jdbcTemplate.execute("ANALYZE lessons");
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void cleanup() {
+        ReflectionTestUtils.setField(lessonDashboardService, "splitUserQueries", true);
+        jdbcTemplate.update("DELETE FROM lessons WHERE title = ?", TITLE);
+    }
+
+    @Test
+    public void compareOrQueryAndSplitQueries() {
+        List<UUID> tutors = sample("tutor_id");
+        List<UUID> students = sample("student_id");
+        OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC);
+
+        for (List<UUID> users : List.of(tutors, students)) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                run(users, from, false);
+                run(users, from, true);
+            }
+            long orNanos = 0;
+            long splitNanos = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                orNanos += run(users, from, false);
+                splitNanos += run(users, from, true);
+            }
+            double orMicros = orNanos / 1_000.0 / MEASURED_ROUNDS / users.size();
+            double splitMicros = splitNanos / 1_000.0 / MEASURED_ROUNDS / users.size();
+            System.out.printf("%s: OR query %.0f us/user, split queries %.0f us/user, speedup x%.1f%n",
+                    users == tutors ? "tutors" : "students", orMicros, splitMicros, orMicros / splitMicros);
+
+            long orSqlNanos = 0;
+            long splitSqlNanos = 0;
+            for (int i = 0; i < WARMUP_ROUNDS + MEASURED_ROUNDS; i++) {
+                long or = runStatements(users, from, false);
+                long split = runStatements(users, from, true);
+                if (i >= WARMUP_ROUNDS) {
+                    orSqlNanos += or;
+                    splitSqlNanos += split;
+                }
+            }
+            System.out.printf("%s statements only: OR query %.0f us/user, split queries %.0f us/user%n",
+                    users == tutors ? "tutors" : "students",
+                    orSqlNanos / 1_000.0 / MEASURED_ROUNDS / users.size(),
+                    splitSqlNanos / 1_000.0 / MEASURED_ROUNDS / users.size());
+
+            for (UUID user : users.subList(0, 10)) {
+                assertEquals(ids(user, from, false), ids(user, from, true));
+            }
+        }
+        printPlan("OR query", "l.student_id = ? OR l.tutor_id = ?", tutors.get(0), from);
+        printPlan("tutor side", "l.tutor_id = ?", tutors.get(0), from);
+    }
+
+    private List<UUID> sample(String column) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT " + column + " FROM lessons WHERE title = ? LIMIT ?",
+                UUID.class, TITLE, SAMPLED_USERS);
+    }
+
+    private long run(List<UUID> users, OffsetDateTime from, boolean split) {
+        ReflectionTestUtils.setField(lessonDashboardService, "splitUserQueries", split);
+        long start = System.nanoTime();
+        for (UUID user : users) {
+            // one session per lookup, as a request with open-in-view gets
+            readOnly.executeWithoutResult(status -> lessonDashboardService.findNextStored(user, from, LIMIT));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runStatements(List<UUID> users, OffsetDateTime from, boolean split) {
+        long start = System.nanoTime();
+        for (UUID user : users) {
+            if (split) {
+                jdbcTemplate.queryForList(nextLessons("l.tutor_id = ?"), user, from);
+                jdbcTemplate.queryForList(nextLessons("l.student_id = ?"), user, from);
+            } else {
+                jdbcTemplate.queryForList(nextLessons("l.student_id = ? OR l.tutor_id = ?"), user, user, from);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private List<UUID> ids(UUID user, OffsetDateTime from, boolean split) {
+        ReflectionTestUtils.setField(lessonDashboardService, "splitUserQueries", split);
+        return lessonDashboardService.findNextStored(user, from, LIMIT).stream().map(Lesson::getId).toList();
+    }
+
+    private void printPlan(String label, String predicate, UUID user, OffsetDateTime from) {
+        Object[] args = predicate.contains("OR") ? new Object[]{user, user, from} : new Object[]{user, from};
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN (ANALYZE, BUFFERS) " + nextLessons(predicate), String.class, args);
+        System.out.println(label + " plan:");
+        plan.forEach(line -> System.out.println("  " + line));
+    }
+
+    private static String nextLessons(String predicate) {
+        return "SELECT * FROM lessons l WHERE (" + predicate + ")"
+                + " AND l.status IN ('SCHEDULED', 'IN_PROGRESS', 'RESCHEDULED') AND l.date_time >= ?"
+                + " ORDER BY l.date_time, l.id LIMIT " + LIMIT;
+    }
+}
@@ -0,0 +1,87 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.response.DashboardOverview;
+import com.mytutorplatform.lessonsservice.model.response.StudentDashboardMetricsSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LessonDashboardOverviewServiceTest {
+
+    private final LessonDashboardService dashboardService = mock(LessonDashboardService.class);
+    private final LessonDashboardOverviewService overviewService = new LessonDashboardOverviewService(dashboardService);
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(overviewService, "poolSize", 4);
+        ReflectionTestUtils.setField(overviewService, "queueCapacity", 16);
+        ReflectionTestUtils.setField(overviewService, "sectionTimeoutMs", 300L);
+        ReflectionTestUtils.setField(overviewService, "maxConnections", 10);
+        overviewService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        overviewService.shutdown();
+    }
+
+    @Test
+    public void init_capsThePoolAtHalfTheDatabaseConnections() {
+        overviewService.shutdown();
+        ReflectionTestUtils.setField(overviewService, "poolSize", 8);
+        ReflectionTestUtils.setField(overviewService, "maxConnections", 6);
+        overviewService.init();
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(overviewService, "executor");
+        assertEquals(3, executor.getMaximumPoolSize());
+    }
+
+    @Test
+    public void getOverview_returnsPartialResultWhenASectionIsSlowOrFails() {
+        when(dashboardService.getUpcomingLessons(any(), any(), any())).thenReturn(List.of());
+        when(dashboardService.countMissingNotes(userId)).thenReturn(2L);
+        when(dashboardService.countStudentsWithoutNextLesson(userId)).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return 1L;
+        });
+        when(dashboardService.getStudentMetrics(userId)).thenReturn(new StudentDashboardMetricsSummary(4));
+        when(dashboardService.getTutorTodayAgenda(any(), any(), any())).thenThrow(new IllegalStateException("boom"));
+
+        long start = System.nanoTime();
+        DashboardOverview overview = overviewService.getOverview(userId, null, 3, 7, null, 5);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 2_000, "waited " + elapsedMs + " ms");
+        assertNull(overview.next());
+        assertEquals(List.of(), overview.upcoming());
+        assertEquals(4, overview.studentMetrics().getCompletedThisMonth());
+        assertNull(overview.tutorActions());
+        assertNull(overview.todayAgenda());
+        assertEquals(List.of("tutorActions", "todayAgenda"), overview.unavailableSections());
+    }
+
+    @Test
+    public void getOverview_runsOnlyRequestedSections() {
+        when(dashboardService.countMissingNotes(userId)).thenReturn(2L);
+        when(dashboardService.countStudentsWithoutNextLesson(userId)).thenReturn(1L);
+
+        DashboardOverview overview = overviewService.getOverview(userId, "tutorActions", 3, 7, null, 5);
+
+        assertEquals(2, overview.tutorActions().getMissingNotesCount());
+        assertEquals(1, overview.tutorActions().getStudentsWithoutNextLessonCount());
+        assertNull(overview.upcoming());
+        assertTrue(overview.unavailableSections().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> overviewService.getOverview(userId, "everything", 3, 7, null, 5));
+    }
+}
@@ -0,0 +1,49 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LessonDashboardServiceTest {
+
+    private static final OffsetDateTime BASE = OffsetDateTime.of(2025, 3, 10, 9, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void mergeDistinct_interleavesByStartAndKeepsSelfTaughtLessonOnce() {
+        Lesson tutorFirst = lesson(0);
+        Lesson selfTaught = lesson(1);
+        Lesson tutorLast = lesson(3);
+        Lesson studentOnly = lesson(2);
+
+        List<Lesson> merged = LessonDashboardService.mergeDistinct(
+                List.of(tutorFirst, selfTaught, tutorLast),
+                List.of(selfTaught, studentOnly),
+                10);
+
+        assertEquals(List.of(tutorFirst, selfTaught, studentOnly, tutorLast), merged);
+    }
+
+    @Test
+    public void mergeDistinct_stopsAtLimit() {
+        Lesson first = lesson(0);
+        Lesson second = lesson(1);
+        Lesson third = lesson(2);
+
+        assertEquals(List.of(first, second),
+                LessonDashboardService.mergeDistinct(List.of(first, third), List.of(second), 2));
+        assertEquals(List.of(first), LessonDashboardService.mergeDistinct(List.of(), List.of(first, second), 1));
+    }
+
+    private static Lesson lesson(int hoursAfterBase) {
+        Lesson lesson = new Lesson();
+        lesson.setId(UUID.randomUUID());
+        lesson.setDateTime(BASE.plusHours(hoursAfterBase));
+        return lesson;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mytutorplatform.lessonsservice.service;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries;
+import com.mytutorplatform.lessonsservice.repository.LessonRepository;
+import com.mytutorplatform.lessonsservice.repository.RecurringLessonSeriesRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares one-INSERT-per-occurrence against {@link LessonBatchWriter} when materializing a series.
+ * Needs the PostgreSQL configured through SPRING_DATASOURCE_*; run with {@code mvn -Pbenchmark test}.
+ */
+@SpringBootTest
+public class RecurringSeriesInsertBenchmark {
+
+    private static final int[] SERIES_LENGTHS = {10, 52, 200};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    @Autowired
+    private LessonBatchWriter lessonBatchWriter;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private RecurringLessonSeriesRepository recurringLessonSeriesRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void cleanup() {
+        lessonRepository.deleteAllInBatch();
+        recurringLessonSeriesRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void compareRowByRowAndBatchedSeriesInsert() {
+        for (int occurrences : SERIES_LENGTHS) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                insertRowByRow(occurrences);
+                insertBatched(occurrences);
+            }
+
+            long rowByRowNanos = 0;
+            long batchedNanos = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                rowByRowNanos += insertRowByRow(occurrences);
+                batchedNanos += insertBatched(occurrences);
+            }
+
+            double rowByRowMs = rowByRowNanos / 1_000_000.0 / MEASURED_ROUNDS;
+            double batchedMs = batchedNanos / 1_000_000.0 / MEASURED_ROUNDS;
+            System.out.printf("series of %3d: row-by-row %.2f ms, batched %.2f ms, speedup x%.1f%n",
+                    occurrences, rowByRowMs, batchedMs, rowByRowMs / batchedMs);
+        }
+
+        long expectedRows = 2L * (WARMUP_ROUNDS + MEASURED_ROUNDS) * (10 + 52 + 200);
+        assertEquals(expectedRows, lessonRepository.count());
+    }
+
+    private long insertRowByRow(int occurrences) {
+        List<Lesson> lessons = buildSeries(occurrences);
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Lesson lesson : lessons) {
+                entityManager.persist(lesson);
+                // a flush per entity reproduces one INSERT round trip per occurrence
+                entityManager.flush();
+            }
+        });
+        return System.nanoTime() - start;
+    }
+
+    private long insertBatched(int occurrences) {
+        List<Lesson> lessons = buildSeries(occurrences);
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> lessonBatchWriter.insertAll(lessons));
+        return System.nanoTime() - start;
+    }
+
+    private List<Lesson> buildSeries(int occurrences) {
+        RecurringLessonSeries series = new RecurringLessonSeries();
+        series.setFrequency(RecurringLessonSeries.RecurrenceFrequency.WEEKLY);
+        series.setInterval(1);
+        OffsetDateTime start = OffsetDateTime.now().plusDays(1);
+        series.setUntil(start.plusWeeks(occurrences - 1));
+        RecurringLessonSeries savedSeries = recurringLessonSeriesRepository.save(series);
+
+        UUID tutorId = UUID.randomUUID();
+        UUID studentId = UUID.randomUUID();
+        List<Lesson> lessons = new ArrayList<>(occurrences);
+        for (int i = 0; i < occurrences; i++) {
+            Lesson lesson = new Lesson();
+            lesson.setTitle("Benchmark lesson");
+            lesson.setTutorId(tutorId);
+            lesson.setStudentId(studentId);
+            lesson.setDateTime(start.plusWeeks(i));
+            lesson.setEndDate(start.plusWeeks(i).plusMinutes(60));
+            lesson.setDuration(60);
+            lesson.setSeries(savedSeries);
+            lessons.add(lesson);
+        }
+        return lessons;
+    }
+}
@@ -0,0 +1,68 @@
+package com.mytutorplatform.lessonsservice.service.calendar;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ICalendarWriterTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-10T09:00:00Z");
+
+    @Test
+    public void escape_escapesTextSpecialsAndLineBreaks() {
+        assertEquals("a\\;b\\,c\\\\d\\ne\\nf", ICalendarWriter.escape("a;b,c\\d\r\ne\nf"));
+        assertEquals("", ICalendarWriter.escape(null));
+    }
+
+    @Test
+    public void event_writesUtcTimesAndSkipsABlankLocation() throws Exception {
+        String calendar = render("Lesson", null);
+
+        assertEquals(List.of(
+                "BEGIN:VCALENDAR",
+                "VERSION:2.0",
+                "PRODID:-//Test//EN",
+                "CALSCALE:GREGORIAN",
+                "METHOD:PUBLISH",
+                "X-WR-CALNAME:Lessons",
+                "BEGIN:VEVENT",
+                "UID:lesson-1",
+                "DTSTAMP:20250310T090000Z",
+                "DTSTART:20250310T100000Z",
+                "DTEND:20250310T104500Z",
+                "SUMMARY:Lesson",
+                "STATUS:CONFIRMED",
+                "END:VEVENT",
+                "END:VCALENDAR"), List.of(calendar.split("\r\n")));
+        assertTrue(calendar.endsWith("\r\n"));
+    }
+
+    @Test
+    public void line_foldsAt75OctetsWithoutSplittingCharacters() throws Exception {
+        String title = "Ü".repeat(60);
+        String calendar = render(title, "Room 1");
+
+        String[] lines = calendar.split("\r\n");
+        StringBuilder unfolded = new StringBuilder();
+        for (String line : lines) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, line);
+            unfolded.append(line.startsWith(" ") ? line.substring(1) : "\n" + line);
+        }
+        assertTrue(unfolded.toString().contains("\nSUMMARY:" + title + "\n"));
+        assertTrue(unfolded.toString().contains("\nLOCATION:Room 1\n"));
+    }
+
+    private static String render(String summary, String location) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ICalendarWriter writer = new ICalendarWriter(out);
+        writer.beginCalendar("-//Test//EN", "Lessons");
+        writer.event("lesson-1", T0, T0.plusSeconds(3600), T0.plusSeconds(3600 + 45 * 60), summary, location, "CONFIRMED");
+        writer.endCalendar();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mytutorplatform.lessonsservice.service.lifecycle;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedTimingWheelTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-10T09:00:00Z");
+
+    private final HashedTimingWheel<String> wheel = new HashedTimingWheel<>(T0, Duration.ofSeconds(1), 8);
+
+    @Test
+    public void advance_firesTimersOnceTheirTickHasPassedInDeadlineOrder() {
+        wheel.schedule("later", at(5));
+        wheel.schedule("sooner", at(2));
+        wheel.schedule("partial", at(3).minusMillis(500));
+
+        assertEquals(List.of(), wheel.advance(at(1)));
+        assertEquals(List.of("sooner"), wheel.advance(at(2)));
+        assertEquals(List.of("partial", "later"), wheel.advance(at(5)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void advance_keepsTimersOfLaterRevolutionsSharingASlot() {
+        wheel.schedule("next", at(3));
+        wheel.schedule("nextRevolution", at(11));
+
+        assertEquals(List.of("next"), wheel.advance(at(4)));
+        assertTrue(wheel.isScheduled("nextRevolution"));
+        assertEquals(List.of("nextRevolution"), wheel.advance(at(11)));
+    }
+
+    @Test
+    public void advance_afterAStallLongerThanARevolutionFiresEverythingDue() {
+        wheel.schedule("a", at(2));
+        wheel.schedule("b", at(7));
+        wheel.schedule("c", at(30));
+        wheel.schedule("d", at(40));
+
+        assertEquals(List.of("a", "b", "c"), wheel.advance(at(35)));
+        assertEquals(List.of("d"), wheel.advance(at(40)));
+    }
+
+    @Test
+    public void schedule_movesAKeyAndPastDeadlinesFireOnTheNextTick() {
+        wheel.advance(at(10));
+        wheel.schedule("moved", at(12));
+        wheel.schedule("moved", at(14));
+        wheel.schedule("overdue", at(3));
+        wheel.schedule("cancelled", at(11));
+        wheel.cancel("cancelled");
+
+        assertEquals(List.of("overdue"), wheel.advance(at(12)));
+        assertEquals(List.of("moved"), wheel.advance(at(14)));
+        assertEquals(0, wheel.size());
+    }
+
+    private static Instant at(long seconds) {
+        return T0.plusSeconds(seconds);
+    }
+}
@@ -0,0 +1,75 @@
+package com.mytutorplatform.lessonsservice.service.recurrence;
+
+import com.mytutorplatform.lessonsservice.model.RecurringLessonSeries.RecurrenceFrequency;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecurrenceExpanderTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 6, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void weekly_windowInsideSeries_startsAtFirstOccurrenceInWindow() {
+        List<OffsetDateTime> result = RecurrenceExpander.occurrences(START, RecurrenceFrequency.WEEKLY, 1, null,
+                START.plusDays(100), START.plusDays(120), 10);
+
+        assertEquals(List.of(START.plusWeeks(15), START.plusWeeks(16), START.plusWeeks(17)), result);
+    }
+
+    @Test
+    public void biweekly_skipsOffWeeks() {
+        List<OffsetDateTime> result = RecurrenceExpander.occurrences(START, RecurrenceFrequency.WEEKLY, 2, null,
+                START.plusWeeks(1), START.plusWeeks(6), 10);
+
+        assertEquals(List.of(START.plusWeeks(2), START.plusWeeks(4), START.plusWeeks(6)), result);
+    }
+
+    @Test
+    public void daily_respectsUntilAndLimit() {
+        OffsetDateTime until = START.plusDays(4);
+
+        assertEquals(5, RecurrenceExpander.occurrences(START, RecurrenceFrequency.DAILY, 1, until, START, START.plusDays(30), 100).size());
+        assertEquals(2, RecurrenceExpander.occurrences(START, RecurrenceFrequency.DAILY, 1, until, START, START.plusDays(30), 2).size());
+    }
+
+    @Test
+    public void monthly_anchoredOnMonthEnd_doesNotDrift() {
+        OffsetDateTime start = OffsetDateTime.of(2025, 1, 31, 9, 0, 0, 0, ZoneOffset.UTC);
+
+        List<OffsetDateTime> result = RecurrenceExpander.occurrences(start, RecurrenceFrequency.MONTHLY, 1, null,
+                start, start.plusMonths(3), 10);
+
+        assertEquals(List.of(
+                start,
+                OffsetDateTime.of(2025, 2, 28, 9, 0, 0, 0, ZoneOffset.UTC),
+                OffsetDateTime.of(2025, 3, 31, 9, 0, 0, 0, ZoneOffset.UTC),
+                OffsetDateTime.of(2025, 4, 30, 9, 0, 0, 0, ZoneOffset.UTC)), result);
+    }
+
+    @Test
+    public void nextAfter_skipsTheGivenStartAndStopsAtUntil() {
+        OffsetDateTime until = START.plusWeeks(4);
+
+        assertEquals(START, RecurrenceExpander.nextAfter(START, RecurrenceFrequency.WEEKLY, 2, until, START.minusDays(1)));
+        assertEquals(START.plusWeeks(2), RecurrenceExpander.nextAfter(START, RecurrenceFrequency.WEEKLY, 2, until, START));
+        assertEquals(START.plusWeeks(4), RecurrenceExpander.nextAfter(START, RecurrenceFrequency.WEEKLY, 2, until, START.plusWeeks(3)));
+        assertNull(RecurrenceExpander.nextAfter(START, RecurrenceFrequency.WEEKLY, 2, until, START.plusWeeks(4)));
+    }
+
+    @Test
+    public void windowBeforeStart_isEmpty() {
+        assertTrue(RecurrenceExpander.occurrences(START, RecurrenceFrequency.WEEKLY, 1, null,
+                START.minusDays(10), START.minusDays(1), 10).isEmpty());
+    }
+
+    @Test
+    public void invalidInterval_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceExpander.occurrences(START, RecurrenceFrequency.WEEKLY, 0,
+                null, START, START.plusDays(7), 10));
+    }
+}
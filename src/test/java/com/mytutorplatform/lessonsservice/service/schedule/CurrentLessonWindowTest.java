@@ -0,0 +1,95 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.model.Lesson;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CurrentLessonWindowTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-10T09:00:00Z");
+
+    private final CurrentLessonWindow window = new CurrentLessonWindow(T0, at(180));
+    private final UUID tutor = UUID.randomUUID();
+    private final UUID student = UUID.randomUUID();
+
+    @Test
+    public void find_returnsTheLessonRunningAtTheInstantButNotAtItsEnd() {
+        Lesson lesson = lesson(tutor, student, 30, 60);
+        window.put(lesson);
+
+        assertEquals(lesson, window.find(tutor, null, at(30)).orElseThrow());
+        assertEquals(lesson, window.find(null, student, at(89)).orElseThrow());
+        assertEquals(lesson, window.find(tutor, student, at(60)).orElseThrow());
+        assertTrue(window.find(tutor, null, at(29)).isEmpty());
+        assertTrue(window.find(tutor, null, at(90)).isEmpty());
+        assertTrue(window.find(tutor, UUID.randomUUID(), at(60)).isEmpty());
+        assertTrue(window.find(UUID.randomUUID(), null, at(60)).isEmpty());
+    }
+
+    @Test
+    public void find_walksPastShortLessonsToALongOneStillRunning() {
+        Lesson workshop = lesson(tutor, student, 0, 150);
+        window.put(workshop);
+        window.put(lesson(tutor, UUID.randomUUID(), 60, 30));
+        Lesson latest = lesson(tutor, UUID.randomUUID(), 100, 20);
+        window.put(latest);
+
+        assertEquals(workshop, window.find(tutor, null, at(130)).orElseThrow());
+        assertEquals(latest, window.find(tutor, null, at(110)).orElseThrow());
+        assertEquals(workshop, window.find(null, student, at(110)).orElseThrow());
+    }
+
+    @Test
+    public void put_replacesMovedLessonsAndDropsThoseOutsideTheWindow() {
+        Lesson lesson = lesson(tutor, student, 30, 60);
+        window.put(lesson);
+
+        Lesson moved = lesson(tutor, UUID.randomUUID(), 120, 60);
+        moved.setId(lesson.getId());
+        window.put(moved);
+        assertTrue(window.find(tutor, null, at(45)).isEmpty());
+        assertTrue(window.find(null, student, at(45)).isEmpty());
+        assertEquals(moved, window.find(tutor, null, at(150)).orElseThrow());
+
+        Lesson tomorrow = lesson(tutor, student, 24 * 60, 60);
+        tomorrow.setId(lesson.getId());
+        window.put(tomorrow);
+        assertEquals(0, window.size());
+        assertFalse(window.covers(at(24 * 60 + 30)));
+        assertTrue(window.covers(at(180)));
+    }
+
+    @Test
+    public void remove_forgetsTheLessonEverywhere() {
+        Lesson lesson = lesson(tutor, student, 0, 60);
+        window.put(lesson);
+        window.remove(lesson.getId());
+        window.remove(UUID.randomUUID());
+
+        assertEquals(Optional.empty(), window.find(tutor, null, at(30)));
+        assertEquals(Optional.empty(), window.find(null, student, at(30)));
+        assertEquals(Optional.empty(), window.find(null, null, at(30)));
+    }
+
+    private static Lesson lesson(UUID tutorId, UUID studentId, int startMinutes, int durationMinutes) {
+        Lesson lesson = new Lesson();
+        lesson.setId(UUID.randomUUID());
+        lesson.setTutorId(tutorId);
+        lesson.setStudentId(studentId);
+        lesson.setDateTime(at(startMinutes).atOffset(ZoneOffset.UTC));
+        lesson.setEndDate(at(startMinutes + durationMinutes).atOffset(ZoneOffset.UTC));
+        lesson.setDuration(durationMinutes);
+        return lesson;
+    }
+
+    private static Instant at(int minutes) {
+        return T0.plus(minutes, ChronoUnit.MINUTES);
+    }
+}
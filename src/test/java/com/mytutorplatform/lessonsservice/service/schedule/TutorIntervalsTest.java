@@ -0,0 +1,71 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TutorIntervalsTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-03T09:00:00Z");
+
+    private final TutorIntervals intervals = new TutorIntervals(List.of(), 0L);
+
+    @Test
+    public void findOverlap_detectsIntersectionButNotTouchingIntervals() {
+        UUID lesson = UUID.randomUUID();
+        intervals.put(lesson, T0, at(60));
+
+        assertEquals(lesson, intervals.findOverlap(at(30), at(90), null).orElseThrow().lessonId());
+        assertTrue(intervals.findOverlap(at(60), at(120), null).isEmpty());
+        assertTrue(intervals.findOverlap(at(-60), T0, null).isEmpty());
+        assertTrue(intervals.findOverlap(at(30), at(90), lesson).isEmpty());
+    }
+
+    @Test
+    public void findOverlap_seesEveryMemberOfAMergedBlock() {
+        UUID longLesson = UUID.randomUUID();
+        UUID shortLesson = UUID.randomUUID();
+        // legacy data may already overlap; both end up in one busy block
+        intervals.put(longLesson, T0, at(180));
+        intervals.put(shortLesson, at(30), at(60));
+
+        assertEquals(longLesson, intervals.findOverlap(at(120), at(150), shortLesson).orElseThrow().lessonId());
+        assertEquals(shortLesson, intervals.findOverlap(at(40), at(50), longLesson).orElseThrow().lessonId());
+    }
+
+    @Test
+    public void remove_splitsBlockAgain() {
+        UUID first = UUID.randomUUID();
+        UUID bridge = UUID.randomUUID();
+        UUID last = UUID.randomUUID();
+        intervals.put(first, T0, at(60));
+        intervals.put(last, at(120), at(180));
+        intervals.put(bridge, at(30), at(150));
+        assertEquals(1, intervals.busyBetween(T0, at(240)).size());
+
+        intervals.remove(bridge);
+
+        List<TutorIntervals.Interval> busy = intervals.busyBetween(T0, at(240));
+        assertEquals(2, busy.size());
+        assertTrue(intervals.findOverlap(at(60), at(120), null).isEmpty());
+    }
+
+    @Test
+    public void put_replacesPreviousIntervalOfSameLesson() {
+        UUID lesson = UUID.randomUUID();
+        intervals.put(lesson, T0, at(60));
+        intervals.put(lesson, at(120), at(180));
+
+        assertTrue(intervals.findOverlap(T0, at(60), null).isEmpty());
+        assertFalse(intervals.findOverlap(at(150), at(160), null).isEmpty());
+    }
+
+    private static Instant at(long minutes) {
+        return T0.plus(minutes, ChronoUnit.MINUTES);
+    }
+}
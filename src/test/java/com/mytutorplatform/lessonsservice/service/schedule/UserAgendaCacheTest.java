@@ -0,0 +1,97 @@
+package com.mytutorplatform.lessonsservice.service.schedule;
+
+import com.mytutorplatform.lessonsservice.service.schedule.UserAgendaCache.UserAgenda;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserAgendaCacheTest {
+
+    private static final UserAgenda EMPTY = new UserAgenda(Instant.EPOCH, List.of(), true);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void get_servesFreshUsableEntriesAndCountsHitsAndMisses() {
+        UserAgendaCache cache = new UserAgendaCache(meterRegistry, 60, 10);
+        UUID user = UUID.randomUUID();
+
+        cache.get(user, agenda -> true, this::load);
+        cache.get(user, agenda -> true, this::load);
+        cache.get(user, agenda -> false, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1.0, requests("hit"));
+        assertEquals(2.0, requests("miss"));
+    }
+
+    @Test
+    public void get_reloadsExpiredEntries() {
+        UserAgendaCache cache = new UserAgendaCache(meterRegistry, 0, 10);
+        UUID user = UUID.randomUUID();
+
+        cache.get(user, agenda -> true, this::load);
+        cache.get(user, agenda -> true, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1.0, evictions("expired"));
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsedUserWhenFull() {
+        UserAgendaCache cache = new UserAgendaCache(meterRegistry, 60, 2);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        cache.get(first, agenda -> true, this::load);
+        cache.get(second, agenda -> true, this::load);
+        cache.get(first, agenda -> true, this::load);
+        cache.get(UUID.randomUUID(), agenda -> true, this::load);
+        cache.get(first, agenda -> true, this::load);
+        cache.get(second, agenda -> true, this::load);
+
+        // the re-read kept "first" recent, so the third user pushed out "second"
+        assertEquals(4, loads.get());
+        assertEquals(2.0, evictions("size"));
+        assertEquals(2.0, meterRegistry.get("lessons.agenda.cache.size").gauge().value());
+    }
+
+    @Test
+    public void invalidate_dropsEntriesAndDiscardsLoadsThatRacedIt() {
+        UserAgendaCache cache = new UserAgendaCache(meterRegistry, 60, 10);
+        UUID user = UUID.randomUUID();
+
+        cache.get(user, agenda -> true, this::load);
+        cache.invalidate(user, UUID.randomUUID());
+        assertEquals(1.0, evictions("invalidated"));
+
+        // a write lands while the agenda is being read: the result is served once, never cached
+        cache.get(user, agenda -> true, () -> {
+            cache.invalidate(user);
+            return load();
+        });
+        cache.get(user, agenda -> true, this::load);
+
+        assertEquals(3, loads.get());
+    }
+
+    private UserAgenda load() {
+        loads.incrementAndGet();
+        return EMPTY;
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("lessons.agenda.cache.requests").tag("result", result).counter().count();
+    }
+
+    private double evictions(String cause) {
+        return meterRegistry.get("lessons.agenda.cache.evictions").tag("cause", cause).counter().count();
+    }
+}
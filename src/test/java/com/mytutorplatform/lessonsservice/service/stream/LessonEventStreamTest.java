@@ -0,0 +1,88 @@
+package com.mytutorplatform.lessonsservice.service.stream;
+
+import com.mytutorplatform.lessonsservice.model.LessonStatus;
+import com.mytutorplatform.lessonsservice.model.response.LessonStreamEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LessonEventStreamTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID tutor = UUID.randomUUID();
+    private final UUID student = UUID.randomUUID();
+
+    @Test
+    public void subscribe_deliversOnlyTheUsersEventsAndReplaysAfterLastEventId() {
+        LessonEventStream stream = new LessonEventStream(meterRegistry, 100, 16);
+        List<ServerSentEvent<LessonStreamEvent>> live = collect(stream.subscribe(student, null));
+
+        stream.dispatch(List.of(tutor, student), event(LessonStreamEvent.Type.CREATED));
+        stream.dispatch(List.of(tutor, UUID.randomUUID()), event(LessonStreamEvent.Type.CREATED));
+        stream.dispatch(List.of(tutor, student), event(LessonStreamEvent.Type.DELETED));
+
+        assertEquals(2, live.size());
+        assertEquals(LessonEventStream.LESSON, live.get(0).event());
+        assertEquals(LessonStreamEvent.Type.DELETED, live.get(1).data().type());
+
+        List<ServerSentEvent<LessonStreamEvent>> resumed = stream.subscribe(student, live.get(0).id())
+                .take(1).collectList().block(Duration.ofSeconds(1));
+        assertEquals(List.of(live.get(1).id()), resumed.stream().map(ServerSentEvent::id).toList());
+    }
+
+    @Test
+    public void subscribe_asksForResyncWhenTheGapIsNoLongerKept() {
+        LessonEventStream stream = new LessonEventStream(meterRegistry, 2, 16);
+        List<ServerSentEvent<LessonStreamEvent>> live = collect(stream.subscribe(student, null));
+        for (int i = 0; i < 4; i++) {
+            stream.dispatch(List.of(student), event(LessonStreamEvent.Type.UPDATED));
+        }
+
+        assertEquals(LessonEventStream.RESYNC, first(stream.subscribe(student, live.get(0).id())).event());
+        assertEquals(LessonEventStream.RESYNC, first(stream.subscribe(student, "elsewhere-3")).event());
+        assertEquals(LessonEventStream.LESSON, first(stream.subscribe(student, live.get(1).id())).event());
+
+        stream.resync();
+        assertEquals(LessonEventStream.RESYNC, live.get(live.size() - 1).event());
+        assertEquals(LessonEventStream.RESYNC, first(stream.subscribe(student, live.get(3).id())).event());
+    }
+
+    @Test
+    public void dispatch_closesStreamsThatFallBehindTheirBuffer() {
+        LessonEventStream stream = new LessonEventStream(meterRegistry, 100, 8);
+        Flux<ServerSentEvent<LessonStreamEvent>> slow = stream.subscribe(student, null);
+
+        for (int i = 0; i < 10; i++) {
+            stream.dispatch(List.of(student), event(LessonStreamEvent.Type.UPDATED));
+        }
+
+        List<ServerSentEvent<LessonStreamEvent>> buffered = slow.collectList().block(Duration.ofSeconds(1));
+        assertEquals(8, buffered.size());
+        assertEquals(1.0, meterRegistry.counter("lessons.events.stream.dropped").count());
+        assertEquals(0.0, meterRegistry.get("lessons.events.stream.open").gauge().value());
+    }
+
+    private static List<ServerSentEvent<LessonStreamEvent>> collect(Flux<ServerSentEvent<LessonStreamEvent>> flux) {
+        List<ServerSentEvent<LessonStreamEvent>> received = new CopyOnWriteArrayList<>();
+        flux.subscribe(received::add);
+        return received;
+    }
+
+    private static ServerSentEvent<LessonStreamEvent> first(Flux<ServerSentEvent<LessonStreamEvent>> flux) {
+        return flux.blockFirst(Duration.ofSeconds(1));
+    }
+
+    private LessonStreamEvent event(LessonStreamEvent.Type type) {
+        return new LessonStreamEvent(type, UUID.randomUUID(), tutor, student, "Lesson", LessonStatus.SCHEDULED, null,
+                Instant.parse("2025-03-10T09:00:00Z"), 60, Instant.now());
+    }
+}
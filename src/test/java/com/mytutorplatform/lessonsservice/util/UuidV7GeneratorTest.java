@@ -0,0 +1,49 @@
+package com.mytutorplatform.lessonsservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UuidV7GeneratorTest {
+
+    @Test
+    public void next_setsVersionVariantAndCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidV7Generator.next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        // the counter may borrow a millisecond or two under heavy generation
+        long timestamp = UuidV7Generator.timestampMillis(uuid);
+        assertTrue(timestamp >= before && timestamp <= after + 2, "timestamp " + timestamp);
+    }
+
+    @Test
+    public void next_isStrictlyIncreasingInPostgresUuidOrder() {
+        UUID previous = UuidV7Generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID current = UuidV7Generator.next();
+            // PostgreSQL compares uuid bytes unsigned, unlike UUID.compareTo
+            assertTrue(Long.compareUnsigned(previous.getMostSignificantBits(), current.getMostSignificantBits()) < 0,
+                    previous + " !< " + current);
+            previous = current;
+        }
+    }
+
+    @Test
+    public void nextTimestampAndCounter_neverGoesBackwardsWhenTheClockDoes() {
+        AtomicLong last = new AtomicLong();
+        long now = System.currentTimeMillis();
+        long first = UuidV7Generator.nextTimestampAndCounter(last, now);
+        long sameMillisecond = UuidV7Generator.nextTimestampAndCounter(last, now);
+        long clockStepBack = UuidV7Generator.nextTimestampAndCounter(last, now - 5_000);
+
+        assertEquals(now << 12, first);
+        assertEquals(first + 1, sameMillisecond);
+        assertEquals(first + 2, clockStepBack);
+    }
+}
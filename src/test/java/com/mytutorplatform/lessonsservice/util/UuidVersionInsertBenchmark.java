@@ -0,0 +1,76 @@
+package com.mytutorplatform.lessonsservice.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares random v4 and time-ordered v7 primary keys: insert throughput into a table already
+ * holding rows, and the resulting primary-key index size.
+ * Needs the PostgreSQL configured through SPRING_DATASOURCE_*; run with {@code mvn -Pbenchmark test}.
+ */
+@SpringBootTest
+public class UuidVersionInsertBenchmark {
+
+    private static final int PRELOADED_ROWS = 200_000;
+    private static final int MEASURED_ROWS = 200_000;
+    private static final int BATCH_SIZE = 1_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void dropTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS uuid_bench_v4");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS uuid_bench_v7");
+    }
+
+    @Test
+    public void compareV4AndV7PrimaryKeys() {
+        Result v4 = run("uuid_bench_v4", UUID::randomUUID);
+        Result v7 = run("uuid_bench_v7", UuidV7Generator::next);
+
+        System.out.printf("v4: %,.0f rows/s, pkey %,d kB%n", v4.rowsPerSecond(), v4.indexBytes() / 1024);
+        System.out.printf("v7: %,.0f rows/s, pkey %,d kB%n", v7.rowsPerSecond(), v7.indexBytes() / 1024);
+        System.out.printf("v7 throughput x%.2f, index size x%.2f%n",
+                v7.rowsPerSecond() / v4.rowsPerSecond(), (double) v7.indexBytes() / v4.indexBytes());
+    }
+
+    private Result run(String table, Supplier<UUID> ids) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        jdbcTemplate.execute("CREATE TABLE " + table + " (id uuid PRIMARY KEY, payload varchar(64))");
+
+        insert(table, ids, PRELOADED_ROWS);
+        long start = System.nanoTime();
+        insert(table, ids, MEASURED_ROWS);
+        long elapsed = System.nanoTime() - start;
+
+        Long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+        assertEquals(PRELOADED_ROWS + MEASURED_ROWS, rows);
+        Long indexBytes = jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, table + "_pkey");
+        return new Result(MEASURED_ROWS / (elapsed / 1_000_000_000.0), indexBytes);
+    }
+
+    private void insert(String table, Supplier<UUID> ids, int count) {
+        String sql = "INSERT INTO " + table + " (id, payload) VALUES (?, ?)";
+        for (int done = 0; done < count; done += BATCH_SIZE) {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(new Object[]{ids.get(), "lesson payload " + (done + i)});
+            }
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    private record Result(double rowsPerSecond, long indexBytes) {
+    }
+}